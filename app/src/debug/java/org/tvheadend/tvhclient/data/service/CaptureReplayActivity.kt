@@ -0,0 +1,36 @@
+package org.tvheadend.tvhclient.data.service
+
+import android.app.Activity
+import android.content.Intent
+import android.os.Bundle
+import timber.log.Timber
+
+/**
+ * Entry point of debug builds to replay a captured session with the
+ * service. The service itself is not exported, so the replay is started
+ * from the command line with this activity:
+ *
+ * adb shell am start -n org.tvheadend.tvhclient/.data.service.CaptureReplayActivity --es file /path/to/file.cap
+ *
+ * The optional boolean extra realtime replays the messages with the
+ * pacing of the original session.
+ */
+class CaptureReplayActivity : Activity() {
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+
+        val path = intent.getStringExtra("file")
+        if (path == null) {
+            Timber.d("No capture file given")
+        } else {
+            Timber.d("Starting replay of capture $path")
+            val replayIntent = Intent(this, HtspService::class.java)
+            replayIntent.action = "replayCapture"
+            replayIntent.putExtra("file", path)
+            replayIntent.putExtra("realtime", intent.getBooleanExtra("realtime", false))
+            startService(replayIntent)
+        }
+        finish()
+    }
+}
@@ -23,6 +23,7 @@ import com.google.android.gms.cast.framework.media.NotificationOptions;
 import com.squareup.leakcanary.LeakCanary;
 import com.squareup.leakcanary.RefWatcher;
 
+import org.tvheadend.tvhclient.data.service.htsp.HtspLog;
 import org.tvheadend.tvhclient.di.DaggerMainApplicationComponent;
 import org.tvheadend.tvhclient.di.MainApplicationComponent;
 import org.tvheadend.tvhclient.di.modules.MainApplicationModule;
@@ -155,6 +156,9 @@ public class MainApplication extends MultiDexApplication implements OptionsProvi
                 getResources().getBoolean(R.bool.pref_default_crash_reports_enabled))) {
             Timber.plant(new CrashlyticsTree());
         }
+
+        // Forward the log messages from the htsp module to the planted trees
+        HtspLog.setLogger((priority, message, throwable) -> Timber.log(priority, throwable, message));
     }
 
     private void initCrashlytics() {
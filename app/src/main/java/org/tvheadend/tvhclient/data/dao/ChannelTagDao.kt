@@ -40,6 +40,16 @@ interface ChannelTagDao {
     @Update
     fun update(channelTags: ChannelTag)
 
+    /**
+     * Updates the data of the server but keeps the selection of the user
+     */
+    @Query("UPDATE channel_tags SET " +
+            "tag_name = :tagName, tag_index = :tagIndex, tag_icon = :tagIcon, " +
+            "tag_titled_icon = :tagTitledIcon, channel_count = :channelCount " +
+            "WHERE id = :id AND connection_id = :connectionId")
+    fun updateServerData(id: Int, connectionId: Int, tagName: String?, tagIndex: Int,
+                         tagIcon: String?, tagTitledIcon: Int, channelCount: Int)
+
     @Delete
     fun delete(channelTag: ChannelTag)
 
@@ -2,6 +2,9 @@ package org.tvheadend.tvhclient.data.dao
 
 import androidx.lifecycle.LiveData
 import androidx.room.*
+import androidx.sqlite.db.SupportSQLiteQuery
+import org.tvheadend.tvhclient.domain.entity.Channel
+import org.tvheadend.tvhclient.domain.entity.Connection
 import org.tvheadend.tvhclient.domain.entity.EpgProgram
 import org.tvheadend.tvhclient.domain.entity.Program
 
@@ -16,24 +19,11 @@ interface ProgramDao {
             "WHERE " + CONNECTION_IS_ACTIVE)
     val itemCountSync: Int
 
-    @Transaction
-    @Query(PROGRAM_BASE_QUERY +
-            "WHERE " + CONNECTION_IS_ACTIVE +
-            " AND ((p.start >= :time) " +
-            "  OR (p.start <= :time AND p.stop >= :time)) " +
-            "GROUP BY p.id " +
-            "ORDER BY p.start, p.channel_name ASC")
-    fun loadProgramsFromTime(time: Long): LiveData<List<Program>>
+    @RawQuery
+    fun loadProgramListSync(query: SupportSQLiteQuery): List<Program>
 
-    @Transaction
-    @Query(PROGRAM_BASE_QUERY +
-            "WHERE " + CONNECTION_IS_ACTIVE +
-            " AND p.channel_id = :channelId " +
-            " AND ((p.start >= :time) " +
-            "  OR (p.start <= :time AND p.stop >= :time)) " +
-            "GROUP BY p.id " +
-            "ORDER BY p.start ASC")
-    fun loadProgramsFromChannelFromTime(channelId: Int, time: Long): LiveData<List<Program>>
+    @RawQuery(observedEntities = [Program::class, Channel::class, Connection::class])
+    fun loadProgramListCount(query: SupportSQLiteQuery): LiveData<Int>
 
     @Transaction
     @Query(EPG_PROGRAM_BASE_QUERY +
@@ -110,6 +100,11 @@ interface ProgramDao {
             " AND id = :id")
     fun deleteById(id: Int)
 
+    @Query("DELETE FROM programs " +
+            "WHERE connection_id IN (SELECT id FROM connections WHERE active = 1) " +
+            " AND id IN (:ids)")
+    fun deleteByIds(ids: List<Int>)
+
     @Query("DELETE FROM programs")
     fun deleteAll()
 
@@ -121,6 +116,23 @@ interface ProgramDao {
                 "FROM programs AS p " +
                 "LEFT JOIN channels AS c ON c.id = p.channel_id "
 
+        // Contains only the columns that are shown in the program list.
+        // The remaining details are loaded when a single program is shown.
+        const val PROGRAM_LIST_BASE_QUERY = "SELECT p.id, " +
+                "p.channel_id, " +
+                "p.connection_id, " +
+                "p.start, p.stop, " +
+                "p.title, p.subtitle, " +
+                "p.summary, p.description_data, " +
+                "p.content_type, " +
+                "p.episode_on_screen, " +
+                "p.season_number, p.episode_number, p.part_number, " +
+                "p.next_event_id, " +
+                "c.name AS channel_name, " +
+                "c.icon AS channel_icon " +
+                "FROM programs AS p " +
+                "LEFT JOIN channels AS c ON c.id = p.channel_id "
+
         const val EPG_PROGRAM_BASE_QUERY = "SELECT DISTINCT p.id, " +
                 "p.title, p.subtitle, " +
                 "p.channel_id, " +
@@ -2,31 +2,32 @@ package org.tvheadend.tvhclient.data.dao
 
 import androidx.lifecycle.LiveData
 import androidx.room.*
+import androidx.sqlite.db.SupportSQLiteQuery
+import org.tvheadend.tvhclient.domain.entity.Channel
+import org.tvheadend.tvhclient.domain.entity.Connection
 import org.tvheadend.tvhclient.domain.entity.Recording
 
 @Dao
 abstract class RecordingDao {
 
     @get:Query("SELECT COUNT (*) FROM recordings AS rec " +
-            "WHERE (rec.error IS NULL AND rec.state = 'completed') " +
-            "AND rec.connection_id IN (SELECT id FROM connections WHERE active = 1)")
+            "WHERE " + COMPLETED_FILTER +
+            " AND " + CONNECTION_IS_ACTIVE)
     abstract val completedRecordingCount: LiveData<Int>
 
     @get:Query("SELECT COUNT (*) FROM recordings AS rec " +
-            "WHERE (rec.error IS NULL AND (rec.state = 'recording' OR rec.state = 'scheduled')) " +
-            "AND rec.connection_id IN (SELECT id FROM connections WHERE active = 1)")
+            "WHERE " + SCHEDULED_FILTER +
+            " AND " + CONNECTION_IS_ACTIVE)
     abstract val scheduledRecordingCount: LiveData<Int>
 
     @get:Query("SELECT COUNT (*) FROM recordings AS rec " +
-            "WHERE ((rec.error IS NOT NULL AND (rec.state='missed'  OR rec.state='invalid')) " +
-            " OR (rec.error IS NULL  AND rec.state='missed') " +
-            " OR (rec.error='Aborted by user' AND rec.state='completed')) " +
-            "AND rec.connection_id IN (SELECT id FROM connections WHERE active = 1)")
+            "WHERE " + FAILED_FILTER +
+            " AND " + CONNECTION_IS_ACTIVE)
     abstract val failedRecordingCount: LiveData<Int>
 
     @get:Query("SELECT COUNT (*) FROM recordings AS rec " +
-            "WHERE (rec.error = 'File missing' AND rec.state = 'completed') " +
-            "AND rec.connection_id IN (SELECT id FROM connections WHERE active = 1)")
+            "WHERE " + REMOVED_FILTER +
+            " AND " + CONNECTION_IS_ACTIVE)
     abstract val removedRecordingCount: LiveData<Int>
 
     @get:Query("SELECT COUNT (*) FROM recordings AS rec " +
@@ -42,33 +43,48 @@ abstract class RecordingDao {
     @Transaction
     @Query(RECORDING_BASE_QUERY +
             "WHERE " + CONNECTION_IS_ACTIVE +
-            " AND rec.error IS NULL AND rec.state = 'completed'" +
+            " AND " + COMPLETED_FILTER +
             "ORDER BY rec.start DESC")
     abstract fun loadAllCompletedRecordings(): LiveData<List<Recording>>
 
     @Transaction
     @Query(RECORDING_BASE_QUERY +
             "WHERE " + CONNECTION_IS_ACTIVE +
-            " AND rec.error IS NULL AND (rec.state = 'recording' OR rec.state = 'scheduled')" +
+            " AND " + SCHEDULED_FILTER +
             "ORDER BY rec.start ASC")
     abstract fun loadAllScheduledRecordings(): LiveData<List<Recording>>
 
     @Transaction
     @Query(RECORDING_BASE_QUERY +
             "WHERE " + CONNECTION_IS_ACTIVE +
-            " AND (rec.error IS NOT NULL AND (rec.state='missed'  OR rec.state='invalid')) " +
-            " OR (rec.error IS NULL  AND rec.state='missed') " +
-            " OR (rec.error='Aborted by user' AND rec.state='completed')" +
+            " AND " + FAILED_FILTER +
             "ORDER BY rec.start DESC")
     abstract fun loadAllFailedRecordings(): LiveData<List<Recording>>
 
     @Transaction
     @Query(RECORDING_BASE_QUERY +
             "WHERE " + CONNECTION_IS_ACTIVE +
-            " AND rec.error = 'File missing' AND rec.state = 'completed'" +
+            " AND " + REMOVED_FILTER +
             "ORDER BY rec.start DESC")
     abstract fun loadAllRemovedRecordings(): LiveData<List<Recording>>
 
+    @SuppressWarnings(RoomWarnings.CURSOR_MISMATCH)
+    @Query(RECORDING_STATE_BASE_QUERY +
+            "WHERE " + CONNECTION_IS_ACTIVE)
+    abstract fun loadAllRecordingStates(): LiveData<List<Recording>>
+
+    @SuppressWarnings(RoomWarnings.CURSOR_MISMATCH)
+    @Query(RECORDING_STATE_BASE_QUERY +
+            "WHERE " + CONNECTION_IS_ACTIVE +
+            " AND rec.channel_id = :channelId")
+    abstract fun loadAllRecordingStatesByChannelId(channelId: Int): LiveData<List<Recording>>
+
+    @RawQuery
+    abstract fun loadRecordingListSync(query: SupportSQLiteQuery): List<Recording>
+
+    @RawQuery(observedEntities = [Recording::class, Channel::class, Connection::class])
+    abstract fun loadRecordingListCount(query: SupportSQLiteQuery): LiveData<Int>
+
     @Transaction
     @Query(RECORDING_BASE_QUERY +
             "WHERE " + CONNECTION_IS_ACTIVE +
@@ -81,6 +97,11 @@ abstract class RecordingDao {
             " AND rec.id = :id")
     abstract fun loadRecordingByIdSync(id: Int): Recording
 
+    @Transaction
+    @Query(RECORDING_BASE_QUERY +
+            "WHERE " + CONNECTION_IS_ACTIVE)
+    abstract fun loadAllRecordingsSync(): List<Recording>
+
     @Transaction
     @Query(RECORDING_BASE_QUERY +
             "WHERE " + CONNECTION_IS_ACTIVE +
@@ -104,6 +125,9 @@ abstract class RecordingDao {
     @Update
     abstract fun update(recording: Recording)
 
+    @Update
+    abstract fun update(recordings: List<Recording>)
+
     @Delete
     abstract fun delete(recording: Recording)
 
@@ -118,14 +142,114 @@ abstract class RecordingDao {
     @Query("DELETE FROM recordings")
     abstract fun deleteAll()
 
+    @Query("SELECT * FROM recordings " +
+            "WHERE connection_id = :connectionId")
+    abstract fun loadAllRecordingsByConnectionIdSync(connectionId: Int): List<Recording>
+
+    /**
+     * Makes the stored recordings of the given connection equal to the given
+     * recordings. Only new, changed and no longer existing recordings are
+     * written, so the recording observers are not notified when nothing has
+     * changed. Recordings are compared by their id and their stored values.
+     *
+     * @return The number of inserted, updated and deleted recordings
+     */
+    @Transaction
+    open fun reconcile(connectionId: Int, recordings: List<Recording>): Int {
+        val storedRecordings = HashMap<Int, Recording>()
+        for (recording in loadAllRecordingsByConnectionIdSync(connectionId)) {
+            storedRecordings[recording.id] = recording
+        }
+
+        val insertedRecordings = ArrayList<Recording>()
+        val updatedRecordings = ArrayList<Recording>()
+        for (recording in recordings) {
+            val storedRecording = storedRecordings.remove(recording.id)
+            if (storedRecording == null) {
+                insertedRecordings.add(recording)
+            } else if (contentOf(storedRecording) != contentOf(recording)) {
+                updatedRecordings.add(recording)
+            }
+        }
+        val deletedRecordings = ArrayList(storedRecordings.values)
+
+        if (deletedRecordings.isNotEmpty()) {
+            delete(deletedRecordings)
+        }
+        if (updatedRecordings.isNotEmpty()) {
+            update(updatedRecordings)
+        }
+        if (insertedRecordings.isNotEmpty()) {
+            insert(insertedRecordings)
+        }
+        return insertedRecordings.size + updatedRecordings.size + deletedRecordings.size
+    }
+
     companion object {
+
+        /**
+         * Returns the values of the recording that are stored in the database
+         */
+        private fun contentOf(recording: Recording): List<Any?> {
+            return with(recording) {
+                listOf(id, connectionId, channelId, start, stop, startExtra, stopExtra,
+                        retention, priority, eventId, autorecId, timerecId, contentType,
+                        title, subtitle, summary, description, state, error, owner, creator,
+                        subscriptionError, streamErrors, dataErrors, path, dataSize, isEnabled,
+                        duplicate, episode, comment, image, fanartImage, copyrightYear, removal,
+                        channelName, channelIcon)
+            }
+        }
+
         const val RECORDING_BASE_QUERY = "SELECT DISTINCT rec.*, " +
                 "c.name AS channel_name, " +
                 "c.icon AS channel_icon " +
                 "FROM recordings AS rec " +
                 "LEFT JOIN channels AS c ON c.id = rec.channel_id "
 
+        // Contains only the columns that are shown in the recording list.
+        // The remaining details are loaded when a single recording is shown.
+        const val RECORDING_LIST_BASE_QUERY = "SELECT rec.id, " +
+                "rec.connection_id, " +
+                "rec.channel_id, " +
+                "rec.event_id, " +
+                "rec.start, rec.stop, " +
+                "rec.start_extra, rec.stop_extra, " +
+                "rec.autorec_id, rec.timerec_id, " +
+                "rec.title, rec.subtitle, " +
+                "rec.summary, rec.description, " +
+                "rec.state, rec.error, " +
+                "rec.subscription_error, rec.stream_errors, rec.data_errors, " +
+                "rec.data_size, rec.enabled, rec.duplicate, " +
+                "c.name AS channel_name, " +
+                "c.icon AS channel_icon " +
+                "FROM recordings AS rec " +
+                "LEFT JOIN channels AS c ON c.id = rec.channel_id "
+
+        // Contains only the columns that are required to show the recording
+        // state of a program in the channel, program and program guide lists
+        // and to offer the recording related menu items of the program.
+        const val RECORDING_STATE_BASE_QUERY = "SELECT rec.id, " +
+                "rec.connection_id, " +
+                "rec.channel_id, " +
+                "rec.event_id, " +
+                "rec.start, rec.stop, " +
+                "rec.title, " +
+                "rec.state, rec.error, " +
+                "rec.data_size, rec.enabled, rec.duplicate " +
+                "FROM recordings AS rec "
+
         const val CONNECTION_IS_ACTIVE = " rec.connection_id IN (SELECT id FROM connections WHERE active = 1) "
+
+        const val COMPLETED_FILTER = " (rec.error IS NULL AND rec.state = 'completed') "
+
+        const val SCHEDULED_FILTER = " (rec.error IS NULL AND (rec.state = 'recording' OR rec.state = 'scheduled')) "
+
+        const val FAILED_FILTER = " ((rec.error IS NOT NULL AND (rec.state = 'missed' OR rec.state = 'invalid')) " +
+                " OR (rec.error IS NULL AND rec.state = 'missed') " +
+                " OR (rec.error = 'Aborted by user' AND rec.state = 'completed')) "
+
+        const val REMOVED_FILTER = " (rec.error = 'File missing' AND rec.state = 'completed') "
     }
 
 }
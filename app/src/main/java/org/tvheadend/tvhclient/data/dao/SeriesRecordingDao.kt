@@ -28,12 +28,20 @@ interface SeriesRecordingDao {
             " AND rec.id = :id")
     fun loadRecordingByIdSync(id: String): SeriesRecording
 
+    @Transaction
+    @Query(RECORDING_BASE_QUERY +
+            "WHERE " + CONNECTION_IS_ACTIVE)
+    fun loadAllRecordingsSync(): List<SeriesRecording>
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insert(recording: SeriesRecording)
 
     @Update
     fun update(recording: SeriesRecording)
 
+    @Update
+    fun update(recordings: List<SeriesRecording>)
+
     @Delete
     fun delete(recording: SeriesRecording)
 
@@ -27,6 +27,17 @@ abstract class TagAndChannelDao {
         insert(newTagAndChannels)
     }
 
+    @Query("SELECT * FROM tags_and_channels " +
+            "WHERE connection_id = :connectionId " +
+            "ORDER BY tag_id, channel_id")
+    abstract fun loadAllTagAndChannelsSync(connectionId: Int): List<TagAndChannel>
+
+    @Query("SELECT * FROM tags_and_channels " +
+            "WHERE connection_id = :connectionId " +
+            " AND tag_id = :tagId " +
+            "ORDER BY channel_id")
+    abstract fun loadAllTagAndChannelsByTagIdSync(connectionId: Int, tagId: Int): List<TagAndChannel>
+
     @Query("DELETE FROM tags_and_channels " +
             "WHERE connection_id IN (SELECT id FROM connections WHERE active = 1) " +
             " AND tag_id = :id")
@@ -28,12 +28,20 @@ interface TimerRecordingDao {
             " AND rec.id = :id")
     fun loadRecordingByIdSync(id: String): TimerRecording
 
+    @Transaction
+    @Query(RECORDING_BASE_QUERY +
+            "WHERE " + CONNECTION_IS_ACTIVE)
+    fun loadAllRecordingsSync(): List<TimerRecording>
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insert(recording: TimerRecording)
 
     @Update
     fun update(recording: TimerRecording)
 
+    @Update
+    fun update(recordings: List<TimerRecording>)
+
     @Delete
     fun delete(recording: TimerRecording)
 
@@ -21,7 +21,7 @@ import org.tvheadend.tvhclient.domain.entity.*
             ServerProfile::class,
             ServerStatus::class],
         exportSchema = false,
-        version = 10)
+        version = 12)
 abstract class AppRoomDatabase : RoomDatabase() {
 
     abstract val timerRecordingDao: TimerRecordingDao
@@ -51,22 +51,34 @@ abstract class AppRoomDatabase : RoomDatabase() {
         fun getInstance(context: Context): AppRoomDatabase? {
             if (instance == null) {
                 synchronized(AppRoomDatabase::class.java) {
-                    instance = Room.databaseBuilder(context, AppRoomDatabase::class.java, "tvhclient")
-                            .addMigrations(MIGRATION_1_2)
-                            .addMigrations(MIGRATION_2_3)
-                            .addMigrations(MIGRATION_3_4)
-                            .addMigrations(MIGRATION_4_5)
-                            .addMigrations(MIGRATION_5_6)
-                            .addMigrations(MIGRATION_6_7)
-                            .addMigrations(MIGRATION_7_8)
-                            .addMigrations(MIGRATION_8_9)
-                            .addMigrations(MIGRATION_9_10)
-                            .build()
+                    instance = build(context, "tvhclient")
                 }
             }
             return instance
         }
 
+        /**
+         * Creates a database with the given file name. This is used for the
+         * main database and for the databases of the single connections. The
+         * queries of a single connection database are run without the filter
+         * of the active connection.
+         */
+        fun build(context: Context, name: String, singleConnection: Boolean = false): AppRoomDatabase {
+            return DatabaseTuning.configure(context, Room.databaseBuilder(context, AppRoomDatabase::class.java, name), singleConnection)
+                    .addMigrations(MIGRATION_1_2)
+                    .addMigrations(MIGRATION_2_3)
+                    .addMigrations(MIGRATION_3_4)
+                    .addMigrations(MIGRATION_4_5)
+                    .addMigrations(MIGRATION_5_6)
+                    .addMigrations(MIGRATION_6_7)
+                    .addMigrations(MIGRATION_7_8)
+                    .addMigrations(MIGRATION_8_9)
+                    .addMigrations(MIGRATION_9_10)
+                    .addMigrations(MIGRATION_10_11)
+                    .addMigrations(MIGRATION_11_12)
+                    .build()
+        }
+
         private val MIGRATION_1_2 = object : Migration(1, 2) {
             override fun migrate(database: SupportSQLiteDatabase) {
                 database.execSQL("ALTER TABLE connections ADD COLUMN last_update INTEGER NOT NULL DEFAULT 0;")
@@ -136,5 +148,56 @@ abstract class AppRoomDatabase : RoomDatabase() {
                 database.execSQL("ALTER TABLE channels ADD COLUMN server_order INTEGER NOT NULL DEFAULT 0;")
             }
         }
+
+        private val MIGRATION_10_11 = object : Migration(10, 11) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                // The description is now stored compressed. The existing programs
+                // are not converted, they are loaded again with the next full sync.
+                database.execSQL("DROP TABLE programs;")
+                database.execSQL("CREATE TABLE IF NOT EXISTS programs (" +
+                        "id INTEGER NOT NULL, channel_id INTEGER NOT NULL, start INTEGER NOT NULL, " +
+                        "stop INTEGER NOT NULL, title TEXT, subtitle TEXT, summary TEXT, " +
+                        "description_data BLOB, credits TEXT, category TEXT, keyword TEXT, " +
+                        "series_link_id INTEGER NOT NULL, episode_id INTEGER NOT NULL, " +
+                        "season_id INTEGER NOT NULL, brand_id INTEGER NOT NULL, " +
+                        "content_type INTEGER NOT NULL, age_rating INTEGER NOT NULL, " +
+                        "star_rating INTEGER NOT NULL, copyright_year INTEGER NOT NULL, " +
+                        "first_aired INTEGER NOT NULL, season_number INTEGER NOT NULL, " +
+                        "season_count INTEGER NOT NULL, episode_number INTEGER NOT NULL, " +
+                        "episode_count INTEGER NOT NULL, part_number INTEGER NOT NULL, " +
+                        "part_count INTEGER NOT NULL, episode_on_screen TEXT, image TEXT, " +
+                        "dvr_id INTEGER NOT NULL, next_event_id INTEGER NOT NULL, " +
+                        "series_link_uri TEXT, episode_uri TEXT, connection_id INTEGER NOT NULL, " +
+                        "channel_name TEXT, channel_icon TEXT, PRIMARY KEY(id, connection_id));")
+                database.execSQL("CREATE INDEX index_programs_start ON programs(start)")
+                database.execSQL("CREATE INDEX index_programs_channel_id ON programs(channel_id)")
+                database.execSQL("UPDATE connections SET sync_required = 1, last_update = 0;")
+            }
+        }
+
+        private val MIGRATION_11_12 = object : Migration(11, 12) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                // The search compares lower case texts. The lower function of
+                // SQLite only converts ASCII letters, so they are created here.
+                database.execSQL("ALTER TABLE programs ADD COLUMN search_title TEXT;")
+                database.execSQL("ALTER TABLE recordings ADD COLUMN search_title TEXT;")
+                database.execSQL("ALTER TABLE recordings ADD COLUMN search_subtitle TEXT;")
+                fillSearchColumn(database, "programs", "title", "search_title")
+                fillSearchColumn(database, "recordings", "title", "search_title")
+                fillSearchColumn(database, "recordings", "subtitle", "search_subtitle")
+            }
+        }
+
+        private fun fillSearchColumn(database: SupportSQLiteDatabase, table: String, column: String, searchColumn: String) {
+            val statement = database.compileStatement("UPDATE $table SET $searchColumn = ? WHERE rowid = ?")
+            database.query("SELECT rowid, $column FROM $table WHERE $column IS NOT NULL").use { cursor ->
+                while (cursor.moveToNext()) {
+                    statement.bindString(1, toSearchText(cursor.getString(1)))
+                    statement.bindLong(2, cursor.getLong(0))
+                    statement.executeUpdateDelete()
+                }
+            }
+            statement.close()
+        }
     }
 }
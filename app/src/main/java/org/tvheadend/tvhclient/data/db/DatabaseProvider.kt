@@ -0,0 +1,209 @@
+package org.tvheadend.tvhclient.data.db
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.DatabaseUtils
+import android.database.sqlite.SQLiteDatabase
+import android.preference.PreferenceManager
+import org.tvheadend.tvhclient.R
+import timber.log.Timber
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Provides the databases that contain the data of the app. The connections,
+ * the server status and the server profiles are always kept in the main
+ * database. The channels, tags, programs and recordings are called the
+ * content of a connection.
+ *
+ * By default the content of all connections is kept in the main database and
+ * is filtered by the active connection. When the storage mode is set to one
+ * database per connection, the content of each connection is kept in its own
+ * database file. Only the file of the active connection is open, so the data
+ * of the other servers does not grow the indexes of the active one. Switching
+ * the server opens another file instead of filtering the rows.
+ *
+ * The storage mode is read once when the app is started. All files are
+ * opened, switched and deleted on a background thread of the provider. The
+ * content waits until a pending switch is done, so that the screens that
+ * are started right after a switch load the data of the new connection.
+ */
+class DatabaseProvider(private val context: Context, val main: AppRoomDatabase) {
+
+    private val separateDatabases: Boolean
+    private val executor = Executors.newSingleThreadExecutor()
+    @Volatile
+    private var pendingSwitch: Future<*>
+    @Volatile
+    private var contentDatabase: AppRoomDatabase? = null
+    private var previousContentDatabase: AppRoomDatabase? = null
+    @Volatile
+    private var scratchDatabase: AppRoomDatabase? = null
+
+    /**
+     * True when the content is written into the scratch database
+     */
+    @Volatile
+    var usesScratchDatabase = false
+        private set
+    private var contentConnectionId = -1
+
+    init {
+        val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context)
+        separateDatabases = sharedPreferences.getBoolean("separate_database_per_connection_enabled",
+                context.resources.getBoolean(R.bool.pref_default_separate_database_per_connection_enabled))
+        val storageModeChanged = sharedPreferences.getBoolean("separate_database_per_connection_used", false) != separateDatabases
+
+        pendingSwitch = executor.submit {
+            // The data of the previous storage mode is not moved. A new
+            // sync is required to fill the databases of the current mode.
+            if (storageModeChanged) {
+                Timber.d("Storage mode has changed, one database per connection is $separateDatabases")
+                main.openHelper.writableDatabase.execSQL("UPDATE connections SET sync_required = 1, last_update = 0")
+                removeUnusedContent()
+                sharedPreferences.edit().putBoolean("separate_database_per_connection_used", separateDatabases).apply()
+            }
+            if (separateDatabases) {
+                val connectionId = loadActiveConnectionId()
+                if (connectionId >= 0) {
+                    open(connectionId)
+                }
+            }
+        }
+    }
+
+    /**
+     * The database that contains the content of the active connection
+     */
+    val content: AppRoomDatabase
+        get() {
+            try {
+                pendingSwitch.get()
+            } catch (e: InterruptedException) {
+                Timber.d(e, "Waiting for the content database got interrupted")
+            } catch (e: ExecutionException) {
+                Timber.d(e, "Opening the content database failed")
+            }
+            return scratchDatabase ?: contentDatabase ?: main
+        }
+
+    /**
+     * Runs the given update of the connections in the main database and then
+     * opens the database of the connection that has been set active. The
+     * update returns the id of this connection. The switch is pending when
+     * this method returns, the content waits until it is done. The database
+     * of the previous connection is closed with the next switch, so that
+     * running queries on it can still complete.
+     */
+    fun activate(update: () -> Int) {
+        pendingSwitch = executor.submit {
+            val connectionId = update()
+            if (separateDatabases && connectionId != contentConnectionId) {
+                Timber.d("Switching content database to connection $connectionId")
+                previousContentDatabase?.close()
+                previousContentDatabase = contentDatabase
+                contentDatabase = null
+                open(connectionId)
+            }
+        }
+    }
+
+    /**
+     * Deletes the database file of the given connection
+     * after the connection itself has been removed
+     */
+    fun delete(connectionId: Int) {
+        if (!separateDatabases) {
+            return
+        }
+        executor.execute {
+            if (connectionId == contentConnectionId) {
+                contentDatabase?.close()
+                contentDatabase = null
+                contentConnectionId = -1
+            }
+            context.deleteDatabase(getDatabaseName(connectionId))
+        }
+    }
+
+    /**
+     * Replaces the content by an empty scratch database for the rest of the
+     * session. It is only used to replay a captured session in debug builds,
+     * so that the replayed messages do not change the content of the active
+     * connection. The file is kept after the app has been closed so that it
+     * can be inspected.
+     */
+    fun openScratchDatabase() {
+        usesScratchDatabase = true
+        pendingSwitch = executor.submit {
+            if (scratchDatabase == null) {
+                Timber.d("Opening scratch content database")
+                context.deleteDatabase(SCRATCH_DATABASE_NAME)
+                scratchDatabase = build(SCRATCH_DATABASE_NAME, loadActiveConnectionId())
+            }
+        }
+    }
+
+    private fun open(connectionId: Int) {
+        Timber.d("Opening content database of connection $connectionId")
+        contentDatabase = build(getDatabaseName(connectionId), connectionId)
+        contentConnectionId = connectionId
+    }
+
+    private fun build(name: String, connectionId: Int): AppRoomDatabase {
+        val database = AppRoomDatabase.build(context, name, singleConnection = true)
+
+        // The filter of the active connection is removed from the statements
+        // of this database. The connection is still stored in its own database
+        // for a statement that contains the filter in another form.
+        main.openHelper.readableDatabase.query("SELECT * FROM connections WHERE id = ?", arrayOf<Any>(connectionId)).use { cursor ->
+            if (cursor.moveToFirst()) {
+                val values = ContentValues()
+                DatabaseUtils.cursorRowToContentValues(cursor, values)
+                values.put("active", 1)
+                val db = database.openHelper.writableDatabase
+                db.delete("connections", "id != ?", arrayOf<Any>(connectionId))
+                db.insert("connections", SQLiteDatabase.CONFLICT_REPLACE, values)
+            }
+        }
+        return database
+    }
+
+    private fun loadActiveConnectionId(): Int {
+        main.openHelper.readableDatabase.query("SELECT id FROM connections WHERE active = 1").use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getInt(0) else -1
+        }
+    }
+
+    /**
+     * Removes the content that was stored with the other storage mode
+     */
+    private fun removeUnusedContent() {
+        if (separateDatabases) {
+            main.channelDao.deleteAll()
+            main.channelTagDao.deleteAll()
+            main.tagAndChannelDao.deleteAll()
+            main.programDao.deleteAll()
+            main.recordingDao.deleteAll()
+            main.seriesRecordingDao.deleteAll()
+            main.timerRecordingDao.deleteAll()
+        } else {
+            for (name in context.databaseList()) {
+                // The journal files are removed together with their database
+                if (name.startsWith(DATABASE_NAME_PREFIX) && !name.contains("-")) {
+                    context.deleteDatabase(name)
+                }
+            }
+        }
+    }
+
+    companion object {
+        private const val DATABASE_NAME_PREFIX = "tvhclient_connection_"
+        private const val SCRATCH_DATABASE_NAME = "tvhclient_scratch"
+
+        private fun getDatabaseName(connectionId: Int): String {
+            return DATABASE_NAME_PREFIX + connectionId
+        }
+    }
+}
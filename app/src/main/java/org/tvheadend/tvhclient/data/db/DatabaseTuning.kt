@@ -0,0 +1,87 @@
+package org.tvheadend.tvhclient.data.db
+
+import android.app.ActivityManager
+import android.content.Context
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+import timber.log.Timber
+
+/**
+ * Configures SQLite for the databases of the app and contains the
+ * maintenance tasks that keep the database small and the queries fast.
+ */
+object DatabaseTuning {
+
+    private const val MIN_CACHE_SIZE_KB = 2 * 1024
+    private const val MAX_CACHE_SIZE_KB = 16 * 1024
+    private const val AUTO_VACUUM_INCREMENTAL = 2
+
+    /**
+     * Enables the write ahead log so that the lists can be loaded from read
+     * connections while the initial sync is writing. The page cache of the
+     * write connection and of each read connection is sized to the available
+     * memory of the device, see [TuningOpenHelperFactory]. The filter of the
+     * active connection is removed from the queries of a database that only
+     * contains the content of a single connection.
+     */
+    fun configure(context: Context, builder: RoomDatabase.Builder<AppRoomDatabase>, singleConnection: Boolean): RoomDatabase.Builder<AppRoomDatabase> {
+        val cacheSize = getCacheSize(context)
+        return builder
+                .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                .openHelperFactory(TuningOpenHelperFactory(cacheSize, singleConnection))
+                .addCallback(object : RoomDatabase.Callback() {
+                    override fun onOpen(db: SupportSQLiteDatabase) {
+                        // A negative value sets the cache size in KiB instead of pages
+                        db.query("PRAGMA cache_size = -$cacheSize").close()
+                    }
+                })
+    }
+
+    /**
+     * Updates the statistics that the query planner uses to choose the indexes.
+     * This shall be called after many rows have been added or removed.
+     */
+    fun analyze(db: AppRoomDatabase) {
+        val startTime = System.currentTimeMillis()
+        db.openHelper.writableDatabase.execSQL("ANALYZE")
+        Timber.d("Analyzing the database took ${System.currentTimeMillis() - startTime} ms")
+    }
+
+    /**
+     * Returns the pages of removed rows to the file system. The first run switches
+     * the database to incremental vacuum, which requires a full vacuum once.
+     * This must not be called from the main thread.
+     */
+    fun vacuum(db: AppRoomDatabase) {
+        val startTime = System.currentTimeMillis()
+        val database = db.openHelper.writableDatabase
+        val autoVacuum = database.query("PRAGMA auto_vacuum").use { cursor ->
+            if (cursor.moveToFirst()) cursor.getInt(0) else 0
+        }
+        if (autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+            Timber.d("Enabling incremental vacuum")
+            database.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+            database.execSQL("VACUUM")
+        } else {
+            // The free pages are released while stepping through the result
+            database.query("PRAGMA incremental_vacuum").use { cursor ->
+                while (cursor.moveToNext()) {
+                    // NOP
+                }
+            }
+        }
+        Timber.d("Vacuuming the database took ${System.currentTimeMillis() - startTime} ms")
+    }
+
+    private fun getCacheSize(context: Context): Int {
+        val activityManager = context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
+        val memoryInfo = ActivityManager.MemoryInfo()
+        activityManager.getMemoryInfo(memoryInfo)
+
+        // Use 2 MiB of cache for each GiB of memory
+        val totalMemoryInMb = memoryInfo.totalMem / (1024 * 1024)
+        val cacheSize = (totalMemoryInMb * 2).toInt().coerceIn(MIN_CACHE_SIZE_KB, MAX_CACHE_SIZE_KB)
+        Timber.d("Using a database page cache of $cacheSize KiB for $totalMemoryInMb MiB of memory")
+        return cacheSize
+    }
+}
@@ -0,0 +1,209 @@
+package org.tvheadend.tvhclient.data.db
+
+import android.database.Cursor
+import android.database.DatabaseUtils
+import android.database.sqlite.SQLiteCursor
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteProgram
+import android.os.CancellationSignal
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.SupportSQLiteProgram
+import androidx.sqlite.db.SupportSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteStatement
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import timber.log.Timber
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Creates the open helpers of the file databases so that every connection
+ * that reads the lists uses the configured page cache size. SQLite keeps the
+ * page cache per connection, but the framework opens the pool of connections
+ * of the write ahead log without a way to configure each of them.
+ *
+ * Therefore the queries outside of a transaction are run on a few read only
+ * connections of the helper, which are configured when they are opened.
+ * Statements other than queries and all statements within a transaction are
+ * run on the database of the framework, so that they see their own writes.
+ *
+ * The queries of the DAOs only return the rows of the active connection. A
+ * database that only contains the content of a single connection does not
+ * need this filter. Its subquery still scans the connections table, probes
+ * every row and keeps SQLite from using some of the indexes. Therefore the
+ * filter is removed from the statements of such a database before they are
+ * compiled.
+ */
+internal class TuningOpenHelperFactory(private val cacheSize: Int,
+                                       private val singleConnection: Boolean) : SupportSQLiteOpenHelper.Factory {
+
+    private val delegate = FrameworkSQLiteOpenHelperFactory()
+
+    override fun create(configuration: SupportSQLiteOpenHelper.Configuration): SupportSQLiteOpenHelper {
+        val helper = delegate.create(configuration)
+        val name = configuration.name ?: return helper
+        return TuningOpenHelper(helper, configuration.context.getDatabasePath(name).absolutePath, cacheSize, singleConnection)
+    }
+
+    private class TuningOpenHelper(private val helper: SupportSQLiteOpenHelper,
+                                   private val path: String,
+                                   private val cacheSize: Int,
+                                   val singleConnection: Boolean) : SupportSQLiteOpenHelper by helper {
+
+        private val readers = arrayOfNulls<SQLiteDatabase>(READER_COUNT)
+        private val nextReader = AtomicInteger()
+
+        @Volatile
+        private var database: TuningDatabase? = null
+
+        override fun getWritableDatabase(): SupportSQLiteDatabase {
+            return wrap(helper.writableDatabase)
+        }
+
+        override fun getReadableDatabase(): SupportSQLiteDatabase {
+            return wrap(helper.readableDatabase)
+        }
+
+        private fun wrap(delegate: SupportSQLiteDatabase): SupportSQLiteDatabase {
+            // The framework returns the same database until it is closed
+            database?.let { if (it.delegate === delegate) return it }
+            return TuningDatabase(delegate, this).also { database = it }
+        }
+
+        /**
+         * Returns one of the read only connections, which is opened when it is
+         * used for the first time. The framework serializes the queries of
+         * different threads on the same connection.
+         */
+        @Synchronized
+        fun getReader(): SQLiteDatabase {
+            val index = (nextReader.getAndIncrement() and Int.MAX_VALUE) % READER_COUNT
+            readers[index]?.let { if (it.isOpen) return it }
+
+            Timber.d("Opening read connection $index of $path")
+            val reader = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY)
+            // A negative value sets the cache size in KiB instead of pages
+            reader.rawQuery("PRAGMA cache_size = -$cacheSize", null).close()
+            readers[index] = reader
+            return reader
+        }
+
+        @Synchronized
+        override fun close() {
+            for (i in readers.indices) {
+                readers[i]?.close()
+                readers[i] = null
+            }
+            helper.close()
+        }
+    }
+
+    private class TuningDatabase(val delegate: SupportSQLiteDatabase,
+                                 private val helper: TuningOpenHelper) : SupportSQLiteDatabase by delegate {
+
+        override fun query(query: String): Cursor {
+            return query(SimpleSQLiteQuery(query))
+        }
+
+        override fun query(query: String, bindArgs: Array<out Any>?): Cursor {
+            return query(SimpleSQLiteQuery(query, bindArgs))
+        }
+
+        override fun query(originalQuery: SupportSQLiteQuery): Cursor {
+            val query = removeConnectionFilter(originalQuery)
+            if (!isReadQuery(query)) {
+                return delegate.query(query)
+            }
+            return helper.getReader().rawQueryWithFactory({ _, masterQuery, editTable, sqLiteQuery ->
+                query.bindTo(FrameworkProgram(sqLiteQuery))
+                SQLiteCursor(masterQuery, editTable, sqLiteQuery)
+            }, query.sql, EMPTY_BIND_ARGS, null)
+        }
+
+        override fun query(originalQuery: SupportSQLiteQuery, cancellationSignal: CancellationSignal?): Cursor {
+            val query = removeConnectionFilter(originalQuery)
+            if (!isReadQuery(query)) {
+                return delegate.query(query, cancellationSignal)
+            }
+            return helper.getReader().rawQueryWithFactory({ _, masterQuery, editTable, sqLiteQuery ->
+                query.bindTo(FrameworkProgram(sqLiteQuery))
+                SQLiteCursor(masterQuery, editTable, sqLiteQuery)
+            }, query.sql, EMPTY_BIND_ARGS, null, cancellationSignal)
+        }
+
+        override fun compileStatement(sql: String): SupportSQLiteStatement {
+            return delegate.compileStatement(if (helper.singleConnection) withoutConnectionFilter(sql) else sql)
+        }
+
+        private fun removeConnectionFilter(query: SupportSQLiteQuery): SupportSQLiteQuery {
+            if (!helper.singleConnection) {
+                return query
+            }
+            val sql = withoutConnectionFilter(query.sql)
+            return if (sql === query.sql) query else FilteredQuery(sql, query)
+        }
+
+        private fun isReadQuery(query: SupportSQLiteQuery): Boolean {
+            return !delegate.inTransaction()
+                    && DatabaseUtils.getSqlStatementType(query.sql) == DatabaseUtils.STATEMENT_SELECT
+        }
+    }
+
+    /**
+     * A query without the filter of the active connection. The filter has
+     * no arguments, so the arguments of the original query are kept.
+     */
+    private class FilteredQuery(private val sql: String,
+                                private val query: SupportSQLiteQuery) : SupportSQLiteQuery {
+
+        override fun getSql() = sql
+
+        override fun bindTo(statement: SupportSQLiteProgram) = query.bindTo(statement)
+
+        override fun getArgCount() = query.argCount
+    }
+
+    /**
+     * Binds the arguments of a query to the statement of the framework
+     */
+    private class FrameworkProgram(private val program: SQLiteProgram) : SupportSQLiteProgram {
+
+        override fun bindNull(index: Int) = program.bindNull(index)
+
+        override fun bindLong(index: Int, value: Long) = program.bindLong(index, value)
+
+        override fun bindDouble(index: Int, value: Double) = program.bindDouble(index, value)
+
+        override fun bindString(index: Int, value: String) = program.bindString(index, value)
+
+        override fun bindBlob(index: Int, value: ByteArray) = program.bindBlob(index, value)
+
+        override fun clearBindings() = program.clearBindings()
+
+        override fun close() {
+            // The statement is closed by the cursor
+        }
+    }
+
+    companion object {
+        // The framework uses up to four connections for the write ahead log
+        private const val READER_COUNT = 3
+        private val EMPTY_BIND_ARGS = arrayOf<String>()
+
+        // The filter of the active connection as it is used by all DAOs,
+        // with or without the alias of the table
+        private const val ACTIVE_CONNECTIONS = "connection_id IN (SELECT id FROM connections WHERE active = 1)"
+        private val CONNECTION_FILTER = Regex("(\\w+\\.)?connection_id IN \\(SELECT id FROM connections WHERE active = 1\\)")
+
+        /**
+         * Replaces the filter of the active connection by a condition that is
+         * always true. SQLite removes this condition when the query is compiled.
+         */
+        fun withoutConnectionFilter(sql: String): String {
+            if (!sql.contains(ACTIVE_CONNECTIONS)) {
+                return sql
+            }
+            return CONNECTION_FILTER.replace(sql, "1")
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.tvheadend.tvhclient.data.paging
+
+import androidx.paging.DataSource
+import androidx.paging.ItemKeyedDataSource
+import androidx.paging.PagedList
+import androidx.room.InvalidationTracker
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteQuery
+
+/**
+ * Loads the pages of a list with the queries from the given [KeysetQuery].
+ * The data source invalidates itself when one of the tables of the query
+ * changes so that the paged list is reloaded around the last shown item.
+ *
+ * @param loader Runs the query with the dao and returns the items
+ * @param keyOf  Returns the list key of an item
+ */
+class KeysetDataSource<T>(private val db: RoomDatabase,
+                          private val query: KeysetQuery,
+                          private val loader: (SupportSQLiteQuery) -> List<T>,
+                          private val keyOf: (T) -> ListKey) : ItemKeyedDataSource<ListKey, T>() {
+
+    private val observer = object : InvalidationTracker.Observer(query.tables) {
+        override fun onInvalidated(tables: Set<String>) {
+            invalidate()
+        }
+    }
+
+    init {
+        db.invalidationTracker.addObserver(observer)
+        addInvalidatedCallback { db.invalidationTracker.removeObserver(observer) }
+    }
+
+    override fun loadInitial(params: LoadInitialParams<ListKey>, callback: LoadInitialCallback<T>) {
+        val key = params.requestedInitialKey
+        if (key == null) {
+            callback.onResult(loader(query.first(params.requestedLoadSize)))
+        } else {
+            // Load the items around the given key so that the
+            // item that was last shown stays in the loaded range
+            val items = ArrayList<T>(params.requestedLoadSize)
+            items.addAll(loader(query.before(key, params.requestedLoadSize / 2)).asReversed())
+            items.addAll(loader(query.from(key, params.requestedLoadSize)))
+            callback.onResult(items)
+        }
+    }
+
+    override fun loadAfter(params: LoadParams<ListKey>, callback: LoadCallback<T>) {
+        callback.onResult(loader(query.after(params.key, params.requestedLoadSize)))
+    }
+
+    override fun loadBefore(params: LoadParams<ListKey>, callback: LoadCallback<T>) {
+        callback.onResult(loader(query.before(params.key, params.requestedLoadSize)).asReversed())
+    }
+
+    override fun getKey(item: T): ListKey {
+        return keyOf(item)
+    }
+
+    class Factory<T>(private val db: RoomDatabase,
+                     private val query: KeysetQuery,
+                     private val loader: (SupportSQLiteQuery) -> List<T>,
+                     private val keyOf: (T) -> ListKey) : DataSource.Factory<ListKey, T>() {
+
+        override fun create(): DataSource<ListKey, T> {
+            return KeysetDataSource(db, query, loader, keyOf)
+        }
+    }
+
+    companion object {
+
+        val LIST_CONFIG: PagedList.Config = PagedList.Config.Builder()
+                .setPageSize(30)
+                .setInitialLoadSizeHint(60)
+                .setPrefetchDistance(30)
+                .setEnablePlaceholders(false)
+                .build()
+    }
+}
@@ -0,0 +1,94 @@
+package org.tvheadend.tvhclient.data.paging
+
+import androidx.sqlite.db.SimpleSQLiteQuery
+
+/**
+ * Builds the queries that are required to page through a list that is ordered
+ * by the given start and id column. Instead of an offset each page continues
+ * after the key of the last loaded item, so the database can seek to the page
+ * using the index and the loaded pages stay valid when rows before them are
+ * inserted or removed.
+ *
+ * @param select    The select and from part of the query including any joins
+ * @param where     The conditions that all items in the list must match
+ * @param args      The arguments for the placeholders in the conditions
+ * @param tables    The tables that affect the result of the query
+ */
+class KeysetQuery(private val select: String,
+                  private val where: String,
+                  private val args: Array<Any>,
+                  private val startColumn: String,
+                  private val idColumn: String,
+                  private val ascending: Boolean = true,
+                  private val groupBy: String = "",
+                  val tables: Array<String>) {
+
+    fun first(limit: Int): SimpleSQLiteQuery {
+        return build(null, true, limit)
+    }
+
+    /**
+     * Returns the items starting with the item with the given key.
+     */
+    fun from(key: ListKey, limit: Int): SimpleSQLiteQuery {
+        return build(keyCondition(key, true, true), true, limit)
+    }
+
+    fun after(key: ListKey, limit: Int): SimpleSQLiteQuery {
+        return build(keyCondition(key, true, false), true, limit)
+    }
+
+    /**
+     * Returns the items before the item with the given key. The items
+     * are ordered from the closest to the farthest item from the key.
+     */
+    fun before(key: ListKey, limit: Int): SimpleSQLiteQuery {
+        return build(keyCondition(key, false, false), false, limit)
+    }
+
+    fun all(): SimpleSQLiteQuery {
+        return build(null, true, 0)
+    }
+
+    fun count(): SimpleSQLiteQuery {
+        return SimpleSQLiteQuery("SELECT COUNT (*) FROM ($select WHERE $where $groupBy)", args)
+    }
+
+    private fun keyCondition(key: ListKey, forward: Boolean, inclusive: Boolean): Pair<String, Array<Any>> {
+        val op = if (ascending == forward) ">" else "<"
+        val idOp = if (inclusive) "$op=" else op
+        return Pair("($startColumn $op ? OR ($startColumn = ? AND $idColumn $idOp ?))",
+                arrayOf<Any>(key.start, key.start, key.id))
+    }
+
+    private fun build(condition: Pair<String, Array<Any>>?, forward: Boolean, limit: Int): SimpleSQLiteQuery {
+        val order = if (ascending == forward) "ASC" else "DESC"
+        val sql = StringBuilder(select)
+                .append(" WHERE ").append(where)
+        var queryArgs = args
+        if (condition != null) {
+            sql.append(" AND ").append(condition.first)
+            queryArgs += condition.second
+        }
+        sql.append(" ").append(groupBy)
+                .append(" ORDER BY ").append(startColumn).append(" ").append(order)
+                .append(", ").append(idColumn).append(" ").append(order)
+        if (limit > 0) {
+            sql.append(" LIMIT ").append(limit)
+        }
+        return SimpleSQLiteQuery(sql.toString(), queryArgs)
+    }
+
+    companion object {
+
+        /**
+         * Returns the pattern for a LIKE condition with the escape character
+         * backslash that matches all values that contain the given text.
+         */
+        fun containsPattern(text: String): String {
+            return "%" + text.replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_") + "%"
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.tvheadend.tvhclient.data.paging
+
+/**
+ * Position of an item in a list that is sorted by its start time. The id
+ * breaks ties between items that start at the same time so that every
+ * item in the list has a unique key.
+ */
+data class ListKey(val start: Long, val id: Int)
@@ -0,0 +1,75 @@
+package org.tvheadend.tvhclient.data.service
+
+import org.tvheadend.tvhclient.data.repository.AppRepository
+import org.tvheadend.tvhclient.domain.entity.*
+import timber.log.Timber
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Contains the channels, channel tags, recordings and the series and timer
+ * recordings of the active connection. While the service is connected the
+ * cache is the authoritative copy of these items. The update messages from
+ * the server are merged into the cached items without reading them from the
+ * database first. The changed items are written in batches after the given
+ * flush interval, so that many updates of the same item result in one write.
+ */
+class EntityCache(private val appRepository: AppRepository,
+                  private val executor: ScheduledExecutorService,
+                  private val flushInterval: Long) {
+
+    val channels = WriteBehindMap<Int, Channel>({ it.copy() }, { appRepository.channelData.updateItems(it) })
+    val channelTags = WriteBehindMap<Int, ChannelTag>({ it.copy() }, { appRepository.channelTagData.updateItems(it) })
+    val recordings = WriteBehindMap<Int, Recording>({ it.copy() }, { appRepository.recordingData.updateItems(it) })
+    val seriesRecordings = WriteBehindMap<String, SeriesRecording>({ it.copy() }, { appRepository.seriesRecordingData.updateItems(it) })
+    val timerRecordings = WriteBehindMap<String, TimerRecording>({ it.copy() }, { appRepository.timerRecordingData.updateItems(it) })
+
+    private var flushTask: ScheduledFuture<*>? = null
+
+    /**
+     * Loads the items of the active connection from the database. This
+     * must be called from a background thread before the first message
+     * from the server is handled.
+     */
+    fun load() {
+        channels.load(appRepository.channelData.getItems()) { it.id }
+        channelTags.load(appRepository.channelTagData.getItems()) { it.tagId }
+        recordings.load(appRepository.recordingData.getItems()) { it.id }
+        seriesRecordings.load(appRepository.seriesRecordingData.getItems()) { it.id }
+        timerRecordings.load(appRepository.timerRecordingData.getItems()) { it.id }
+        Timber.d("Loaded ${channels.size} channels, ${channelTags.size} channel tags, " +
+                "${recordings.size} recordings, ${seriesRecordings.size} series recordings " +
+                "and ${timerRecordings.size} timer recordings into the cache")
+    }
+
+    @Synchronized
+    fun start() {
+        flushTask?.cancel(false)
+        val interval = flushInterval.coerceAtLeast(MIN_FLUSH_INTERVAL)
+        flushTask = executor.scheduleWithFixedDelay({ flush() }, interval, interval, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Stops the periodic flushing and writes all remaining changes
+     */
+    @Synchronized
+    fun stop() {
+        flushTask?.cancel(false)
+        flushTask = null
+        flush()
+    }
+
+    fun flush() {
+        channels.flush()
+        channelTags.flush()
+        recordings.flush()
+        seriesRecordings.flush()
+        timerRecordings.flush()
+    }
+
+    companion object {
+        // The shortest interval, a smaller one would write almost every update on its own
+        const val MIN_FLUSH_INTERVAL = 100L
+    }
+}
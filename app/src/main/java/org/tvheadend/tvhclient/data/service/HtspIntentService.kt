@@ -15,6 +15,7 @@ import org.tvheadend.tvhclient.data.service.htsp.*
 import org.tvheadend.tvhclient.domain.entity.Connection
 import org.tvheadend.tvhclient.domain.entity.Program
 import org.tvheadend.tvhclient.util.convertUrlToHashString
+import org.tvheadend.tvhclient.util.htspClientVersion
 import timber.log.Timber
 import java.io.*
 import java.net.URL
@@ -52,6 +53,7 @@ class HtspIntentService : JobIntentService(), HtspConnectionStateListener {
                 connection.username, connection.password,
                 connection.hostname, connection.port,
                 connectionTimeout,
+                htspClientVersion,
                 this, null)
 
         // Since this is blocking, spawn to a new thread
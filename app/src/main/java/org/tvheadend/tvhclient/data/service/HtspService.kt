@@ -7,26 +7,36 @@ import android.content.Intent
 import android.content.SharedPreferences
 import android.graphics.Bitmap
 import android.graphics.BitmapFactory
+import android.os.Build
 import android.os.IBinder
 import android.text.TextUtils
+import android.util.SparseArray
 import androidx.core.app.NotificationManagerCompat
 import androidx.localbroadcastmanager.content.LocalBroadcastManager
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
 import androidx.work.ExistingWorkPolicy
 import androidx.work.OneTimeWorkRequest
+import androidx.work.PeriodicWorkRequest
 import androidx.work.WorkManager
 import org.json.JSONException
 import org.json.JSONObject
+import org.tvheadend.tvhclient.BuildConfig
 import org.tvheadend.tvhclient.MainApplication
 import org.tvheadend.tvhclient.R
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.data.repository.AppRepository
 import org.tvheadend.tvhclient.data.service.htsp.*
+import org.tvheadend.tvhclient.data.worker.DatabaseMaintenanceWorker
 import org.tvheadend.tvhclient.data.worker.EpgDataUpdateWorker
 import org.tvheadend.tvhclient.domain.entity.*
+import org.tvheadend.tvhclient.domain.repository.data_source.TagMembershipDelta
 import org.tvheadend.tvhclient.ui.common.sendSnackbarMessage
 import org.tvheadend.tvhclient.ui.features.notification.addNotification
 import org.tvheadend.tvhclient.ui.features.notification.removeNotificationById
 import org.tvheadend.tvhclient.util.convertUrlToHashString
 import org.tvheadend.tvhclient.util.getIconUrl
+import org.tvheadend.tvhclient.util.htspClientVersion
 import timber.log.Timber
 import java.io.*
 import java.net.URL
@@ -44,8 +54,12 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     lateinit var appRepository: AppRepository
     @Inject
     lateinit var sharedPreferences: SharedPreferences
+    @Inject
+    lateinit var databaseProvider: DatabaseProvider
 
     private lateinit var execService: ScheduledExecutorService
+    private lateinit var entityCache: EntityCache
+    private lateinit var programUpdateCoalescer: ProgramUpdateCoalescer
     private lateinit var connection: Connection
     private var htspConnection: HtspConnection? = null
 
@@ -53,6 +67,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     private val pendingChannelOps = ArrayList<Channel>()
     private val pendingChannelTagOps = ArrayList<ChannelTag>()
     private val pendingRecordingOps = ArrayList<Recording>()
+    private var pendingChannelIds: IntArray? = null
 
     private var initialSyncWithServerRunning: Boolean = false
     private var syncEventsRequired: Boolean = false
@@ -70,6 +85,22 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         serverStatus = appRepository.serverStatusData.activeItem
         htspVersion = serverStatus?.htspVersion ?: 13
         connectionTimeout = Integer.valueOf(sharedPreferences.getString("connection_timeout", appContext.resources.getString(R.string.pref_default_connection_timeout))!!) * 1000
+        val flushInterval = getIntervalPreference("entity_cache_flush_interval", R.string.pref_default_entity_cache_flush_interval, EntityCache.MIN_FLUSH_INTERVAL)
+        entityCache = EntityCache(appRepository, execService, flushInterval)
+        val programUpdateInterval = getIntervalPreference("program_update_interval", R.string.pref_default_program_update_interval, ProgramUpdateCoalescer.MIN_FLUSH_INTERVAL)
+        programUpdateCoalescer = ProgramUpdateCoalescer(appRepository.programData, execService, programUpdateInterval)
+    }
+
+    /**
+     * Returns the interval in milliseconds of the given preference. An empty
+     * or invalid value is replaced by the default value and values below the
+     * given minimum are raised to it.
+     */
+    private fun getIntervalPreference(key: String, defaultValueResId: Int, minInterval: Long): Long {
+        val defaultValue = appContext.resources.getString(defaultValueResId)
+        val interval = sharedPreferences.getString(key, defaultValue)?.trim()?.toLongOrNull()
+                ?: defaultValue.toLong()
+        return interval.coerceAtLeast(minInterval)
     }
 
     override fun onStartCommand(intent: Intent, flags: Int, startId: Int): Int {
@@ -119,14 +150,16 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
             // Internal calls that are called from the intent service
             "getMoreEvents" -> getMoreEvents(intent)
             "loadChannelIcons" -> loadAllChannelIcons()
+            // Debug call to replay a previously captured session, see CaptureReplayActivity
+            "replayCapture" -> if (BuildConfig.DEBUG) replayCapture(intent)
         }
         return Service.START_NOT_STICKY
     }
 
     override fun onDestroy() {
         Timber.d("Stopping service")
-        execService.shutdown()
         stopHtspConnection()
+        execService.shutdown()
     }
 
     private fun startHtspConnection() {
@@ -139,17 +172,111 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
                 connection.username, connection.password,
                 connection.hostname, connection.port,
                 connectionTimeout,
+                htspClientVersion,
                 this, this)
-        // Since this is blocking, spawn to a new thread
+
+        if (sharedPreferences.getBoolean("htsp_capture_enabled", appContext.resources.getBoolean(R.bool.pref_default_htsp_capture_enabled))) {
+            startCapture()
+        }
+        // Since this is blocking, spawn to a new thread. The cache
+        // must be loaded before the first message is handled.
         execService.execute {
+            entityCache.load()
+            entityCache.start()
+            programUpdateCoalescer.start()
             htspConnection?.openConnection()
             htspConnection?.authenticate()
         }
     }
 
+    private fun startCapture() {
+        val capturePath = File(appContext.cacheDir, "captures")
+        if (!capturePath.exists() && !capturePath.mkdirs()) {
+            Timber.d("Could not create capture directory")
+            return
+        }
+        deleteOldCaptures(capturePath)
+        val file = File(capturePath, "htsp_" + System.currentTimeMillis() + ".cap")
+        try {
+            htspConnection?.setCaptureWriter(HtspCaptureWriter(FileOutputStream(file)))
+            Timber.d("Capturing server communication to ${file.absolutePath}")
+        } catch (e: IOException) {
+            Timber.d(e, "Could not create capture file ${file.absolutePath}")
+        }
+    }
+
+    /**
+     * Deletes the oldest captures before a new one is started. Together with
+     * the new one at most [MAX_CAPTURE_FILES] are kept, and the kept old
+     * captures do not exceed [MAX_CAPTURE_SIZE] in total.
+     */
+    private fun deleteOldCaptures(capturePath: File) {
+        val files = capturePath.listFiles { file -> file.name.startsWith("htsp_") && file.name.endsWith(".cap") }
+                ?: return
+        files.sortByDescending { it.lastModified() }
+        var totalSize = 0L
+        files.forEachIndexed { index, file ->
+            totalSize += file.length()
+            if (index >= MAX_CAPTURE_FILES - 1 || totalSize > MAX_CAPTURE_SIZE) {
+                Timber.d("Deleting old capture ${file.absolutePath}")
+                if (!file.delete()) {
+                    Timber.d("Could not delete old capture ${file.absolutePath}")
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds the received messages of a capture file through the same
+     * message handling as a live connection. This allows measuring the
+     * initial sync and the database updates with real server data.
+     * The content is written into a scratch database, the messages that
+     * update the server status and profiles in the main database are
+     * skipped and the state of the connection is not changed.
+     */
+    private fun replayCapture(intent: Intent) {
+        val path = intent.getStringExtra("file") ?: return
+        val realtime = intent.getBooleanExtra("realtime", false)
+
+        stopHtspConnection()
+        databaseProvider.openScratchDatabase()
+        connection = appRepository.connectionData.activeItem
+        pendingChannelOps.clear()
+        pendingChannelIds = null
+        pendingChannelTagOps.clear()
+        pendingRecordingOps.clear()
+        pendingEventOps.clear()
+        syncRequired = true
+        syncEventsRequired = true
+        initialSyncWithServerRunning = true
+        firstEventReceived = false
+
+        val listener = object : HtspMessageListener {
+            override fun onMessage(response: HtspMessage) {
+                if (response.method !in MAIN_DATABASE_METHODS) {
+                    this@HtspService.onMessage(response)
+                }
+            }
+        }
+        execService.execute {
+            entityCache.load()
+            entityCache.start()
+            programUpdateCoalescer.start()
+            try {
+                HtspCaptureReplay(File(path), realtime).replay(listener)
+            } catch (e: IOException) {
+                Timber.d(e, "Could not replay capture $path")
+            } catch (e: InterruptedException) {
+                Timber.d(e, "Replay of capture $path was interrupted")
+            }
+        }
+    }
+
     private fun stopHtspConnection() {
         Timber.d("Stopping connection")
         htspConnection?.closeConnection()
+        entityCache.stop()
+        programUpdateCoalescer.stop()
     }
 
     override fun onMessage(response: HtspMessage) {
@@ -257,6 +384,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         Timber.d("Starting async communication with server")
 
         pendingChannelOps.clear()
+        pendingChannelIds = null
         pendingChannelTagOps.clear()
         pendingRecordingOps.clear()
         pendingEventOps.clear()
@@ -331,16 +459,21 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         // date with the recording states from the server
         saveAllReceivedRecordings()
 
-        getAdditionalServerData()
+        // A replayed capture has no server to request more data from
+        // and must not change the state of the active connection
+        if (!databaseProvider.usesScratchDatabase) {
+            getAdditionalServerData()
 
-        Timber.d("Updating connection status with full sync completed and last update time")
-        connection.isSyncRequired = false
-        connection.lastUpdate = System.currentTimeMillis() / 1000L
-        appRepository.connectionData.updateItem(connection)
+            Timber.d("Updating connection status with full sync completed and last update time")
+            connection.isSyncRequired = false
+            connection.lastUpdate = System.currentTimeMillis() / 1000L
+            appRepository.connectionData.updateItem(connection)
+        }
 
         // The initial sync is considered to be done at this point.
         // Send the message to the listeners that the sync is done
-        if (syncRequired || syncEventsRequired) {
+        val bulkSyncDone = syncRequired || syncEventsRequired
+        if (bulkSyncDone) {
             sendSyncStateMessage(SyncStateReceiver.State.SYNC_DONE,
                     getString(R.string.loading_data_done), "")
         }
@@ -353,6 +486,12 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         val pastTime = System.currentTimeMillis() - 24 * 60 * 60 * 1000
         appRepository.programData.removeItemsByTime(pastTime)
 
+        if (bulkSyncDone) {
+            Timber.d("Updating the database statistics after the sync")
+            appRepository.miscData.analyzeDatabase()
+        }
+        scheduleDatabaseMaintenance()
+
         Timber.d("Starting background worker to load more epg data")
         val updateEpgWorker = OneTimeWorkRequest.Builder(EpgDataUpdateWorker::class.java)
                 .setInitialDelay(5, TimeUnit.SECONDS)
@@ -362,6 +501,21 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         Timber.d("Done receiving initial data from server")
     }
 
+    /**
+     * Schedules the daily removal of expired programs and the vacuum
+     * of the database while the device is charging and not in use.
+     */
+    private fun scheduleDatabaseMaintenance() {
+        val constraints = Constraints.Builder().setRequiresCharging(true)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            constraints.setRequiresDeviceIdle(true)
+        }
+        val maintenanceWorker = PeriodicWorkRequest.Builder(DatabaseMaintenanceWorker::class.java, 1, TimeUnit.DAYS)
+                .setConstraints(constraints.build())
+                .build()
+        WorkManager.getInstance().enqueueUniquePeriodicWork("DatabaseMaintenance", ExistingPeriodicWorkPolicy.KEEP, maintenanceWorker)
+    }
+
     /**
      * Loads additional data from the server that is required after the initial sync is done.
      * This includes the disc space, the server system time and the playback and recording profiles.
@@ -529,7 +683,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
 
         // During initial sync no channels are yet saved. So use the temporarily
         // stored channels to calculate the channel count for the channel tag
-        val addedTag = convertMessageToChannelTagModel(ChannelTag(), msg, pendingChannelOps)
+        val addedTag = convertMessageToChannelTagModel(ChannelTag(), msg, getPendingChannelIds())
         addedTag.connectionId = connection.id
 
         Timber.d("Sync is running, adding channel tag")
@@ -544,10 +698,11 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
      */
     private fun onTagUpdate(msg: HtspMessage) {
         if (!initialSyncWithServerRunning) {
+            updateChannelTag(msg)
             return
         }
 
-        var channelTag = appRepository.channelTagData.getItemById(msg.getInteger("tagId"))
+        var channelTag = entityCache.channelTags.get(msg.getInteger("tagId"))
         if (channelTag == null) {
             Timber.d("Could not find a channel tag with id ${msg.getInteger("tagId")} in the database")
             channelTag = ChannelTag()
@@ -555,7 +710,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
 
         // During initial sync no channels are yet saved. So use the temporarily
         // stored channels to calculate the channel count for the channel tag
-        val updatedTag = convertMessageToChannelTagModel(channelTag, msg, pendingChannelOps)
+        val updatedTag = convertMessageToChannelTagModel(channelTag, msg, getPendingChannelIds())
         updatedTag.connectionId = connection.id
         updatedTag.isSelected = channelTag.isSelected
 
@@ -569,6 +724,30 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         }
     }
 
+    /**
+     * Merges a tag that has been updated on the server after the initial sync
+     * into the cached tag, which is written with the next flush of the cache.
+     * The flush keeps the selection of the user in the database.
+     * Only the channel relations of this tag that have changed are written.
+     *
+     * @param msg The message with the updated tag data
+     */
+    private fun updateChannelTag(msg: HtspMessage) {
+        val tagId = msg.getInteger("tagId")
+        val channelIds = TagMembershipDelta.toSortedIds(entityCache.channels.keys())
+        val updatedTag = entityCache.channelTags.update(tagId) { convertMessageToChannelTagModel(it, msg, channelIds) }
+        if (updatedTag == null) {
+            Timber.d("Could not find a channel tag with id $tagId in the cache")
+            return
+        }
+
+        if (msg.containsKey("members")) {
+            val members = SparseArray<IntArray>()
+            members.put(tagId, TagMembershipDelta.toSortedIds(updatedTag.members))
+            appRepository.tagAndChannelData.updateMembers(connection.id, members, false)
+        }
+    }
+
     /**
      * Server to client method.
      * A tag has been deleted on the server.
@@ -577,7 +756,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
      */
     private fun onTagDelete(msg: HtspMessage) {
         if (msg.containsKey("tagId")) {
-            val tag = appRepository.channelTagData.getItemById(msg.getInteger("tagId"))
+            val tag = entityCache.channelTags.remove(msg.getInteger("tagId"))
             if (tag != null) {
                 deleteIconFileFromCache(tag.tagIcon)
                 appRepository.channelTagData.removeItem(tag)
@@ -604,6 +783,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         Timber.d("Sync is running, adding channel name '${channel.name}', id '${channel.id}', number '${channel.displayNumber}', server order '${channel.serverOrder}")
 
         pendingChannelOps.add(channel)
+        pendingChannelIds = null
 
         if (syncRequired && pendingChannelOps.size % 25 == 0) {
             sendSyncStateMessage(SyncStateReceiver.State.SYNC_IN_PROGRESS,
@@ -623,13 +803,10 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
             return
         }
 
-        val channel = appRepository.channelData.getItemById(msg.getInteger("channelId"))
+        val channel = entityCache.channels.update(msg.getInteger("channelId")) { convertMessageToChannelModel(it, msg) }
         if (channel == null) {
-            Timber.d("Could not find a channel with id ${msg.getInteger("channelId")} in the database")
-            return
+            Timber.d("Could not find a channel with id ${msg.getInteger("channelId")} in the cache")
         }
-        val updatedChannel = convertMessageToChannelModel(channel, msg)
-        appRepository.channelData.updateItem(updatedChannel)
     }
 
     /**
@@ -642,7 +819,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         if (msg.containsKey("channelId")) {
             val channelId = msg.getInteger("channelId")
 
-            val channel = appRepository.channelData.getItemById(channelId)
+            val channel = entityCache.channels.remove(channelId)
             if (channel != null) {
                 deleteIconFileFromCache(channel.icon)
                 appRepository.channelData.removeItemById(channel.id)
@@ -670,6 +847,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
                         "Received ${pendingRecordingOps.size} recordings")
             }
         } else {
+            entityCache.recordings.put(recording.id, recording)
             appRepository.recordingData.addItem(recording)
         }
 
@@ -683,14 +861,12 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
      * @param msg The message with the updated recording data
      */
     private fun onDvrEntryUpdate(msg: HtspMessage) {
-        // Get the existing recording
-        val recording = appRepository.recordingData.getItemById(msg.getInteger("id"))
+        // Merge the changes into the cached recording
+        val recording = entityCache.recordings.update(msg.getInteger("id")) { convertMessageToRecordingModel(it, msg) }
         if (recording == null) {
-            Timber.d("Could not find a recording with id ${msg.getInteger("id")} in the database")
+            Timber.d("Could not find a recording with id ${msg.getInteger("id")} in the cache")
             return
         }
-        val updatedRecording = convertMessageToRecordingModel(recording, msg)
-        appRepository.recordingData.updateItem(updatedRecording)
 
         removeNotificationById(appContext, recording.id)
         if (sharedPreferences.getBoolean("notifications_enabled", appContext.resources.getBoolean(R.bool.pref_default_notifications_enabled))) {
@@ -709,10 +885,9 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
      */
     private fun onDvrEntryDelete(msg: HtspMessage) {
         if (msg.containsKey("id")) {
-            val recording = appRepository.recordingData.getItemById(msg.getInteger("id"))
+            val recording = entityCache.recordings.remove(msg.getInteger("id"))
             if (recording != null) {
                 appRepository.recordingData.removeItem(recording)
-
             }
         }
     }
@@ -726,6 +901,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     private fun onAutorecEntryAdd(msg: HtspMessage) {
         val seriesRecording = convertMessageToSeriesRecordingModel(SeriesRecording(), msg)
         seriesRecording.connectionId = connection.id
+        entityCache.seriesRecordings.put(seriesRecording.id, seriesRecording)
         appRepository.seriesRecordingData.addItem(seriesRecording)
     }
 
@@ -741,9 +917,10 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
             Timber.d("Could not find a series recording with id $id in the database")
             return
         }
-        val recording = appRepository.seriesRecordingData.getItemById(msg.getString("id"))
-        val updatedRecording = convertMessageToSeriesRecordingModel(recording, msg)
-        appRepository.seriesRecordingData.updateItem(updatedRecording)
+        val recording = entityCache.seriesRecordings.update(id) { convertMessageToSeriesRecordingModel(it, msg) }
+        if (recording == null) {
+            Timber.d("Could not find a series recording with id $id in the cache")
+        }
     }
 
     /**
@@ -755,8 +932,10 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     private fun onAutorecEntryDelete(msg: HtspMessage) {
         val id = msg.getString("id", "")
         if (!id.isEmpty()) {
-            val seriesRecording = appRepository.seriesRecordingData.getItemById(msg.getString("id"))
-            appRepository.seriesRecordingData.removeItem(seriesRecording)
+            val seriesRecording = entityCache.seriesRecordings.remove(id)
+            if (seriesRecording != null) {
+                appRepository.seriesRecordingData.removeItem(seriesRecording)
+            }
         }
     }
 
@@ -769,6 +948,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     private fun onTimerRecEntryAdd(msg: HtspMessage) {
         val recording = convertMessageToTimerRecordingModel(TimerRecording(), msg)
         recording.connectionId = connection.id
+        entityCache.timerRecordings.put(recording.id, recording)
         appRepository.timerRecordingData.addItem(recording)
     }
 
@@ -784,9 +964,10 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
             Timber.d("Could not find a timer recording with id $id in the database")
             return
         }
-        val recording = appRepository.timerRecordingData.getItemById(id)
-        val updatedRecording = convertMessageToTimerRecordingModel(recording, msg)
-        appRepository.timerRecordingData.updateItem(updatedRecording)
+        val recording = entityCache.timerRecordings.update(id) { convertMessageToTimerRecordingModel(it, msg) }
+        if (recording == null) {
+            Timber.d("Could not find a timer recording with id $id in the cache")
+        }
     }
 
     /**
@@ -798,8 +979,10 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     private fun onTimerRecEntryDelete(msg: HtspMessage) {
         val id = msg.getString("id", "")
         if (!id.isEmpty()) {
-            val timerRecording = appRepository.timerRecordingData.getItemById(id)
-            appRepository.timerRecordingData.removeItem(timerRecording)
+            val timerRecording = entityCache.timerRecordings.remove(id)
+            if (timerRecording != null) {
+                appRepository.timerRecordingData.removeItem(timerRecording)
+            }
         }
     }
 
@@ -813,10 +996,13 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         if (!firstEventReceived && syncRequired) {
             Timber.d("Sync is required and received first event, saving ${pendingChannelOps.size} channels")
             appRepository.channelData.addItems(pendingChannelOps)
+            entityCache.channels.load(pendingChannelOps) { it.id }
 
-            Timber.d("Updating connection status with full sync completed")
-            connection.isSyncRequired = false
-            appRepository.connectionData.updateItem(connection)
+            if (!databaseProvider.usesScratchDatabase) {
+                Timber.d("Updating connection status with full sync completed")
+                connection.isSyncRequired = false
+                appRepository.connectionData.updateItem(connection)
+            }
         }
 
         firstEventReceived = true
@@ -834,7 +1020,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
             }
         } else {
             Timber.d("Adding event ${program.title}")
-            appRepository.programData.addItem(program)
+            programUpdateCoalescer.add(program)
         }
     }
 
@@ -845,14 +1031,16 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
      * @param msg The message with the updated epg event data
      */
     private fun onEventUpdate(msg: HtspMessage) {
-        val program = appRepository.programData.getItemById(msg.getInteger("eventId"))
+        // The program could still be waiting to be written
+        val id = msg.getInteger("eventId")
+        val program = programUpdateCoalescer.getPendingItem(id) ?: appRepository.programData.getItemById(id)
         if (program == null) {
             Timber.d("Could not find a program with id ${msg.getInteger("eventId")} in the database")
             return
         }
         val updatedProgram = convertMessageToProgramModel(program, msg)
         Timber.d("Updating event ${updatedProgram.title}")
-        appRepository.programData.updateItem(updatedProgram)
+        programUpdateCoalescer.update(updatedProgram)
     }
 
     /**
@@ -863,7 +1051,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
      */
     private fun onEventDelete(msg: HtspMessage) {
         if (msg.containsKey("id")) {
-            appRepository.programData.removeItemById(msg.getInteger("id"))
+            programUpdateCoalescer.remove(msg.getInteger("id"))
         }
     }
 
@@ -1048,6 +1236,7 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
 
         if (!pendingChannelOps.isEmpty()) {
             appRepository.channelData.addItems(pendingChannelOps)
+            entityCache.channels.load(pendingChannelOps) { it.id }
         }
     }
 
@@ -1059,48 +1248,46 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
     private fun saveAllReceivedChannelTags() {
         Timber.d("Saving ${pendingChannelTagOps.size} channel tags")
 
-        val pendingRemovedTagAndChannelOps = ArrayList<TagAndChannel>()
-        val pendingAddedTagAndChannelOps = ArrayList<TagAndChannel>()
-
         if (!pendingChannelTagOps.isEmpty()) {
             appRepository.channelTagData.addItems(pendingChannelTagOps)
-            for (tag in pendingChannelTagOps) {
+            entityCache.channelTags.load(pendingChannelTagOps) { it.tagId }
 
-                val tac = appRepository.tagAndChannelData.getItemById(tag.tagId)
-                if (tac != null) {
-                    pendingRemovedTagAndChannelOps.add(tac)
-                }
-
-                val channelIds = tag.members
-                if (channelIds != null) {
-                    for (channelId in channelIds) {
-                        val tagAndChannel = TagAndChannel()
-                        tagAndChannel.tagId = tag.tagId
-                        tagAndChannel.channelId = channelId
-                        tagAndChannel.connectionId = connection.id
-                        pendingAddedTagAndChannelOps.add(tagAndChannel)
-                    }
+            // A tag can be received several times, the latest members
+            // are used. Tags without members have no channel relations.
+            val members = SparseArray<IntArray>()
+            for (tag in pendingChannelTagOps) {
+                if (tag.members != null) {
+                    members.put(tag.tagId, TagMembershipDelta.toSortedIds(tag.members))
+                } else if (members.get(tag.tagId) == null) {
+                    members.put(tag.tagId, IntArray(0))
                 }
             }
+            appRepository.tagAndChannelData.updateMembers(connection.id, members, true)
+        }
+    }
 
-            Timber.d("Removing ${pendingRemovedTagAndChannelOps.size} and adding ${pendingAddedTagAndChannelOps.size} tag and channel relations")
-            appRepository.tagAndChannelData.addAndRemoveItems(pendingAddedTagAndChannelOps, pendingRemovedTagAndChannelOps)
+    /**
+     * Returns the sorted ids of the channels that were received during the initial
+     * sync. The ids are only collected again when another channel was received.
+     */
+    private fun getPendingChannelIds(): IntArray {
+        return pendingChannelIds ?: TagMembershipDelta.toSortedIds(pendingChannelOps.map { it.id }).also {
+            pendingChannelIds = it
         }
     }
 
     /**
-     * Removes all recordings and saves all received recordings from the initial sync
-     * in the database. The removal is done to prevent being out of sync with the server.
-     * This could be the case when the app was offline for a while and it did not receive
-     * any recording removal information from the server. During the initial sync the
-     * server only provides the list of available recordings.
+     * Saves all received recordings from the initial sync in the database. Recordings
+     * that are not available anymore are removed to prevent being out of sync with the
+     * server. This could be the case when the app was offline for a while and it did not
+     * receive any recording removal information from the server. During the initial sync
+     * the server only provides the list of available recordings. Unchanged recordings
+     * are not written again so that the recording lists are not needlessly reloaded.
      */
     private fun saveAllReceivedRecordings() {
-        Timber.d("Removing previously existing recordings and saving ${pendingRecordingOps.size} new recordings")
-        appRepository.recordingData.removeItems()
-        if (!pendingRecordingOps.isEmpty()) {
-            appRepository.recordingData.addItems(pendingRecordingOps)
-        }
+        Timber.d("Reconciling existing recordings with ${pendingRecordingOps.size} received recordings")
+        appRepository.recordingData.reconcileItems(connection.id, pendingRecordingOps)
+        entityCache.recordings.load(pendingRecordingOps) { it.id }
     }
 
     private fun saveAllReceivedEvents() {
@@ -1551,4 +1738,12 @@ class HtspService : Service(), HtspConnectionStateListener, HtspMessageListener
         }
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent)
     }
+
+    companion object {
+        // The messages that update the data in the main database, they are not replayed
+        private val MAIN_DATABASE_METHODS = setOf("getSysTime", "getDiskSpace", "getProfiles", "getDvrConfigs", "serverStatus")
+        // A capture is written on every connect, only the last ones are kept
+        private const val MAX_CAPTURE_FILES = 5
+        private const val MAX_CAPTURE_SIZE = 200L * 1024 * 1024
+    }
 }
@@ -3,588 +3,10 @@
 package org.tvheadend.tvhclient.data.service
 
 import android.content.Intent
-import android.text.TextUtils
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage
-import org.tvheadend.tvhclient.domain.entity.*
 import timber.log.Timber
 import java.util.*
 
-
-fun convertMessageToChannelTagModel(tag: ChannelTag, msg: HtspMessage, channels: List<Channel>): ChannelTag {
-    if (msg.containsKey("tagId")) {
-        tag.tagId = msg.getInteger("tagId")
-    }
-    if (msg.containsKey("tagName")) {
-        tag.tagName = msg.getString("tagName")
-    }
-    if (msg.containsKey("tagIndex")) {
-        if (msg.getInteger("tagIndex") > 0) {
-            tag.tagIndex = msg.getInteger("tagIndex")
-        }
-    }
-    if (msg.containsKey("tagIcon")) {
-        if (!TextUtils.isEmpty(msg.getString("tagIcon"))) {
-            tag.tagIcon = msg.getString("tagIcon")
-        }
-    }
-    if (msg.containsKey("tagTitledIcon")) {
-        if (msg.getInteger("tagTitledIcon") > 0) {
-            tag.tagTitledIcon = msg.getInteger("tagTitledIcon")
-        }
-    }
-    if (msg.containsKey("members")) {
-        val members = msg.getIntegerList("members")
-        tag.members = members
-
-        var channelCount = 0
-        for (channelId in members) {
-            for ((id) in channels) {
-                if (id == channelId) {
-                    channelCount++
-                    break
-                }
-            }
-        }
-        tag.channelCount = channelCount
-    }
-    return tag
-}
-
-fun convertMessageToChannelModel(channel: Channel, msg: HtspMessage): Channel {
-    if (msg.containsKey("channelId")) {
-        channel.id = msg.getInteger("channelId")
-    }
-    if (msg.containsKey("channelNumber") && msg.containsKey("channelNumberMinor")) {
-        val channelNumber = msg.getInteger("channelNumber")
-        val channelNumberMinor = msg.getInteger("channelNumberMinor")
-        channel.number = channelNumber
-        channel.numberMinor = channelNumberMinor
-        channel.displayNumber = "$channelNumber.$channelNumberMinor"
-
-    } else if (msg.containsKey("channelNumber")) {
-        val channelNumber = msg.getInteger("channelNumber")
-        channel.number = channelNumber
-        channel.displayNumber = "$channelNumber.0"
-    }
-    if (msg.containsKey("channelName")) {
-        channel.name = msg.getString("channelName")
-    }
-    if (msg.containsKey("channelIcon")) {
-        if (!TextUtils.isEmpty(msg.getString("channelIcon"))) {
-            channel.icon = msg.getString("channelIcon")
-        }
-    }
-    if (msg.containsKey("eventId")) {
-        if (msg.getInteger("eventId") > 0) {
-            channel.eventId = msg.getInteger("eventId")
-        }
-    }
-    if (msg.containsKey("nextEventId")) {
-        if (msg.getInteger("nextEventId") > 0) {
-            channel.nextEventId = msg.getInteger("nextEventId")
-        }
-    }
-    if (msg.containsKey("tags")) {
-        val tags = msg.getIntegerList("tags")
-        channel.tags = tags
-    }
-    return channel
-}
-
-fun convertMessageToRecordingModel(recording: Recording, msg: HtspMessage): Recording {
-    if (msg.containsKey("id")) {
-        recording.id = msg.getInteger("id")
-    }
-    if (msg.containsKey("channel")) {
-        if (msg.getInteger("channel") > 0) {
-            recording.channelId = msg.getInteger("channel")
-        }
-    }
-    if (msg.containsKey("start")) {
-        // The message value is in seconds, convert to milliseconds
-        recording.start = msg.getLong("start") * 1000
-    }
-    if (msg.containsKey("stop")) {
-        // The message value is in seconds, convert to milliseconds
-        recording.stop = msg.getLong("stop") * 1000
-    }
-    if (msg.containsKey("startExtra")) {
-        recording.startExtra = msg.getLong("startExtra")
-    }
-    if (msg.containsKey("stopExtra")) {
-        recording.stopExtra = msg.getLong("stopExtra")
-    }
-    if (msg.containsKey("retention")) {
-        recording.retention = msg.getLong("retention")
-    }
-    if (msg.containsKey("priority")) {
-        recording.priority = msg.getInteger("priority")
-    }
-    if (msg.containsKey("eventId")) {
-        if (msg.getInteger("eventId") > 0) {
-            recording.eventId = msg.getInteger("eventId")
-        }
-    }
-    if (msg.containsKey("autorecId")) {
-        if (!TextUtils.isEmpty(msg.getString("autorecId"))) {
-            recording.autorecId = msg.getString("autorecId")
-        }
-    }
-    if (msg.containsKey("timerecId")) {
-        if (!TextUtils.isEmpty(msg.getString("timerecId"))) {
-            recording.timerecId = msg.getString("timerecId")
-        }
-    }
-    if (msg.containsKey("contentType")) {
-        if (msg.getInteger("contentType") > 0) {
-            recording.contentType = msg.getInteger("contentType")
-        }
-    }
-    if (msg.containsKey("title")) {
-        if (!TextUtils.isEmpty(msg.getString("title"))) {
-            recording.title = msg.getString("title")
-        }
-    }
-    if (msg.containsKey("subtitle")) {
-        if (!TextUtils.isEmpty(msg.getString("subtitle"))) {
-            recording.subtitle = msg.getString("subtitle")
-        }
-    }
-    if (msg.containsKey("summary")) {
-        if (!TextUtils.isEmpty(msg.getString("summary"))) {
-            recording.summary = msg.getString("summary")
-        }
-    }
-    if (msg.containsKey("description")) {
-        if (!TextUtils.isEmpty(msg.getString("description"))) {
-            recording.description = msg.getString("description")
-        }
-    }
-    if (msg.containsKey("state")) {
-        recording.state = msg.getString("state")
-    }
-    if (msg.containsKey("error")) {
-        if (!TextUtils.isEmpty(msg.getString("error"))) {
-            recording.error = msg.getString("error")
-        }
-    }
-    if (msg.containsKey("owner")) {
-        if (!TextUtils.isEmpty(msg.getString("owner"))) {
-            recording.owner = msg.getString("owner")
-        }
-    }
-    if (msg.containsKey("creator")) {
-        if (!TextUtils.isEmpty(msg.getString("creator"))) {
-            recording.creator = msg.getString("creator")
-        }
-    }
-    if (msg.containsKey("subscriptionError")) {
-        if (!TextUtils.isEmpty(msg.getString("subscriptionError"))) {
-            recording.subscriptionError = msg.getString("subscriptionError")
-        }
-    }
-    if (msg.containsKey("streamErrors")) {
-        if (!TextUtils.isEmpty(msg.getString("streamErrors"))) {
-            recording.streamErrors = msg.getString("streamErrors")
-        }
-    }
-    if (msg.containsKey("dataErrors")) {
-        if (!TextUtils.isEmpty(msg.getString("dataErrors"))) {
-            recording.dataErrors = msg.getString("dataErrors")
-        }
-    }
-    if (msg.containsKey("path")) {
-        if (!TextUtils.isEmpty(msg.getString("path"))) {
-            recording.path = msg.getString("path")
-        }
-    }
-    if (msg.containsKey("dataSize")) {
-        if (msg.getLong("dataSize") > 0) {
-            recording.dataSize = msg.getLong("dataSize")
-        }
-    }
-    if (msg.containsKey("enabled")) {
-        recording.isEnabled = msg.getInteger("enabled") == 1
-    }
-    if (msg.containsKey("duplicate")) {
-        recording.duplicate = msg.getInteger("duplicate")
-    }
-
-    if (msg.containsKey("image")) {
-        if (!TextUtils.isEmpty(msg.getString("image"))) {
-            recording.image = msg.getString("image")
-        }
-    }
-    if (msg.containsKey("fanart_image")) {
-        if (!TextUtils.isEmpty(msg.getString("fanart_image"))) {
-            recording.fanartImage = msg.getString("fanart_image")
-        }
-    }
-    if (msg.containsKey("copyright_year")) {
-        if (msg.getInteger("copyright_year") > 0) {
-            recording.copyrightYear = msg.getInteger("copyright_year")
-        }
-    }
-    if (msg.containsKey("removal")) {
-        if (msg.getInteger("removal") > 0) {
-            recording.removal = msg.getInteger("removal")
-        }
-    }
-    return recording
-}
-
-fun convertMessageToProgramModel(program: Program, msg: HtspMessage): Program {
-    if (msg.containsKey("eventId")) {
-        program.eventId = msg.getInteger("eventId")
-    }
-    if (msg.containsKey("channelId")) {
-        program.channelId = msg.getInteger("channelId")
-    }
-    if (msg.containsKey("start")) {
-        // The message value is in seconds, convert to milliseconds
-        program.start = msg.getLong("start") * 1000
-    }
-    if (msg.containsKey("stop")) {
-        // The message value is in seconds, convert to milliseconds
-        program.stop = msg.getLong("stop") * 1000
-    }
-    if (msg.containsKey("title")) {
-        if (!TextUtils.isEmpty(msg.getString("title"))) {
-            program.title = msg.getString("title")
-        }
-    }
-    if (msg.containsKey("subtitle")) {
-        if (!TextUtils.isEmpty(msg.getString("subtitle"))) {
-            program.subtitle = msg.getString("subtitle")
-        }
-    }
-    if (msg.containsKey("summary")) {
-        if (!TextUtils.isEmpty(msg.getString("summary"))) {
-            program.summary = msg.getString("summary")
-        }
-    }
-    if (msg.containsKey("description")) {
-        if (!TextUtils.isEmpty(msg.getString("description"))) {
-            program.description = msg.getString("description")
-        }
-    }
-    if (msg.containsKey("serieslinkId")) {
-        if (msg.getInteger("serieslinkId") > 0) {
-            program.serieslinkId = msg.getInteger("serieslinkId")
-        }
-    }
-    if (msg.containsKey("episodeId")) {
-        if (msg.getInteger("episodeId") > 0) {
-            program.episodeId = msg.getInteger("episodeId")
-        }
-    }
-    if (msg.containsKey("seasonId")) {
-        if (msg.getInteger("seasonId") > 0) {
-            program.seasonId = msg.getInteger("seasonId")
-        }
-    }
-    if (msg.containsKey("brandId")) {
-        if (msg.getInteger("brandId") > 0) {
-            program.brandId = msg.getInteger("brandId")
-        }
-    }
-    if (msg.containsKey("contentType")) {
-        if (msg.getInteger("contentType") > 0) {
-            program.contentType = msg.getInteger("contentType")
-        }
-    }
-    if (msg.containsKey("ageRating")) {
-        if (msg.getInteger("ageRating") > 0) {
-            program.ageRating = msg.getInteger("ageRating")
-        }
-    }
-    if (msg.containsKey("starRating")) {
-        if (msg.getInteger("starRating") > 0) {
-            program.starRating = msg.getInteger("starRating")
-        }
-    }
-    if (msg.containsKey("firstAired")) {
-        if (msg.getInteger("firstAired") > 0) {
-            program.firstAired = msg.getLong("firstAired")
-        }
-    }
-    if (msg.containsKey("seasonNumber")) {
-        if (msg.getInteger("seasonNumber") > 0) {
-            program.seasonNumber = msg.getInteger("seasonNumber")
-        }
-    }
-    if (msg.containsKey("seasonCount")) {
-        if (msg.getInteger("seasonCount") > 0) {
-            program.seasonCount = msg.getInteger("seasonCount")
-        }
-    }
-    if (msg.containsKey("episodeNumber")) {
-        if (msg.getInteger("episodeNumber") > 0) {
-            program.episodeNumber = msg.getInteger("episodeNumber")
-        }
-    }
-    if (msg.containsKey("episodeCount")) {
-        if (msg.getInteger("episodeCount") > 0) {
-            program.episodeCount = msg.getInteger("episodeCount")
-        }
-    }
-    if (msg.containsKey("partNumber")) {
-        if (msg.getInteger("partNumber") > 0) {
-            program.partNumber = msg.getInteger("partNumber")
-        }
-    }
-    if (msg.containsKey("partCount")) {
-        if (msg.getInteger("partCount") > 0) {
-            program.partCount = msg.getInteger("partCount")
-        }
-    }
-    if (msg.containsKey("episodeOnscreen")) {
-        if (!TextUtils.isEmpty(msg.getString("episodeOnscreen"))) {
-            program.episodeOnscreen = msg.getString("episodeOnscreen")
-        }
-    }
-    if (msg.containsKey("image")) {
-        if (!TextUtils.isEmpty(msg.getString("image"))) {
-            program.image = msg.getString("image")
-        }
-    }
-    if (msg.containsKey("dvrId")) {
-        if (msg.getInteger("dvrId") > 0) {
-            program.dvrId = msg.getInteger("dvrId")
-        }
-    }
-    if (msg.containsKey("nextEventId")) {
-        if (msg.getInteger("nextEventId") > 0) {
-            program.nextEventId = msg.getInteger("nextEventId")
-        }
-    }
-    if (msg.containsKey("episodeOnscreen")) {
-        if (!TextUtils.isEmpty(msg.getString("episodeOnscreen"))) {
-            program.episodeOnscreen = msg.getString("episodeOnscreen")
-        }
-    }
-    if (msg.containsKey("serieslinkUri")) {
-        if (!TextUtils.isEmpty(msg.getString("serieslinkUri"))) {
-            program.serieslinkUri = msg.getString("serieslinkUri")
-        }
-    }
-    if (msg.containsKey("episodeUri")) {
-        if (!TextUtils.isEmpty(msg.getString("episodeUri"))) {
-            program.episodeUri = msg.getString("episodeUri")
-        }
-    }
-    if (msg.containsKey("copyright_year")) {
-        if (msg.getInteger("copyright_year") > 0) {
-            program.copyrightYear = msg.getInteger("copyright_year")
-        }
-    }
-    /*
-    if (msg.containsKey("credits")) {
-        StringBuilder sb = new StringBuilder();
-        for (String credit : msg.getStringArray("credits")) {
-            sb.append(credit).append(",");
-        }
-        // Remove the last separator character
-        program.setCredits(sb.substring(0, sb.lastIndexOf(",")));
-    }
-    if (msg.containsKey("category")) {
-        StringBuilder sb = new StringBuilder();
-        for (String s : msg.getStringArray("category")) {
-            sb.append(s).append(",");
-        }
-        // Remove the last separator character
-        program.setCredits(sb.substring(0, sb.lastIndexOf(",")));
-
-    }
-    if (msg.containsKey("keyword")) {
-        StringBuilder sb = new StringBuilder();
-        for (String s : msg.getStringArray("keyword")) {
-            sb.append(s).append(",");
-        }
-        // Remove the last separator character
-        program.setKeyword(sb.substring(0, sb.lastIndexOf(",")));
-    }
-    */
-    return program
-}
-
-fun convertMessageToSeriesRecordingModel(seriesRecording: SeriesRecording, msg: HtspMessage): SeriesRecording {
-    if (msg.containsKey("id")) {
-        seriesRecording.id = msg.getString("id")
-    }
-    if (msg.containsKey("enabled")) {
-        seriesRecording.isEnabled = msg.getInteger("enabled") == 1
-    }
-    if (msg.containsKey("name")) {
-        seriesRecording.name = msg.getString("name")
-    }
-    if (msg.containsKey("minDuration")) {
-        seriesRecording.minDuration = msg.getInteger("minDuration")
-    }
-    if (msg.containsKey("maxDuration")) {
-        seriesRecording.maxDuration = msg.getInteger("maxDuration")
-    }
-    if (msg.containsKey("retention")) {
-        seriesRecording.retention = msg.getInteger("retention")
-    }
-    if (msg.containsKey("daysOfWeek")) {
-        seriesRecording.daysOfWeek = msg.getInteger("daysOfWeek")
-    }
-    if (msg.containsKey("priority")) {
-        seriesRecording.priority = msg.getInteger("priority")
-    }
-    if (msg.containsKey("approxTime")) {
-        seriesRecording.approxTime = msg.getInteger("approxTime")
-    }
-    if (msg.containsKey("start")) {
-        // The message value is in minutes
-        seriesRecording.start = msg.getLong("start")
-    }
-    if (msg.containsKey("startWindow")) {
-        // The message value is in minutes
-        seriesRecording.startWindow = msg.getLong("startWindow")
-    }
-    if (msg.containsKey("startExtra")) {
-        seriesRecording.startExtra = msg.getLong("startExtra")
-    }
-    if (msg.containsKey("stopExtra")) {
-        seriesRecording.stopExtra = msg.getLong("stopExtra")
-    }
-    if (msg.containsKey("title")) {
-        if (!TextUtils.isEmpty(msg.getString("title"))) {
-            seriesRecording.title = msg.getString("title")
-        }
-    }
-    if (msg.containsKey("fulltext")) {
-        if (!TextUtils.isEmpty(msg.getString("fulltext"))) {
-            seriesRecording.fulltext = msg.getInteger("fulltext")
-        }
-    }
-    if (msg.containsKey("directory")) {
-        if (!TextUtils.isEmpty(msg.getString("directory"))) {
-            seriesRecording.directory = msg.getString("directory")
-        }
-    }
-    if (msg.containsKey("channel")) {
-        if (msg.getInteger("channel") > 0) {
-            seriesRecording.channelId = msg.getInteger("channel")
-        }
-    }
-    if (msg.containsKey("owner")) {
-        if (!TextUtils.isEmpty(msg.getString("owner"))) {
-            seriesRecording.owner = msg.getString("owner")
-        }
-    }
-    if (msg.containsKey("creator")) {
-        if (!TextUtils.isEmpty(msg.getString("creator"))) {
-            seriesRecording.creator = msg.getString("creator")
-        }
-    }
-    if (msg.containsKey("dupDetect")) {
-        if (msg.getInteger("dupDetect") > 0) {
-            seriesRecording.dupDetect = msg.getInteger("dupDetect")
-        }
-    }
-    if (msg.containsKey("maxCount")) {
-        if (msg.getInteger("maxCount") > 0) {
-            seriesRecording.maxCount = msg.getInteger("maxCount")
-        }
-    }
-    if (msg.containsKey("removal")) {
-        if (msg.getInteger("removal") > 0) {
-            seriesRecording.removal = msg.getInteger("removal")
-        }
-    }
-    return seriesRecording
-}
-
-fun convertMessageToTimerRecordingModel(timerRecording: TimerRecording, msg: HtspMessage): TimerRecording {
-    if (msg.containsKey("id")) {
-        timerRecording.id = msg.getString("id")
-    }
-    if (msg.containsKey("title")) {
-        timerRecording.title = msg.getString("title")
-    }
-    if (msg.containsKey("directory")) {
-        if (!TextUtils.isEmpty(msg.getString("directory"))) {
-            timerRecording.directory = msg.getString("directory")
-        }
-    }
-    if (msg.containsKey("enabled")) {
-        timerRecording.isEnabled = msg.getInteger("enabled") == 1
-    }
-    if (msg.containsKey("name")) {
-        timerRecording.name = msg.getString("name")
-    }
-    if (msg.containsKey("configName")) {
-        timerRecording.configName = msg.getString("configName")
-    }
-    if (msg.containsKey("channel")) {
-        timerRecording.channelId = msg.getInteger("channel")
-    }
-    if (msg.containsKey("daysOfWeek")) {
-        if (msg.getInteger("daysOfWeek") > 0) {
-            timerRecording.daysOfWeek = msg.getInteger("daysOfWeek")
-        }
-    }
-    if (msg.containsKey("priority")) {
-        if (msg.getInteger("priority") > 0) {
-            timerRecording.priority = msg.getInteger("priority")
-        }
-    }
-    if (msg.containsKey("start")) {
-        // The message value is in minutes
-        timerRecording.start = msg.getLong("start")
-    }
-    if (msg.containsKey("stop")) {
-        // The message value is in minutes
-        timerRecording.stop = msg.getLong("stop")
-    }
-    if (msg.containsKey("retention")) {
-        if (msg.getInteger("retention") > 0) {
-            timerRecording.retention = msg.getInteger("retention")
-        }
-    }
-    if (msg.containsKey("owner")) {
-        if (!TextUtils.isEmpty(msg.getString("owner"))) {
-            timerRecording.owner = msg.getString("owner")
-        }
-    }
-    if (msg.containsKey("creator")) {
-        if (!TextUtils.isEmpty(msg.getString("creator"))) {
-            timerRecording.creator = msg.getString("creator")
-        }
-    }
-    if (msg.containsKey("removal")) {
-        if (msg.getInteger("removal") > 0) {
-            timerRecording.removal = msg.getInteger("removal")
-        }
-    }
-    return timerRecording
-}
-
-fun convertMessageToServerStatusModel(serverStatus: ServerStatus, msg: HtspMessage): ServerStatus {
-    if (msg.containsKey("htspversion")) {
-        serverStatus.htspVersion = msg.getInteger("htspversion", 13)
-    }
-    if (msg.containsKey("servername")) {
-        serverStatus.serverName = msg.getString("servername")
-    }
-    if (msg.containsKey("serverversion")) {
-        serverStatus.serverVersion = msg.getString("serverversion")
-    }
-    if (msg.containsKey("webroot")) {
-        val webroot = msg.getString("webroot")
-        serverStatus.webroot = webroot ?: ""
-    }
-    if (msg.containsKey("servercapability")) {
-        for (capabilitiy in msg.getArrayList("servercapability")) {
-            Timber.d("Server supports $capabilitiy")
-        }
-    }
-    return serverStatus
-}
-
 fun convertIntentToAutorecMessage(intent: Intent, htspVersion: Int): HtspMessage {
     val enabled = intent.getIntExtra("enabled", 1).toLong()
     val title = intent.getStringExtra("title")
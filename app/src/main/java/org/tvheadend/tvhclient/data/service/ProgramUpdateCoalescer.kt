@@ -0,0 +1,113 @@
+package org.tvheadend.tvhclient.data.service
+
+import org.tvheadend.tvhclient.domain.entity.Program
+import org.tvheadend.tvhclient.domain.repository.data_source.ProgramData
+import timber.log.Timber
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * Collects the added, updated and removed programs that the server sends after
+ * the initial sync and writes them together once per interval. Each write is a
+ * single transaction, so the lists that show programs are reloaded at most once
+ * per interval instead of once for every received event.
+ *
+ * The programs of a flush stay available as pending items until their write
+ * has been committed, so that an update that arrives in the meantime is
+ * merged into the latest state of the program and not into the stale row.
+ */
+class ProgramUpdateCoalescer(private val programData: ProgramData,
+                             private val executor: ScheduledExecutorService,
+                             private val flushInterval: Long) {
+
+    private val addedPrograms = LinkedHashMap<Int, Program>()
+    private val updatedPrograms = LinkedHashMap<Int, Program>()
+    private val removedProgramIds = LinkedHashSet<Int>()
+    private val writingPrograms = ArrayList<Map<Int, Program>>()
+    private var flushTask: ScheduledFuture<*>? = null
+
+    @Synchronized
+    fun add(program: Program) {
+        addedPrograms[program.id] = program.copy()
+        updatedPrograms.remove(program.id)
+    }
+
+    @Synchronized
+    fun update(program: Program) {
+        if (addedPrograms.containsKey(program.id)) {
+            addedPrograms[program.id] = program.copy()
+        } else {
+            updatedPrograms[program.id] = program.copy()
+        }
+    }
+
+    @Synchronized
+    fun remove(id: Int) {
+        addedPrograms.remove(id)
+        updatedPrograms.remove(id)
+        removedProgramIds.add(id)
+    }
+
+    /**
+     * Returns a copy of the program that was added or updated but
+     * not yet written or null if no such program is waiting
+     */
+    @Synchronized
+    fun getPendingItem(id: Int): Program? {
+        (addedPrograms[id] ?: updatedPrograms[id])?.let { return it.copy() }
+        for (programs in writingPrograms.asReversed()) {
+            programs[id]?.let { return it.copy() }
+        }
+        return null
+    }
+
+    @Synchronized
+    fun start() {
+        flushTask?.cancel(false)
+        val interval = flushInterval.coerceAtLeast(MIN_FLUSH_INTERVAL)
+        flushTask = executor.scheduleWithFixedDelay({ flush() }, interval, interval, TimeUnit.MILLISECONDS)
+    }
+
+    /**
+     * Stops the periodic writing and writes all remaining changes
+     */
+    @Synchronized
+    fun stop() {
+        flushTask?.cancel(false)
+        flushTask = null
+        flush()
+    }
+
+    fun flush() {
+        val added: List<Program>
+        val updated: List<Program>
+        val removedIds: List<Int>
+        val writing = HashMap<Int, Program>()
+        synchronized(this) {
+            if (addedPrograms.isEmpty() && updatedPrograms.isEmpty() && removedProgramIds.isEmpty()) {
+                return
+            }
+            added = ArrayList(addedPrograms.values)
+            updated = ArrayList(updatedPrograms.values)
+            removedIds = ArrayList(removedProgramIds)
+            writing.putAll(addedPrograms)
+            writing.putAll(updatedPrograms)
+            writingPrograms.add(writing)
+            addedPrograms.clear()
+            updatedPrograms.clear()
+            removedProgramIds.clear()
+        }
+        Timber.d("Writing ${added.size} added, ${updated.size} updated and ${removedIds.size} removed programs")
+        programData.applyChanges(added, updated, removedIds) {
+            synchronized(this) {
+                writingPrograms.remove(writing)
+            }
+        }
+    }
+
+    companion object {
+        // The shortest interval, a smaller one would write almost every event on its own
+        const val MIN_FLUSH_INTERVAL = 100L
+    }
+}
@@ -0,0 +1,95 @@
+package org.tvheadend.tvhclient.data.service
+
+/**
+ * Keeps the items of one entity type in memory. Changes are merged into the
+ * stored items and the changed items are remembered until they are written
+ * to the database with the next call to [flush]. Several changes of the
+ * same item are therefore written only once.
+ *
+ * Callers get copies of the stored items, so the items can be merged while
+ * the copies are being read or written on other threads.
+ *
+ * @param copy   Returns a copy of the given item
+ * @param writer Writes the given changed items to the database
+ */
+class WriteBehindMap<K, T>(private val copy: (T) -> T,
+                           private val writer: (List<T>) -> Unit) {
+
+    private val items = HashMap<K, T>()
+    private val dirtyKeys = LinkedHashSet<K>()
+
+    val size: Int
+        @Synchronized get() = items.size
+
+    /**
+     * Replaces all items with copies of the given ones. Changes
+     * that were not yet written to the database are dropped.
+     */
+    @Synchronized
+    fun load(list: List<T>, keyOf: (T) -> K) {
+        items.clear()
+        dirtyKeys.clear()
+        for (item in list) {
+            items[keyOf(item)] = copy(item)
+        }
+    }
+
+    /**
+     * Adds or replaces the item that has already been written to the database
+     */
+    @Synchronized
+    fun put(key: K, item: T) {
+        items[key] = copy(item)
+        dirtyKeys.remove(key)
+    }
+
+    @Synchronized
+    fun keys(): List<K> {
+        return ArrayList(items.keys)
+    }
+
+    @Synchronized
+    fun get(key: K): T? {
+        return items[key]?.let(copy)
+    }
+
+    /**
+     * Removes the item. Any change that was not yet written is dropped
+     * because the item will be removed from the database by the caller.
+     */
+    @Synchronized
+    fun remove(key: K): T? {
+        dirtyKeys.remove(key)
+        return items.remove(key)
+    }
+
+    /**
+     * Merges the changes into the stored item and marks it to be
+     * written with the next flush.
+     *
+     * @return A copy of the changed item or null if no item with the key exists
+     */
+    @Synchronized
+    fun update(key: K, merge: (T) -> Unit): T? {
+        val item = items[key] ?: return null
+        merge(item)
+        dirtyKeys.add(key)
+        return copy(item)
+    }
+
+    /**
+     * Writes all items that were changed since the last flush in one batch
+     */
+    fun flush() {
+        val changedItems = ArrayList<T>()
+        synchronized(this) {
+            for (key in dirtyKeys) {
+                items[key]?.let { changedItems.add(copy(it)) }
+            }
+            dirtyKeys.clear()
+        }
+        if (changedItems.isNotEmpty()) {
+            writer(changedItems)
+        }
+    }
+}
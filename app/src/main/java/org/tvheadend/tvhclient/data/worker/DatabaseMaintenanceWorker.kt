@@ -0,0 +1,31 @@
+package org.tvheadend.tvhclient.data.worker
+
+import android.content.Context
+import android.database.sqlite.SQLiteException
+import androidx.work.ListenableWorker
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import org.tvheadend.tvhclient.MainApplication
+import org.tvheadend.tvhclient.data.repository.AppRepository
+import timber.log.Timber
+import javax.inject.Inject
+
+class DatabaseMaintenanceWorker(context: Context, workerParams: WorkerParameters) : Worker(context, workerParams) {
+
+    @Inject
+    lateinit var appRepository: AppRepository
+
+    override fun doWork(): ListenableWorker.Result {
+        Timber.d("Removing expired programs and vacuuming the database")
+        MainApplication.getComponent().inject(this)
+
+        val pastTime = System.currentTimeMillis() - 24 * 60 * 60 * 1000
+        return try {
+            appRepository.miscData.maintainDatabase(pastTime)
+            ListenableWorker.Result.success()
+        } catch (e: SQLiteException) {
+            Timber.d(e, "Database maintenance failed")
+            ListenableWorker.Result.retry()
+        }
+    }
+}
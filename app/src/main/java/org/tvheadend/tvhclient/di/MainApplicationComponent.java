@@ -7,6 +7,7 @@ import org.tvheadend.tvhclient.MainApplication;
 import org.tvheadend.tvhclient.data.repository.AppRepository;
 import org.tvheadend.tvhclient.data.service.HtspIntentService;
 import org.tvheadend.tvhclient.data.service.HtspService;
+import org.tvheadend.tvhclient.data.worker.DatabaseMaintenanceWorker;
 import org.tvheadend.tvhclient.di.modules.MainApplicationModule;
 import org.tvheadend.tvhclient.di.modules.RepositoryModule;
 import org.tvheadend.tvhclient.di.modules.SharedPreferencesModule;
@@ -93,4 +94,6 @@ public interface MainApplicationComponent {
     void inject(PlayerViewModel playerViewModel);
 
     void inject(ExternalPlayerViewModel externalPlayerViewModel);
+
+    void inject(DatabaseMaintenanceWorker databaseMaintenanceWorker);
 }
@@ -3,6 +3,7 @@ package org.tvheadend.tvhclient.di.modules;
 import android.content.Context;
 
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase;
+import org.tvheadend.tvhclient.data.db.DatabaseProvider;
 import org.tvheadend.tvhclient.data.repository.AppRepository;
 import org.tvheadend.tvhclient.domain.repository.data_source.ChannelData;
 import org.tvheadend.tvhclient.domain.repository.data_source.ChannelTagData;
@@ -26,9 +27,11 @@ import dagger.Provides;
 public class RepositoryModule {
 
     private final AppRoomDatabase appRoomDatabase;
+    private final DatabaseProvider databaseProvider;
 
     public RepositoryModule(Context context) {
         appRoomDatabase = AppRoomDatabase.Companion.getInstance(context);
+        databaseProvider = new DatabaseProvider(context, appRoomDatabase);
     }
 
     @Singleton
@@ -41,18 +44,25 @@ public class RepositoryModule {
     @Singleton
     @NonNull
     @Provides
-    AppRepository providesAppRepository(AppRoomDatabase db, Context context) {
+    DatabaseProvider providesDatabaseProvider() {
+        return databaseProvider;
+    }
+
+    @Singleton
+    @NonNull
+    @Provides
+    AppRepository providesAppRepository(AppRoomDatabase db, DatabaseProvider databaseProvider, Context context) {
         return new AppRepository(
-                new ChannelData(db),
-                new ProgramData(db),
-                new RecordingData(db),
-                new SeriesRecordingData(db),
-                new TimerRecordingData(db),
-                new ConnectionData(db),
-                new ChannelTagData(db),
+                new ChannelData(databaseProvider),
+                new ProgramData(databaseProvider),
+                new RecordingData(databaseProvider),
+                new SeriesRecordingData(databaseProvider),
+                new TimerRecordingData(databaseProvider),
+                new ConnectionData(databaseProvider),
+                new ChannelTagData(databaseProvider),
                 new ServerStatusData(db),
                 new ServerProfileData(db),
-                new TagAndChannelData(db),
-                new MiscData(db));
+                new TagAndChannelData(databaseProvider),
+                new MiscData(databaseProvider));
     }
 }
@@ -4,13 +4,17 @@ import android.os.AsyncTask
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.domain.entity.Channel
 import org.tvheadend.tvhclient.domain.entity.EpgChannel
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class ChannelData(private val db: AppRoomDatabase) : DataSourceInterface<Channel> {
+class ChannelData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<Channel> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     val itemCount: Int
         get() {
@@ -37,6 +41,10 @@ class ChannelData(private val db: AppRoomDatabase) : DataSourceInterface<Channel
         AsyncTask.execute { db.channelDao.update(item) }
     }
 
+    fun updateItems(items: List<Channel>) {
+        AsyncTask.execute { db.channelDao.update(ArrayList(items)) }
+    }
+
     override fun removeItem(item: Channel) {
         AsyncTask.execute { db.channelDao.delete(item) }
     }
@@ -4,12 +4,16 @@ import android.os.AsyncTask
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.domain.entity.ChannelTag
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class ChannelTagData(private val db: AppRoomDatabase) : DataSourceInterface<ChannelTag> {
+class ChannelTagData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<ChannelTag> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     val liveDataSelectedItemIds: LiveData<List<Int>?>
         get() = db.channelTagDao.loadAllSelectedItemIds()
@@ -39,6 +43,22 @@ class ChannelTagData(private val db: AppRoomDatabase) : DataSourceInterface<Chan
         AsyncTask.execute { db.channelTagDao.update(item) }
     }
 
+    /**
+     * Writes the given tags without their selection, which is
+     * only changed by the user and not by the server.
+     */
+    fun updateItems(items: List<ChannelTag>) {
+        val channelTags = ArrayList(items)
+        AsyncTask.execute {
+            db.runInTransaction {
+                for (tag in channelTags) {
+                    db.channelTagDao.updateServerData(tag.tagId, tag.connectionId, tag.tagName,
+                            tag.tagIndex, tag.tagIcon, tag.tagTitledIcon, tag.channelCount)
+                }
+            }
+        }
+    }
+
     override fun removeItem(item: ChannelTag) {
         AsyncTask.execute { db.channelTagDao.delete(item) }
     }
@@ -3,13 +3,17 @@ package org.tvheadend.tvhclient.domain.repository.data_source
 import android.os.AsyncTask
 import androidx.lifecycle.LiveData
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.domain.entity.Connection
 import org.tvheadend.tvhclient.domain.entity.ServerStatus
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class ConnectionData(private val db: AppRoomDatabase) : DataSourceInterface<Connection> {
+class ConnectionData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<Connection> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.main
 
     val activeItem: Connection
         get() {
@@ -30,25 +34,37 @@ class ConnectionData(private val db: AppRoomDatabase) : DataSourceInterface<Conn
         }
 
     override fun addItem(item: Connection) {
-        AsyncTask.execute {
-            if (item.isActive) {
+        if (item.isActive) {
+            // The content database is switched before the app is restarted
+            databaseProvider.activate {
                 db.connectionDao.disableActiveConnection()
+                insertItem(item)
             }
-            val newId = db.connectionDao.insert(item)
-            // Create a new server status row in the database
-            // that is linked to the newly added connection
-            val serverStatus = ServerStatus()
-            serverStatus.connectionId = newId.toInt()
-            db.serverStatusDao.insert(serverStatus)
+        } else {
+            AsyncTask.execute { insertItem(item) }
         }
     }
 
+    private fun insertItem(item: Connection): Int {
+        val newId = db.connectionDao.insert(item).toInt()
+        // Create a new server status row in the database
+        // that is linked to the newly added connection
+        val serverStatus = ServerStatus()
+        serverStatus.connectionId = newId
+        db.serverStatusDao.insert(serverStatus)
+        return newId
+    }
+
     override fun updateItem(item: Connection) {
-        AsyncTask.execute {
-            if (item.isActive) {
+        if (item.isActive) {
+            // The content database is switched before the app is restarted
+            databaseProvider.activate {
                 db.connectionDao.disableActiveConnection()
+                db.connectionDao.update(item)
+                item.id
             }
-            db.connectionDao.update(item)
+        } else {
+            AsyncTask.execute { db.connectionDao.update(item) }
         }
     }
 
@@ -56,6 +72,7 @@ class ConnectionData(private val db: AppRoomDatabase) : DataSourceInterface<Conn
         AsyncTask.execute {
             db.connectionDao.delete(item)
             db.serverStatusDao.deleteByConnectionId(item.id)
+            databaseProvider.delete(item.id)
         }
     }
 
@@ -5,18 +5,34 @@ import android.content.Context
 import android.os.AsyncTask
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
+import org.tvheadend.tvhclient.data.db.DatabaseTuning
 import org.tvheadend.tvhclient.ui.features.settings.DatabaseClearedCallback
 import timber.log.Timber
 import java.lang.ref.WeakReference
 
-class MiscData(private val db: AppRoomDatabase) {
+class MiscData(private val databaseProvider: DatabaseProvider) {
 
     fun clearDatabase(context: Context, callback: DatabaseClearedCallback) {
         MiscData.callback = WeakReference(callback)
-        ClearDatabaseTask(context, db).execute()
+        ClearDatabaseTask(context, databaseProvider.main, databaseProvider.content).execute()
     }
 
-    private class ClearDatabaseTask internal constructor(context: Context, private val db: AppRoomDatabase) : AsyncTask<Void, Void, Void>() {
+    fun analyzeDatabase() {
+        AsyncTask.execute { DatabaseTuning.analyze(databaseProvider.content) }
+    }
+
+    /**
+     * Removes the programs that have ended before the given time and returns
+     * the free pages to the file system. This must be called from a background thread.
+     */
+    fun maintainDatabase(time: Long) {
+        val db = databaseProvider.content
+        db.programDao.deleteProgramsByTime(time)
+        DatabaseTuning.vacuum(db)
+    }
+
+    private class ClearDatabaseTask internal constructor(context: Context, private val db: AppRoomDatabase, private val contentDb: AppRoomDatabase) : AsyncTask<Void, Void, Void>() {
         private val dialog: ProgressDialog = ProgressDialog(context)
         private val msg: String = context.getString(R.string.deleting_database_contents)
 
@@ -29,13 +45,13 @@ class MiscData(private val db: AppRoomDatabase) {
         override fun doInBackground(vararg voids: Void): Void? {
             Timber.d("Deleting database contents...")
 
-            db.channelDao.deleteAll()
-            db.channelTagDao.deleteAll()
-            db.tagAndChannelDao.deleteAll()
-            db.programDao.deleteAll()
-            db.recordingDao.deleteAll()
-            db.seriesRecordingDao.deleteAll()
-            db.timerRecordingDao.deleteAll()
+            contentDb.channelDao.deleteAll()
+            contentDb.channelTagDao.deleteAll()
+            contentDb.tagAndChannelDao.deleteAll()
+            contentDb.programDao.deleteAll()
+            contentDb.recordingDao.deleteAll()
+            contentDb.seriesRecordingDao.deleteAll()
+            contentDb.timerRecordingDao.deleteAll()
             db.serverProfileDao.deleteAll()
 
             // Clear all assigned profiles
@@ -46,6 +62,7 @@ class MiscData(private val db: AppRoomDatabase) {
 
                 val serverStatus = db.serverStatusDao.loadServerStatusByIdSync(connection.id)
                 serverStatus.htspPlaybackServerProfileId = 0
+                serverStatus.playbackTranscodingProfileId = 0
                 serverStatus.httpPlaybackServerProfileId = 0
                 serverStatus.castingServerProfileId = 0
                 serverStatus.recordingServerProfileId = 0
@@ -2,14 +2,25 @@ package org.tvheadend.tvhclient.domain.repository.data_source
 
 import android.os.AsyncTask
 import androidx.lifecycle.LiveData
+import androidx.paging.LivePagedListBuilder
+import androidx.paging.PagedList
+import org.tvheadend.tvhclient.data.dao.ProgramDao
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
+import org.tvheadend.tvhclient.data.paging.KeysetDataSource
+import org.tvheadend.tvhclient.data.paging.KeysetQuery
+import org.tvheadend.tvhclient.data.paging.ListKey
 import org.tvheadend.tvhclient.domain.entity.EpgProgram
 import org.tvheadend.tvhclient.domain.entity.Program
+import org.tvheadend.tvhclient.domain.entity.toSearchText
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class ProgramData(private val db: AppRoomDatabase) : DataSourceInterface<Program> {
+class ProgramData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<Program> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     val itemCount: Int
         get() {
@@ -48,6 +59,32 @@ class ProgramData(private val db: AppRoomDatabase) : DataSourceInterface<Program
         AsyncTask.execute { db.programDao.deleteById(id) }
     }
 
+    /**
+     * Writes the given changes in a single transaction so that
+     * the queries that observe the programs are run only once.
+     * The given callback is invoked when the transaction has ended.
+     */
+    fun applyChanges(addedItems: List<Program>, updatedItems: List<Program>, removedIds: List<Int>, onApplied: () -> Unit) {
+        AsyncTask.execute {
+            try {
+                db.runInTransaction {
+                    // Keep below the maximum number of arguments of a statement
+                    for (ids in removedIds.chunked(500)) {
+                        db.programDao.deleteByIds(ids)
+                    }
+                    if (addedItems.isNotEmpty()) {
+                        db.programDao.insert(addedItems)
+                    }
+                    if (updatedItems.isNotEmpty()) {
+                        db.programDao.update(updatedItems)
+                    }
+                }
+            } finally {
+                onApplied()
+            }
+        }
+    }
+
     override fun getLiveDataItemCount(): LiveData<Int> {
         return db.programDao.itemCount
     }
@@ -85,12 +122,44 @@ class ProgramData(private val db: AppRoomDatabase) : DataSourceInterface<Program
         return programs
     }
 
-    fun getLiveDataItemsFromTime(time: Long): LiveData<List<Program>> {
-        return db.programDao.loadProgramsFromTime(time)
-    }
-
-    fun getLiveDataItemByChannelIdAndTime(channelId: Int, time: Long): LiveData<List<Program>> {
-        return db.programDao.loadProgramsFromChannelFromTime(channelId, time)
+    /**
+     * Returns the query for the program list. The list contains all programs
+     * that have not ended at the given time. A channel id of zero includes the
+     * programs of all channels. An empty search query includes all titles.
+     */
+    fun getListQuery(channelId: Int, time: Long, searchQuery: String): KeysetQuery {
+        val where = StringBuilder(ProgramDao.CONNECTION_IS_ACTIVE)
+                .append(" AND ((p.start >= ?) OR (p.start <= ? AND p.stop >= ?)) ")
+        val args = arrayListOf<Any>(time, time, time)
+        if (channelId > 0) {
+            where.append(" AND p.channel_id = ? ")
+            args.add(channelId)
+        }
+        if (searchQuery.isNotEmpty()) {
+            where.append(" AND p.search_title LIKE ? ESCAPE '\\' ")
+            args.add(KeysetQuery.containsPattern(toSearchText(searchQuery)))
+        }
+        return KeysetQuery(ProgramDao.PROGRAM_LIST_BASE_QUERY, where.toString(), args.toTypedArray(),
+                startColumn = "p.start", idColumn = "p.id", groupBy = "GROUP BY p.id",
+                tables = arrayOf("programs", "channels", "connections"))
+    }
+
+    /**
+     * Returns the paged list of the programs from the given query. Each loaded
+     * program is converted with the given mapper on the thread that loads the
+     * page, so that the list items can be prepared outside of the main thread.
+     */
+    fun <T> getLiveDataPagedItems(query: KeysetQuery, mapper: (Program) -> T, boundaryCallback: PagedList.BoundaryCallback<T>?): LiveData<PagedList<T>> {
+        val factory = KeysetDataSource.Factory(db, query,
+                { db.programDao.loadProgramListSync(it) },
+                { ListKey(it.start, it.eventId) })
+        return LivePagedListBuilder(factory.map { mapper(it) }, KeysetDataSource.LIST_CONFIG)
+                .setBoundaryCallback(boundaryCallback)
+                .build()
+    }
+
+    fun getLiveDataItemCount(query: KeysetQuery): LiveData<Int> {
+        return db.programDao.loadProgramListCount(query.count())
     }
 
     fun getItemByChannelIdAndBetweenTime(channelId: Int, startTime: Long, endTime: Long): List<EpgProgram> {
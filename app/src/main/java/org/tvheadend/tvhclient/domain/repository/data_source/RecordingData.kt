@@ -3,13 +3,24 @@ package org.tvheadend.tvhclient.domain.repository.data_source
 import android.os.AsyncTask
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
+import androidx.paging.LivePagedListBuilder
+import androidx.paging.PagedList
+import org.tvheadend.tvhclient.data.dao.RecordingDao
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
+import org.tvheadend.tvhclient.data.paging.KeysetDataSource
+import org.tvheadend.tvhclient.data.paging.KeysetQuery
+import org.tvheadend.tvhclient.data.paging.ListKey
 import org.tvheadend.tvhclient.domain.entity.Recording
+import org.tvheadend.tvhclient.domain.entity.toSearchText
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recording> {
+class RecordingData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<Recording> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     val itemCount: Int
         get() {
@@ -36,6 +47,10 @@ class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recor
         AsyncTask.execute { db.recordingDao.update(item) }
     }
 
+    fun updateItems(items: List<Recording>) {
+        AsyncTask.execute { db.recordingDao.update(ArrayList(items)) }
+    }
+
     override fun removeItem(item: Recording) {
         AsyncTask.execute { db.recordingDao.delete(item) }
     }
@@ -44,6 +59,18 @@ class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recor
         AsyncTask.execute { db.recordingDao.deleteAll() }
     }
 
+    /**
+     * Replaces the stored recordings of the given connection with the given ones.
+     * Only the differences are written to the database in a single transaction.
+     */
+    fun reconcileItems(connectionId: Int, items: List<Recording>) {
+        val recordings = ArrayList(items)
+        AsyncTask.execute {
+            val changes = db.recordingDao.reconcile(connectionId, recordings)
+            Timber.d("Reconciled ${recordings.size} recordings with $changes changes")
+        }
+    }
+
     override fun getLiveDataItemCount(): LiveData<Int> {
         return MutableLiveData()
     }
@@ -60,6 +87,19 @@ class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recor
         return db.recordingDao.loadAllRecordingsByChannelId(channelId)
     }
 
+    /**
+     * Returns the recordings with only the values that are required to show
+     * their state in the channel, program and program guide lists. The full
+     * recording shall be loaded by its id when it is shown or edited.
+     */
+    fun getLiveDataItemStates(): LiveData<List<Recording>> {
+        return db.recordingDao.loadAllRecordingStates()
+    }
+
+    fun getLiveDataItemStatesByChannelId(channelId: Int): LiveData<List<Recording>> {
+        return db.recordingDao.loadAllRecordingStatesByChannelId(channelId)
+    }
+
     fun getLiveDataItemsByType(type: String): LiveData<List<Recording>> {
         return when (type) {
             "completed" -> db.recordingDao.loadAllCompletedRecordings()
@@ -80,6 +120,62 @@ class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recor
         }
     }
 
+    /**
+     * Returns the query for the list of recordings of the given type. Completed,
+     * failed and removed recordings are shown with the newest one first.
+     */
+    fun getListQuery(type: String, searchQuery: String, hideDuplicates: Boolean): KeysetQuery {
+        val where = StringBuilder(RecordingDao.CONNECTION_IS_ACTIVE)
+        when (type) {
+            "completed" -> where.append(" AND ").append(RecordingDao.COMPLETED_FILTER)
+            "scheduled" -> where.append(" AND ").append(RecordingDao.SCHEDULED_FILTER)
+            "failed" -> where.append(" AND ").append(RecordingDao.FAILED_FILTER)
+            "removed" -> where.append(" AND ").append(RecordingDao.REMOVED_FILTER)
+        }
+        val args = ArrayList<Any>()
+        if (hideDuplicates) {
+            where.append(" AND rec.duplicate = 0 ")
+        }
+        if (searchQuery.isNotEmpty()) {
+            where.append(" AND (rec.search_title LIKE ? ESCAPE '\\' OR rec.search_subtitle LIKE ? ESCAPE '\\') ")
+            val pattern = KeysetQuery.containsPattern(toSearchText(searchQuery))
+            args.add(pattern)
+            args.add(pattern)
+        }
+        return KeysetQuery(RecordingDao.RECORDING_LIST_BASE_QUERY, where.toString(), args.toTypedArray(),
+                startColumn = "rec.start", idColumn = "rec.id", ascending = type == "scheduled",
+                tables = arrayOf("recordings", "channels", "connections"))
+    }
+
+    /**
+     * Returns the paged list of the recordings from the given query. Each loaded
+     * recording is converted with the given mapper on the thread that loads the
+     * page, so that the list items can be prepared outside of the main thread.
+     */
+    fun <T> getLiveDataPagedItems(query: KeysetQuery, mapper: (Recording) -> T): LiveData<PagedList<T>> {
+        val factory = KeysetDataSource.Factory(db, query,
+                { db.recordingDao.loadRecordingListSync(it) },
+                { ListKey(it.start, it.id) })
+        return LivePagedListBuilder(factory.map { mapper(it) }, KeysetDataSource.LIST_CONFIG).build()
+    }
+
+    fun getLiveDataItemCount(query: KeysetQuery): LiveData<Int> {
+        return db.recordingDao.loadRecordingListCount(query.count())
+    }
+
+    fun getItems(query: KeysetQuery): List<Recording> {
+        val recordings = ArrayList<Recording>()
+        try {
+            recordings.addAll(RecordingListTask(db, query).execute().get())
+        } catch (e: InterruptedException) {
+            Timber.d(e, "Loading recordings task got interrupted")
+        } catch (e: ExecutionException) {
+            Timber.d(e, "Loading recordings task aborted")
+        }
+
+        return recordings
+    }
+
     override fun getItemById(id: Any): Recording? {
         try {
             return RecordingByIdTask(db, id as Int, LOAD_BY_ID).execute().get()
@@ -93,7 +189,16 @@ class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recor
     }
 
     override fun getItems(): List<Recording> {
-        return ArrayList()
+        val recordings = ArrayList<Recording>()
+        try {
+            recordings.addAll(RecordingListTask(db, null).execute().get())
+        } catch (e: InterruptedException) {
+            Timber.d(e, "Loading all recordings task got interrupted")
+        } catch (e: ExecutionException) {
+            Timber.d(e, "Loading all recordings task aborted")
+        }
+
+        return recordings
     }
 
     fun getItemByEventId(id: Int): Recording? {
@@ -119,6 +224,17 @@ class RecordingData(private val db: AppRoomDatabase) : DataSourceInterface<Recor
         }
     }
 
+    private class RecordingListTask internal constructor(private val db: AppRoomDatabase, private val query: KeysetQuery?) : AsyncTask<Void, Void, List<Recording>>() {
+
+        override fun doInBackground(vararg voids: Void): List<Recording> {
+            return if (query != null) {
+                db.recordingDao.loadRecordingListSync(query.all())
+            } else {
+                db.recordingDao.loadAllRecordingsSync()
+            }
+        }
+    }
+
     private class RecordingCountTask internal constructor(private val db: AppRoomDatabase) : AsyncTask<Void, Void, Int>() {
 
         override fun doInBackground(vararg voids: Void): Int? {
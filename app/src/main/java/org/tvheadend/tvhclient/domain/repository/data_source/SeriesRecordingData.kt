@@ -3,12 +3,16 @@ package org.tvheadend.tvhclient.domain.repository.data_source
 import android.os.AsyncTask
 import androidx.lifecycle.LiveData
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.domain.entity.SeriesRecording
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class SeriesRecordingData(private val db: AppRoomDatabase) : DataSourceInterface<SeriesRecording> {
+class SeriesRecordingData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<SeriesRecording> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     override fun addItem(item: SeriesRecording) {
         AsyncTask.execute { db.seriesRecordingDao.insert(item) }
@@ -18,6 +22,10 @@ class SeriesRecordingData(private val db: AppRoomDatabase) : DataSourceInterface
         AsyncTask.execute { db.seriesRecordingDao.update(item) }
     }
 
+    fun updateItems(items: List<SeriesRecording>) {
+        AsyncTask.execute { db.seriesRecordingDao.update(ArrayList(items)) }
+    }
+
     override fun removeItem(item: SeriesRecording) {
         AsyncTask.execute { db.seriesRecordingDao.delete(item) }
     }
@@ -48,7 +56,23 @@ class SeriesRecordingData(private val db: AppRoomDatabase) : DataSourceInterface
     }
 
     override fun getItems(): List<SeriesRecording> {
-        return ArrayList()
+        val recordings = ArrayList<SeriesRecording>()
+        try {
+            recordings.addAll(SeriesRecordingListTask(db).execute().get())
+        } catch (e: InterruptedException) {
+            Timber.d(e, "Loading all series recordings task got interrupted")
+        } catch (e: ExecutionException) {
+            Timber.d(e, "Loading all series recordings task aborted")
+        }
+
+        return recordings
+    }
+
+    private class SeriesRecordingListTask internal constructor(private val db: AppRoomDatabase) : AsyncTask<Void, Void, List<SeriesRecording>>() {
+
+        override fun doInBackground(vararg voids: Void): List<SeriesRecording> {
+            return db.seriesRecordingDao.loadAllRecordingsSync()
+        }
     }
 
     private class SeriesRecordingByIdTask internal constructor(private val db: AppRoomDatabase, private val id: String) : AsyncTask<Void, Void, SeriesRecording>() {
@@ -1,13 +1,19 @@
 package org.tvheadend.tvhclient.domain.repository.data_source
 
 import android.os.AsyncTask
+import android.util.SparseArray
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.domain.entity.TagAndChannel
+import timber.log.Timber
 import java.util.*
 
-class TagAndChannelData(private val db: AppRoomDatabase) : DataSourceInterface<TagAndChannel> {
+class TagAndChannelData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<TagAndChannel> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     override fun addItem(item: TagAndChannel) {
         AsyncTask.execute { db.tagAndChannelDao.insert(item) }
@@ -29,6 +35,30 @@ class TagAndChannelData(private val db: AppRoomDatabase) : DataSourceInterface<T
         }
     }
 
+    /**
+     * Updates the stored relations so that they match the channel members of
+     * the given tags. Only the relations that have changed are written.
+     *
+     * @param connectionId    Id of the connection the tags belong to
+     * @param members         Sorted channel ids of the tags by tag id
+     * @param removeOtherTags Removes the relations of all other tags. This shall
+     *                        only be set when the members of all tags are given.
+     */
+    fun updateMembers(connectionId: Int, members: SparseArray<IntArray>, removeOtherTags: Boolean) {
+        AsyncTask.execute {
+            val existingRelations = if (members.size() == 1 && !removeOtherTags) {
+                db.tagAndChannelDao.loadAllTagAndChannelsByTagIdSync(connectionId, members.keyAt(0))
+            } else {
+                db.tagAndChannelDao.loadAllTagAndChannelsSync(connectionId)
+            }
+            val delta = TagMembershipDelta(connectionId, existingRelations, members, removeOtherTags)
+            Timber.d("Removing ${delta.removedRelations.size} and adding ${delta.addedRelations.size} tag and channel relations")
+            if (delta.addedRelations.isNotEmpty() || delta.removedRelations.isNotEmpty()) {
+                db.tagAndChannelDao.insertAndDelete(delta.addedRelations, delta.removedRelations)
+            }
+        }
+    }
+
     override fun getLiveDataItemCount(): LiveData<Int> {
         return MutableLiveData()
     }
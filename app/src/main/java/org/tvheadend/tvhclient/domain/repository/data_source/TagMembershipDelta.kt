@@ -0,0 +1,97 @@
+package org.tvheadend.tvhclient.domain.repository.data_source
+
+import android.util.SparseArray
+import android.util.SparseBooleanArray
+import org.tvheadend.tvhclient.domain.entity.TagAndChannel
+
+/**
+ * Computes the tag and channel relations that must be added and removed so
+ * that the stored relations match the channel members of the received tags.
+ * The members of each tag are kept in sorted int arrays, so the changes of
+ * all tags are found in a single pass over the stored and received members.
+ *
+ * @param connectionId      Id of the connection the relations belong to
+ * @param existingRelations Stored relations, sorted by tag id and channel id
+ * @param receivedMembers   Sorted channel ids of the received tags by tag id
+ * @param removeOtherTags   Removes the relations of the tags that were not received.
+ *                          This is only correct when all tags were received.
+ */
+class TagMembershipDelta(private val connectionId: Int,
+                         existingRelations: List<TagAndChannel>,
+                         receivedMembers: SparseArray<IntArray>,
+                         removeOtherTags: Boolean) {
+
+    val addedRelations = ArrayList<TagAndChannel>()
+    val removedRelations = ArrayList<TagAndChannel>()
+
+    init {
+        val handledTagIds = SparseBooleanArray()
+
+        // The relations are sorted by the tag id, so the relations
+        // of each tag follow each other in the list
+        var start = 0
+        while (start < existingRelations.size) {
+            val tagId = existingRelations[start].tagId
+            var end = start + 1
+            while (end < existingRelations.size && existingRelations[end].tagId == tagId) {
+                end++
+            }
+            val members = receivedMembers.get(tagId)
+            if (members != null) {
+                compareMembers(tagId, existingRelations.subList(start, end), members)
+                handledTagIds.put(tagId, true)
+            } else if (removeOtherTags) {
+                removedRelations.addAll(existingRelations.subList(start, end))
+            }
+            start = end
+        }
+
+        // Add all members of the tags that had no stored relations yet
+        for (i in 0 until receivedMembers.size()) {
+            val tagId = receivedMembers.keyAt(i)
+            if (!handledTagIds.get(tagId)) {
+                for (channelId in receivedMembers.valueAt(i)) {
+                    addedRelations.add(TagAndChannel(tagId, channelId, connectionId))
+                }
+            }
+        }
+    }
+
+    private fun compareMembers(tagId: Int, existing: List<TagAndChannel>, members: IntArray) {
+        var i = 0
+        var j = 0
+        while (i < existing.size || j < members.size) {
+            when {
+                j >= members.size || (i < existing.size && existing[i].channelId < members[j]) ->
+                    removedRelations.add(existing[i++])
+                i >= existing.size || members[j] < existing[i].channelId ->
+                    addedRelations.add(TagAndChannel(tagId, members[j++], connectionId))
+                else -> {
+                    i++
+                    j++
+                }
+            }
+        }
+    }
+
+    companion object {
+
+        /**
+         * Returns the given ids as a sorted array without duplicates
+         */
+        fun toSortedIds(ids: Collection<Int>?): IntArray {
+            if (ids == null || ids.isEmpty()) {
+                return IntArray(0)
+            }
+            val sortedIds = ids.toIntArray()
+            sortedIds.sort()
+            var count = 1
+            for (i in 1 until sortedIds.size) {
+                if (sortedIds[i] != sortedIds[count - 1]) {
+                    sortedIds[count++] = sortedIds[i]
+                }
+            }
+            return if (count == sortedIds.size) sortedIds else sortedIds.copyOf(count)
+        }
+    }
+}
@@ -3,12 +3,16 @@ package org.tvheadend.tvhclient.domain.repository.data_source
 import android.os.AsyncTask
 import androidx.lifecycle.LiveData
 import org.tvheadend.tvhclient.data.db.AppRoomDatabase
+import org.tvheadend.tvhclient.data.db.DatabaseProvider
 import org.tvheadend.tvhclient.domain.entity.TimerRecording
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.ExecutionException
 
-class TimerRecordingData(private val db: AppRoomDatabase) : DataSourceInterface<TimerRecording> {
+class TimerRecordingData(private val databaseProvider: DatabaseProvider) : DataSourceInterface<TimerRecording> {
+
+    private val db: AppRoomDatabase
+        get() = databaseProvider.content
 
     override fun addItem(item: TimerRecording) {
         AsyncTask.execute { db.timerRecordingDao.insert(item) }
@@ -18,6 +22,10 @@ class TimerRecordingData(private val db: AppRoomDatabase) : DataSourceInterface<
         AsyncTask.execute { db.timerRecordingDao.update(item) }
     }
 
+    fun updateItems(items: List<TimerRecording>) {
+        AsyncTask.execute { db.timerRecordingDao.update(ArrayList(items)) }
+    }
+
     override fun removeItem(item: TimerRecording) {
         AsyncTask.execute { db.timerRecordingDao.delete(item) }
     }
@@ -48,7 +56,23 @@ class TimerRecordingData(private val db: AppRoomDatabase) : DataSourceInterface<
     }
 
     override fun getItems(): List<TimerRecording> {
-        return ArrayList()
+        val recordings = ArrayList<TimerRecording>()
+        try {
+            recordings.addAll(TimerRecordingListTask(db).execute().get())
+        } catch (e: InterruptedException) {
+            Timber.d(e, "Loading all timer recordings task got interrupted")
+        } catch (e: ExecutionException) {
+            Timber.d(e, "Loading all timer recordings task aborted")
+        }
+
+        return recordings
+    }
+
+    private class TimerRecordingListTask internal constructor(private val db: AppRoomDatabase) : AsyncTask<Void, Void, List<TimerRecording>>() {
+
+        override fun doInBackground(vararg voids: Void): List<TimerRecording> {
+            return db.timerRecordingDao.loadAllRecordingsSync()
+        }
     }
 
     private class TimerRecordingByIdTask internal constructor(private val db: AppRoomDatabase, private val id: String) : AsyncTask<Void, Void, TimerRecording>() {
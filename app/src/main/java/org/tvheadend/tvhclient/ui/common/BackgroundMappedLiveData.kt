@@ -0,0 +1,30 @@
+package org.tvheadend.tvhclient.ui.common
+
+import androidx.lifecycle.LiveData
+import androidx.lifecycle.MediatorLiveData
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Converts every value of the given source with the mapper on the given executor
+ * and posts the result. When the source changes while a value is still being
+ * converted, the outdated result is dropped so that only the latest one is shown.
+ */
+class BackgroundMappedLiveData<X, Y>(source: LiveData<X>,
+                                     private val executor: Executor,
+                                     private val mapper: (X) -> Y) : MediatorLiveData<Y>() {
+
+    private val generation = AtomicInteger()
+
+    init {
+        addSource(source) { value ->
+            val current = generation.incrementAndGet()
+            executor.execute {
+                val result = mapper(value)
+                if (current == generation.get()) {
+                    postValue(result)
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.tvheadend.tvhclient.ui.common
 
+import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.Color
 import android.graphics.drawable.Drawable
@@ -58,48 +59,62 @@ fun setLayoutWidth(view: View, width: Int) {
 
 @BindingAdapter("seriesInfoText")
 fun setSeriesInfoText(view: TextView, program: Program?) {
-    val context = view.context
+    val seriesInfo = if (program != null) getSeriesInfoText(view.context, program) else ""
+    view.visibility = if (seriesInfo.isEmpty()) View.GONE else View.VISIBLE
+    view.text = seriesInfo
+}
+
+/**
+ * Returns the season, episode and part information of the given program
+ * or an empty string if the program contains no such information
+ */
+fun getSeriesInfoText(context: Context, program: Program): String {
     val season = context.resources.getString(R.string.season)
     val episode = context.resources.getString(R.string.episode)
     val part = context.resources.getString(R.string.part)
 
     var seriesInfo = ""
-    if (program != null) {
-        if (!program.episodeOnscreen.isNullOrEmpty()) {
-            seriesInfo = program.episodeOnscreen ?: ""
-        } else {
-            if (program.seasonNumber > 0) {
-                seriesInfo += String.format(Locale.getDefault(), "%s %02d",
-                        season.toLowerCase(Locale.getDefault()), program.seasonNumber)
-            }
-            if (program.episodeNumber > 0) {
-                if (seriesInfo.isNotEmpty()) {
-                    seriesInfo += ", "
-                }
-                seriesInfo += String.format(Locale.getDefault(), "%s %02d",
-                        episode.toLowerCase(Locale.getDefault()), program.episodeNumber)
-            }
-            if (program.partNumber > 0) {
-                if (seriesInfo.isNotEmpty()) {
-                    seriesInfo += ", "
-                }
-                seriesInfo += String.format(Locale.getDefault(), "%s %d",
-                        part.toLowerCase(Locale.getDefault()), program.partNumber)
+    if (!program.episodeOnscreen.isNullOrEmpty()) {
+        seriesInfo = program.episodeOnscreen ?: ""
+    } else {
+        if (program.seasonNumber > 0) {
+            seriesInfo += String.format(Locale.getDefault(), "%s %02d",
+                    season.toLowerCase(Locale.getDefault()), program.seasonNumber)
+        }
+        if (program.episodeNumber > 0) {
+            if (seriesInfo.isNotEmpty()) {
+                seriesInfo += ", "
             }
+            seriesInfo += String.format(Locale.getDefault(), "%s %02d",
+                    episode.toLowerCase(Locale.getDefault()), program.episodeNumber)
+        }
+        if (program.partNumber > 0) {
             if (seriesInfo.isNotEmpty()) {
-                seriesInfo = seriesInfo.substring(0, 1).toUpperCase(
-                        Locale.getDefault()) + seriesInfo.substring(1)
+                seriesInfo += ", "
             }
+            seriesInfo += String.format(Locale.getDefault(), "%s %d",
+                    part.toLowerCase(Locale.getDefault()), program.partNumber)
+        }
+        if (seriesInfo.isNotEmpty()) {
+            seriesInfo = seriesInfo.substring(0, 1).toUpperCase(
+                    Locale.getDefault()) + seriesInfo.substring(1)
         }
     }
-    view.visibility = if (seriesInfo.isNullOrEmpty()) View.GONE else View.VISIBLE
-    view.text = seriesInfo
+    return seriesInfo
 }
 
 @BindingAdapter("contentTypeText")
 fun setContentTypeText(view: TextView, contentType: Int) {
+    val contentTypeText = getContentTypeNames(view.context).get(contentType, view.context.getString(R.string.no_data))
+    view.visibility = if (contentTypeText.isEmpty()) View.GONE else View.VISIBLE
+    view.text = contentTypeText
+}
+
+/**
+ * Returns the names of all DVB content types. The key is the content type value.
+ */
+fun getContentTypeNames(context: Context): SparseArray<String> {
     val ret = SparseArray<String>()
-    val context = view.context
 
     var s = context.resources.getStringArray(R.array.pr_content_type0)
     for (i in s.indices) {
@@ -149,9 +164,7 @@ fun setContentTypeText(view: TextView, contentType: Int) {
     for (i in s.indices) {
         ret.append(0xb0 + i, s[i])
     }
-    val contentTypeText = ret.get(contentType, context.getString(R.string.no_data))
-    view.visibility = if (contentTypeText.isEmpty()) View.GONE else View.VISIBLE
-    view.text = contentTypeText
+    return ret
 }
 
 @BindingAdapter("priorityText")
@@ -500,22 +513,29 @@ fun getDaysOfWeekText(view: TextView, daysOfWeek: Long) {
  */
 @BindingAdapter("timeText")
 fun setLocalizedTime(view: TextView, time: Long) {
+    view.text = getLocalizedTime(view.context, time)
+}
+
+/**
+ * Converts the given time in milliseconds into a default readable time
+ * format, or if set by the preferences, into a localized time format
+ */
+fun getLocalizedTime(context: Context, time: Long): String {
     if (time < 0) {
-        view.text = view.context.getString(R.string.any)
-        return
+        return context.getString(R.string.any)
     }
 
     var localizedTime = ""
 
-    val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(view.context)
-    if (sharedPreferences.getBoolean("localized_date_time_format_enabled", view.context.resources.getBoolean(R.bool.pref_default_localized_date_time_format_enabled))) {
+    val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context)
+    if (sharedPreferences.getBoolean("localized_date_time_format_enabled", context.resources.getBoolean(R.bool.pref_default_localized_date_time_format_enabled))) {
         // Show the date as defined with the currently active locale.
         // For the date display the short version will be used
         val locale: Locale?
         if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-            locale = view.context.resources.configuration.locales.get(0)
+            locale = context.resources.configuration.locales.get(0)
         } else {
-            locale = view.context.resources.configuration.locale
+            locale = context.resources.configuration.locale
         }
         if (locale != null) {
             val df = java.text.DateFormat.getTimeInstance(java.text.DateFormat.SHORT, locale)
@@ -526,18 +546,24 @@ fun setLocalizedTime(view: TextView, time: Long) {
         val sdf = SimpleDateFormat("HH:mm", Locale.US)
         localizedTime = sdf.format(time)
     }
-    view.text = localizedTime
+    return localizedTime
 }
 
 @BindingAdapter("dateText")
 fun setLocalizedDate(view: TextView, date: Long) {
+    view.text = getLocalizedDate(view.context, date)
+}
+
+/**
+ * Converts the given date in milliseconds into a relative day name like
+ * today or tomorrow, a week day name or into the default or localized date
+ */
+fun getLocalizedDate(context: Context, date: Long): String {
     if (date < 0) {
-        view.text = view.context.getString(R.string.any)
-        return
+        return context.getString(R.string.any)
     }
 
     var localizedDate = ""
-    val context = view.context
 
     if (DateUtils.isToday(date)) {
         // Show the string today
@@ -592,7 +618,7 @@ fun setLocalizedDate(view: TextView, date: Long) {
             }
         }
     }
-    view.text = localizedDate
+    return localizedDate
 }
 
 /**
@@ -606,38 +632,20 @@ fun setLocalizedDate(view: TextView, date: Long) {
  */
 @BindingAdapter("genreColor", "showGenreColor", "genreColorAlphaOffset")
 fun setGenreColor(view: TextView, contentType: Int, showGenreColors: Boolean, offset: Int) {
-    val context = view.context
-    val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context)
+    setGenreColor(view, getGenreColor(view.context, contentType, offset), showGenreColors)
+}
 
+/**
+ * Sets the given genre color that was already calculated from the
+ * content type as the background color of the given view
+ *
+ * @param view            The view that displays the genre color as a background
+ * @param color           The genre color
+ * @param showGenreColors True to show the color, false otherwise
+ */
+@BindingAdapter("genreBackgroundColor", "showGenreColor")
+fun setGenreColor(view: TextView, color: Int, showGenreColors: Boolean) {
     if (showGenreColors) {
-        var color = context.resources.getColor(android.R.color.transparent)
-        if (contentType >= 0) {
-            // Get the genre color from the content type
-            color = R.color.EPG_OTHER
-            val type = contentType / 16
-            when (type) {
-                0 -> color = context.resources.getColor(R.color.EPG_MOVIES)
-                1 -> color = context.resources.getColor(R.color.EPG_NEWS)
-                2 -> color = context.resources.getColor(R.color.EPG_SHOWS)
-                3 -> color = context.resources.getColor(R.color.EPG_SPORTS)
-                4 -> color = context.resources.getColor(R.color.EPG_CHILD)
-                5 -> color = context.resources.getColor(R.color.EPG_MUSIC)
-                6 -> color = context.resources.getColor(R.color.EPG_ARTS)
-                7 -> color = context.resources.getColor(R.color.EPG_SOCIAL)
-                8 -> color = context.resources.getColor(R.color.EPG_SCIENCE)
-                9 -> color = context.resources.getColor(R.color.EPG_HOBBY)
-                10 -> color = context.resources.getColor(R.color.EPG_SPECIAL)
-            }
-
-            // Get the color with the desired alpha value
-            val transparencyValue = sharedPreferences.getInt("genre_color_transparency", Integer.valueOf(view.context.resources.getString(R.string.pref_default_genre_color_transparency)))
-            var alpha = ((transparencyValue - offset).toFloat() / 100.0f * 255.0f).toInt()
-            if (alpha < 0) {
-                alpha = 0
-            }
-            color = Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color))
-        }
-
         view.setBackgroundColor(color)
         view.visibility = View.VISIBLE
     } else {
@@ -645,3 +653,41 @@ fun setGenreColor(view: TextView, contentType: Int, showGenreColors: Boolean, of
     }
 }
 
+/**
+ * Calculates the genre color from the given content type
+ *
+ * @param contentType The content type to calculate the color from
+ * @param offset      Positive offset from 0 to 100 to increase the transparency of the color
+ */
+fun getGenreColor(context: Context, contentType: Int, offset: Int): Int {
+    val sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context)
+
+    var color = context.resources.getColor(android.R.color.transparent)
+    if (contentType >= 0) {
+        // Get the genre color from the content type
+        color = R.color.EPG_OTHER
+        val type = contentType / 16
+        when (type) {
+            0 -> color = context.resources.getColor(R.color.EPG_MOVIES)
+            1 -> color = context.resources.getColor(R.color.EPG_NEWS)
+            2 -> color = context.resources.getColor(R.color.EPG_SHOWS)
+            3 -> color = context.resources.getColor(R.color.EPG_SPORTS)
+            4 -> color = context.resources.getColor(R.color.EPG_CHILD)
+            5 -> color = context.resources.getColor(R.color.EPG_MUSIC)
+            6 -> color = context.resources.getColor(R.color.EPG_ARTS)
+            7 -> color = context.resources.getColor(R.color.EPG_SOCIAL)
+            8 -> color = context.resources.getColor(R.color.EPG_SCIENCE)
+            9 -> color = context.resources.getColor(R.color.EPG_HOBBY)
+            10 -> color = context.resources.getColor(R.color.EPG_SPECIAL)
+        }
+
+        // Get the color with the desired alpha value
+        val transparencyValue = sharedPreferences.getInt("genre_color_transparency", Integer.valueOf(context.resources.getString(R.string.pref_default_genre_color_transparency)))
+        var alpha = ((transparencyValue - offset).toFloat() / 100.0f * 255.0f).toInt()
+        if (alpha < 0) {
+            alpha = 0
+        }
+        color = Color.argb(alpha, Color.red(color), Color.green(color), Color.blue(color))
+    }
+    return color
+}
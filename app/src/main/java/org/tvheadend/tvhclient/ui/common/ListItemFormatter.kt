@@ -0,0 +1,41 @@
+package org.tvheadend.tvhclient.ui.common
+
+import android.content.Context
+import android.util.SparseArray
+import org.tvheadend.tvhclient.R
+import org.tvheadend.tvhclient.domain.entity.Program
+
+/**
+ * Creates the texts and colors that are shown in the list items. It uses the
+ * same functions as the binding adapters so that the values can be prepared
+ * on a background thread before the lists are shown. The content type names
+ * are loaded from the resources only once.
+ *
+ * The application context shall be passed because the formatter is kept
+ * in the view models.
+ */
+class ListItemFormatter(private val context: Context) {
+
+    private val contentTypeNames: SparseArray<String> by lazy { getContentTypeNames(context) }
+    private val noData: String by lazy { context.getString(R.string.no_data) }
+
+    fun time(time: Long): String {
+        return getLocalizedTime(context, time)
+    }
+
+    fun date(date: Long): String {
+        return getLocalizedDate(context, date)
+    }
+
+    fun contentType(contentType: Int): String {
+        return contentTypeNames.get(contentType, noData)
+    }
+
+    fun seriesInfo(program: Program): String {
+        return getSeriesInfoText(context, program)
+    }
+
+    fun genreColor(contentType: Int, offset: Int = 0): Int {
+        return getGenreColor(context, contentType, offset)
+    }
+}
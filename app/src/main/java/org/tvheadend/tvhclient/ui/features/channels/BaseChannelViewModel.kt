@@ -37,7 +37,7 @@ open class BaseChannelViewModel(application: Application) : AndroidViewModel(app
 
         serverStatus = appRepository.serverStatusData.liveDataActiveItem
         channelTags = appRepository.channelTagData.getLiveDataItems()
-        allRecordings = appRepository.recordingData.getLiveDataItems()
+        allRecordings = appRepository.recordingData.getLiveDataItemStates()
         selectedChannelTagIds = appRepository.channelTagData.liveDataSelectedItemIds
 
         Timber.d("Loading time, sort order and channel tags ids from database")
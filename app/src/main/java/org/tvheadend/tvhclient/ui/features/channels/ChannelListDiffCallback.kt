@@ -1,23 +1,14 @@
 package org.tvheadend.tvhclient.ui.features.channels
 
 import androidx.recyclerview.widget.DiffUtil
-import org.tvheadend.tvhclient.domain.entity.Channel
 
-internal class ChannelListDiffCallback(private val oldList: List<Channel>, private val newList: List<Channel>) : DiffUtil.Callback() {
+internal class ChannelListDiffCallback : DiffUtil.ItemCallback<ChannelListItem>() {
 
-    override fun getOldListSize(): Int {
-        return oldList.size
+    override fun areItemsTheSame(oldItem: ChannelListItem, newItem: ChannelListItem): Boolean {
+        return newItem.channel.id == oldItem.channel.id
     }
 
-    override fun getNewListSize(): Int {
-        return newList.size
-    }
-
-    override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition].id == oldList[oldItemPosition].id
-    }
-
-    override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition] == oldList[oldItemPosition]
+    override fun areContentsTheSame(oldItem: ChannelListItem, newItem: ChannelListItem): Boolean {
+        return newItem == oldItem
     }
 }
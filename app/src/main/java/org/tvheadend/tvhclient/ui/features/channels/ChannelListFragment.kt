@@ -99,7 +99,7 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
         viewModel.channels.observe(viewLifecycleOwner, Observer { channels ->
             if (channels != null) {
                 Timber.d("View model returned ${channels.size} channels")
-                recyclerViewAdapter.addItems(channels.toMutableList())
+                recyclerViewAdapter.addItems(channels)
             }
 
             recycler_view?.visibility = View.VISIBLE
@@ -107,7 +107,7 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
 
             showChannelTagOrChannelCount()
 
-            if (isDualPane && recyclerViewAdapter.itemCount > 0) {
+            if (isDualPane && recyclerViewAdapter.getShownItemCount() > 0) {
                 showChannelDetails(selectedListPosition)
             }
         })
@@ -156,11 +156,11 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
             if (searchQuery.isEmpty()) {
                 toolbarInterface.setTitle(toolbarTitle)
                 toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items,
-                        recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                        recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             } else {
                 toolbarInterface.setTitle(getString(R.string.search_results))
                 toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.channels,
-                        recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                        recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             }
         }
     }
@@ -198,7 +198,7 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
         if (searchQuery.isEmpty()) {
             menu.findItem(R.id.menu_genre_color_info_channels)?.isVisible = showGenreColors
             menu.findItem(R.id.menu_timeframe)?.isVisible = isUnlocked
-            menu.findItem(R.id.menu_search)?.isVisible = recyclerViewAdapter.itemCount > 0
+            menu.findItem(R.id.menu_search)?.isVisible = recyclerViewAdapter.getShownItemCount() > 0
 
             // Prevent the channel tag menu item from going into the overlay menu
             if (showChannelTagMenu) {
@@ -260,7 +260,7 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
     private fun showChannelDetails(position: Int) {
         selectedListPosition = position
         recyclerViewAdapter.setPosition(position)
-        val channel = recyclerViewAdapter.getItem(position)
+        val channel = recyclerViewAdapter.getItem(position)?.channel
         if (channel == null || !isVisible
                 || !activity.lifecycle.currentState.isAtLeast(Lifecycle.State.STARTED)) {
             return
@@ -300,7 +300,7 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
     }
 
     private fun showPopupMenu(view: View, position: Int) {
-        val channel = recyclerViewAdapter.getItem(position)
+        val channel = recyclerViewAdapter.getItem(position)?.channel
         if (activity == null || channel == null) {
             return
         }
@@ -380,10 +380,10 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
 
         if ((view.id == R.id.icon || view.id == R.id.icon_text)
                 && Integer.valueOf(sharedPreferences.getString("channel_icon_action", resources.getString(R.string.pref_default_channel_icon_action))!!) > 0
-                && recyclerViewAdapter.itemCount > 0
+                && recyclerViewAdapter.getShownItemCount() > 0
                 && isNetworkAvailable) {
 
-            val channel = recyclerViewAdapter.getItem(position)
+            val channel = recyclerViewAdapter.getItem(position)?.channel
             channel?.let {
                 menuUtils.handleMenuPlayChannelIcon(it.id)
             }
@@ -400,7 +400,7 @@ class ChannelListFragment : BaseFragment(), RecyclerViewClickCallback, ChannelDi
     override fun onFilterComplete(count: Int) {
         showChannelTagOrChannelCount()
         // Show the first search result item in the details screen
-        if (isDualPane && recyclerViewAdapter.itemCount > 0) {
+        if (isDualPane && recyclerViewAdapter.getShownItemCount() > 0) {
             showChannelDetails(0)
         }
     }
@@ -0,0 +1,20 @@
+package org.tvheadend.tvhclient.ui.features.channels
+
+import org.tvheadend.tvhclient.domain.entity.Channel
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
+
+/**
+ * Contains the channel and the formatted times and the genre color of its
+ * current program. The item is created on a background thread when the
+ * channels were loaded so that binding the item only assigns the values.
+ */
+data class ChannelListItem(val channel: Channel,
+                           val programStartTime: String,
+                           val programStopTime: String,
+                           val genreColor: Int) {
+
+    constructor(channel: Channel, formatter: ListItemFormatter) : this(channel,
+            formatter.time(channel.programStart),
+            formatter.time(channel.programStop),
+            formatter.genreColor(channel.programContentType))
+}
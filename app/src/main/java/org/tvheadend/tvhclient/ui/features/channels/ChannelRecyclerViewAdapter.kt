@@ -1,28 +1,28 @@
 package org.tvheadend.tvhclient.ui.features.channels
 
 import android.preference.PreferenceManager
-import android.text.TextUtils
+import android.util.SparseArray
 import android.view.LayoutInflater
 import android.view.ViewGroup
 import android.widget.Filter
 import android.widget.Filterable
-import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.databinding.ChannelListAdapterBinding
-import org.tvheadend.tvhclient.domain.entity.Channel
 import org.tvheadend.tvhclient.domain.entity.Recording
 import org.tvheadend.tvhclient.ui.common.callbacks.RecyclerViewClickCallback
 
 import java.util.ArrayList
-import java.util.concurrent.CopyOnWriteArrayList
 
-class ChannelRecyclerViewAdapter internal constructor(private val isDualPane: Boolean, private val clickCallback: RecyclerViewClickCallback) : RecyclerView.Adapter<ChannelRecyclerViewAdapter.ChannelViewHolder>(), Filterable {
+class ChannelRecyclerViewAdapter internal constructor(private val isDualPane: Boolean, private val clickCallback: RecyclerViewClickCallback) : ListAdapter<ChannelListItem, ChannelRecyclerViewAdapter.ChannelViewHolder>(ChannelListDiffCallback()), Filterable {
 
-    private val recordingList = ArrayList<Recording>()
-    private val channelList = ArrayList<Channel>()
-    private var channelListFiltered: MutableList<Channel> = ArrayList()
+    private val recordings = SparseArray<Recording>()
+    // The list is only replaced and never changed, so it can be safely iterated during filtering
+    private var channelList: List<ChannelListItem> = ArrayList()
+    private var filterText = ""
+    private var shownItemCount = 0
     private var selectedPosition = 0
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ChannelViewHolder {
@@ -40,35 +40,38 @@ class ChannelRecyclerViewAdapter internal constructor(private val isDualPane: Bo
     }
 
     override fun onBindViewHolder(holder: ChannelViewHolder, position: Int) {
-        if (channelListFiltered.size > position) {
-            val channel = channelListFiltered[position]
-            holder.bind(channel, position, selectedPosition == position, clickCallback)
-        }
+        val item = super.getItem(position)
+        holder.bind(item, position, selectedPosition == position, clickCallback)
     }
 
     override fun onBindViewHolder(holder: ChannelViewHolder, position: Int, payloads: List<Any>) {
         onBindViewHolder(holder, position)
     }
 
-    internal fun addItems(newItems: MutableList<Channel>) {
-        updateRecordingState(newItems, recordingList)
-
-        val oldItems = ArrayList(channelListFiltered)
-        val diffResult = DiffUtil.calculateDiff(ChannelListDiffCallback(oldItems, newItems))
+    /**
+     * Shows the given channels. The differences to the currently shown
+     * channels are calculated on a background thread by the list adapter.
+     */
+    internal fun addItems(newItems: List<ChannelListItem>) {
+        channelList = newItems.map { withRecording(it) }
+        showItems(filter(channelList, filterText))
+    }
 
-        channelList.clear()
-        channelListFiltered.clear()
-        channelList.addAll(newItems)
-        channelListFiltered.addAll(newItems)
-        diffResult.dispatchUpdatesTo(this)
+    private fun showItems(items: List<ChannelListItem>) {
+        shownItemCount = items.size
+        submitList(items)
 
-        if (selectedPosition > channelListFiltered.size) {
+        if (selectedPosition > shownItemCount) {
             selectedPosition = 0
         }
     }
 
-    override fun getItemCount(): Int {
-        return channelListFiltered.size
+    /**
+     * Returns the number of channels that are shown after the
+     * last list update or filtering has been applied.
+     */
+    fun getShownItemCount(): Int {
+        return shownItemCount
     }
 
     override fun getItemViewType(position: Int): Int {
@@ -81,9 +84,9 @@ class ChannelRecyclerViewAdapter internal constructor(private val isDualPane: Bo
         notifyItemChanged(pos)
     }
 
-    fun getItem(position: Int): Channel? {
-        return if (channelListFiltered.size > position && position >= 0) {
-            channelListFiltered[position]
+    public override fun getItem(position: Int): ChannelListItem? {
+        return if (position in 0 until itemCount) {
+            super.getItem(position)
         } else {
             null
         }
@@ -92,81 +95,71 @@ class ChannelRecyclerViewAdapter internal constructor(private val isDualPane: Bo
     override fun getFilter(): Filter {
         return object : Filter() {
             override fun performFiltering(charSequence: CharSequence): Filter.FilterResults {
-                val charString = charSequence.toString()
-                if (charString.isEmpty()) {
-                    channelListFiltered = channelList
-                } else {
-                    val filteredList = ArrayList<Channel>()
-                    // Iterate over the available channels. Use a copy on write
-                    // array in case the channel list changes during filtering.
-                    for (channel in CopyOnWriteArrayList(channelList)) {
-                        // name match condition. this might differ depending on your requirement
-                        // here we are looking for a channel name match
-                        val name = channel.name ?: ""
-                        val programTitle = channel.programTitle ?: ""
-                        val programSubtitle = channel.programSubtitle ?: ""
-                        val nextProgramTitle = channel.nextProgramTitle ?: ""
-                        when {
-                            name.toLowerCase().contains(charString.toLowerCase()) -> filteredList.add(channel)
-                            programTitle.toLowerCase().contains(charString.toLowerCase()) -> filteredList.add(channel)
-                            programSubtitle.toLowerCase().contains(charString.toLowerCase()) -> filteredList.add(channel)
-                            nextProgramTitle.toLowerCase().contains(charString.toLowerCase()) -> filteredList.add(channel)
-                        }
-                    }
-                    channelListFiltered = filteredList
-                }
-
                 val filterResults = Filter.FilterResults()
-                filterResults.values = channelListFiltered
+                filterResults.values = filter(channelList, charSequence.toString().toLowerCase())
                 return filterResults
             }
 
+            @Suppress("UNCHECKED_CAST")
             override fun publishResults(charSequence: CharSequence, filterResults: Filter.FilterResults) {
-                channelListFiltered = filterResults.values as ArrayList<Channel>
-                notifyDataSetChanged()
+                filterText = charSequence.toString().toLowerCase()
+                showItems(filterResults.values as List<ChannelListItem>)
+            }
+        }
+    }
+
+    private fun filter(channels: List<ChannelListItem>, text: String): List<ChannelListItem> {
+        if (text.isEmpty()) {
+            return channels
+        }
+        val filteredList = ArrayList<ChannelListItem>()
+        for (item in channels) {
+            val channel = item.channel
+            val name = channel.name ?: ""
+            val programTitle = channel.programTitle ?: ""
+            val programSubtitle = channel.programSubtitle ?: ""
+            val nextProgramTitle = channel.nextProgramTitle ?: ""
+            when {
+                name.toLowerCase().contains(text) -> filteredList.add(item)
+                programTitle.toLowerCase().contains(text) -> filteredList.add(item)
+                programSubtitle.toLowerCase().contains(text) -> filteredList.add(item)
+                nextProgramTitle.toLowerCase().contains(text) -> filteredList.add(item)
             }
         }
+        return filteredList
     }
 
     /**
      * Whenever a recording changes in the database the list of available recordings are
      * saved in this recycler view. The previous list is cleared to avoid showing outdated
-     * recording states. Each recording is checked if it belongs to the
-     * currently shown program. If yes then its state is updated.
+     * recording states. Each channel whose current program has a different recording
+     * is replaced by a new item, so that the list adapter only updates these channels.
      *
      * @param list List of recordings
      */
     internal fun addRecordings(list: List<Recording>) {
-        recordingList.clear()
-        recordingList.addAll(list)
-        updateRecordingState(channelListFiltered, recordingList)
+        recordings.clear()
+        for (recording in list) {
+            if (recording.eventId > 0) {
+                recordings.put(recording.eventId, recording)
+            }
+        }
+        channelList = channelList.map { withRecording(it) }
+        showItems(filter(channelList, filterText))
     }
 
-    private fun updateRecordingState(channels: MutableList<Channel>, recordings: List<Recording>) {
-        for (i in channels.indices) {
-            val channel = channels[i]
-            var recordingExists = false
-
-            for (recording in recordings) {
-                if (channel.programId > 0 && channel.programId == recording.eventId) {
-                    val oldRecording = channel.recording
-                    channel.recording = recording
-
-                    // Do a full update only when a new recording was added or the recording
-                    // state has changed which results in a different recording state icon
-                    // Otherwise do not update the UI
-                    if (oldRecording == null || !TextUtils.equals(oldRecording.error, recording.error) || !TextUtils.equals(oldRecording.state, recording.state)) {
-                        notifyItemChanged(i)
-                    }
-                    recordingExists = true
-                    break
-                }
-            }
-            if (!recordingExists && channel.recording != null) {
-                channel.recording = null
-                notifyItemChanged(i)
-            }
-            channels[i] = channel
+    /**
+     * Returns the given item if the recording of its current program is
+     * unchanged, otherwise a new item with a copy of the channel that
+     * contains the recording. The shown items are never changed.
+     */
+    private fun withRecording(item: ChannelListItem): ChannelListItem {
+        val channel = item.channel
+        val recording = if (channel.programId > 0) recordings.get(channel.programId) else null
+        return if (channel.recording == recording) {
+            item
+        } else {
+            item.copy(channel = channel.copy(recording = recording))
         }
     }
 
@@ -178,8 +171,9 @@ class ChannelRecyclerViewAdapter internal constructor(private val isDualPane: Bo
                                      private val showGenreColors: Boolean,
                                      private val isDualPane: Boolean) : RecyclerView.ViewHolder(binding.getRoot()) {
 
-        fun bind(channel: Channel, position: Int, isSelected: Boolean, clickCallback: RecyclerViewClickCallback) {
-            binding.setChannel(channel)
+        fun bind(item: ChannelListItem, position: Int, isSelected: Boolean, clickCallback: RecyclerViewClickCallback) {
+            binding.setChannel(item.channel)
+            binding.setItem(item)
             binding.setPosition(position)
             binding.setIsSelected(isSelected)
             binding.setShowChannelName(showChannelName)
@@ -4,18 +4,23 @@ import android.app.Application
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MediatorLiveData
 import androidx.lifecycle.Transformations
-import org.tvheadend.tvhclient.domain.entity.Channel
+import org.tvheadend.tvhclient.ui.common.BackgroundMappedLiveData
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
 import timber.log.Timber
+import java.util.concurrent.Executors
 
 class ChannelViewModel(application: Application) : BaseChannelViewModel(application) {
 
-    val channels: LiveData<List<Channel>>
+    private val formatter = ListItemFormatter(application)
+    private val executor = Executors.newSingleThreadExecutor()
+
+    val channels: LiveData<List<ChannelListItem>>
     val numberOfChannels: LiveData<Int> = appRepository.channelData.getLiveDataItemCount()
 
     init {
 
         val trigger = ChannelLiveData(selectedTime, channelSortOrder, selectedChannelTagIds)
-        channels = Transformations.switchMap(trigger) { value ->
+        val channelList = Transformations.switchMap(trigger) { value ->
             Timber.d("Loading channels because one of the three triggers have changed")
 
             val first = value.first
@@ -37,6 +42,16 @@ class ChannelViewModel(application: Application) : BaseChannelViewModel(applicat
 
             return@switchMap appRepository.channelData.getAllChannelsByTime(first, second, third)
         }
+
+        // Prepare the list items outside of the main thread
+        channels = BackgroundMappedLiveData(channelList, executor) { list ->
+            list.map { ChannelListItem(it, formatter) }
+        }
+    }
+
+    override fun onCleared() {
+        executor.shutdown()
+        super.onCleared()
     }
 
     internal inner class ChannelLiveData(selectedTime: LiveData<Long>,
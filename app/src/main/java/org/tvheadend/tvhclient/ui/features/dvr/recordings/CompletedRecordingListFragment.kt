@@ -2,13 +2,14 @@ package org.tvheadend.tvhclient.ui.features.dvr.recordings
 
 import android.os.Bundle
 import android.view.Menu
-import android.view.View
-import androidx.lifecycle.Observer
-import kotlinx.android.synthetic.main.recyclerview_fragment.*
 import org.tvheadend.tvhclient.R
 
 class CompletedRecordingListFragment : RecordingListFragment() {
 
+    override val recordingType = "completed"
+
+    override val searchResultsPlurals = R.plurals.completed_recordings
+
     override fun onActivityCreated(savedInstanceState: Bundle?) {
         super.onActivityCreated(savedInstanceState)
 
@@ -17,27 +18,7 @@ class CompletedRecordingListFragment : RecordingListFragment() {
         else
             getString(R.string.search_results))
 
-        viewModel.completedRecordings.observe(viewLifecycleOwner, Observer { recordings ->
-            if (recordings != null) {
-                recyclerViewAdapter.addItems(recordings)
-            }
-
-            recycler_view?.visibility = View.VISIBLE
-            progress_bar?.visibility = View.GONE
-
-            if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            } else {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.completed_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            }
-
-            if (isDualPane && recyclerViewAdapter.itemCount > 0) {
-                showRecordingDetails(selectedListPosition)
-            }
-            // Invalidate the menu so that the search menu item is shown in
-            // case the adapter contains items now.
-            activity.invalidateOptionsMenu()
-        })
+        observeRecordings()
     }
 
     override fun onPrepareOptionsMenu(menu: Menu) {
@@ -46,16 +27,6 @@ class CompletedRecordingListFragment : RecordingListFragment() {
         menu.findItem(R.id.media_route_menu_item)?.isVisible = true
     }
 
-    override fun onFilterComplete(i: Int) {
-        context?.let {
-            if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            } else {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.completed_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            }
-        }
-    }
-
     override fun getQueryHint(): String {
         return getString(R.string.search_completed_recordings)
     }
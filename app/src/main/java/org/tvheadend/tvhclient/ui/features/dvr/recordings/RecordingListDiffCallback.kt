@@ -2,33 +2,24 @@ package org.tvheadend.tvhclient.ui.features.dvr.recordings
 
 import android.text.TextUtils
 import androidx.recyclerview.widget.DiffUtil
-import org.tvheadend.tvhclient.domain.entity.Recording
 import timber.log.Timber
 
-class RecordingListDiffCallback(private var oldList: List<Recording>, private var newList: List<Recording>) : DiffUtil.Callback() {
+class RecordingListDiffCallback : DiffUtil.ItemCallback<RecordingListItem>() {
 
     companion object {
         const val PAYLOAD_DATA_SIZE = 1
         const val PAYLOAD_FULL = 2
     }
 
-    override fun getOldListSize(): Int {
-        return oldList.size
+    override fun areItemsTheSame(oldItem: RecordingListItem, newItem: RecordingListItem): Boolean {
+        return newItem.recording.id == oldItem.recording.id
     }
 
-    override fun getNewListSize(): Int {
-        return newList.size
-    }
-
-    override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition].id == oldList[oldItemPosition].id
-    }
-
-    override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        val oldRecording = oldList[oldItemPosition]
-        val newRecording = newList[newItemPosition]
-
-        return (newRecording.id == oldRecording.id
+    override fun areContentsTheSame(oldItem: RecordingListItem, newItem: RecordingListItem): Boolean {
+        val oldRecording = oldItem.recording
+        val newRecording = newItem.recording
+        return (TextUtils.equals(newItem.date, oldItem.date)
+                && newRecording.id == oldRecording.id
                 && TextUtils.equals(newRecording.title, oldRecording.title)
                 && TextUtils.equals(newRecording.subtitle, oldRecording.subtitle)
                 && TextUtils.equals(newRecording.summary, oldRecording.summary)
@@ -48,10 +39,9 @@ class RecordingListDiffCallback(private var oldList: List<Recording>, private va
                 && TextUtils.equals(newRecording.state, oldRecording.state))
     }
 
-    override fun getChangePayload(oldItemPosition: Int, newItemPosition: Int): Any {
-        val oldRecording = oldList[oldItemPosition]
-        val newRecording = newList[newItemPosition]
-
+    override fun getChangePayload(oldItem: RecordingListItem, newItem: RecordingListItem): Any {
+        val oldRecording = oldItem.recording
+        val newRecording = newItem.recording
         Timber.d("Checking payload for recording ${newRecording.title} data size ${newRecording.dataSize}, ${oldRecording.dataSize}")
 
         return if (newRecording.dataSize != oldRecording.dataSize) {
@@ -4,16 +4,21 @@ import android.app.SearchManager
 import android.content.Intent
 import android.os.Bundle
 import android.view.*
-import android.widget.Filter
 import androidx.appcompat.widget.PopupMenu
 import androidx.fragment.app.FragmentTransaction
+import androidx.annotation.PluralsRes
 import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LiveData
+import androidx.lifecycle.Observer
 import androidx.lifecycle.ViewModelProviders
+import androidx.paging.PagedList
 import androidx.recyclerview.widget.DefaultItemAnimator
 import androidx.recyclerview.widget.DividerItemDecoration
 import androidx.recyclerview.widget.LinearLayoutManager
 import kotlinx.android.synthetic.main.recyclerview_fragment.*
 import org.tvheadend.tvhclient.R
+import org.tvheadend.tvhclient.data.paging.KeysetQuery
+import org.tvheadend.tvhclient.domain.entity.Recording
 import org.tvheadend.tvhclient.ui.base.BaseFragment
 import org.tvheadend.tvhclient.ui.common.callbacks.RecyclerViewClickCallback
 import org.tvheadend.tvhclient.ui.common.onMenuSelected
@@ -23,15 +28,32 @@ import org.tvheadend.tvhclient.ui.features.download.DownloadPermissionGrantedInt
 import org.tvheadend.tvhclient.ui.features.download.DownloadRecordingManager
 import org.tvheadend.tvhclient.ui.features.dvr.RecordingAddEditActivity
 import org.tvheadend.tvhclient.ui.features.search.SearchRequestInterface
-import java.util.concurrent.CopyOnWriteArrayList
 
-abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback, SearchRequestInterface, DownloadPermissionGrantedInterface, Filter.FilterListener {
+abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback, SearchRequestInterface, DownloadPermissionGrantedInterface {
 
     lateinit var viewModel: RecordingViewModel
     lateinit var recyclerViewAdapter: RecordingRecyclerViewAdapter
     var selectedListPosition: Int = 0
     var searchQuery: String = ""
 
+    private var recordings: LiveData<PagedList<RecordingListItem>>? = null
+    private var recordingCount: LiveData<Int>? = null
+    private var recordingListQuery: KeysetQuery? = null
+
+    /**
+     * The type of the shown recordings, one of completed, scheduled, failed or removed
+     */
+    abstract val recordingType: String
+
+    /**
+     * The plurals resource that is used for the number of found recordings
+     */
+    @get:PluralsRes
+    abstract val searchResultsPlurals: Int
+
+    open val hideDuplicates: Boolean
+        get() = false
+
     override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
         return inflater.inflate(R.layout.recyclerview_fragment, container, false)
     }
@@ -58,6 +80,46 @@ abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback
         progress_bar.visibility = View.VISIBLE
     }
 
+    /**
+     * Observes the recordings and their number that match the recording type and
+     * the search query. The observers of the previous query are removed so that
+     * only the latest recording list is shown.
+     */
+    internal fun observeRecordings() {
+        recordings?.removeObservers(viewLifecycleOwner)
+        recordingCount?.removeObservers(viewLifecycleOwner)
+
+        val query = viewModel.getRecordingListQuery(recordingType, searchQuery, hideDuplicates)
+        recordingListQuery = query
+        recordings = viewModel.getRecordings(query)
+        recordings?.observe(viewLifecycleOwner, Observer<PagedList<RecordingListItem>> { this.handleObservedRecordings(it) })
+        recordingCount = viewModel.getNumberOfRecordings(query)
+        recordingCount?.observe(viewLifecycleOwner, Observer<Int> { this.handleObservedRecordingCount(it) })
+    }
+
+    private fun handleObservedRecordings(recordings: PagedList<RecordingListItem>?) {
+        recyclerViewAdapter.submitList(recordings)
+
+        recycler_view?.visibility = View.VISIBLE
+        progress_bar?.visibility = View.GONE
+
+        if (isDualPane && recyclerViewAdapter.itemCount > 0) {
+            showRecordingDetails(selectedListPosition)
+        }
+        // Invalidate the menu so that the search menu item is shown in
+        // case the adapter contains items now.
+        activity.invalidateOptionsMenu()
+    }
+
+    private fun handleObservedRecordingCount(count: Int?) {
+        val recordingCount = count ?: 0
+        if (searchQuery.isEmpty()) {
+            toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recordingCount, recordingCount))
+        } else {
+            toolbarInterface.setSubtitle(resources.getQuantityString(searchResultsPlurals, recordingCount, recordingCount))
+        }
+    }
+
     override fun onSaveInstanceState(outState: Bundle) {
         super.onSaveInstanceState(outState)
         outState.putInt("listPosition", selectedListPosition)
@@ -73,7 +135,8 @@ abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback
                 true
             }
             R.id.menu_record_remove_all -> {
-                val list = CopyOnWriteArrayList(recyclerViewAdapter.items)
+                // The adapter contains only the loaded part of the list, so load all recordings
+                val list = recordingListQuery?.let { viewModel.getRecordingsSync(it) } ?: emptyList()
                 menuUtils.handleMenuRemoveAllRecordingsSelection(list)
             }
             else -> super.onOptionsItemSelected(item)
@@ -103,7 +166,7 @@ abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback
         selectedListPosition = position
         recyclerViewAdapter.setPosition(position)
 
-        val recording = recyclerViewAdapter.getItem(position)
+        val recording = recyclerViewAdapter.getItem(position)?.recording
         if (recording == null || !isVisible
                 || !activity.lifecycle.currentState.isAtLeast(Lifecycle.State.STARTED)) {
             return
@@ -131,7 +194,7 @@ abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback
     }
 
     private fun showPopupMenu(view: View, position: Int) {
-        val recording = recyclerViewAdapter.getItem(position)
+        val recording = recyclerViewAdapter.getItem(position)?.recording
         if (activity == null || recording == null) {
             return
         }
@@ -178,7 +241,7 @@ abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback
         selectedListPosition = position
         if (view.id == R.id.icon || view.id == R.id.icon_text) {
             if (recyclerViewAdapter.itemCount > 0) {
-                val recording = recyclerViewAdapter.getItem(position)
+                val recording = recyclerViewAdapter.getItem(position)?.recording
                 menuUtils.handleMenuPlayRecordingIcon(recording!!.id)
             }
         } else {
@@ -192,28 +255,24 @@ abstract class RecordingListFragment : BaseFragment(), RecyclerViewClickCallback
     }
 
     override fun downloadRecording() {
-        val recording = recyclerViewAdapter.getItem(selectedListPosition)
+        val recording = recyclerViewAdapter.getItem(selectedListPosition)?.recording
         recording?.let {
             DownloadRecordingManager(activity, it.id)
         }
     }
 
-    override fun onFilterComplete(i: Int) {
-        // Preselect the first result item in the details screen
-        if (isDualPane && recyclerViewAdapter.itemCount > 0) {
-            showRecordingDetails(0)
-        }
-    }
-
     override fun onSearchRequested(query: String) {
         searchQuery = query
-        recyclerViewAdapter.filter.filter(query, this)
+        // Preselect the first result item in the details screen
+        selectedListPosition = 0
+        observeRecordings()
     }
 
     override fun onSearchResultsCleared(): Boolean {
         return if (!searchQuery.isEmpty()) {
             searchQuery = ""
-            recyclerViewAdapter.filter.filter("", this)
+            selectedListPosition = 0
+            observeRecordings()
             true
         } else {
             false
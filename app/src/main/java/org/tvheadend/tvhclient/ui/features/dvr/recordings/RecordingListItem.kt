@@ -0,0 +1,20 @@
+package org.tvheadend.tvhclient.ui.features.dvr.recordings
+
+import org.tvheadend.tvhclient.domain.entity.Recording
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
+
+/**
+ * Contains the recording and the formatted date and times of the recording
+ * list item. The item is created on the background thread that loads the
+ * recordings so that binding the item only assigns the values.
+ */
+data class RecordingListItem(val recording: Recording,
+                             val date: String,
+                             val startTime: String,
+                             val stopTime: String) {
+
+    constructor(recording: Recording, formatter: ListItemFormatter) : this(recording,
+            formatter.date(recording.start),
+            formatter.time(recording.start),
+            formatter.time(recording.stop))
+}
@@ -3,9 +3,12 @@ package org.tvheadend.tvhclient.ui.features.dvr.recordings
 import android.app.Application
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.LiveData
+import androidx.paging.PagedList
 import org.tvheadend.tvhclient.MainApplication
+import org.tvheadend.tvhclient.data.paging.KeysetQuery
 import org.tvheadend.tvhclient.data.repository.AppRepository
 import org.tvheadend.tvhclient.domain.entity.Recording
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
 import javax.inject.Inject
 
 class RecordingViewModel(application: Application) : AndroidViewModel(application) {
@@ -13,10 +16,9 @@ class RecordingViewModel(application: Application) : AndroidViewModel(applicatio
     @Inject
     lateinit var appRepository: AppRepository
 
-    val completedRecordings: LiveData<List<Recording>>
+    private val formatter = ListItemFormatter(application)
+
     val scheduledRecordings: LiveData<List<Recording>>
-    val failedRecordings: LiveData<List<Recording>>
-    val removedRecordings: LiveData<List<Recording>>
 
     val numberOfCompletedRecordings: LiveData<Int>
     val numberOfScheduledRecordings: LiveData<Int>
@@ -26,10 +28,7 @@ class RecordingViewModel(application: Application) : AndroidViewModel(applicatio
     init {
         MainApplication.getComponent().inject(this)
 
-        completedRecordings = appRepository.recordingData.getLiveDataItemsByType("completed")
         scheduledRecordings = appRepository.recordingData.getLiveDataItemsByType("scheduled")
-        failedRecordings = appRepository.recordingData.getLiveDataItemsByType("failed")
-        removedRecordings = appRepository.recordingData.getLiveDataItemsByType("removed")
 
         numberOfCompletedRecordings = appRepository.recordingData.getLiveDataCountByType("completed")
         numberOfScheduledRecordings = appRepository.recordingData.getLiveDataCountByType("scheduled")
@@ -37,6 +36,22 @@ class RecordingViewModel(application: Application) : AndroidViewModel(applicatio
         numberOfRemovedRecordings = appRepository.recordingData.getLiveDataCountByType("removed")
     }
 
+    fun getRecordingListQuery(type: String, searchQuery: String, hideDuplicates: Boolean): KeysetQuery {
+        return appRepository.recordingData.getListQuery(type, searchQuery, hideDuplicates)
+    }
+
+    fun getRecordings(query: KeysetQuery): LiveData<PagedList<RecordingListItem>> {
+        return appRepository.recordingData.getLiveDataPagedItems(query) { RecordingListItem(it, formatter) }
+    }
+
+    fun getNumberOfRecordings(query: KeysetQuery): LiveData<Int> {
+        return appRepository.recordingData.getLiveDataItemCount(query)
+    }
+
+    fun getRecordingsSync(query: KeysetQuery): List<Recording> {
+        return appRepository.recordingData.getItems(query)
+    }
+
     fun getRecordingById(id: Int): LiveData<Recording>? {
         return appRepository.recordingData.getLiveDataItemById(id)
     }
@@ -1,13 +1,14 @@
 package org.tvheadend.tvhclient.ui.features.dvr.recordings
 
 import android.os.Bundle
-import android.view.View
-import androidx.lifecycle.Observer
-import kotlinx.android.synthetic.main.recyclerview_fragment.*
 import org.tvheadend.tvhclient.R
 
 class RemovedRecordingListFragment : RecordingListFragment() {
 
+    override val recordingType = "removed"
+
+    override val searchResultsPlurals = R.plurals.removed_recordings
+
     override fun onActivityCreated(savedInstanceState: Bundle?) {
         super.onActivityCreated(savedInstanceState)
 
@@ -16,37 +17,7 @@ class RemovedRecordingListFragment : RecordingListFragment() {
         else
             getString(R.string.search_results))
 
-        viewModel.removedRecordings.observe(viewLifecycleOwner, Observer { recordings ->
-            if (recordings != null) {
-                recyclerViewAdapter.addItems(recordings)
-            }
-
-            recycler_view?.visibility = View.VISIBLE
-            progress_bar?.visibility = View.GONE
-
-            if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            } else {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.removed_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            }
-
-            if (isDualPane && recyclerViewAdapter.itemCount > 0) {
-                showRecordingDetails(selectedListPosition)
-            }
-            // Invalidate the menu so that the search menu item is shown in
-            // case the adapter contains items now.
-            activity.invalidateOptionsMenu()
-        })
-    }
-
-    override fun onFilterComplete(i: Int) {
-        context?.let {
-            if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            } else {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.removed_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-            }
-        }
+        observeRecordings()
     }
 
     override fun getQueryHint(): String {
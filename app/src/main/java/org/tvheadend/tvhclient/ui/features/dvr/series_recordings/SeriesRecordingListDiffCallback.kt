@@ -0,0 +1,15 @@
+package org.tvheadend.tvhclient.ui.features.dvr.series_recordings
+
+import androidx.recyclerview.widget.DiffUtil
+import org.tvheadend.tvhclient.domain.entity.SeriesRecording
+
+internal class SeriesRecordingListDiffCallback : DiffUtil.ItemCallback<SeriesRecording>() {
+
+    override fun areItemsTheSame(oldItem: SeriesRecording, newItem: SeriesRecording): Boolean {
+        return newItem.id == oldItem.id
+    }
+
+    override fun areContentsTheSame(oldItem: SeriesRecording, newItem: SeriesRecording): Boolean {
+        return newItem == oldItem
+    }
+}
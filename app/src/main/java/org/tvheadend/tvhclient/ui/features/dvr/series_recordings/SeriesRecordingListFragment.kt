@@ -67,12 +67,12 @@ class SeriesRecordingListFragment : BaseFragment(), RecyclerViewClickCallback, S
             progress_bar?.visibility = View.GONE
 
             if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             } else {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.series_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.series_recordings, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             }
 
-            if (isDualPane && recyclerViewAdapter.itemCount > 0) {
+            if (isDualPane && recyclerViewAdapter.getShownItemCount() > 0) {
                 showRecordingDetails(selectedListPosition)
             }
             // Invalidate the menu so that the search menu item is shown in
@@ -112,13 +112,13 @@ class SeriesRecordingListFragment : BaseFragment(), RecyclerViewClickCallback, S
         super.onPrepareOptionsMenu(menu)
 
         if (sharedPreferences.getBoolean("delete_all_recordings_menu_enabled", resources.getBoolean(R.bool.pref_default_delete_all_recordings_menu_enabled))
-                && recyclerViewAdapter.itemCount > 1
+                && recyclerViewAdapter.getShownItemCount() > 1
                 && isNetworkAvailable) {
             menu.findItem(R.id.menu_record_remove_all)?.isVisible = true
         }
 
         menu.findItem(R.id.menu_add)?.isVisible = isUnlocked && isNetworkAvailable
-        menu.findItem(R.id.menu_search)?.isVisible = recyclerViewAdapter.itemCount > 0
+        menu.findItem(R.id.menu_search)?.isVisible = recyclerViewAdapter.getShownItemCount() > 0
         menu.findItem(R.id.media_route_menu_item)?.isVisible = false
     }
 
@@ -198,9 +198,9 @@ class SeriesRecordingListFragment : BaseFragment(), RecyclerViewClickCallback, S
     override fun onFilterComplete(i: Int) {
         context?.let {
             if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             } else {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.series_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.series_recordings, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             }
         }
     }
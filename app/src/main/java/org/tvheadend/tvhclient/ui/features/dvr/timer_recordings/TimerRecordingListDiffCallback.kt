@@ -0,0 +1,15 @@
+package org.tvheadend.tvhclient.ui.features.dvr.timer_recordings
+
+import androidx.recyclerview.widget.DiffUtil
+import org.tvheadend.tvhclient.domain.entity.TimerRecording
+
+internal class TimerRecordingListDiffCallback : DiffUtil.ItemCallback<TimerRecording>() {
+
+    override fun areItemsTheSame(oldItem: TimerRecording, newItem: TimerRecording): Boolean {
+        return newItem.id == oldItem.id
+    }
+
+    override fun areContentsTheSame(oldItem: TimerRecording, newItem: TimerRecording): Boolean {
+        return newItem == oldItem
+    }
+}
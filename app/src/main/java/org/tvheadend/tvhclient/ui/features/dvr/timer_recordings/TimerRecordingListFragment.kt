@@ -68,12 +68,12 @@ class TimerRecordingListFragment : BaseFragment(), RecyclerViewClickCallback, Se
             progress_bar?.visibility = View.GONE
 
             if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             } else {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.timer_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.timer_recordings, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             }
 
-            if (isDualPane && recyclerViewAdapter.itemCount > 0) {
+            if (isDualPane && recyclerViewAdapter.getShownItemCount() > 0) {
                 showRecordingDetails(selectedListPosition)
             }
             // Invalidate the menu so that the search menu item is shown in
@@ -113,12 +113,12 @@ class TimerRecordingListFragment : BaseFragment(), RecyclerViewClickCallback, Se
         super.onPrepareOptionsMenu(menu)
         // Enable the remove all recordings menu if there are at least 2 recordings available
         if (sharedPreferences.getBoolean("delete_all_recordings_menu_enabled", resources.getBoolean(R.bool.pref_default_delete_all_recordings_menu_enabled))
-                && recyclerViewAdapter.itemCount > 1
+                && recyclerViewAdapter.getShownItemCount() > 1
                 && isNetworkAvailable) {
             menu.findItem(R.id.menu_record_remove_all)?.isVisible = true
         }
         menu.findItem(R.id.menu_add)?.isVisible = isNetworkAvailable
-        menu.findItem(R.id.menu_search)?.isVisible = recyclerViewAdapter.itemCount > 0
+        menu.findItem(R.id.menu_search)?.isVisible = recyclerViewAdapter.getShownItemCount() > 0
         menu.findItem(R.id.media_route_menu_item)?.isVisible = false
     }
 
@@ -198,9 +198,9 @@ class TimerRecordingListFragment : BaseFragment(), RecyclerViewClickCallback, Se
     override fun onFilterComplete(i: Int) {
         context?.let {
             if (searchQuery.isEmpty()) {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             } else {
-                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.timer_recordings, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.timer_recordings, recyclerViewAdapter.getShownItemCount(), recyclerViewAdapter.getShownItemCount()))
             }
         }
     }
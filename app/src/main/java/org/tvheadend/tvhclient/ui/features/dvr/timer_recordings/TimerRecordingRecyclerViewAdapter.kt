@@ -4,21 +4,21 @@ import android.view.LayoutInflater
 import android.view.ViewGroup
 import android.widget.Filter
 import android.widget.Filterable
+import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.databinding.TimerRecordingListAdapterBinding
 import org.tvheadend.tvhclient.domain.entity.TimerRecording
 import org.tvheadend.tvhclient.ui.common.callbacks.RecyclerViewClickCallback
 import java.util.*
-import java.util.concurrent.CopyOnWriteArrayList
 
-class TimerRecordingRecyclerViewAdapter internal constructor(private val isDualPane: Boolean, private val clickCallback: RecyclerViewClickCallback, private val htspVersion: Int) : RecyclerView.Adapter<TimerRecordingRecyclerViewAdapter.TimerRecordingViewHolder>(), Filterable {
+class TimerRecordingRecyclerViewAdapter internal constructor(private val isDualPane: Boolean, private val clickCallback: RecyclerViewClickCallback, private val htspVersion: Int) : ListAdapter<TimerRecording, TimerRecordingRecyclerViewAdapter.TimerRecordingViewHolder>(TimerRecordingListDiffCallback()), Filterable {
 
-    private val recordingList = ArrayList<TimerRecording>()
-    private var recordingListFiltered: MutableList<TimerRecording> = ArrayList()
+    private var recordingList: List<TimerRecording> = ArrayList()
+    private var recordingListFiltered: List<TimerRecording> = ArrayList()
     private var selectedPosition = 0
 
-    val items: List<TimerRecording>?
+    val items: List<TimerRecording>
         get() = recordingListFiltered
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): TimerRecordingViewHolder {
@@ -28,29 +28,32 @@ class TimerRecordingRecyclerViewAdapter internal constructor(private val isDualP
     }
 
     override fun onBindViewHolder(holder: TimerRecordingViewHolder, position: Int) {
-        if (recordingListFiltered.size > position) {
-            val recording = recordingListFiltered[position]
-            holder.bind(recording, position, selectedPosition == position, htspVersion, clickCallback)
-        }
+        holder.bind(super.getItem(position), position, selectedPosition == position, htspVersion, clickCallback)
     }
 
     override fun onBindViewHolder(holder: TimerRecordingViewHolder, position: Int, payloads: List<Any>) {
         onBindViewHolder(holder, position)
     }
 
+    /**
+     * Shows the given recordings. The differences to the currently shown
+     * recordings are calculated on a background thread by the list adapter.
+     */
     internal fun addItems(newItems: List<TimerRecording>) {
-        recordingList.clear()
-        recordingListFiltered.clear()
-        recordingList.addAll(newItems)
-        recordingListFiltered.addAll(newItems)
+        recordingList = newItems
+        recordingListFiltered = newItems
+        submitList(newItems)
 
         if (selectedPosition > recordingListFiltered.size) {
             selectedPosition = 0
         }
-        notifyDataSetChanged()
     }
 
-    override fun getItemCount(): Int {
+    /**
+     * Returns the number of recordings that are shown after the
+     * last list update or filtering has been applied.
+     */
+    fun getShownItemCount(): Int {
         return recordingListFiltered.size
     }
 
@@ -64,7 +67,7 @@ class TimerRecordingRecyclerViewAdapter internal constructor(private val isDualP
         notifyItemChanged(pos)
     }
 
-    fun getItem(position: Int): TimerRecording? {
+    public override fun getItem(position: Int): TimerRecording? {
         return if (recordingListFiltered.size > position && position >= 0) {
             recordingListFiltered[position]
         } else {
@@ -76,13 +79,15 @@ class TimerRecordingRecyclerViewAdapter internal constructor(private val isDualP
         return object : Filter() {
             override fun performFiltering(charSequence: CharSequence): Filter.FilterResults {
                 val charString = charSequence.toString()
+                // The recording list is only replaced and never changed,
+                // so it can be safely iterated during filtering.
+                val recordings = recordingList
+                val filteredList: List<TimerRecording>
                 if (charString.isEmpty()) {
-                    recordingListFiltered = recordingList
+                    filteredList = recordings
                 } else {
-                    val filteredList = ArrayList<TimerRecording>()
-                    // Iterate over the available channels. Use a copy on write
-                    // array in case the channel list changes during filtering.
-                    for (recording in CopyOnWriteArrayList(recordingList)) {
+                    filteredList = ArrayList()
+                    for (recording in recordings) {
                         // name match condition. this might differ depending on your requirement
                         // here we are looking for a channel name match
                         val title = recording.title ?: ""
@@ -93,17 +98,17 @@ class TimerRecordingRecyclerViewAdapter internal constructor(private val isDualP
                             filteredList.add(recording)
                         }
                     }
-                    recordingListFiltered = filteredList
                 }
 
                 val filterResults = Filter.FilterResults()
-                filterResults.values = recordingListFiltered
+                filterResults.values = filteredList
                 return filterResults
             }
 
+            @Suppress("UNCHECKED_CAST")
             override fun publishResults(charSequence: CharSequence, filterResults: Filter.FilterResults) {
-                recordingListFiltered = filterResults.values as ArrayList<TimerRecording>
-                notifyDataSetChanged()
+                recordingListFiltered = filterResults.values as List<TimerRecording>
+                submitList(recordingListFiltered)
             }
         }
     }
@@ -1,23 +1,14 @@
 package org.tvheadend.tvhclient.ui.features.epg
 
 import androidx.recyclerview.widget.DiffUtil
-import org.tvheadend.tvhclient.domain.entity.EpgProgram
 
-internal class EpgProgramListDiffCallback(private val oldList: List<EpgProgram>, private val newList: List<EpgProgram>) : DiffUtil.Callback() {
+internal class EpgProgramListDiffCallback : DiffUtil.ItemCallback<EpgProgramListItem>() {
 
-    override fun getOldListSize(): Int {
-        return oldList.size
+    override fun areItemsTheSame(oldItem: EpgProgramListItem, newItem: EpgProgramListItem): Boolean {
+        return newItem.program.eventId == oldItem.program.eventId
     }
 
-    override fun getNewListSize(): Int {
-        return newList.size
-    }
-
-    override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition].eventId == oldList[oldItemPosition].eventId
-    }
-
-    override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition] == oldList[oldItemPosition]
+    override fun areContentsTheSame(oldItem: EpgProgramListItem, newItem: EpgProgramListItem): Boolean {
+        return newItem == oldItem
     }
 }
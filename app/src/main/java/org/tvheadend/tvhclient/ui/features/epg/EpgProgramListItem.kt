@@ -0,0 +1,12 @@
+package org.tvheadend.tvhclient.ui.features.epg
+
+import org.tvheadend.tvhclient.domain.entity.EpgProgram
+
+/**
+ * Contains the program of the program guide together with the width of its
+ * layout and its genre color. The item is created on the background thread
+ * that loads the programs so that binding the item only assigns the values.
+ */
+data class EpgProgramListItem(val program: EpgProgram,
+                              val layoutWidth: Int,
+                              val genreColor: Int)
@@ -3,12 +3,13 @@ package org.tvheadend.tvhclient.ui.features.epg
 import android.content.ContextWrapper
 import android.preference.PreferenceManager
 import android.text.TextUtils
+import android.util.SparseArray
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import androidx.appcompat.app.AppCompatActivity
 import androidx.fragment.app.FragmentTransaction
-import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.databinding.EpgProgramItemAdapterBinding
@@ -16,12 +17,10 @@ import org.tvheadend.tvhclient.domain.entity.EpgProgram
 import org.tvheadend.tvhclient.domain.entity.Recording
 import org.tvheadend.tvhclient.ui.common.callbacks.RecyclerViewClickCallback
 import org.tvheadend.tvhclient.ui.features.programs.ProgramDetailsFragment
-import java.util.*
 
-internal class EpgProgramListRecyclerViewAdapter(private val pixelsPerMinute: Float, private val fragmentStartTime: Long, private val fragmentStopTime: Long) : RecyclerView.Adapter<EpgProgramListRecyclerViewAdapter.EpgProgramListViewHolder>(), RecyclerViewClickCallback {
+internal class EpgProgramListRecyclerViewAdapter : ListAdapter<EpgProgramListItem, EpgProgramListRecyclerViewAdapter.EpgProgramListViewHolder>(EpgProgramListDiffCallback()), RecyclerViewClickCallback {
 
-    private val programList = ArrayList<EpgProgram>()
-    private val recordingList = ArrayList<Recording>()
+    private val recordings = SparseArray<Recording>()
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): EpgProgramListViewHolder {
         val layoutInflater = LayoutInflater.from(parent.context)
@@ -35,77 +34,67 @@ internal class EpgProgramListRecyclerViewAdapter(private val pixelsPerMinute: Fl
     }
 
     override fun onBindViewHolder(holder: EpgProgramListViewHolder, position: Int) {
-        if (programList.size > position) {
-            val program = programList[position]
-
-            val startTime = if (program.start < fragmentStartTime) fragmentStartTime else program.start
-            val stopTime = if (program.stop > fragmentStopTime) fragmentStopTime else program.stop
-            val layoutWidth = ((stopTime - startTime) / 1000 / 60 * pixelsPerMinute).toInt()
-
-            holder.bind(program, position, layoutWidth)
-        }
+        holder.bind(super.getItem(position), position)
     }
 
     override fun onBindViewHolder(holder: EpgProgramListViewHolder, position: Int, payloads: List<Any>) {
         onBindViewHolder(holder, position)
     }
 
-    fun addItems(newItems: MutableList<EpgProgram>) {
-        updateRecordingState(newItems, recordingList)
-
-        val oldItems = ArrayList(programList)
-        val diffResult = DiffUtil.calculateDiff(EpgProgramListDiffCallback(oldItems, newItems))
-
-        programList.clear()
-        programList.addAll(newItems)
-        diffResult.dispatchUpdatesTo(this)
+    /**
+     * Shows the given programs. The differences to the currently shown
+     * programs are calculated on a background thread by the list adapter.
+     */
+    fun addItems(newItems: List<EpgProgramListItem>) {
+        for (item in newItems) {
+            item.program.recording = if (item.program.eventId > 0) recordings.get(item.program.eventId) else null
+        }
+        submitList(newItems)
     }
 
+    /**
+     * Whenever a recording changes in the database the list of available recordings are
+     * saved in this recycler view. The previous list is cleared to avoid showing outdated
+     * recording states. Each recording is checked if it belongs to the
+     * currently shown program. If yes then its state is updated.
+     *
+     * @param list List of recordings
+     */
     fun addRecordings(list: List<Recording>) {
-        recordingList.clear()
-        recordingList.addAll(list)
-        updateRecordingState(programList, recordingList)
-    }
+        recordings.clear()
+        for (recording in list) {
+            if (recording.eventId > 0) {
+                recordings.put(recording.eventId, recording)
+            }
+        }
 
-    private fun updateRecordingState(programs: MutableList<EpgProgram>, recordings: List<Recording>) {
-        for (i in programs.indices) {
-            val program = programs[i]
-            var recordingExists = false
-
-            for (recording in recordings) {
-                if (program.eventId > 0 && program.eventId == recording.eventId) {
-                    val oldRecording = program.recording
-                    program.recording = recording
-
-                    // Do a full update only when a new recording was added or the recording
-                    // state has changed which results in a different recording state icon
-                    // Otherwise do not update the UI
-                    if (oldRecording == null || !TextUtils.equals(oldRecording.error, recording.error) || !TextUtils.equals(oldRecording.state, recording.state)) {
-                        notifyItemChanged(i)
-                    }
-                    recordingExists = true
-                    break
-                }
+        for (i in 0 until itemCount) {
+            val program = super.getItem(i).program
+            val oldRecording = program.recording
+            val recording = if (program.eventId > 0) recordings.get(program.eventId) else null
+            program.recording = recording
+
+            // Do a full update only when a recording was added or removed or the recording
+            // state has changed which results in a different recording state icon
+            // Otherwise do not update the UI
+            if (oldRecording == null && recording == null) {
+                continue
             }
-            if (!recordingExists && program.recording != null) {
-                program.recording = null
+            if (oldRecording == null || recording == null
+                    || !TextUtils.equals(oldRecording.error, recording.error)
+                    || !TextUtils.equals(oldRecording.state, recording.state)) {
                 notifyItemChanged(i)
             }
-            programs[i] = program
         }
     }
 
-    override fun getItemCount(): Int {
-        return programList.size
-    }
-
     override fun getItemViewType(position: Int): Int {
         return R.layout.epg_program_item_adapter
     }
 
-    private fun getItem(position: Int): EpgProgram? {
-        return if (programList.size > position && position >= 0) {
-            programList[position]
+    private fun getProgram(position: Int): EpgProgram? {
+        return if (position in 0 until itemCount) {
+            super.getItem(position).program
         } else {
             null
         }
@@ -131,7 +120,7 @@ internal class EpgProgramListRecyclerViewAdapter(private val pixelsPerMinute: Fl
 
     override fun onClick(view: View, position: Int) {
         val activity = getActivity(view)
-        val program = getItem(position)
+        val program = getProgram(position)
         if (program == null || activity == null) {
             return
         }
@@ -146,7 +135,7 @@ internal class EpgProgramListRecyclerViewAdapter(private val pixelsPerMinute: Fl
 
     override fun onLongClick(view: View, position: Int): Boolean {
         val activity = getActivity(view)
-        val program = getItem(position)
+        val program = getProgram(position)
         if (program == null || activity == null) {
             return false
         }
@@ -162,10 +151,10 @@ internal class EpgProgramListRecyclerViewAdapter(private val pixelsPerMinute: Fl
 
     internal class EpgProgramListViewHolder(private val binding: EpgProgramItemAdapterBinding, private val showProgramSubtitle: Boolean, private val showGenreColors: Boolean, private val clickCallback: RecyclerViewClickCallback) : RecyclerView.ViewHolder(binding.root) {
 
-        fun bind(program: EpgProgram, position: Int, layoutWidth: Int) {
-            binding.program = program
+        fun bind(item: EpgProgramListItem, position: Int) {
+            binding.program = item.program
+            binding.item = item
             binding.position = position
-            binding.layoutWidth = layoutWidth
             binding.showGenreColor = showGenreColors
             binding.showProgramSubtitle = showProgramSubtitle
             binding.callback = clickCallback
@@ -10,6 +10,7 @@ import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.domain.entity.EpgChannel
 import org.tvheadend.tvhclient.domain.entity.EpgProgram
 import org.tvheadend.tvhclient.domain.entity.Recording
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
 import org.tvheadend.tvhclient.ui.features.channels.BaseChannelViewModel
 import timber.log.Timber
 import java.util.*
@@ -17,6 +18,7 @@ import java.util.*
 class EpgViewModel(application: Application) : BaseChannelViewModel(application) {
 
     val epgChannels: LiveData<List<EpgChannel>>
+    val listItemFormatter = ListItemFormatter(application)
 
     var verticalScrollOffset = 0
     var verticalScrollPosition = 0
@@ -62,7 +64,7 @@ class EpgViewModel(application: Application) : BaseChannelViewModel(application)
     }
 
     fun getRecordingsByChannel(channelId: Int): LiveData<List<Recording>> {
-        return appRepository.recordingData.getLiveDataItemsByChannelId(channelId)
+        return appRepository.recordingData.getLiveDataItemStatesByChannelId(channelId)
     }
 
     fun getProgramsByChannelAndBetweenTimeSync(channelId: Int, startTime: Long, endTime: Long): List<EpgProgram> {
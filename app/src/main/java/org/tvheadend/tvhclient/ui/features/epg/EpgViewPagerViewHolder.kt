@@ -14,10 +14,11 @@ import butterknife.BindView
 import butterknife.ButterKnife
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.domain.entity.EpgChannel
+import org.tvheadend.tvhclient.domain.entity.EpgProgram
 import timber.log.Timber
 import java.util.concurrent.Executors
 
-class EpgViewPagerViewHolder internal constructor(private val activity: FragmentActivity, view: View, pixelsPerMinute: Float, private val startTime: Long, private val endTime: Long, viewPool: RecyclerView.RecycledViewPool) : RecyclerView.ViewHolder(view) {
+class EpgViewPagerViewHolder internal constructor(private val activity: FragmentActivity, view: View, private val pixelsPerMinute: Float, private val startTime: Long, private val endTime: Long, viewPool: RecyclerView.RecycledViewPool) : RecyclerView.ViewHolder(view) {
 
     private val recyclerViewAdapter: EpgProgramListRecyclerViewAdapter
     private val viewModel: EpgViewModel
@@ -37,7 +38,7 @@ class EpgViewPagerViewHolder internal constructor(private val activity: Fragment
         recyclerView.addItemDecoration(DividerItemDecoration(view.context, LinearLayoutManager.HORIZONTAL))
         recyclerView.itemAnimator = DefaultItemAnimator()
         recyclerView.setRecycledViewPool(viewPool)
-        recyclerViewAdapter = EpgProgramListRecyclerViewAdapter(pixelsPerMinute, startTime, endTime)
+        recyclerViewAdapter = EpgProgramListRecyclerViewAdapter()
         recyclerView.adapter = recyclerViewAdapter
 
         viewModel = ViewModelProviders.of(activity).get(EpgViewModel::class.java)
@@ -53,8 +54,9 @@ class EpgViewPagerViewHolder internal constructor(private val activity: Fragment
             val programs = viewModel.getProgramsByChannelAndBetweenTimeSync(epgChannel.id, startTime, endTime)
             if (programs.isNotEmpty()) {
                 Timber.d("Loaded ${programs.size} programs for channel ${epgChannel.name}")
+                val items = programs.map { getProgramListItem(it) }
                 activity.runOnUiThread {
-                    recyclerViewAdapter.addItems(programs.toMutableList())
+                    recyclerViewAdapter.addItems(items)
                     recyclerView.visibility = View.VISIBLE
                     progressBar.visibility = View.GONE
                     noProgramsTextView.visibility = View.GONE
@@ -75,4 +77,15 @@ class EpgViewPagerViewHolder internal constructor(private val activity: Fragment
             }
         })
     }
+
+    /**
+     * Calculates the width of the program within the time frame
+     * of the fragment and the genre color of the program
+     */
+    private fun getProgramListItem(program: EpgProgram): EpgProgramListItem {
+        val programStartTime = if (program.start < startTime) startTime else program.start
+        val programStopTime = if (program.stop > endTime) endTime else program.stop
+        val layoutWidth = ((programStopTime - programStartTime) / 1000 / 60 * pixelsPerMinute).toInt()
+        return EpgProgramListItem(program, layoutWidth, viewModel.listItemFormatter.genreColor(program.contentType, 25))
+    }
 }
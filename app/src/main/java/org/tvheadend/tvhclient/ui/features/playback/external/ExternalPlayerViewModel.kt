@@ -18,6 +18,7 @@ import org.tvheadend.tvhclient.domain.entity.Channel
 import org.tvheadend.tvhclient.domain.entity.Connection
 import org.tvheadend.tvhclient.domain.entity.Recording
 import org.tvheadend.tvhclient.domain.entity.ServerStatus
+import org.tvheadend.tvhclient.util.htspClientVersion
 import timber.log.Timber
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.Executors
@@ -63,6 +64,7 @@ class ExternalPlayerViewModel(application: Application) : AndroidViewModel(appli
                 connection.hostname ?: "",
                 connection.port,
                 connectionTimeout,
+                htspClientVersion,
                 this, null)
 
         execService.execute {
@@ -0,0 +1,158 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import org.tvheadend.tvhclient.BuildConfig;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import timber.log.Timber;
+
+/**
+ * Remembers which MIME types the decoders of the device support. Querying
+ * the decoders enumerates all codecs of the device, which takes long on
+ * many Android TV devices. ExoPlayer keeps the results only while the app
+ * is running, so the results are also kept in a preferences file.
+ *
+ * MIME types without a decoder are answered from the file without a query.
+ * The decoders of the known MIME types are queried in the background when
+ * the player is created, so that they are ready when the stream starts.
+ * The file is cleared when the build fingerprint of the device or the
+ * version of the app has changed, e.g. after a system update.
+ */
+public class CodecCapabilityCache {
+
+    private static final String PREFERENCES_NAME = "codec_capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_SUPPORTED_MIME_TYPES = "supported_mime_types";
+    private static final String KEY_UNSUPPORTED_MIME_TYPES = "unsupported_mime_types";
+
+    // The MIME types of the stream readers that are queried before anything is known
+    private static final String[] DEFAULT_MIME_TYPES = {
+            MimeTypes.VIDEO_H264,
+            MimeTypes.VIDEO_H265,
+            MimeTypes.VIDEO_MPEG2,
+            MimeTypes.AUDIO_AAC,
+            MimeTypes.AUDIO_AC3,
+            MimeTypes.AUDIO_E_AC3,
+            MimeTypes.AUDIO_MPEG_L2};
+
+    private static CodecCapabilityCache instance;
+
+    private final SharedPreferences preferences;
+    private final Set<String> supportedMimeTypes;
+    private final Set<String> unsupportedMimeTypes;
+
+    private CodecCapabilityCache(@NonNull Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        final String fingerprint = Build.FINGERPRINT + "-" + BuildConfig.VERSION_CODE;
+        if (!fingerprint.equals(preferences.getString(KEY_FINGERPRINT, ""))) {
+            Timber.d("Device or app has changed, clearing the codec capabilities");
+            preferences.edit()
+                    .clear()
+                    .putString(KEY_FINGERPRINT, fingerprint)
+                    .apply();
+        }
+        // The sets of the preferences must not be modified
+        supportedMimeTypes = new HashSet<>(preferences.getStringSet(KEY_SUPPORTED_MIME_TYPES, new HashSet<>()));
+        unsupportedMimeTypes = new HashSet<>(preferences.getStringSet(KEY_UNSUPPORTED_MIME_TYPES, new HashSet<>()));
+    }
+
+    public static synchronized CodecCapabilityCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new CodecCapabilityCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns true if the device has a decoder for the given MIME type
+     */
+    public boolean isDecoderSupported(@NonNull String mimeType) {
+        try {
+            return getDecoderInfo(mimeType, false) != null;
+        } catch (MediaCodecUtil.DecoderQueryException e) {
+            Timber.d(e, "Could not query the decoder for " + mimeType);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the decoder for the given MIME type, or null if the device has none
+     */
+    @Nullable
+    MediaCodecInfo getDecoderInfo(@NonNull String mimeType, boolean requiresSecureDecoder) throws MediaCodecUtil.DecoderQueryException {
+        if (requiresSecureDecoder) {
+            return MediaCodecUtil.getDecoderInfo(mimeType, true);
+        }
+        synchronized (this) {
+            if (unsupportedMimeTypes.contains(mimeType)) {
+                return null;
+            }
+        }
+        MediaCodecInfo decoderInfo = MediaCodecUtil.getDecoderInfo(mimeType, false);
+        addResult(mimeType, decoderInfo != null);
+        return decoderInfo;
+    }
+
+    /**
+     * Returns the decoder that passes the audio through, or null if the device has none
+     */
+    @Nullable
+    MediaCodecInfo getPassthroughDecoderInfo() {
+        synchronized (this) {
+            if (unsupportedMimeTypes.contains(MimeTypes.AUDIO_RAW)) {
+                return null;
+            }
+        }
+        MediaCodecInfo decoderInfo = MediaCodecUtil.getPassthroughDecoderInfo();
+        addResult(MimeTypes.AUDIO_RAW, decoderInfo != null);
+        return decoderInfo;
+    }
+
+    /**
+     * Queries the decoders of the known and the default MIME types so that
+     * ExoPlayer has them ready when the stream starts. It shall be called
+     * from a background thread.
+     */
+    void warmUp() {
+        Set<String> mimeTypes = new HashSet<>();
+        synchronized (this) {
+            mimeTypes.addAll(supportedMimeTypes);
+            for (String mimeType : DEFAULT_MIME_TYPES) {
+                if (!unsupportedMimeTypes.contains(mimeType)) {
+                    mimeTypes.add(mimeType);
+                }
+            }
+        }
+        long startTime = System.currentTimeMillis();
+        for (String mimeType : mimeTypes) {
+            if (mimeType.equals(MimeTypes.AUDIO_RAW)) {
+                getPassthroughDecoderInfo();
+            } else {
+                isDecoderSupported(mimeType);
+            }
+        }
+        Timber.d("Queried the decoders of " + mimeTypes.size() + " MIME types in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    private synchronized void addResult(@NonNull String mimeType, boolean isSupported) {
+        Set<String> mimeTypes = isSupported ? supportedMimeTypes : unsupportedMimeTypes;
+        if (mimeTypes.add(mimeType)) {
+            Timber.d("Decoder for " + mimeType + " is " + (isSupported ? "supported" : "not supported"));
+            preferences.edit()
+                    .putStringSet(isSupported ? KEY_SUPPORTED_MIME_TYPES : KEY_UNSUPPORTED_MIME_TYPES, new HashSet<>(mimeTypes))
+                    .apply();
+        }
+    }
+}
@@ -2,15 +2,29 @@ package org.tvheadend.tvhclient.ui.features.playback.internal
 
 interface HtspDataSourceInterface {
 
+    /**
+     * The time in microseconds that the playback is behind the live stream
+     */
     val timeshiftOffsetPts: Long
 
-    val timeshiftStartTime: Long
-
+    /**
+     * The PTS of the oldest and the newest data in the local timeshift buffer
+     * or the one of the server in microseconds, or Long.MIN_VALUE when it is
+     * not known
+     */
     val timeshiftStartPts: Long
 
+    val timeshiftEndPts: Long
+
     fun setSpeed(tvhSpeed: Int)
 
     fun resume()
 
     fun pause()
+
+    /**
+     * Asks the server to send only the packets of the enabled streams.
+     * The stream numbers are the indexes from the subscription start.
+     */
+    fun filterStreams(enabledStreams: List<Int>, disabledStreams: List<Int>)
 }
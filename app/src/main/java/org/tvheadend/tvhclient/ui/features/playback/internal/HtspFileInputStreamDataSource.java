@@ -14,8 +14,10 @@ import org.tvheadend.tvhclient.data.service.htsp.HtspResponseListener;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import androidx.annotation.NonNull;
 import timber.log.Timber;
 
 public class HtspFileInputStreamDataSource implements DataSource, Closeable, HtspMessageListener, HtspDataSourceInterface {
@@ -86,12 +88,12 @@ public class HtspFileInputStreamDataSource implements DataSource, Closeable, Hts
     }
 
     @Override
-    public long getTimeshiftStartTime() {
+    public long getTimeshiftStartPts() {
         return Long.MIN_VALUE;
     }
 
     @Override
-    public long getTimeshiftStartPts() {
+    public long getTimeshiftEndPts() {
         return Long.MIN_VALUE;
     }
 
@@ -105,6 +107,11 @@ public class HtspFileInputStreamDataSource implements DataSource, Closeable, Hts
         // No action needed
     }
 
+    @Override
+    public void filterStreams(@NonNull List<Integer> enabledStreams, @NonNull List<Integer> disabledStreams) {
+        // No action needed, the recording file contains all streams
+    }
+
     @Override
     protected void finalize() throws Throwable {
         Timber.d("Finalizing file input data source");
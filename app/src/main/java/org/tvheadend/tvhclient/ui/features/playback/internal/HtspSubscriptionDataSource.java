@@ -17,11 +17,11 @@
 package org.tvheadend.tvhclient.ui.features.playback.internal;
 
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
 import android.net.Uri;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
+import android.util.SparseArray;
 
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.upstream.DataSource;
@@ -32,18 +32,23 @@ import org.tvheadend.tvhclient.R;
 import org.tvheadend.tvhclient.data.service.htsp.HtspConnection;
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessageListener;
-import org.tvheadend.tvhclient.data.service.HtspService;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
+import org.tvheadend.tvhclient.ui.features.playback.internal.reader.StreamReaderUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import timber.log.Timber;
 
 public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMessageListener, HtspDataSourceInterface {
@@ -57,37 +62,116 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
     private final Context context;
     private HtspConnection htspConnection;
     private final String streamProfile;
+    private final PlaybackMetrics playbackMetrics;
     private DataSpec dataSpec;
     private final int dataSourceNumber;
     private final int subscriptionId;
     private ByteBuffer byteBuffer;
-    private int timeshiftPeriod = 0;
+    // The frames of the messages are encoded into this buffer before they are
+    // copied into the byte buffer or the timeshift buffer. It is reused for all
+    // packets and only replaced by a larger one when a packet does not fit.
+    private ByteBuffer frameBuffer = ByteBuffer.allocate(256 * 1024);
+    // Keeps the stream on the device when the local timeshift is enabled.
+    // The data is then read from this buffer instead of the byte buffer.
+    private TimeshiftRingBuffer timeshiftBuffer;
+    private volatile int timeshiftPeriod = 0;
     private final ReentrantLock lock = new ReentrantLock();
     private boolean subscriptionStarted = false;
     private boolean isSubscribed = false;
+    // The streams that the server was asked not to send and the
+    // measured bitrates of all streams to report the saved bitrate
+    private final Set<Integer> disabledStreams = new HashSet<>();
+    private final SparseArray<StreamBitrate> streamBitrates = new SparseArray<>();
+
+    // Reception state for the profile switching. The drops are counted by
+    // the server when its queue of this subscription is full, the delay is
+    // the time that the oldest packet has been waiting in the queue.
+    private volatile long queueDrops = 0;
+    private volatile long queueDelayUs = 0;
+    private volatile long receivedBytes = 0;
+    private volatile long receivedPts = Long.MIN_VALUE;
+
+    // Timeshift state from the timeshiftStatus messages of the server.
+    // The times are the PTS of the stream in microseconds.
+    private volatile long timeshiftStartPts = Long.MIN_VALUE;
+    private volatile long timeshiftEndPts = Long.MIN_VALUE;
+    private volatile long timeshiftOffsetPts = 0;
+    // Packets that were sent before a skip request are
+    // dropped until the server has confirmed the skip
+    private volatile boolean skipPending = false;
+
+    // The positions of the video key frames in the buffer. The offsets count
+    // the bytes since the buffer was last cleared, so that a seek to a time
+    // that is still in the buffer can continue at the preceding key frame.
+    private final KeyFrameIndex keyFrames = new KeyFrameIndex();
+    // The types of the video streams by their index
+    private final SparseArray<String> videoStreamTypes = new SparseArray<>();
+    private long bytesWritten = 0;
+    private long bytesRead = 0;
+    private long lastBufferedPts = Long.MIN_VALUE;
+
+    private static final Set<String> VIDEO_STREAM_TYPES = new HashSet<>(Arrays.asList(
+            "MPEG2VIDEO", "H264", "HEVC", "VP8", "VP9", "THEORA"));
+
+    /**
+     * Measures the bitrate of a stream from the sizes of its packets
+     * while the stream is enabled. When the stream is disabled the last
+     * measured bitrate is kept until the stream is enabled again.
+     */
+    private static class StreamBitrate {
+        private long bytes;
+        private long startTime = System.currentTimeMillis();
+        private long bitrate;
+        private boolean frozen;
+
+        void add(int length) {
+            bytes += length;
+        }
+
+        long measure() {
+            long elapsedTime = System.currentTimeMillis() - startTime;
+            if (!frozen && elapsedTime >= 1000) {
+                bitrate = bytes * 8000 / elapsedTime;
+            }
+            return bitrate;
+        }
+
+        void freeze() {
+            measure();
+            frozen = true;
+        }
+
+        void restart() {
+            bytes = 0;
+            startTime = System.currentTimeMillis();
+            frozen = false;
+        }
+    }
 
     public static class Factory implements DataSource.Factory {
 
         private final Context context;
         private HtspConnection htspConnection;
         private final String streamProfile;
+        private final PlaybackMetrics playbackMetrics;
         private HtspSubscriptionDataSource dataSource;
 
-        Factory(Context context, HtspConnection htspConnection, String streamProfile) {
+        Factory(Context context, HtspConnection htspConnection, String streamProfile, @Nullable PlaybackMetrics playbackMetrics) {
             Timber.d("Initializing subscription data source factory");
             this.context = context;
             this.htspConnection = htspConnection;
             this.streamProfile = streamProfile;
+            this.playbackMetrics = playbackMetrics;
         }
 
         @Override
         public DataSource createDataSource() {
             Timber.d("Created new data source from factory");
-            dataSource = new HtspSubscriptionDataSource(context, htspConnection, streamProfile);
+            dataSource = new HtspSubscriptionDataSource(context, htspConnection, streamProfile, playbackMetrics);
             return dataSource;
         }
 
-        HtspDataSourceInterface getCurrentDataSource() {
+        HtspSubscriptionDataSource getCurrentDataSource() {
             Timber.d("Returning data source");
             return dataSource;
         }
@@ -100,12 +184,12 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
         }
     }
 
-    private HtspSubscriptionDataSource(Context context, HtspConnection htspConnection, String streamProfile) {
+    private HtspSubscriptionDataSource(Context context, HtspConnection htspConnection, String streamProfile, @Nullable PlaybackMetrics playbackMetrics) {
         Timber.d("Initializing subscription data source");
         this.context = context;
         this.htspConnection = htspConnection;
-        this.htspConnection.addMessageListener(this);
         this.streamProfile = streamProfile;
+        this.playbackMetrics = playbackMetrics;
 
         SharedPreferences mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
         boolean timeshiftEnabled = mSharedPreferences.getBoolean("timeshift_enabled", context.getResources().getBoolean(R.bool.pref_default_timeshift_enabled));
@@ -116,22 +200,41 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
 
         dataSourceNumber = dataSourceCount.incrementAndGet();
         subscriptionId = subscriptionCount.incrementAndGet();
+        // Only the messages of this subscription are passed to this data source
+        this.htspConnection.addSubscriptionListener(subscriptionId, this);
 
         Timber.d("New subscription data source instantiated (" + dataSourceNumber + ")");
 
-        try {
-            // Create the buffer, and place the HtspSubscriptionDataSource header in place.
-            byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-            byteBuffer.limit(HEADER.length);
-            byteBuffer.put(HEADER);
-            byteBuffer.position(0);
+        // Also when the local timeshift has been disabled since the files were left
+        TimeshiftRingBuffer.deleteStaleFiles(context.getCacheDir());
+        boolean clientTimeshiftEnabled = mSharedPreferences.getBoolean("client_timeshift_enabled", context.getResources().getBoolean(R.bool.pref_default_client_timeshift_enabled));
+        if (clientTimeshiftEnabled) {
+            int bufferSize = Integer.valueOf(mSharedPreferences.getString("client_timeshift_buffer_size", context.getResources().getString(R.string.pref_default_client_timeshift_buffer_size)));
+            try {
+                timeshiftBuffer = new TimeshiftRingBuffer(TimeshiftRingBuffer.getFile(context.getCacheDir(), subscriptionId), bufferSize * 1024 * 1024);
+                timeshiftBuffer.write(HEADER, 0, HEADER.length, Long.MIN_VALUE, false);
+                // Pausing and seeking is handled locally, the server does not need to keep the stream
+                timeshiftPeriod = 0;
+            } catch (IOException | OutOfMemoryError e) {
+                Timber.e(e, "Could not create local timeshift buffer of " + bufferSize + " MB, using the memory buffer");
+            }
+        }
 
-        } catch (OutOfMemoryError e) {
-            // Since we're allocating a large buffer here, it's fairly safe to assume we'll have
-            // enough memory to catch and throw this exception. We do this, as each OOM exception
-            // message is unique (lots of #'s of bytes available/used/etc) and means crash reporting
-            // doesn't group things nicely.
-            throw new RuntimeException("OutOfMemoryError when allocating subscription data source buffer (" + dataSourceNumber + ")", e);
+        if (timeshiftBuffer == null) {
+            try {
+                // Create the buffer, and place the HtspSubscriptionDataSource header in place.
+                byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+                byteBuffer.limit(HEADER.length);
+                byteBuffer.put(HEADER);
+                byteBuffer.position(0);
+
+            } catch (OutOfMemoryError e) {
+                // Since we're allocating a large buffer here, it's fairly safe to assume we'll have
+                // enough memory to catch and throw this exception. We do this, as each OOM exception
+                // message is unique (lots of #'s of bytes available/used/etc) and means crash reporting
+                // doesn't group things nicely.
+                throw new RuntimeException("OutOfMemoryError when allocating subscription data source buffer (" + dataSourceNumber + ")", e);
+            }
         }
     }
 
@@ -169,6 +272,9 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
                     Timber.d("Received subscribe response");
                     int availableTimeshiftPeriod = response.getInteger("timeshiftPeriod", 0);
                     Timber.d("Available timeshift period in seconds: " + availableTimeshiftPeriod);
+                    if (availableTimeshiftPeriod == 0) {
+                        timeshiftPeriod = 0;
+                    }
                 });
                 isSubscribed = true;
             }
@@ -176,7 +282,14 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
 
         Timber.d("Getting seek position");
         long seekPosition = this.dataSpec.position;
-        if (seekPosition > 0 && timeshiftPeriod > 0) {
+        if (seekPosition > 0 && timeshiftBuffer != null) {
+            lock.lock();
+            try {
+                timeshiftBuffer.seek(seekPosition);
+            } finally {
+                lock.unlock();
+            }
+        } else if (seekPosition > 0 && !seekInBuffer(seekPosition) && timeshiftPeriod > 0) {
             Timber.d("Sending subscription skip to server with id " + subscriptionId + " with time PTS: " + seekPosition);
 
             HtspMessage request = new HtspMessage();
@@ -185,10 +298,21 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
             request.put("time", seekPosition);
             request.put("absolute", 1);
 
-            htspConnection.sendMessage(request, null);
-
-            byteBuffer.clear();
-            byteBuffer.limit(0);
+            lock.lock();
+            try {
+                skipPending = true;
+                htspConnection.sendMessage(request, response -> {
+                    // The confirmation is sent as a separate message
+                    // unless the request itself has failed
+                    if (response.containsKey("error")) {
+                        Timber.w("Subscription skip failed: " + response.getString("error"));
+                        skipPending = false;
+                    }
+                });
+                clearBuffer();
+            } finally {
+                lock.unlock();
+            }
         }
 
         subscriptionStarted = true;
@@ -203,7 +327,7 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
         }
 
         // If the buffer is empty, block until we have at least 1 byte
-        while (subscriptionStarted && byteBuffer.remaining() == 0) {
+        while (subscriptionStarted && getBufferedBytes() == 0) {
             try {
                 Timber.v("Blocking for more data (" + dataSourceNumber + ")");
                 Thread.sleep(250);
@@ -214,7 +338,7 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
             }
         }
 
-        if (!subscriptionStarted && byteBuffer.remaining() == 0) {
+        if (!subscriptionStarted && getBufferedBytes() == 0) {
             Timber.d("End of input buffer");
             return C.RESULT_END_OF_INPUT;
         }
@@ -223,12 +347,21 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
 
         lock.lock();
         try {
+            if (timeshiftBuffer != null) {
+                length = timeshiftBuffer.read(buffer, offset, readLength);
+                updateBufferFill();
+                return length;
+            }
             int remaining = byteBuffer.remaining();
             length = remaining >= readLength ? readLength : remaining;
 
             byteBuffer.get(buffer, offset, length);
             byteBuffer.compact();
             byteBuffer.flip();
+
+            bytesRead += length;
+            keyFrames.removeBefore(bytesRead);
+            updateBufferFill();
         } finally {
             lock.unlock();
         }
@@ -256,7 +389,12 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
         String method = message.getMethod();
         switch (method) {
             case "subscriptionStart":
+                handleSubscriptionStart(message);
+                serializeMessageToBuffer(message);
+                break;
+
             case "muxpkt":
+                countStreamBytes(message);
                 serializeMessageToBuffer(message);
                 break;
 
@@ -264,12 +402,26 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
                 subscriptionStarted = false;
                 break;
 
-            case "subscriptionStatus":
             case "subscriptionSkip":
-            case "subscriptionSpeed":
+                handleSubscriptionSkip(message);
+                break;
+
+            case "timeshiftStatus":
+                handleTimeshiftStatus(message);
+                break;
+
             case "queueStatus":
+                handleQueueStatus(message);
+                break;
+
             case "signalStatus":
-            case "timeshiftStatus":
+                if (playbackMetrics != null) {
+                    playbackMetrics.setSignalStatus(message);
+                }
+                break;
+
+            case "subscriptionStatus":
+            case "subscriptionSpeed":
                 break;
 
             default:
@@ -284,7 +436,11 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
         request.put("method", "unsubscribe");
         request.put("subscriptionId", subscriptionId);
         htspConnection.sendMessage(request, null);
-        htspConnection.removeMessageListener(this);
+        htspConnection.removeSubscriptionListener(subscriptionId);
+
+        if (timeshiftBuffer != null) {
+            timeshiftBuffer.close();
+        }
 
         // Watch for memory leaks
         MainApplication.getRefWatcher(context).watch(this);
@@ -292,6 +448,10 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
 
     public void pause() {
         Timber.d("Pausing subscription data source " + dataSourceNumber + ")");
+        if (timeshiftBuffer != null) {
+            // The player stops reading while the stream is still received
+            return;
+        }
 
         HtspMessage request = new HtspMessage();
         request.put("method", "subscriptionSpeed");
@@ -302,11 +462,15 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
 
     @Override
     public long getTimeshiftOffsetPts() {
-        return 0;
+        return timeshiftOffsetPts;
     }
 
     @Override
     public void setSpeed(int tvhSpeed) {
+        if (timeshiftBuffer != null) {
+            Timber.d("Ignoring speed " + tvhSpeed + ", the server does not keep the stream of subscription " + subscriptionId);
+            return;
+        }
         HtspMessage request = new HtspMessage();
         request.put("method", "subscriptionSpeed");
         request.put("subscriptionId", subscriptionId);
@@ -315,44 +479,313 @@ public class HtspSubscriptionDataSource implements DataSource, Closeable, HtspMe
     }
 
     @Override
-    public long getTimeshiftStartTime() {
-        return 0;
+    public void filterStreams(@NonNull List<Integer> enabledStreams, @NonNull List<Integer> disabledStreams) {
+        List<Integer> enable = new ArrayList<>();
+        List<Integer> disable = new ArrayList<>();
+        long savedBitrate = 0;
+        long totalBitrate = 0;
+
+        synchronized (streamBitrates) {
+            for (int stream : enabledStreams) {
+                if (this.disabledStreams.remove(stream)) {
+                    enable.add(stream);
+                    StreamBitrate streamBitrate = streamBitrates.get(stream);
+                    if (streamBitrate != null) {
+                        streamBitrate.restart();
+                    }
+                }
+            }
+            for (int stream : disabledStreams) {
+                if (this.disabledStreams.add(stream)) {
+                    disable.add(stream);
+                    StreamBitrate streamBitrate = streamBitrates.get(stream);
+                    if (streamBitrate != null) {
+                        streamBitrate.freeze();
+                    }
+                }
+            }
+            if (enable.isEmpty() && disable.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < streamBitrates.size(); i++) {
+                long bitrate = streamBitrates.valueAt(i).measure();
+                totalBitrate += bitrate;
+                if (this.disabledStreams.contains(streamBitrates.keyAt(i))) {
+                    savedBitrate += bitrate;
+                }
+            }
+        }
+
+        Timber.d("Enabling streams " + enable + " and disabling streams " + disable + " of subscription " + subscriptionId
+                + ", saving about " + savedBitrate / 1000 + " of " + totalBitrate / 1000 + " kbit/s");
+
+        HtspMessage request = new HtspMessage();
+        request.put("method", "subscriptionFilterStream");
+        request.put("subscriptionId", subscriptionId);
+        if (!enable.isEmpty()) {
+            request.put("enable", enable);
+        }
+        if (!disable.isEmpty()) {
+            request.put("disable", disable);
+        }
+        htspConnection.sendMessage(request, null);
     }
 
     @Override
     public long getTimeshiftStartPts() {
-        return 0;
+        if (timeshiftBuffer != null) {
+            lock.lock();
+            try {
+                return timeshiftBuffer.getStartPts();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return timeshiftStartPts;
+    }
+
+    @Override
+    public long getTimeshiftEndPts() {
+        if (timeshiftBuffer != null) {
+            lock.lock();
+            try {
+                return timeshiftBuffer.getEndPts();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return timeshiftEndPts;
+    }
+
+    /**
+     * The number of packets that the server has dropped
+     * because this client did not receive them fast enough
+     */
+    long getQueueDrops() {
+        return queueDrops;
+    }
+
+    long getQueueDelayUs() {
+        return queueDelayUs;
+    }
+
+    /**
+     * The number of payload bytes of all streams that have been received
+     */
+    long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * The newest PTS that has been received in microseconds,
+     * or Long.MIN_VALUE if no packet has been received yet
+     */
+    long getReceivedPts() {
+        return receivedPts;
     }
 
     public void resume() {
         Timber.d("Resuming subscription data source " + dataSourceNumber + ")");
-        Intent intent = new Intent(context, HtspService.class);
-        intent.putExtra("method", "subscriptionSpeed");
-        intent.putExtra("subscriptionId", subscriptionId);
-        intent.putExtra("speed", 100);
-        context.startService(intent);
+        if (timeshiftBuffer != null) {
+            return;
+        }
+        // The subscription belongs to the connection of the player, not of the service
+        setSpeed(100);
     }
 
     // Misc Internal Methods
+    private void handleSubscriptionStart(@NonNull HtspMessage message) {
+        lock.lock();
+        try {
+            videoStreamTypes.clear();
+            for (Object obj : message.getList("streams")) {
+                HtspMessage stream = (HtspMessage) obj;
+                String type = stream.getString("type");
+                if (VIDEO_STREAM_TYPES.contains(type)) {
+                    videoStreamTypes.put(stream.getInteger("index"), type);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void handleSubscriptionSkip(@NonNull HtspMessage message) {
+        if (message.containsKey("error")) {
+            Timber.w("Server could not skip subscription " + subscriptionId);
+        } else {
+            Timber.d("Server skipped subscription " + subscriptionId + " to time " + message.getLong("time", 0));
+        }
+        skipPending = false;
+    }
+
+    private void handleQueueStatus(@NonNull HtspMessage message) {
+        queueDrops = message.getLong("Bdrops", 0) + message.getLong("Pdrops", 0) + message.getLong("Idrops", 0);
+        queueDelayUs = message.getLong("delay", 0);
+        if (playbackMetrics != null) {
+            playbackMetrics.setQueueStatus(message);
+        }
+    }
+
+    /**
+     * Keeps the range of the server's timeshift buffer. The start and end are
+     * only contained when the buffer contains data. The shift is the time
+     * that the playback is behind the live stream.
+     */
+    private void handleTimeshiftStatus(@NonNull HtspMessage message) {
+        timeshiftStartPts = message.getLong("start", Long.MIN_VALUE);
+        timeshiftEndPts = message.getLong("end", Long.MIN_VALUE);
+        timeshiftOffsetPts = message.getLong("shift", 0);
+    }
+
+    /**
+     * Continues the playback at the last video key frame before the given time
+     * when the time is within the data that has not been read yet. The server
+     * does not need to skip and the received data is not discarded.
+     *
+     * @return True if the time is in the buffer, otherwise false
+     */
+    private boolean seekInBuffer(long timeUs) {
+        lock.lock();
+        try {
+            if (keyFrames.isEmpty() || timeUs > lastBufferedPts || keyFrames.getPts(0) > timeUs) {
+                return false;
+            }
+            int keyFrame = keyFrames.find(timeUs);
+            long position = keyFrames.getPosition(keyFrame);
+            long pts = keyFrames.getPts(keyFrame);
+            keyFrames.removeBefore(position);
+
+            int skippedBytes = (int) (position - bytesRead);
+            Timber.d("Seeking in buffer to time " + timeUs + ", skipping " + skippedBytes + " bytes to key frame at " + pts);
+            byteBuffer.position(skippedBytes);
+            byteBuffer.compact();
+            byteBuffer.flip();
+            bytesRead = position;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int getBufferedBytes() {
+        lock.lock();
+        try {
+            if (timeshiftBuffer != null) {
+                return timeshiftBuffer.available();
+            }
+            return byteBuffer.remaining();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateBufferFill() {
+        if (playbackMetrics != null) {
+            if (timeshiftBuffer != null) {
+                playbackMetrics.setBufferFill(timeshiftBuffer.available(), timeshiftBuffer.getCapacity());
+            } else {
+                playbackMetrics.setBufferFill(byteBuffer.remaining(), byteBuffer.capacity());
+            }
+        }
+    }
+
+    private boolean isKeyFrame(@NonNull HtspMessage message) {
+        // Without a video stream each packet can be decoded on its own
+        if (videoStreamTypes.size() == 0) {
+            return true;
+        }
+        String type = videoStreamTypes.get(message.getInteger("stream", -1));
+        if (type == null) {
+            return false;
+        }
+        // Index the same key frames that the stream readers detect, so
+        // that a seek in the buffer continues at a frame they can decode
+        byte[] payload = message.getByteArray("payload");
+        return StreamReaderUtils.isKeyFrame(type, payload, payload.length, message.getInteger("frametype", -1));
+    }
+
+    private void clearBuffer() {
+        byteBuffer.clear();
+        byteBuffer.limit(0);
+        keyFrames.clear();
+        bytesWritten = 0;
+        bytesRead = 0;
+        lastBufferedPts = Long.MIN_VALUE;
+    }
+
+    private void countStreamBytes(@NonNull HtspMessage message) {
+        int stream = message.getInteger("stream");
+        byte[] payload = message.getByteArray("payload");
+        synchronized (streamBitrates) {
+            StreamBitrate streamBitrate = streamBitrates.get(stream);
+            if (streamBitrate == null) {
+                streamBitrate = new StreamBitrate();
+                streamBitrates.put(stream, streamBitrate);
+            }
+            streamBitrate.add(payload.length);
+            receivedBytes += payload.length;
+            if (message.containsKey("pts")) {
+                receivedPts = Math.max(receivedPts, message.getLong("pts"));
+            }
+        }
+    }
+
     private void serializeMessageToBuffer(@NonNull HtspMessage message) {
         lock.lock();
         try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ObjectOutputStream objectOutput = new ObjectOutputStream(outputStream);
-            objectOutput.writeUnshared(message);
-            objectOutput.flush();
+            if (skipPending && message.containsKey("stream")) {
+                // Received before the server has skipped
+                return;
+            }
+            byte[] bytes;
+            int length;
+            if (message.getMethod().equals("muxpkt")) {
+                int frameSize = HtspStreamPacket.getPacketFrameSize(message);
+                if (frameBuffer.capacity() < frameSize) {
+                    frameBuffer = ByteBuffer.allocate(Math.max(frameSize, frameBuffer.capacity() * 2));
+                }
+                frameBuffer.clear();
+                HtspStreamPacket.writePacket(frameBuffer, message);
+                bytes = frameBuffer.array();
+                length = frameBuffer.position();
+            } else {
+                bytes = HtspStreamPacket.encodeMessage(message);
+                length = bytes.length;
+            }
+
+            if (timeshiftBuffer != null) {
+                boolean isPacket = message.containsKey("stream") && message.containsKey("pts");
+                timeshiftBuffer.write(bytes, 0, length,
+                        isPacket ? message.getLong("pts") : Long.MIN_VALUE,
+                        isPacket && isKeyFrame(message));
+                updateBufferFill();
+                return;
+            }
 
             byteBuffer.position(byteBuffer.limit());
             byteBuffer.limit(byteBuffer.capacity());
 
-            byteBuffer.put(outputStream.toByteArray());
+            byteBuffer.put(bytes, 0, length);
 
             byteBuffer.flip();
+
+            if (message.containsKey("stream") && message.containsKey("pts")) {
+                long pts = message.getLong("pts");
+                lastBufferedPts = Math.max(lastBufferedPts, pts);
+                if (isKeyFrame(message)) {
+                    keyFrames.add(bytesWritten, pts);
+                }
+            }
+            bytesWritten += length;
+            updateBufferFill();
         } catch (IOException e) {
             // Ignore?
             Timber.w("Caught IOException, ignoring (" + dataSourceNumber + ")", e);
         } catch (BufferOverflowException boe) {
             Timber.w("Caught BufferOverflowException, ignoring (" + dataSourceNumber + ")", boe);
+            // Nothing was written, make the buffered data readable again
+            byteBuffer.flip();
         } finally {
             lock.unlock();
             // Ignore
@@ -25,26 +25,46 @@ import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
+import org.tvheadend.tvhclient.ui.features.playback.internal.reader.FrameDropPolicy;
 import org.tvheadend.tvhclient.ui.features.playback.internal.reader.StreamReader;
 import org.tvheadend.tvhclient.ui.features.playback.internal.reader.StreamReadersFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import timber.log.Timber;
 
 class HtspSubscriptionExtractor implements Extractor {
 
-    private class HtspSeekMap implements SeekMap {
+    /**
+     * Provides the range of the timeshift buffer of the current data source,
+     * which is either the local buffer or the buffer of the server. The stream
+     * can only be seeked within this range. The position of a seek point is
+     * the PTS of the seek time, the data source continues at the key frame
+     * before it or sends it to the server.
+     */
+    private static class HtspSeekMap implements SeekMap {
+
+        private final HtspSubscriptionDataSource.Factory dataSourceFactory;
+
+        HtspSeekMap(@Nullable HtspSubscriptionDataSource.Factory dataSourceFactory) {
+            this.dataSourceFactory = dataSourceFactory;
+        }
+
         @Override
         public boolean isSeekable() {
-            return true;
+            HtspDataSourceInterface dataSource = dataSourceFactory != null ? dataSourceFactory.getCurrentDataSource() : null;
+            return dataSource != null
+                    && dataSource.getTimeshiftStartPts() != Long.MIN_VALUE
+                    && dataSource.getTimeshiftEndPts() != Long.MIN_VALUE;
         }
 
         @Override
@@ -54,19 +74,36 @@ class HtspSubscriptionExtractor implements Extractor {
 
         @Override
         public SeekPoints getSeekPoints(long timeUs) {
-            return null;
+            if (!isSeekable()) {
+                return new SeekPoints(SeekPoint.START);
+            }
+            HtspDataSourceInterface dataSource = dataSourceFactory.getCurrentDataSource();
+            long seekTimeUs = Math.min(Math.max(timeUs, dataSource.getTimeshiftStartPts()), dataSource.getTimeshiftEndPts());
+            // A position of zero is the start of the live stream without a seek
+            return new SeekPoints(new SeekPoint(seekTimeUs, Math.max(seekTimeUs, 1)));
         }
-
     }
 
     private final Context mContext;
     private ExtractorOutput mOutput;
+    private final HtspSeekMap mSeekMap;
+    private final PlaybackMetrics mPlaybackMetrics;
+    private final FrameDropPolicy mFrameDropPolicy;
     private final SparseArray<StreamReader> mStreamReaders = new SparseArray<>();
 
-    private final byte[] mRawBytes = new byte[1024 * 1024];
+    // The frames of the data source are read into this buffer. The bytes
+    // of an incomplete frame at the end remain for the next read.
+    private ByteBuffer mFrames = ByteBuffer.allocate(1024 * 1024);
+    private boolean mHeaderSkipped = false;
+    // The packets are read into the same instance to avoid allocations
+    private final HtspStreamPacket mPacket = new HtspStreamPacket();
 
-    public HtspSubscriptionExtractor(Context context) {
+    public HtspSubscriptionExtractor(Context context, @Nullable HtspSubscriptionDataSource.Factory dataSourceFactory,
+                                     @Nullable PlaybackMetrics playbackMetrics, @Nullable FrameDropPolicy frameDropPolicy) {
         mContext = context;
+        mSeekMap = new HtspSeekMap(dataSourceFactory);
+        mPlaybackMetrics = playbackMetrics;
+        mFrameDropPolicy = frameDropPolicy;
         Timber.d("New HtspExtractor instantiated");
     }
 
@@ -86,47 +123,73 @@ class HtspSubscriptionExtractor implements Extractor {
     public void init(ExtractorOutput output) {
         Timber.i( "Initializing HTSP Extractor");
         mOutput = output;
-        mOutput.seekMap(new HtspSeekMap());
+        mOutput.seekMap(mSeekMap);
     }
 
     @Override
     public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException, InterruptedException {
-        int bytesRead = input.read(mRawBytes, 0, mRawBytes.length);
+        int bytesRead = input.read(mFrames.array(), mFrames.position(), mFrames.remaining());
 
         Timber.v( "Read " + bytesRead + " bytes");
+        if (bytesRead <= 0) {
+            return RESULT_CONTINUE;
+        }
+        if (mPlaybackMetrics != null) {
+            mPlaybackMetrics.addExtractedBytes(bytesRead);
+        }
 
-        ObjectInputStream objectInput = null;
+        mFrames.position(mFrames.position() + bytesRead);
+        mFrames.flip();
 
-        try (
-                // N.B. Don't add the objectInput to this bit, it breaks stuff
-                ByteArrayInputStream inputStream = new ByteArrayInputStream(mRawBytes, 0, bytesRead)
-        ) {
-            while (inputStream.available() > 0) {
-                objectInput = new ObjectInputStream(inputStream);
-                handleMessage((HtspMessage) objectInput.readUnshared());
+        if (!mHeaderSkipped) {
+            if (mFrames.remaining() < HtspSubscriptionDataSource.HEADER.length) {
+                mFrames.compact();
+                return RESULT_CONTINUE;
             }
-        } catch (IOException e) {
-            // TODO: This is a problem, and returning RESULT_CONTINUE is a hack... I think?
-            Timber.w( "Caught IOException, returning RESULT_CONTINUE");
-            return RESULT_CONTINUE;
-        } catch (ClassNotFoundException e) {
-            Timber.w( "Class Not Found");
-        } finally {
-            try {
-                if (objectInput != null) {
-                    objectInput.close();
+            mFrames.position(HtspSubscriptionDataSource.HEADER.length);
+            mHeaderSkipped = true;
+        }
+
+        try {
+            int frameSize;
+            while ((frameSize = HtspStreamPacket.peekFrameSize(mFrames)) != -1) {
+                if (mFrames.remaining() < frameSize) {
+                    if (frameSize > mFrames.capacity()) {
+                        // Rarely a key frame does not fit, keep its start in a larger buffer
+                        Timber.d("Increasing the frame buffer to " + frameSize + " bytes");
+                        ByteBuffer frames = ByteBuffer.allocate(frameSize);
+                        frames.put(mFrames);
+                        frames.flip();
+                        mFrames = frames;
+                    }
+                    break;
+                }
+                if (HtspStreamPacket.peekFrameType(mFrames) == HtspStreamPacket.TYPE_PACKET) {
+                    mPacket.readPacket(mFrames);
+                    handleMuxpkt(mPacket);
+                } else {
+                    handleMessage(HtspStreamPacket.readMessage(mFrames));
                 }
-            } catch (IOException ex) {
-                // Ignore
             }
+        } catch (IOException e) {
+            // The frames cannot be found again in the remaining data
+            Timber.w(e, "Discarding invalid data");
+            mFrames.clear();
+            return RESULT_CONTINUE;
         }
 
+        mFrames.compact();
         return RESULT_CONTINUE;
     }
 
     @Override
     public void seek(long position, long timeUs) {
         Timber.d( "Seeking HTSP Extractor to position:" + position + " and timeUs:" + timeUs);
+        // The data source continues at the start of a frame
+        mFrames.clear();
+        for (int i = 0; i < mStreamReaders.size(); i++) {
+            mStreamReaders.valueAt(i).seek();
+        }
     }
 
     @Override
@@ -139,22 +202,24 @@ class HtspSubscriptionExtractor implements Extractor {
     private void handleMessage(@NonNull final HtspMessage message) {
         final String method = message.getString("method");
 
+        // The packets are not passed as messages but as HtspStreamPacket
         if (method.equals("subscriptionStart")) {
             handleSubscriptionStart(message);
-        } else if (method.equals("muxpkt")) {
-            handleMuxpkt(message);
         }
     }
 
     private void handleSubscriptionStart(@NonNull final HtspMessage message) {
         Timber.i( "Handling Subscription Start");
 
-        StreamReadersFactory streamReadersFactory = new StreamReadersFactory(mContext);
+        StreamReadersFactory streamReadersFactory = new StreamReadersFactory(mContext, mFrameDropPolicy);
 
         for (Object obj : message.getList("streams")) {
             HtspMessage stream = (HtspMessage) obj;
             final int streamIndex = stream.getInteger("index");
             final String streamType = stream.getString("type");
+            if (mPlaybackMetrics != null) {
+                mPlaybackMetrics.addStream(streamIndex, streamType);
+            }
 
             final StreamReader streamReader = streamReadersFactory.createStreamReader(streamType);
             if (streamReader != null) {
@@ -170,7 +235,7 @@ class HtspSubscriptionExtractor implements Extractor {
         mOutput.endTracks();
     }
 
-    private void handleMuxpkt(@NonNull final HtspMessage message) {
+    private void handleMuxpkt(@NonNull final HtspStreamPacket packet) {
 //        subscriptionId     u32   required   Subscription ID.
 //        frametype          u32   required   Type of frame as ASCII value: 'I', 'P', 'B'
 //        stream             u32   required   Stream index. Corresponds to the streams reported in the subscriptionStart message.
@@ -179,7 +244,10 @@ class HtspSubscriptionExtractor implements Extractor {
 //        duration           u32   required   Duration of frame in µs.
 //        payload            bin   required   Actual frame data.
 
-        final int streamIndex = message.getInteger("stream");
+        final int streamIndex = packet.getStream();
+        if (mPlaybackMetrics != null) {
+            mPlaybackMetrics.addPacket(streamIndex, packet.getPayloadLength());
+        }
 
         final StreamReader streamReader = mStreamReaders.get(streamIndex);
         if (streamReader == null) {
@@ -187,6 +255,6 @@ class HtspSubscriptionExtractor implements Extractor {
             return;
         }
 
-        streamReader.consume(message);
+        streamReader.consume(packet);
     }
 }
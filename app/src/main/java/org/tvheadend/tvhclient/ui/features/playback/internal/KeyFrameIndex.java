@@ -0,0 +1,85 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+/**
+ * Keeps the positions and the PTS of the key frames in a buffer, ordered by
+ * the position and the PTS. The index is a ring of two primitive arrays, so
+ * that adding and removing key frames does not allocate. The arrays are only
+ * replaced by larger ones when more key frames are buffered than ever before.
+ *
+ * The index is not thread safe, the buffers call it with their lock held.
+ */
+class KeyFrameIndex {
+
+    private long[] positions = new long[1024];
+    private long[] times = new long[1024];
+    private int first = 0;
+    private int count = 0;
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void add(long position, long pts) {
+        if (count == positions.length) {
+            long[] newPositions = new long[count * 2];
+            long[] newTimes = new long[count * 2];
+            for (int i = 0; i < count; i++) {
+                newPositions[i] = positions[(first + i) % count];
+                newTimes[i] = times[(first + i) % count];
+            }
+            positions = newPositions;
+            times = newTimes;
+            first = 0;
+        }
+        int index = (first + count) % positions.length;
+        positions[index] = position;
+        times[index] = pts;
+        count++;
+    }
+
+    /**
+     * Removes the key frames before the given position
+     */
+    void removeBefore(long position) {
+        while (count > 0 && positions[first] < position) {
+            first = (first + 1) % positions.length;
+            count--;
+        }
+    }
+
+    void clear() {
+        first = 0;
+        count = 0;
+    }
+
+    /**
+     * Returns the number of the last key frame at or before the given time.
+     * Times before the first key frame return the first one.
+     * The index must not be empty.
+     */
+    int find(long timeUs) {
+        // Binary search for the last key frame at or before the time
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getPts(middle) <= timeUs) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the given key frame, the oldest one is zero
+     */
+    long getPosition(int keyFrame) {
+        return positions[(first + keyFrame) % positions.length];
+    }
+
+    long getPts(int keyFrame) {
+        return times[(first + keyFrame) % times.length];
+    }
+}
@@ -0,0 +1,138 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal
+
+import android.os.SystemClock
+import com.google.android.exoplayer2.C
+import com.google.android.exoplayer2.Player
+import timber.log.Timber
+import java.util.*
+
+/**
+ * Keeps the playback of a live stream at a small distance behind the newest
+ * received packet. The distance is the latency that is added by the player.
+ *
+ * The target latency follows the jitter of the arriving packets. The jitter
+ * is the range of the offset between the received media time and the
+ * local clock within the last samples. Each rebuffering adds to the target
+ * latency. The playback speed is slightly raised or lowered while the
+ * latency is not within a tolerance of the target. The correction stops
+ * when the user pauses or seeks, because the latency is then intended.
+ *
+ * The time from preparing the player until it is ready and the offset to the
+ * live stream of the server are logged. The offset contains the latency of
+ * the player and the delay of the queue on the server. The delay of the
+ * server itself is not known to the client.
+ */
+class LiveLatencyController {
+
+    var startupTime = C.TIME_UNSET
+        private set
+    var latency = C.TIME_UNSET
+        private set
+    var liveOffset = C.TIME_UNSET
+        private set
+    var targetLatency = MIN_TARGET_LATENCY_MS
+        private set
+    var speed = 1f
+        private set
+
+    private var isEnabled = false
+    private var isCorrecting = false
+    private var prepareTime = 0L
+    private var rebufferPenalty = 0L
+    private var lastPlaybackState = Player.STATE_IDLE
+    private val arrivalOffsets = ArrayDeque<Long>()
+
+    /**
+     * Starts the measurements of a new live stream
+     */
+    fun start() {
+        Timber.d("Starting live latency control")
+        isEnabled = true
+        isCorrecting = false
+        prepareTime = SystemClock.elapsedRealtime()
+        startupTime = C.TIME_UNSET
+        latency = C.TIME_UNSET
+        liveOffset = C.TIME_UNSET
+        rebufferPenalty = 0
+        targetLatency = MIN_TARGET_LATENCY_MS
+        speed = 1f
+        lastPlaybackState = Player.STATE_IDLE
+        arrivalOffsets.clear()
+    }
+
+    /**
+     * Stops the correction of the playback speed until the next stream is started
+     */
+    fun stop() {
+        if (isEnabled) {
+            Timber.d("Stopping live latency control")
+        }
+        isEnabled = false
+        speed = 1f
+    }
+
+    fun onPlaybackStateChanged(playbackState: Int) {
+        if (isEnabled && playbackState == Player.STATE_READY && startupTime == C.TIME_UNSET) {
+            startupTime = SystemClock.elapsedRealtime() - prepareTime
+            Timber.d("Live stream started after $startupTime ms")
+        }
+        if (isEnabled && playbackState == Player.STATE_BUFFERING && lastPlaybackState == Player.STATE_READY) {
+            rebufferPenalty = Math.min(rebufferPenalty + REBUFFER_PENALTY_MS, MAX_TARGET_LATENCY_MS)
+            Timber.d("Live stream is rebuffering, raising the target latency by $rebufferPenalty ms")
+        }
+        lastPlaybackState = playbackState
+    }
+
+    /**
+     * Adds a sample of the current playback
+     *
+     * @param receivedPts The newest PTS that has been received in microseconds
+     * @param position The playback position of the player in milliseconds
+     * @param queueDelayUs The time the oldest packet waits in the queue of the server
+     * @return The playback speed that shall be used
+     */
+    fun update(receivedPts: Long, position: Long, queueDelayUs: Long): Float {
+        if (!isEnabled || receivedPts == Long.MIN_VALUE) {
+            return speed
+        }
+        latency = receivedPts / 1000 - position
+        liveOffset = latency + queueDelayUs / 1000
+
+        arrivalOffsets.addLast(receivedPts / 1000 - SystemClock.elapsedRealtime())
+        if (arrivalOffsets.size > JITTER_SAMPLES) {
+            arrivalOffsets.removeFirst()
+        }
+        val jitter = Collections.max(arrivalOffsets) - Collections.min(arrivalOffsets)
+        targetLatency = Math.min(MIN_TARGET_LATENCY_MS + 2 * jitter + rebufferPenalty, MAX_TARGET_LATENCY_MS)
+
+        val error = latency - targetLatency
+        if (Math.abs(error) > MAX_CORRECTION_MS) {
+            // Far behind after a timeshift or a stall, catching up would take too long
+            speed = 1f
+            isCorrecting = false
+        } else if (Math.abs(error) > START_CORRECTION_MS || (isCorrecting && Math.abs(error) > STOP_CORRECTION_MS)) {
+            val correction = Math.max(Math.min(error / CORRECTION_DIVISOR, MAX_SPEED_CHANGE), -MAX_SPEED_CHANGE)
+            // Rounded so that small changes of the latency do not change the speed each time
+            speed = Math.round((1f + correction) * 100) / 100f
+            isCorrecting = true
+        } else {
+            speed = 1f
+            isCorrecting = false
+        }
+        Timber.v("Live latency $latency ms, target $targetLatency ms, jitter $jitter ms, offset $liveOffset ms, speed $speed")
+        return speed
+    }
+
+    companion object {
+        private const val JITTER_SAMPLES = 30
+        private const val MIN_TARGET_LATENCY_MS = 500L
+        private const val MAX_TARGET_LATENCY_MS = 5000L
+        private const val REBUFFER_PENALTY_MS = 500L
+
+        private const val START_CORRECTION_MS = 200L
+        private const val STOP_CORRECTION_MS = 50L
+        private const val MAX_CORRECTION_MS = 10000L
+        private const val CORRECTION_DIVISOR = 20000f
+        private const val MAX_SPEED_CHANGE = 0.04f
+    }
+}
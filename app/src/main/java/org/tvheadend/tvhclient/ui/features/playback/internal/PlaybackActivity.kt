@@ -73,6 +73,8 @@ class PlaybackActivity : AppCompatActivity(), PlayerControlView.VisibilityListen
     lateinit var elapsedTimeTextView: TextView
     @BindView(R.id.remaining_time)
     lateinit var remainingTimeTextView: TextView
+    @BindView(R.id.playback_metrics)
+    lateinit var playbackMetricsTextView: TextView
 
     @BindView(R.id.player_rewind)
     lateinit var rewindImageView: ImageButton
@@ -100,6 +102,7 @@ class PlaybackActivity : AppCompatActivity(), PlayerControlView.VisibilityListen
         ButterKnife.bind(this)
 
         timeshiftSupported = sharedPreferences.getBoolean("timeshift_enabled", resources.getBoolean(R.bool.pref_default_timeshift_enabled))
+                || sharedPreferences.getBoolean("client_timeshift_enabled", resources.getBoolean(R.bool.pref_default_client_timeshift_enabled))
 
         statusTextView.setText(R.string.connecting_to_server)
         rewindImageView.visibility = View.INVISIBLE
@@ -204,6 +207,10 @@ class PlaybackActivity : AppCompatActivity(), PlayerControlView.VisibilityListen
             Timber.d("Received remaining time $remainingTime")
             remainingTimeTextView.text = remainingTime
         })
+        viewModel.playbackMetricsText.observe(this, Observer { metrics ->
+            playbackMetricsTextView.text = metrics
+            playbackMetricsTextView.visibility = View.VISIBLE
+        })
     }
 
     override fun attachBaseContext(context: Context) {
@@ -0,0 +1,131 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Collects measurements along the playback path of a live stream: the fill
+ * level of the subscription buffer, the throughput of the extractor, the
+ * bitrate and frame rate of each stream, the frames dropped by the video
+ * renderer and the queue and signal status that the server reports.
+ *
+ * The counters are updated by the connection thread, the loading thread of
+ * the player and the main thread. Each sample returns the rates since the
+ * previous sample and starts a new measuring period.
+ */
+public class PlaybackMetrics {
+
+    private static class StreamCounter {
+        private final String type;
+        private long bytes;
+        private int packets;
+
+        StreamCounter(String type) {
+            this.type = type;
+        }
+    }
+
+    private final SparseArray<StreamCounter> streams = new SparseArray<>();
+    private long extractedBytes;
+    private int bufferedBytes;
+    private int bufferCapacity;
+
+    private long queuePackets;
+    private long queueDelayUs;
+    private long queueDrops;
+    private String signalStatus = "";
+
+    private long lastSampleTime = SystemClock.elapsedRealtime();
+    private long lastDroppedFrames;
+
+    /**
+     * Removes the streams and counters of the previous subscription
+     */
+    synchronized void reset() {
+        streams.clear();
+        extractedBytes = 0;
+        bufferedBytes = 0;
+        queuePackets = 0;
+        queueDelayUs = 0;
+        queueDrops = 0;
+        signalStatus = "";
+        lastSampleTime = SystemClock.elapsedRealtime();
+        lastDroppedFrames = 0;
+    }
+
+    synchronized void addStream(int index, String type) {
+        streams.put(index, new StreamCounter(type));
+    }
+
+    synchronized void addPacket(int index, int length) {
+        StreamCounter counter = streams.get(index);
+        if (counter != null) {
+            counter.bytes += length;
+            counter.packets++;
+        }
+    }
+
+    synchronized void addExtractedBytes(int length) {
+        extractedBytes += length;
+    }
+
+    synchronized void setBufferFill(int bufferedBytes, int bufferCapacity) {
+        this.bufferedBytes = bufferedBytes;
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    synchronized void setQueueStatus(@NonNull HtspMessage message) {
+        queuePackets = message.getLong("packets", 0);
+        queueDelayUs = message.getLong("delay", 0);
+        queueDrops = message.getLong("Bdrops", 0) + message.getLong("Pdrops", 0) + message.getLong("Idrops", 0);
+    }
+
+    synchronized void setSignalStatus(@NonNull HtspMessage message) {
+        signalStatus = message.getString("feStatus", "")
+                + ", SNR " + message.getLong("feSNR", 0)
+                + ", signal " + message.getLong("feSignal", 0)
+                + ", BER " + message.getLong("feBER", 0)
+                + ", UNC " + message.getLong("feUNC", 0);
+    }
+
+    /**
+     * Returns the measurements since the previous sample, one line per value
+     *
+     * @param droppedFrames The number of frames that the video renderer has dropped since the playback was started
+     */
+    @NonNull
+    synchronized String sample(long droppedFrames) {
+        long time = SystemClock.elapsedRealtime();
+        long elapsedTime = Math.max(time - lastSampleTime, 1);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "Buffer %d kB (%d%%), extractor %d kbit/s",
+                bufferedBytes / 1024, bufferCapacity > 0 ? bufferedBytes * 100L / bufferCapacity : 0,
+                extractedBytes * 8 / elapsedTime));
+        for (int i = 0; i < streams.size(); i++) {
+            StreamCounter counter = streams.valueAt(i);
+            builder.append(String.format(Locale.US, "\nStream %d %s %d kbit/s, %.1f packets/s",
+                    streams.keyAt(i), counter.type, counter.bytes * 8 / elapsedTime, counter.packets * 1000f / elapsedTime));
+            counter.bytes = 0;
+            counter.packets = 0;
+        }
+        builder.append(String.format(Locale.US, "\nDropped frames %d (+%d)",
+                droppedFrames, Math.max(droppedFrames - lastDroppedFrames, 0)));
+        builder.append(String.format(Locale.US, "\nServer queue %d packets, delay %d ms, drops %d",
+                queuePackets, queueDelayUs / 1000, queueDrops));
+        if (!signalStatus.isEmpty()) {
+            builder.append("\nSignal ").append(signalStatus);
+        }
+
+        extractedBytes = 0;
+        lastDroppedFrames = droppedFrames;
+        lastSampleTime = time;
+        return builder.toString();
+    }
+}
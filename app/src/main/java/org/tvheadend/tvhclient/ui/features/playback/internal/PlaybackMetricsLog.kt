@@ -0,0 +1,47 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal
+
+import android.content.Context
+import timber.log.Timber
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.text.SimpleDateFormat
+import java.util.*
+
+/**
+ * Appends the playback metrics to a log file in the log folder of the app.
+ * When the file exceeds its maximum size it is renamed to a backup file
+ * and a new file is started, so at most two files are kept.
+ */
+class PlaybackMetricsLog(context: Context) {
+
+    private val logPath = File(context.cacheDir, "logs")
+    private val file = File(logPath, "playback_metrics.log")
+    private val backupFile = File(logPath, "playback_metrics.1.log")
+    private val timeFormat = SimpleDateFormat("dd.MM.yyyy HH:mm:ss", Locale.US)
+
+    fun write(metrics: String) {
+        if (!logPath.exists() && !logPath.mkdirs()) {
+            return
+        }
+        if (file.length() > MAX_FILE_SIZE) {
+            if (backupFile.exists() && !backupFile.delete()) {
+                Timber.d("Could not remove playback metrics log ${backupFile.name}")
+            }
+            if (!file.renameTo(backupFile)) {
+                Timber.d("Could not rotate playback metrics log ${file.name}")
+            }
+        }
+        try {
+            FileOutputStream(file, true).use { stream ->
+                stream.write((timeFormat.format(System.currentTimeMillis()) + " " + metrics.replace('\n', '|') + "\n").toByteArray())
+            }
+        } catch (e: IOException) {
+            // NOP
+        }
+    }
+
+    companion object {
+        private const val MAX_FILE_SIZE = 1024 * 1024L
+    }
+}
@@ -13,16 +13,21 @@ import com.google.android.exoplayer2.source.ExtractorMediaSource
 import com.google.android.exoplayer2.source.TrackGroupArray
 import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector
+import com.google.android.exoplayer2.trackselection.MappingTrackSelector.SelectionOverride
+import com.google.android.exoplayer2.trackselection.TrackSelection
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray
 import com.google.android.exoplayer2.upstream.DefaultAllocator
 import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter
+import com.google.android.exoplayer2.util.MimeTypes
 import com.google.android.exoplayer2.video.VideoListener
 import org.tvheadend.tvhclient.MainApplication
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.data.repository.AppRepository
 import org.tvheadend.tvhclient.data.service.htsp.HtspConnection
 import org.tvheadend.tvhclient.data.service.htsp.HtspConnectionStateListener
+import org.tvheadend.tvhclient.ui.features.playback.internal.reader.FrameDropPolicy
 import org.tvheadend.tvhclient.ui.features.playback.internal.utils.Rational
+import org.tvheadend.tvhclient.util.htspClientVersion
 import timber.log.Timber
 import java.util.*
 import java.util.concurrent.Executors
@@ -43,7 +48,26 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     private val htspConnection: HtspConnection
     private var htspSubscriptionDataSourceFactory: HtspSubscriptionDataSource.Factory? = null
     private var htspFileInputStreamDataSourceFactory: HtspFileInputStreamDataSource.Factory? = null
-    private var dataSource: HtspDataSourceInterface? = null
+    private val dataSource: HtspDataSourceInterface?
+        get() = htspSubscriptionDataSourceFactory?.currentDataSource
+                ?: htspFileInputStreamDataSourceFactory?.currentDataSource
+    // The server can skip the unselected streams since HTSP version 23
+    private var streamFilterSupported = false
+    // Switches a live stream to the fallback profile when the reception is too slow
+    private val profileSwitchController = ProfileSwitchController()
+    private var profileSwitchingEnabled = false
+    private var channelId = 0
+    // The tracks that the user had selected before the channel was subscribed
+    // again with another profile, they are selected again in the new tracks
+    private var pendingSelectionOverrides: List<SavedSelectionOverride>? = null
+    // Holds live streams close behind the newest received packet
+    private val liveLatencyController = LiveLatencyController()
+    private val lowLatencyEnabled: Boolean
+    private val playbackSpeedSupported: Boolean
+    // Measurements of the playback path, only collected when the overlay is enabled
+    private val playbackMetrics: PlaybackMetrics?
+    private val frameDropPolicy = FrameDropPolicy()
+    private val playbackMetricsLog: PlaybackMetricsLog?
 
     // Player and helpers
     val player: SimpleExoPlayer
@@ -64,6 +88,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     var nextTitle: MutableLiveData<String> = MutableLiveData()
     var elapsedTime: MutableLiveData<String> = MutableLiveData()
     var remainingTime: MutableLiveData<String> = MutableLiveData()
+    var playbackMetricsText: MutableLiveData<String> = MutableLiveData()
 
     // Contains the information like icon, title, subtitle, start
     // and stop times either for a channel or a recording
@@ -72,6 +97,10 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     // Handler and runnable to update the playback information every second
     private lateinit var timeUpdateRunnable: Runnable
     private val timeUpdateHandler = Handler()
+    // Runnable to sample the reception and the latency of a live stream every second
+    private lateinit var liveStreamRunnable: Runnable
+    // Runnable to sample the playback metrics every second
+    private lateinit var playbackMetricsRunnable: Runnable
 
     init {
         Timber.d("Initializing view model")
@@ -90,6 +119,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                 connection.hostname ?: "",
                 connection.port,
                 connectionTimeout,
+                htspClientVersion,
                 this, null)
 
         execService.execute {
@@ -103,19 +133,47 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         }
 
         Timber.d("Creating load control")
-        val bufferTimeText = sharedPreferences.getString("buffer_playback_ms", context.resources.getString(R.string.pref_default_buffer_playback_ms))
-        val bufferTime = bufferTimeText!!.toInt()
-        val loadControl = DefaultLoadControl(
-                DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
-                DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
-                DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
-                bufferTime,
-                DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
-                C.DEFAULT_BUFFER_SEGMENT_SIZE,
-                true)
+        lowLatencyEnabled = sharedPreferences.getBoolean("low_latency_live_enabled", context.resources.getBoolean(R.bool.pref_default_low_latency_live_enabled))
+        // The speed of passed through audio cannot be changed
+        playbackSpeedSupported = !sharedPreferences.getBoolean("audio_passthrough_decoder_enabled", context.resources.getBoolean(R.bool.pref_default_audio_passthrough_decoder_enabled))
+        val loadControl = if (lowLatencyEnabled) {
+            // Start as soon as a few frames are available. The latency of live
+            // streams is then held by the playback speed, not by the buffer.
+            DefaultLoadControl(
+                    DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+                    LOW_LATENCY_MIN_BUFFER_MS,
+                    DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+                    LOW_LATENCY_BUFFER_FOR_PLAYBACK_MS,
+                    LOW_LATENCY_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+                    C.DEFAULT_BUFFER_SEGMENT_SIZE,
+                    true)
+        } else {
+            val bufferTimeText = sharedPreferences.getString("buffer_playback_ms", context.resources.getString(R.string.pref_default_buffer_playback_ms))
+            val bufferTime = bufferTimeText!!.toInt()
+            DefaultLoadControl(
+                    DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+                    DefaultLoadControl.DEFAULT_MIN_BUFFER_MS,
+                    DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+                    bufferTime,
+                    DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS,
+                    C.DEFAULT_BUFFER_SEGMENT_SIZE,
+                    true)
+        }
+
+        if (sharedPreferences.getBoolean("playback_metrics_enabled", context.resources.getBoolean(R.bool.pref_default_playback_metrics_enabled))) {
+            playbackMetrics = PlaybackMetrics()
+            playbackMetricsLog = PlaybackMetricsLog(context)
+        } else {
+            playbackMetrics = null
+            playbackMetricsLog = null
+        }
+
+        // Query the decoders while the connection is opened and the channel is subscribed
+        val codecCapabilityCache = CodecCapabilityCache.getInstance(context)
+        execService.execute { codecCapabilityCache.warmUp() }
 
         Timber.d("Creating player instance")
-        player = ExoPlayerFactory.newSimpleInstance(TvheadendRenderersFactory(context), trackSelector, loadControl)
+        player = ExoPlayerFactory.newSimpleInstance(TvheadendRenderersFactory(context, codecCapabilityCache), trackSelector, loadControl)
         player.addVideoListener(this)
         player.addListener(this)
 
@@ -125,6 +183,41 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
             elapsedTime.postValue(playbackInformation.elapsedTime)
             timeUpdateHandler.postDelayed(timeUpdateRunnable, 1000)
         }
+
+        liveStreamRunnable = Runnable {
+            val dataSource = htspSubscriptionDataSourceFactory?.currentDataSource
+            if (dataSource != null && player.playWhenReady) {
+                if (lowLatencyEnabled) {
+                    updatePlaybackSpeed(dataSource)
+                }
+                player.videoDecoderCounters?.let { decoderCounters ->
+                    decoderCounters.ensureUpdated()
+                    frameDropPolicy.update(decoderCounters.droppedBufferCount.toLong())
+                }
+                val bufferedTime = player.bufferedPosition - player.currentPosition
+                if (profileSwitchingEnabled && profileSwitchController.addSample(dataSource.queueDrops, dataSource.queueDelayUs,
+                                dataSource.receivedBytes, dataSource.receivedPts, bufferedTime)) {
+                    // The profile of a subscription cannot be changed, the channel is subscribed again
+                    val selectionOverrides = saveSelectionOverrides()
+                    releaseMediaSource()
+                    pendingSelectionOverrides = selectionOverrides
+                    loadMediaSourceForChannel(channelId)
+                    return@Runnable
+                }
+            }
+            timeUpdateHandler.postDelayed(liveStreamRunnable, 1000)
+        }
+
+        playbackMetricsRunnable = Runnable {
+            playbackMetrics?.let { metrics ->
+                val decoderCounters = player.videoDecoderCounters
+                decoderCounters?.ensureUpdated()
+                val text = metrics.sample(decoderCounters?.droppedBufferCount?.toLong() ?: 0)
+                playbackMetricsText.postValue(text)
+                execService.execute { playbackMetricsLog?.write(text) }
+            }
+            timeUpdateHandler.postDelayed(playbackMetricsRunnable, 1000)
+        }
     }
 
     fun loadMediaSource(bundle: Bundle?) {
@@ -134,6 +227,11 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         loadMediaSourceForChannel(bundle?.getInt("channelId") ?: 0)
         loadMediaSourceForRecording(bundle?.getInt("dvrId") ?: 0)
 
+        timeUpdateHandler.removeCallbacks(playbackMetricsRunnable)
+        if (playbackMetrics != null) {
+            timeUpdateHandler.postDelayed(playbackMetricsRunnable, 1000)
+        }
+
         Timber.d("Showing playback information")
         channelIcon.postValue(playbackInformation.channelIcon)
         channelName.postValue(playbackInformation.channelName)
@@ -150,13 +248,27 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
 
             Timber.d("Creating data source")
             val serverStatus = appRepository.serverStatusData.activeItem
-            val serverProfile = appRepository.serverProfileData.getItemById(serverStatus.htspPlaybackServerProfileId)
-            htspSubscriptionDataSourceFactory = HtspSubscriptionDataSource.Factory(context, htspConnection, serverProfile?.name)
-            dataSource = htspSubscriptionDataSourceFactory?.currentDataSource
+            streamFilterSupported = serverStatus.htspVersion >= 23
+            var serverProfile = appRepository.serverProfileData.getItemById(serverStatus.htspPlaybackServerProfileId)
+            val fallbackServerProfile = appRepository.serverProfileData.getItemById(serverStatus.playbackTranscodingProfileId)
+            profileSwitchingEnabled = fallbackServerProfile != null && fallbackServerProfile.id != serverProfile?.id
+            if (profileSwitchingEnabled) {
+                if (profileSwitchController.isFallbackProfileUsed) {
+                    serverProfile = fallbackServerProfile
+                }
+                Timber.d("Using profile ${serverProfile?.name}, fallback profile is ${fallbackServerProfile?.name}")
+                this.channelId = channelId
+                profileSwitchController.reset()
+            }
+            if (lowLatencyEnabled) {
+                liveLatencyController.start()
+            }
+            timeUpdateHandler.postDelayed(liveStreamRunnable, 1000)
+            htspSubscriptionDataSourceFactory = HtspSubscriptionDataSource.Factory(context, htspConnection, serverProfile?.name, playbackMetrics)
 
             Timber.d("Preparing player with media source")
             player.prepare(ExtractorMediaSource.Factory(htspSubscriptionDataSourceFactory)
-                    .setExtractorsFactory(TvheadendExtractorsFactory(context))
+                    .setExtractorsFactory(TvheadendExtractorsFactory(context, htspSubscriptionDataSourceFactory, playbackMetrics, frameDropPolicy))
                     .createMediaSource(Uri.parse("htsp://channel/$channelId")))
             player.playWhenReady = true
         }
@@ -170,11 +282,10 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
 
             Timber.d("Creating data source")
             htspFileInputStreamDataSourceFactory = HtspFileInputStreamDataSource.Factory(context, htspConnection)
-            dataSource = htspFileInputStreamDataSourceFactory?.currentDataSource
 
             Timber.d("Preparing player with media source")
             player.prepare(ExtractorMediaSource.Factory(htspFileInputStreamDataSourceFactory)
-                    .setExtractorsFactory(TvheadendExtractorsFactory(context))
+                    .setExtractorsFactory(TvheadendExtractorsFactory(context, null, null, null))
                     .createMediaSource(Uri.parse("htsp://dvrfile/$recordingId")))
             player.playWhenReady = true
         }
@@ -183,9 +294,17 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     private fun releaseMediaSource() {
         Timber.d("Releasing previous media source")
         player.stop()
+        timeUpdateHandler.removeCallbacks(liveStreamRunnable)
+        stopLiveLatencyControl()
+        playbackMetrics?.reset()
+        frameDropPolicy.reset()
         trackSelector.clearSelectionOverrides()
+        pendingSelectionOverrides = null
+        streamFilterSupported = false
         htspSubscriptionDataSourceFactory?.releaseCurrentDataSource()
         htspFileInputStreamDataSourceFactory?.releaseCurrentDataSource()
+        htspSubscriptionDataSourceFactory = null
+        htspFileInputStreamDataSourceFactory = null
     }
 
     fun setVideoAspectRatio(rational: Rational) {
@@ -227,6 +346,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     override fun onCleared() {
         super.onCleared()
         Timber.d("Clearing view model")
+        timeUpdateHandler.removeCallbacks(playbackMetricsRunnable)
         releaseMediaSource()
         player.release()
 
@@ -253,7 +373,116 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     }
 
     override fun onTracksChanged(trackGroups: TrackGroupArray?, trackSelections: TrackSelectionArray?) {
-        // NOP
+        if (trackGroups != null && trackGroups.length > 0 && restoreSelectionOverrides()) {
+            // The tracks change again with the restored selection
+            return
+        }
+        if (trackGroups != null && trackSelections != null) {
+            filterStreams(trackGroups, trackSelections)
+        }
+    }
+
+    /**
+     * Returns the tracks that the user has selected for each renderer. The
+     * overrides of the selector belong to the track groups of the current
+     * subscription, so the formats of the tracks are kept instead.
+     */
+    private fun saveSelectionOverrides(): List<SavedSelectionOverride> {
+        val mappedTrackInfo = trackSelector.currentMappedTrackInfo ?: return emptyList()
+        val selectionOverrides = ArrayList<SavedSelectionOverride>()
+        for (rendererIndex in 0 until mappedTrackInfo.length) {
+            val trackGroups = mappedTrackInfo.getTrackGroups(rendererIndex)
+            val override = trackSelector.getSelectionOverride(rendererIndex, trackGroups) ?: continue
+            val trackGroup = trackGroups.get(override.groupIndex)
+            selectionOverrides.add(SavedSelectionOverride(rendererIndex, override.factory,
+                    override.tracks.map { trackGroup.getFormat(it) }))
+        }
+        return selectionOverrides
+    }
+
+    /**
+     * Selects the saved tracks in the tracks of the new subscription. The
+     * other profile can change the codec of a stream, so a track is also
+     * found by its type and language if no track of the same stream exists.
+     * Returns true if a track has been selected again.
+     */
+    private fun restoreSelectionOverrides(): Boolean {
+        val selectionOverrides = pendingSelectionOverrides ?: return false
+        pendingSelectionOverrides = null
+        val mappedTrackInfo = trackSelector.currentMappedTrackInfo ?: return false
+        var restored = false
+        for (selectionOverride in selectionOverrides) {
+            if (selectionOverride.rendererIndex >= mappedTrackInfo.length) {
+                continue
+            }
+            val trackGroups = mappedTrackInfo.getTrackGroups(selectionOverride.rendererIndex)
+            for (groupIndex in 0 until trackGroups.length) {
+                val trackGroup = trackGroups.get(groupIndex)
+                val tracks = selectionOverride.formats.map { format ->
+                    (0 until trackGroup.length).firstOrNull { isSameStream(format, trackGroup.getFormat(it)) }
+                            ?: (0 until trackGroup.length).firstOrNull { isSameLanguage(format, trackGroup.getFormat(it)) }
+                            ?: C.INDEX_UNSET
+                }
+                if (!tracks.contains(C.INDEX_UNSET)) {
+                    Timber.d("Selecting the previous tracks of renderer ${selectionOverride.rendererIndex} again")
+                    trackSelector.setSelectionOverride(selectionOverride.rendererIndex, trackGroups,
+                            SelectionOverride(selectionOverride.factory, groupIndex, *tracks.toIntArray()))
+                    restored = true
+                    break
+                }
+            }
+        }
+        return restored
+    }
+
+    private fun isSameStream(format: Format, other: Format): Boolean {
+        return format.id == other.id && format.sampleMimeType == other.sampleMimeType
+    }
+
+    private fun isSameLanguage(format: Format, other: Format): Boolean {
+        return format.language == other.language
+                && MimeTypes.getTrackType(format.sampleMimeType) == MimeTypes.getTrackType(other.sampleMimeType)
+    }
+
+    private class SavedSelectionOverride(val rendererIndex: Int, val factory: TrackSelection.Factory, val formats: List<Format>)
+
+    /**
+     * Asks the server to send only the audio and subtitle streams that are
+     * selected in the player. The other streams would be transferred and
+     * demuxed without being played. The format id of a track is the index
+     * of its stream. Video streams are always sent.
+     */
+    private fun filterStreams(trackGroups: TrackGroupArray, trackSelections: TrackSelectionArray) {
+        val dataSource = htspSubscriptionDataSourceFactory?.currentDataSource
+        if (!streamFilterSupported || dataSource == null) {
+            return
+        }
+        val selectedStreams = HashSet<Int>()
+        for (i in 0 until trackSelections.length) {
+            val trackSelection = trackSelections.get(i) ?: continue
+            for (j in 0 until trackSelection.length()) {
+                trackSelection.getFormat(j).id?.toIntOrNull()?.let { selectedStreams.add(it) }
+            }
+        }
+        val enabledStreams = ArrayList<Int>()
+        val disabledStreams = ArrayList<Int>()
+        for (i in 0 until trackGroups.length) {
+            val trackGroup = trackGroups.get(i)
+            for (j in 0 until trackGroup.length) {
+                val format = trackGroup.getFormat(j)
+                val stream = format.id?.toIntOrNull() ?: continue
+                val trackType = MimeTypes.getTrackType(format.sampleMimeType)
+                if (trackType != C.TRACK_TYPE_AUDIO && trackType != C.TRACK_TYPE_TEXT) {
+                    continue
+                }
+                if (selectedStreams.contains(stream)) {
+                    enabledStreams.add(stream)
+                } else {
+                    disabledStreams.add(stream)
+                }
+            }
+        }
+        dataSource.filterStreams(enabledStreams, disabledStreams)
     }
 
     override fun onPlayerError(error: ExoPlaybackException?) {
@@ -288,6 +517,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
 
     override fun onPlayerStateChanged(playWhenReady: Boolean, playbackState: Int) {
         playerState.postValue(playbackState)
+        liveLatencyController.onPlaybackStateChanged(playbackState)
 
         // Show the pause button and hide the play button if the player is playing.
         // Assume the player is playing when the property is true, otherwise it is paused.
@@ -305,6 +535,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     }
 
     fun pause() {
+        stopLiveLatencyControl()
         player.playWhenReady = false
         dataSource?.pause()
     }
@@ -317,30 +548,63 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     fun seekBackward() {
         val time = getSeekPosition(-5000)
         Timber.d("Seeking backward to $time")
+        stopLiveLatencyControl()
         player.seekTo(time)
     }
 
     fun seekForward() {
         val time = getSeekPosition(5000)
         Timber.d("Seeking forward to $time")
+        stopLiveLatencyControl()
         player.seekTo(time)
     }
 
-    private fun getSeekPosition(offset: Int): Long {
-        val timeshiftStartTime = dataSource?.timeshiftStartTime ?: 0
-        val timeshiftStartPts = dataSource?.timeshiftStartPts ?: 0
-        val timeshiftOffsetPts = dataSource?.timeshiftOffsetPts ?: 0
+    /**
+     * Raises or lowers the playback speed slightly to hold the target
+     * latency behind the newest packet of the live stream
+     */
+    private fun updatePlaybackSpeed(dataSource: HtspSubscriptionDataSource) {
+        val speed = liveLatencyController.update(dataSource.receivedPts, player.currentPosition, dataSource.queueDelayUs)
+        if (playbackSpeedSupported && speed != player.playbackParameters.speed) {
+            Timber.d("Changing playback speed to $speed, latency is ${liveLatencyController.latency} ms, " +
+                    "target is ${liveLatencyController.targetLatency} ms, offset to the server is ${liveLatencyController.liveOffset} ms")
+            player.playbackParameters = PlaybackParameters(speed, 1f)
+        }
+    }
 
-        val startTime = if (timeshiftStartTime != Long.MIN_VALUE)
-            (timeshiftStartTime / 1000) else 0
-        Timber.d("Timeshift start time is $startTime")
+    /**
+     * Plays with the normal speed again when the user leaves the live edge
+     */
+    private fun stopLiveLatencyControl() {
+        liveLatencyController.stop()
+        if (player.playbackParameters.speed != 1f) {
+            player.playbackParameters = PlaybackParameters.DEFAULT
+        }
+    }
 
-        val currentTime = if (timeshiftOffsetPts != Long.MIN_VALUE)
-            System.currentTimeMillis() + timeshiftOffsetPts / 1000 else player.currentPosition
-        Timber.d("Timeshift current time is $currentTime")
+    /**
+     * Returns the position in milliseconds to seek to. The player position is
+     * the PTS of the stream, so the position is kept within the local
+     * timeshift buffer or the one of the server when it is known.
+     */
+    private fun getSeekPosition(offset: Int): Long {
+        val timeshiftStartPts = dataSource?.timeshiftStartPts ?: Long.MIN_VALUE
+        val timeshiftEndPts = dataSource?.timeshiftEndPts ?: Long.MIN_VALUE
+
+        var position = player.currentPosition + offset
+        if (timeshiftStartPts != Long.MIN_VALUE) {
+            position = Math.max(position, timeshiftStartPts / 1000)
+        }
+        if (timeshiftEndPts != Long.MIN_VALUE) {
+            position = Math.min(position, timeshiftEndPts / 1000)
+        }
+        Timber.d("Timeshift buffer is from $timeshiftStartPts to $timeshiftEndPts, current position is ${player.currentPosition}")
+        return Math.max(position, 0)
+    }
 
-        val time = Math.max(currentTime + offset, startTime)
-        val seekPts = time * 1000 - timeshiftStartTime
-        return Math.max(seekPts, timeshiftStartPts) / 1000
+    companion object {
+        private const val LOW_LATENCY_MIN_BUFFER_MS = 2000
+        private const val LOW_LATENCY_BUFFER_FOR_PLAYBACK_MS = 300
+        private const val LOW_LATENCY_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS = 1000
     }
 }
@@ -0,0 +1,133 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal
+
+import timber.log.Timber
+
+/**
+ * Decides when a live stream shall be played with the fallback profile
+ * instead of the selected playback profile, e.g. a transcoding profile
+ * instead of the pass through profile when the network is too slow.
+ *
+ * The reception is sampled about once per second. A sample is bad when the
+ * server has dropped packets of the subscription, when its queue delay is
+ * growing too long or when less than real time is received while the
+ * buffer of the player is nearly empty. After several bad samples the
+ * fallback profile is used. The playback profile is only used again after
+ * a longer time without bad samples. This time is doubled each time the
+ * playback profile fails again, so that the profiles are not switched
+ * back and forth.
+ */
+class ProfileSwitchController {
+
+    var isFallbackProfileUsed = false
+        private set
+
+    private var badSamples = 0
+    private var goodSamples = 0
+    private var recoverySamples = MIN_RECOVERY_SAMPLES
+    private var samplesSinceSwitch = 0
+    private var isPlaybackProfileRestored = false
+
+    private var lastDrops = -1L
+    private var lastReceivedBytes = -1L
+    private var lastReceivedPts = Long.MIN_VALUE
+    private var lastSampleTime = 0L
+
+    /**
+     * Resets the samples of the previous subscription.
+     * The fallback state and the recovery time are kept.
+     */
+    fun reset() {
+        badSamples = 0
+        goodSamples = 0
+        samplesSinceSwitch = 0
+        lastDrops = -1
+        lastReceivedBytes = -1
+        lastReceivedPts = Long.MIN_VALUE
+        lastSampleTime = 0
+    }
+
+    /**
+     * Adds a sample of the reception of the current subscription
+     *
+     * @param drops The number of packets the server has dropped since the subscription has started
+     * @param queueDelayUs The time the oldest packet waits in the queue of the server
+     * @param receivedBytes The number of bytes received since the subscription has started
+     * @param receivedPts The newest PTS that has been received
+     * @param bufferedMs The duration of the data that is buffered in the player
+     * @return True if the profile shall be switched
+     */
+    fun addSample(drops: Long, queueDelayUs: Long, receivedBytes: Long, receivedPts: Long, bufferedMs: Long): Boolean {
+        val time = System.currentTimeMillis()
+        val elapsedTime = time - lastSampleTime
+        val isFirstSample = lastSampleTime == 0L || lastReceivedPts == Long.MIN_VALUE || receivedPts == Long.MIN_VALUE
+
+        val newDrops = if (lastDrops >= 0) Math.max(drops - lastDrops, 0L) else 0L
+        val throughput = if (!isFirstSample && elapsedTime > 0) (receivedBytes - lastReceivedBytes) * 8 / elapsedTime else 0L
+        // The media time that was received per second, a value
+        // below one means that the stream is received too slowly
+        val realTimeRatio = if (!isFirstSample && elapsedTime > 0) (receivedPts - lastReceivedPts) / 1000f / elapsedTime else 1f
+
+        lastDrops = drops
+        lastReceivedBytes = receivedBytes
+        lastReceivedPts = receivedPts
+        lastSampleTime = time
+
+        // The buffer is still filling after the subscription has started
+        if (isFirstSample || ++samplesSinceSwitch < WARM_UP_SAMPLES) {
+            return false
+        }
+
+        val isBad = newDrops > 0
+                || queueDelayUs > BAD_QUEUE_DELAY_US
+                || (bufferedMs < LOW_BUFFER_MS && realTimeRatio < BAD_REAL_TIME_RATIO)
+        val isGood = newDrops == 0L
+                && queueDelayUs < GOOD_QUEUE_DELAY_US
+                && realTimeRatio >= GOOD_REAL_TIME_RATIO
+
+        if (isBad) {
+            Timber.d("Bad reception, $newDrops packets dropped, queue delay ${queueDelayUs / 1000} ms, " +
+                    "buffer $bufferedMs ms, received $throughput kbit/s at ${"%.2f".format(realTimeRatio)} times real time")
+            badSamples++
+            goodSamples = 0
+        } else if (isGood) {
+            badSamples = Math.max(badSamples - 1, 0)
+            goodSamples++
+        }
+
+        if (!isFallbackProfileUsed && badSamples >= BAD_SAMPLES) {
+            // The playback profile has failed again shortly after it was restored
+            if (isPlaybackProfileRestored && samplesSinceSwitch < recoverySamples) {
+                recoverySamples = Math.min(recoverySamples * 2, MAX_RECOVERY_SAMPLES)
+            }
+            Timber.d("Switching to the fallback profile, the playback profile is tried again after $recoverySamples seconds")
+            return switchProfile(true)
+        }
+        if (isFallbackProfileUsed && goodSamples >= recoverySamples) {
+            Timber.d("Switching to the playback profile, reception was good for $goodSamples seconds at $throughput kbit/s")
+            return switchProfile(false)
+        }
+        return false
+    }
+
+    private fun switchProfile(useFallbackProfile: Boolean): Boolean {
+        isFallbackProfileUsed = useFallbackProfile
+        isPlaybackProfileRestored = !useFallbackProfile
+        badSamples = 0
+        goodSamples = 0
+        samplesSinceSwitch = 0
+        return true
+    }
+
+    companion object {
+        private const val WARM_UP_SAMPLES = 10
+        private const val BAD_SAMPLES = 5
+        private const val MIN_RECOVERY_SAMPLES = 60
+        private const val MAX_RECOVERY_SAMPLES = 600
+
+        private const val BAD_QUEUE_DELAY_US = 2000000L
+        private const val GOOD_QUEUE_DELAY_US = 500000L
+        private const val LOW_BUFFER_MS = 1000L
+        private const val BAD_REAL_TIME_RATIO = 0.9f
+        private const val GOOD_REAL_TIME_RATIO = 0.98f
+    }
+}
@@ -0,0 +1,190 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+import timber.log.Timber;
+
+/**
+ * Keeps the received live stream in a memory mapped file of a fixed size so
+ * that the playback can be paused and rewound without timeshift support of
+ * the server. New data overwrites the oldest data that has already been read
+ * when the file is full. Data that was not read yet is never overwritten,
+ * because the reader holds the first part of a frame and would continue in
+ * the middle of another one. Like the memory buffer the new frames are then
+ * dropped, until a key frame fits into the file again.
+ *
+ * The positions are counted in bytes since the start of the stream. The
+ * position in the file is the position modulo the size of the file. The
+ * positions and the PTS of the video key frames are kept in an index, so
+ * that a seek continues at the last key frame before the seek time.
+ *
+ * The buffer is not thread safe, the data source calls it with its lock held.
+ */
+class TimeshiftRingBuffer {
+
+    private static final String FILE_NAME_PREFIX = "timeshift_";
+    private static final AtomicBoolean staleFilesDeleted = new AtomicBoolean();
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private long writePosition = 0;
+    private long readPosition = 0;
+    private long lastPts = Long.MIN_VALUE;
+    private boolean dropping = false;
+
+    private final KeyFrameIndex keyFrames = new KeyFrameIndex();
+
+    TimeshiftRingBuffer(@NonNull File file, int capacity) throws IOException {
+        this.file = file;
+        this.capacity = capacity;
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(capacity);
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        Timber.d("Created timeshift buffer " + file.getName() + " with " + capacity + " bytes");
+    }
+
+    /**
+     * Returns the file of the buffer of the given subscription
+     */
+    @NonNull
+    static File getFile(@NonNull File directory, int subscriptionId) {
+        return new File(directory, FILE_NAME_PREFIX + subscriptionId);
+    }
+
+    /**
+     * Deletes the buffer files that were left when the process of the app
+     * was killed while playing. The files of the buffers of this process are
+     * created afterwards, so this is only done once for each process.
+     */
+    static void deleteStaleFiles(@NonNull File directory) {
+        if (staleFilesDeleted.getAndSet(true)) {
+            return;
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_NAME_PREFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.delete()) {
+                Timber.d("Deleted stale timeshift buffer " + file.getName());
+            } else {
+                Timber.d("Could not delete stale timeshift buffer " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Appends the given frame. If it would overwrite data that was not read
+     * yet, the frame is dropped. All following frames are also dropped until
+     * a key frame fits, so that the decoder continues with a complete picture.
+     *
+     * @param pts The PTS of a packet, or Long.MIN_VALUE for other data
+     * @return False if the frame was dropped
+     */
+    boolean write(@NonNull byte[] bytes, int offset, int count, long pts, boolean isKeyFrame) {
+        long oldestPosition = writePosition + count - capacity;
+        if (readPosition < oldestPosition || (dropping && !isKeyFrame)) {
+            if (!dropping) {
+                Timber.v("Timeshift buffer is full, dropping frames until the next key frame");
+                dropping = true;
+            }
+            return false;
+        }
+        dropping = false;
+
+        keyFrames.removeBefore(oldestPosition);
+        if (isKeyFrame) {
+            keyFrames.add(writePosition, pts);
+        }
+        if (pts != Long.MIN_VALUE) {
+            lastPts = Math.max(lastPts, pts);
+        }
+
+        int index = (int) (writePosition % capacity);
+        int length = Math.min(count, capacity - index);
+        buffer.position(index);
+        buffer.put(bytes, offset, length);
+        if (length < count) {
+            buffer.position(0);
+            buffer.put(bytes, offset + length, count - length);
+        }
+        writePosition += count;
+        return true;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int available() {
+        return (int) Math.min(writePosition - readPosition, Integer.MAX_VALUE);
+    }
+
+    int read(@NonNull byte[] bytes, int offset, int readLength) {
+        int remaining = Math.min(readLength, available());
+        int index = (int) (readPosition % capacity);
+        int length = Math.min(remaining, capacity - index);
+        buffer.position(index);
+        buffer.get(bytes, offset, length);
+        if (length < remaining) {
+            buffer.position(0);
+            buffer.get(bytes, offset + length, remaining - length);
+        }
+        readPosition += remaining;
+        return remaining;
+    }
+
+    /**
+     * Continues the reading at the last key frame before the given time.
+     * Times outside of the buffer are moved to the first or last key frame.
+     *
+     * @return False if the buffer contains no key frame
+     */
+    boolean seek(long timeUs) {
+        if (keyFrames.isEmpty()) {
+            return false;
+        }
+        int keyFrame = keyFrames.find(timeUs);
+        readPosition = keyFrames.getPosition(keyFrame);
+        Timber.d("Seeking in timeshift buffer to time " + timeUs + ", continuing at key frame at " + keyFrames.getPts(keyFrame));
+        return true;
+    }
+
+    /**
+     * Returns the PTS of the oldest key frame, or Long.MIN_VALUE if there is none
+     */
+    long getStartPts() {
+        return keyFrames.isEmpty() ? Long.MIN_VALUE : keyFrames.getPts(0);
+    }
+
+    long getEndPts() {
+        return lastPts;
+    }
+
+    void close() {
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            Timber.d(e, "Could not close timeshift buffer");
+        }
+        // The mapping remains valid until the buffer is garbage collected,
+        // but the file can already be removed
+        if (file.exists() && !file.delete()) {
+            Timber.d("Could not delete timeshift buffer " + file.getName());
+        }
+    }
+}
@@ -32,19 +32,36 @@ import com.google.android.exoplayer2.extractor.ts.PsExtractor;
 import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.extractor.wav.WavExtractor;
 
+import org.tvheadend.tvhclient.ui.features.playback.internal.reader.FrameDropPolicy;
+
+import androidx.annotation.Nullable;
+
 class TvheadendExtractorsFactory implements ExtractorsFactory {
 
     private final Context mContext;
+    private final HtspSubscriptionDataSource.Factory mDataSourceFactory;
+    private final PlaybackMetrics mPlaybackMetrics;
+    private final FrameDropPolicy mFrameDropPolicy;
 
-    TvheadendExtractorsFactory(Context context) {
+    /**
+     * @param dataSourceFactory The factory of the live stream data sources
+     *                          that provide the seekable range, or null
+     * @param playbackMetrics   Collects the throughput of the live streams, or null
+     * @param frameDropPolicy   Decides when video frames are dropped before the decoder, or null
+     */
+    TvheadendExtractorsFactory(Context context, @Nullable HtspSubscriptionDataSource.Factory dataSourceFactory,
+                               @Nullable PlaybackMetrics playbackMetrics, @Nullable FrameDropPolicy frameDropPolicy) {
         mContext = context;
+        mDataSourceFactory = dataSourceFactory;
+        mPlaybackMetrics = playbackMetrics;
+        mFrameDropPolicy = frameDropPolicy;
     }
 
     @Override
     public Extractor[] createExtractors() {
         Extractor[] extractors = new Extractor[12];
 
-        extractors[0] = new HtspSubscriptionExtractor(mContext);
+        extractors[0] = new HtspSubscriptionExtractor(mContext, mDataSourceFactory, mPlaybackMetrics, mFrameDropPolicy);
         extractors[1] = new MatroskaExtractor(0);
         extractors[2] = new FragmentedMp4Extractor(0);
         extractors[3] = new Mp4Extractor();
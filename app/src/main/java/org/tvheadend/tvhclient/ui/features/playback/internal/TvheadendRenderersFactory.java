@@ -44,8 +44,11 @@ import timber.log.Timber;
 
 class TvheadendRenderersFactory extends DefaultRenderersFactory {
 
-    TvheadendRenderersFactory(Context context) {
+    private final CodecCapabilityCache codecCapabilityCache;
+
+    TvheadendRenderersFactory(Context context, CodecCapabilityCache codecCapabilityCache) {
         super(context, null, EXTENSION_RENDERER_MODE_PREFER, DEFAULT_ALLOWED_VIDEO_JOINING_TIME_MS);
+        this.codecCapabilityCache = codecCapabilityCache;
     }
 
     /**
@@ -72,7 +75,7 @@ class TvheadendRenderersFactory extends DefaultRenderersFactory {
         Timber.d("Adding MediaCodecVideoRenderer");
         out.add(new MediaCodecVideoRenderer(
                 context,
-                MediaCodecSelector.DEFAULT,
+                buildMediaCodecSelector(false),
                 allowedVideoJoiningTimeMs,
                 drmSessionManager,
                 false,
@@ -121,7 +124,8 @@ class TvheadendRenderersFactory extends DefaultRenderersFactory {
     }
 
     /**
-     * Builds a MediaCodecSelector that can explicitly disable audio passthrough
+     * Builds a MediaCodecSelector that can explicitly disable audio passthrough.
+     * The decoders are looked up in the codec capability cache.
      *
      * @param enablePassthroughDecoder True if audio passthrough shall be enabled, disabled otherwise
      * @return The MediaCodecSelector
@@ -130,13 +134,13 @@ class TvheadendRenderersFactory extends DefaultRenderersFactory {
         return new MediaCodecSelector() {
             @Override
             public MediaCodecInfo getDecoderInfo(String mimeType, boolean requiresSecureDecoder) throws MediaCodecUtil.DecoderQueryException {
-                return MediaCodecUtil.getDecoderInfo(mimeType, requiresSecureDecoder);
+                return codecCapabilityCache.getDecoderInfo(mimeType, requiresSecureDecoder);
             }
 
             @Override
             public MediaCodecInfo getPassthroughDecoderInfo() {
                 if (enablePassthroughDecoder) {
-                    return MediaCodecUtil.getPassthroughDecoderInfo();
+                    return codecCapabilityCache.getPassthroughDecoderInfo();
                 }
                 return null;
             }
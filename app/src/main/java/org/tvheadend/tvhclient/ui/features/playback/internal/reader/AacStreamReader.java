@@ -27,6 +27,7 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
 import org.tvheadend.tvhclient.ui.features.playback.internal.utils.TvhMappings;
 
 import java.util.Collections;
@@ -42,6 +43,8 @@ class AacStreamReader implements StreamReader {
     private static final int ADTS_CRC_SIZE = 2;
 
     private TrackOutput mTrackOutput;
+    // Wraps the payload of each packet without allocating a new wrapper
+    private final ParsableByteArray mSampleData = new ParsableByteArray();
 
     AacStreamReader(Context context) {
     }
@@ -54,11 +57,12 @@ class AacStreamReader implements StreamReader {
     }
 
     @Override
-    public void consume(@NonNull HtspMessage message) {
-        final long pts = message.getLong("pts");
-        final byte[] payload = message.getByteArray("payload");
+    public void consume(@NonNull HtspStreamPacket packet) {
+        final long pts = packet.getPts();
+        final byte[] payload = packet.getPayload();
+        final int payloadLength = packet.getPayloadLength();
 
-        final ParsableByteArray pba = new ParsableByteArray(payload);
+        mSampleData.reset(payload, payloadLength);
 
         int skipLength;
 
@@ -70,16 +74,21 @@ class AacStreamReader implements StreamReader {
             skipLength = ADTS_HEADER_SIZE;
         }
 
-        pba.skipBytes(skipLength);
+        mSampleData.skipBytes(skipLength);
 
-        final int aacFrameLength = payload.length - skipLength;
+        final int aacFrameLength = payloadLength - skipLength;
 
         // TODO: Set Buffer Flag key frame based on frametype
         // frametype   u32   required   Type of frame as ASCII value: 'I', 'P', 'B'
-        mTrackOutput.sampleData(pba, aacFrameLength);
+        mTrackOutput.sampleData(mSampleData, aacFrameLength);
         mTrackOutput.sampleMetadata(pts, C.BUFFER_FLAG_KEY_FRAME, aacFrameLength, 0, null);
     }
 
+    @Override
+    public void seek() {
+        // NOP, every frame is a key frame
+    }
+
     @Override
     public void release() {
         // Nothing to be released
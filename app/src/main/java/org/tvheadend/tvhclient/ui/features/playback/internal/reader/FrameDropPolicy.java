@@ -0,0 +1,86 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal.reader;
+
+import timber.log.Timber;
+
+/**
+ * Decides when the video stream readers shall drop frames before they reach
+ * the decoder. The video renderer drops the frames that are decoded too late,
+ * which means the decoder cannot keep up with the stream.
+ *
+ * The dropped frames of the renderer are sampled about once per second. When
+ * frames are dropped repeatedly, the readers first drop the frames that no
+ * other frame depends on, usually the B-frames. If that is not sufficient,
+ * the readers drop all frames until the next key frame, so that the decoder
+ * can catch up without decoding frames that refer to missing frames. The
+ * frames are only passed to the decoder again after a longer time without
+ * dropped frames.
+ *
+ * The policy is updated by the main thread and read by the loading thread.
+ */
+public class FrameDropPolicy {
+
+    private static final int LATE_FRAMES = 3;
+    private static final int LATE_SAMPLES = 2;
+    private static final int RECOVERY_SAMPLES = 30;
+
+    private volatile boolean dropDisposableFrames = false;
+    private volatile int resyncCount = 0;
+
+    private long lastDroppedFrames = -1;
+    private int lateSamples = 0;
+    private int goodSamples = 0;
+
+    /**
+     * Removes the samples of the previous playback
+     */
+    public void reset() {
+        dropDisposableFrames = false;
+        lastDroppedFrames = -1;
+        lateSamples = 0;
+        goodSamples = 0;
+    }
+
+    /**
+     * Adds a sample of the dropped frames of the video renderer
+     *
+     * @param droppedFrames The number of frames that the video renderer has dropped since the playback was started
+     */
+    public void update(long droppedFrames) {
+        // The counters of the renderer start again when it is enabled
+        long newDroppedFrames = lastDroppedFrames >= 0 && droppedFrames >= lastDroppedFrames ? droppedFrames - lastDroppedFrames : 0;
+        lastDroppedFrames = droppedFrames;
+
+        if (newDroppedFrames >= LATE_FRAMES) {
+            lateSamples++;
+            goodSamples = 0;
+        } else if (newDroppedFrames == 0) {
+            lateSamples = 0;
+            goodSamples++;
+        }
+
+        if (lateSamples >= LATE_SAMPLES) {
+            lateSamples = 0;
+            if (!dropDisposableFrames) {
+                Timber.d("Decoder is too slow, dropping disposable frames");
+                dropDisposableFrames = true;
+            } else {
+                Timber.d("Decoder is still too slow, dropping frames until the next key frame");
+                resyncCount++;
+            }
+        } else if (dropDisposableFrames && goodSamples >= RECOVERY_SAMPLES) {
+            Timber.d("Decoder has caught up, passing all frames again");
+            dropDisposableFrames = false;
+        }
+    }
+
+    boolean isDroppingDisposableFrames() {
+        return dropDisposableFrames;
+    }
+
+    /**
+     * Returns a number that is increased each time the readers shall wait for the next key frame
+     */
+    int getResyncCount() {
+        return resyncCount;
+    }
+}
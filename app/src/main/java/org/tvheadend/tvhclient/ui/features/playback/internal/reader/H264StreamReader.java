@@ -30,12 +30,13 @@ import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
 import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import timber.log.Timber;
 
 class H264StreamReader extends PlainStreamReader {
 
-    H264StreamReader(Context context) {
-        super(context, C.TRACK_TYPE_VIDEO);
+    H264StreamReader(Context context, @Nullable FrameDropPolicy frameDropPolicy) {
+        super(context, C.TRACK_TYPE_VIDEO, frameDropPolicy);
     }
 
     @NonNull
@@ -69,4 +70,9 @@ class H264StreamReader extends PlainStreamReader {
     protected int getTrackType() {
         return C.TRACK_TYPE_VIDEO;
     }
+
+    @Override
+    protected int getFrameType(@NonNull byte[] payload, int length) {
+        return StreamReaderUtils.getH264FrameType(payload, length);
+    }
 }
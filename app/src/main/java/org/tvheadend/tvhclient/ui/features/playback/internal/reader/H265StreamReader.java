@@ -30,12 +30,18 @@ import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
 import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import timber.log.Timber;
 
 class H265StreamReader extends PlainStreamReader {
 
-    H265StreamReader(Context context) {
-        super(context, C.TRACK_TYPE_VIDEO);
+    // The even types from TRAIL_N to RSV_VCL_N14 are sub-layer non-reference pictures
+    private static final int NAL_UNIT_TYPE_SUB_LAYER_NON_REFERENCE_END = 14;
+
+    private int mMaxTemporalId = 0;
+
+    H265StreamReader(Context context, @Nullable FrameDropPolicy frameDropPolicy) {
+        super(context, C.TRACK_TYPE_VIDEO, frameDropPolicy);
     }
 
     @NonNull
@@ -69,4 +75,28 @@ class H265StreamReader extends PlainStreamReader {
     protected int getTrackType() {
         return C.TRACK_TYPE_VIDEO;
     }
+
+    @Override
+    protected int getFrameType(@NonNull byte[] payload, int length) {
+        // The type of the frame is taken from the first slice
+        final int offset = StreamReaderUtils.findH265SliceNalUnit(payload, length);
+        if (offset == -1) {
+            return FRAME_TYPE_UNKNOWN;
+        }
+        final int nalUnitType = StreamReaderUtils.getH265NalUnitType(payload, offset);
+        if (StreamReaderUtils.isH265RandomAccessPoint(nalUnitType)) {
+            return FRAME_TYPE_KEY;
+        }
+        // A sub-layer non-reference picture can still be referred to by
+        // the pictures of a higher temporal sub-layer. It is only
+        // disposable within the highest sub-layer of the stream.
+        final int temporalId = (payload[offset + 1] & 0x07) - 1;
+        mMaxTemporalId = Math.max(mMaxTemporalId, temporalId);
+        if (nalUnitType <= NAL_UNIT_TYPE_SUB_LAYER_NON_REFERENCE_END
+                && nalUnitType % 2 == 0
+                && temporalId == mMaxTemporalId) {
+            return FRAME_TYPE_DISPOSABLE;
+        }
+        return FRAME_TYPE_REFERENCE;
+    }
 }
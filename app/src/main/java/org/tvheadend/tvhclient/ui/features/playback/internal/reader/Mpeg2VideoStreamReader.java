@@ -25,11 +25,12 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 class Mpeg2VideoStreamReader extends PlainStreamReader {
 
-    Mpeg2VideoStreamReader(Context context) {
-        super(context, C.TRACK_TYPE_VIDEO);
+    Mpeg2VideoStreamReader(Context context, @Nullable FrameDropPolicy frameDropPolicy) {
+        super(context, C.TRACK_TYPE_VIDEO, frameDropPolicy);
     }
 
     @NonNull
@@ -52,4 +53,9 @@ class Mpeg2VideoStreamReader extends PlainStreamReader {
     protected int getTrackType() {
         return C.TRACK_TYPE_VIDEO;
     }
+
+    @Override
+    protected int getFrameType(@NonNull byte[] payload, int length) {
+        return StreamReaderUtils.getMpeg2VideoFrameType(payload, length);
+    }
 }
@@ -26,21 +26,51 @@ import com.google.android.exoplayer2.util.ParsableByteArray;
 
 import org.tvheadend.tvhclient.MainApplication;
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import timber.log.Timber;
 
 /**
  * A PlainStreamReader simply copies the raw bytes from muxpkt's over onto the track output
  */
 abstract class PlainStreamReader implements StreamReader {
 
+    // The video frame types that the subclasses detect in the payload
+    static final int FRAME_TYPE_UNKNOWN = 0;
+    // A frame that can be decoded without the previous frames
+    static final int FRAME_TYPE_KEY = 1;
+    // A frame that other frames depend on
+    static final int FRAME_TYPE_REFERENCE = 2;
+    // A frame that no other frame depends on, usually a B-frame
+    static final int FRAME_TYPE_DISPOSABLE = 3;
+
+    // The time after which the frames are passed on even if no key frame was found
+    private static final long MAX_KEY_FRAME_WAIT_US = 5000000;
+
     private final Context mContext;
     private final int mTrackType;
+    private final FrameDropPolicy mFrameDropPolicy;
     private TrackOutput mTrackOutput;
+    // Wraps the payload of each packet without allocating a new wrapper
+    private final ParsableByteArray mSampleData = new ParsableByteArray();
+
+    // The decoder gets no frames before the first key frame after
+    // the start of the stream, a seek or a request of the policy
+    private boolean mWaitingForKeyFrame = true;
+    private long mWaitingStartPts = Long.MIN_VALUE;
+    private int mResyncCount;
 
     PlainStreamReader(Context context, int trackType) {
+        this(context, trackType, null);
+    }
+
+    PlainStreamReader(Context context, int trackType, @Nullable FrameDropPolicy frameDropPolicy) {
         mContext = context;
         mTrackType = trackType;
+        mFrameDropPolicy = frameDropPolicy;
+        mResyncCount = frameDropPolicy != null ? frameDropPolicy.getResyncCount() : 0;
     }
 
     @Override
@@ -51,23 +81,34 @@ abstract class PlainStreamReader implements StreamReader {
     }
 
     @Override
-    public final void consume(@NonNull final HtspMessage message) {
-        final long pts = message.getLong("pts");
-        final int frameType = message.getInteger("frametype", -1);
-        final byte[] payload = message.getByteArray("payload");
-
-        final ParsableByteArray pba = new ParsableByteArray(payload);
+    public final void consume(@NonNull final HtspStreamPacket packet) {
+        final long pts = packet.getPts();
+        final int frameType = packet.getFrameType();
+        final byte[] payload = packet.getPayload();
+        final int payloadLength = packet.getPayloadLength();
 
         int bufferFlags = 0;
 
         if (mTrackType == C.TRACK_TYPE_VIDEO) {
             // We're looking at a Video stream, be picky about what frames are called keyframes
-
-            // Type -1 = TVHeadend has not provided us a frame type, so everything "is a keyframe"
-            // Type 73 = I - Intra-coded picture - Full Picture
-            // Type 66 = B - Predicted picture - Depends on previous frames
-            // Type 80 = P - Bidirectional predicted picture - Depends on previous+future frames
-            if (frameType == -1 || frameType == 73) {
+            int videoFrameType = getFrameType(payload, payloadLength);
+            if (videoFrameType == FRAME_TYPE_UNKNOWN) {
+                // Type -1 = TVHeadend has not provided us a frame type, so everything "is a keyframe"
+                // Type 73 = I - Intra-coded picture - Full Picture
+                // Type 80 = P - Predicted picture - Depends on previous frames
+                // Type 66 = B - Bidirectional predicted picture - Depends on previous+future frames
+                if (frameType == -1 || frameType == 73) {
+                    videoFrameType = FRAME_TYPE_KEY;
+                } else if (frameType == 66) {
+                    videoFrameType = FRAME_TYPE_DISPOSABLE;
+                } else {
+                    videoFrameType = FRAME_TYPE_REFERENCE;
+                }
+            }
+            if (isFrameDropped(videoFrameType, pts)) {
+                return;
+            }
+            if (videoFrameType == FRAME_TYPE_KEY) {
                 bufferFlags |= C.BUFFER_FLAG_KEY_FRAME;
             }
         } else {
@@ -75,8 +116,15 @@ abstract class PlainStreamReader implements StreamReader {
             bufferFlags |= C.BUFFER_FLAG_KEY_FRAME;
         }
 
-        mTrackOutput.sampleData(pba, payload.length);
-        mTrackOutput.sampleMetadata(pts, bufferFlags, payload.length, 0, null);
+        mSampleData.reset(payload, payloadLength);
+        mTrackOutput.sampleData(mSampleData, payloadLength);
+        mTrackOutput.sampleMetadata(pts, bufferFlags, payloadLength, 0, null);
+    }
+
+    @Override
+    public void seek() {
+        mWaitingForKeyFrame = true;
+        mWaitingStartPts = Long.MIN_VALUE;
     }
 
     @Override
@@ -89,4 +137,32 @@ abstract class PlainStreamReader implements StreamReader {
     abstract protected Format buildFormat(int streamIndex, @NonNull HtspMessage stream);
 
     abstract protected int getTrackType();
+
+    /**
+     * Returns the type of the video frame in the payload, or FRAME_TYPE_UNKNOWN
+     * if it cannot be detected. The frame type of the server is used then.
+     */
+    protected int getFrameType(@NonNull byte[] payload, int length) {
+        return FRAME_TYPE_UNKNOWN;
+    }
+
+    private boolean isFrameDropped(int frameType, long pts) {
+        if (mFrameDropPolicy != null && mFrameDropPolicy.getResyncCount() != mResyncCount) {
+            mResyncCount = mFrameDropPolicy.getResyncCount();
+            seek();
+        }
+        if (mWaitingForKeyFrame) {
+            if (mWaitingStartPts == Long.MIN_VALUE) {
+                mWaitingStartPts = pts;
+            }
+            if (frameType != FRAME_TYPE_KEY && pts - mWaitingStartPts < MAX_KEY_FRAME_WAIT_US) {
+                return true;
+            }
+            Timber.v("Continuing at frame with pts " + pts + " after waiting " + (pts - mWaitingStartPts) + " us for a key frame");
+            mWaitingForKeyFrame = false;
+        }
+        return frameType == FRAME_TYPE_DISPOSABLE
+                && mFrameDropPolicy != null
+                && mFrameDropPolicy.isDroppingDisposableFrames();
+    }
 }
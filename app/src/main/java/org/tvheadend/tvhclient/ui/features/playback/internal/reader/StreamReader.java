@@ -19,13 +19,23 @@ package org.tvheadend.tvhclient.ui.features.playback.internal.reader;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
 
 import androidx.annotation.NonNull;
 
 public interface StreamReader {
     void createTracks(HtspMessage stream, ExtractorOutput output);
 
-    void consume(@NonNull final HtspMessage message);
+    /**
+     * Passes the packet to the track output. The packet and its payload
+     * array are reused for the next packet after this method returns.
+     */
+    void consume(@NonNull final HtspStreamPacket packet);
+
+    /**
+     * Called when the extractor continues at another position of the stream
+     */
+    void seek();
 
     void release();
 }
\ No newline at end of file
@@ -18,7 +18,32 @@ package org.tvheadend.tvhclient.ui.features.playback.internal.reader;
 
 import com.google.android.exoplayer2.Format;
 
-class StreamReaderUtils {
+import androidx.annotation.NonNull;
+
+import static org.tvheadend.tvhclient.ui.features.playback.internal.reader.PlainStreamReader.FRAME_TYPE_DISPOSABLE;
+import static org.tvheadend.tvhclient.ui.features.playback.internal.reader.PlainStreamReader.FRAME_TYPE_KEY;
+import static org.tvheadend.tvhclient.ui.features.playback.internal.reader.PlainStreamReader.FRAME_TYPE_REFERENCE;
+import static org.tvheadend.tvhclient.ui.features.playback.internal.reader.PlainStreamReader.FRAME_TYPE_UNKNOWN;
+
+public class StreamReaderUtils {
+
+    private static final int H264_NAL_UNIT_TYPE_NON_IDR = 1;
+    private static final int H264_NAL_UNIT_TYPE_IDR = 5;
+    // The slice types modulo 5
+    private static final int H264_SLICE_TYPE_I = 2;
+    private static final int H264_SLICE_TYPE_SI = 4;
+
+    // The NAL unit types of the H.265 slices are below 32, the
+    // types from BLA_W_LP to RSV_IRAP_VCL23 are random access points
+    private static final int H265_NAL_UNIT_TYPE_VCL_END = 31;
+    private static final int H265_NAL_UNIT_TYPE_IRAP_START = 16;
+    private static final int H265_NAL_UNIT_TYPE_IRAP_END = 23;
+
+    private static final int MPEG2_START_CODE_PICTURE = 0x00;
+    private static final int MPEG2_PICTURE_CODING_TYPE_I = 1;
+    private static final int MPEG2_PICTURE_CODING_TYPE_P = 2;
+    private static final int MPEG2_PICTURE_CODING_TYPE_B = 3;
+
     private StreamReaderUtils() {
         throw new IllegalAccessError("Utility class");
     }
@@ -33,4 +58,163 @@ class StreamReaderUtils {
 
         return frameRate;
     }
+
+    /**
+     * Returns if the packet of a video stream with the given type starts a
+     * frame that can be decoded without the previous frames. The frame is
+     * detected in the payload like the video stream readers do it. The frame
+     * type of the server is only used if the payload contains no frame type.
+     *
+     * @param streamType      The type of the stream in the subscription start
+     * @param serverFrameType The frame type of the packet, or -1 if the server did not send one
+     */
+    public static boolean isKeyFrame(@NonNull String streamType, @NonNull byte[] payload, int length, int serverFrameType) {
+        int frameType = FRAME_TYPE_UNKNOWN;
+        switch (streamType) {
+            case "H264":
+                frameType = getH264FrameType(payload, length);
+                break;
+            case "HEVC":
+                final int offset = findH265SliceNalUnit(payload, length);
+                if (offset != -1) {
+                    frameType = isH265RandomAccessPoint(getH265NalUnitType(payload, offset)) ? FRAME_TYPE_KEY : FRAME_TYPE_REFERENCE;
+                }
+                break;
+            case "MPEG2VIDEO":
+                frameType = getMpeg2VideoFrameType(payload, length);
+                break;
+        }
+        if (frameType == FRAME_TYPE_UNKNOWN) {
+            // Without a frame type every frame is a key frame
+            return serverFrameType == -1 || serverFrameType == 'I';
+        }
+        return frameType == FRAME_TYPE_KEY;
+    }
+
+    /**
+     * Returns the type of the H.264 frame, which is taken from the first slice
+     */
+    static int getH264FrameType(@NonNull byte[] payload, int length) {
+        int offset = 0;
+        while ((offset = findStartCode(payload, offset, length)) != -1 && offset < length) {
+            final int nalUnitType = payload[offset] & 0x1F;
+            if (nalUnitType == H264_NAL_UNIT_TYPE_IDR) {
+                return FRAME_TYPE_KEY;
+            }
+            if (nalUnitType == H264_NAL_UNIT_TYPE_NON_IDR) {
+                // The slice header starts with first_mb_in_slice and slice_type
+                final int sliceType = readUnsignedExpGolombCode(payload, offset + 1, length, 1);
+                if (sliceType == -1) {
+                    return FRAME_TYPE_UNKNOWN;
+                }
+                if (sliceType % 5 == H264_SLICE_TYPE_I || sliceType % 5 == H264_SLICE_TYPE_SI) {
+                    // Many broadcasts contain no IDR frames and are entered at the I-frames
+                    return FRAME_TYPE_KEY;
+                }
+                // No other frame refers to a slice with a nal_ref_idc of zero
+                return (payload[offset] & 0x60) == 0 ? FRAME_TYPE_DISPOSABLE : FRAME_TYPE_REFERENCE;
+            }
+        }
+        return FRAME_TYPE_UNKNOWN;
+    }
+
+    /**
+     * Returns the position of the header of the first H.265 slice
+     * after its start code, or -1 if the payload contains no slice
+     */
+    static int findH265SliceNalUnit(@NonNull byte[] payload, int length) {
+        int offset = 0;
+        while ((offset = findStartCode(payload, offset, length)) != -1 && offset + 1 < length) {
+            if (getH265NalUnitType(payload, offset) <= H265_NAL_UNIT_TYPE_VCL_END) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    static int getH265NalUnitType(@NonNull byte[] payload, int offset) {
+        return (payload[offset] >> 1) & 0x3F;
+    }
+
+    static boolean isH265RandomAccessPoint(int nalUnitType) {
+        return nalUnitType >= H265_NAL_UNIT_TYPE_IRAP_START && nalUnitType <= H265_NAL_UNIT_TYPE_IRAP_END;
+    }
+
+    /**
+     * Returns the type of the MPEG-2 video frame from the picture coding type
+     */
+    static int getMpeg2VideoFrameType(@NonNull byte[] payload, int length) {
+        int offset = 0;
+        while ((offset = findStartCode(payload, offset, length)) != -1 && offset + 2 < length) {
+            if (payload[offset] != MPEG2_START_CODE_PICTURE) {
+                continue;
+            }
+            // The picture header starts with 10 bits temporal_reference and 3 bits picture_coding_type
+            switch ((payload[offset + 2] >> 3) & 0x07) {
+                case MPEG2_PICTURE_CODING_TYPE_I:
+                    return FRAME_TYPE_KEY;
+                case MPEG2_PICTURE_CODING_TYPE_P:
+                    return FRAME_TYPE_REFERENCE;
+                case MPEG2_PICTURE_CODING_TYPE_B:
+                    return FRAME_TYPE_DISPOSABLE;
+                default:
+                    return FRAME_TYPE_UNKNOWN;
+            }
+        }
+        return FRAME_TYPE_UNKNOWN;
+    }
+
+    /**
+     * Searches for the start code 0x000001 that precedes the NAL units of
+     * H.264 and H.265 and the headers of MPEG-2 video
+     *
+     * @param limit The end of the data in the array
+     * @return The position after the start code, or -1 if there is none
+     */
+    static int findStartCode(byte[] data, int offset, int limit) {
+        for (int i = offset; i + 2 < limit; i++) {
+            if ((data[i + 2] & 0xFF) > 1) {
+                // No start code can begin at one of the next three positions
+                i += 2;
+            } else if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the unsigned Exp-Golomb codes from the given position and returns
+     * the value of the code with the given index. The emulation prevention
+     * bytes are not removed, so only the first codes of a header can be read.
+     *
+     * @param limit The end of the data in the array
+     * @return The value of the code, or -1 if the data ends before
+     */
+    static int readUnsignedExpGolombCode(byte[] data, int offset, int limit, int index) {
+        final int bitLimit = limit * 8;
+        int bitPosition = offset * 8;
+        for (int i = 0; ; i++) {
+            int leadingZeros = 0;
+            while (bitPosition < bitLimit && readBit(data, bitPosition) == 0) {
+                leadingZeros++;
+                bitPosition++;
+            }
+            if (bitPosition + leadingZeros >= bitLimit || leadingZeros > 30) {
+                return -1;
+            }
+            bitPosition++;
+            int value = 0;
+            for (int j = 0; j < leadingZeros; j++) {
+                value = (value << 1) | readBit(data, bitPosition++);
+            }
+            if (i == index) {
+                return value + (1 << leadingZeros) - 1;
+            }
+        }
+    }
+
+    private static int readBit(byte[] data, int bitPosition) {
+        return (data[bitPosition >> 3] >> (7 - (bitPosition & 7))) & 1;
+    }
 }
@@ -18,22 +18,34 @@ package org.tvheadend.tvhclient.ui.features.playback.internal.reader;
 
 import android.content.Context;
 
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import org.tvheadend.tvhclient.ui.features.playback.internal.CodecCapabilityCache;
+
+import androidx.annotation.Nullable;
+import timber.log.Timber;
+
 public class StreamReadersFactory {
     private final Context mContext;
+    private final FrameDropPolicy mFrameDropPolicy;
+    private final CodecCapabilityCache mCodecCapabilityCache;
 
-    public StreamReadersFactory(Context context) {
+    public StreamReadersFactory(Context context, @Nullable FrameDropPolicy frameDropPolicy) {
         mContext = context;
+        mFrameDropPolicy = frameDropPolicy;
+        mCodecCapabilityCache = CodecCapabilityCache.getInstance(context);
     }
 
     public StreamReader createStreamReader(String streamType) {
         switch (streamType) {
             // Video Stream Types
+            // Video Streams without a decoder are discarded, so that at least the audio is played
             case "H264":
-                return new H264StreamReader(mContext);
+                return isVideoDecoderSupported(MimeTypes.VIDEO_H264) ? new H264StreamReader(mContext, mFrameDropPolicy) : null;
             case "HEVC":
-                return new H265StreamReader(mContext);
+                return isVideoDecoderSupported(MimeTypes.VIDEO_H265) ? new H265StreamReader(mContext, mFrameDropPolicy) : null;
             case "MPEG2VIDEO":
-                return new Mpeg2VideoStreamReader(mContext);
+                return isVideoDecoderSupported(MimeTypes.VIDEO_MPEG2) ? new Mpeg2VideoStreamReader(mContext, mFrameDropPolicy) : null;
             // Audio Stream Types
             case "AAC":
                 return new AacStreamReader(mContext);
@@ -54,4 +66,12 @@ public class StreamReadersFactory {
                 return null;
         }
     }
+
+    private boolean isVideoDecoderSupported(String mimeType) {
+        if (!mCodecCapabilityCache.isDecoderSupported(mimeType)) {
+            Timber.d("No decoder available for " + mimeType);
+            return false;
+        }
+        return true;
+    }
 }
@@ -25,14 +25,12 @@ import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.ParsableByteArray;
-import com.google.android.exoplayer2.util.Util;
 
 import org.tvheadend.tvhclient.MainApplication;
 import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
 
-import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.Locale;
 
 import androidx.annotation.NonNull;
 
@@ -64,11 +62,12 @@ class TextsubStreamReader implements StreamReader {
      */
     private static final int SUBRIP_TIMECODE_LENGTH = 12;
 
-    // UTF-8 is the default on Android
-    private static final Charset UTF_8 = Charset.defaultCharset();
-
     private final Context mContext;
     private TrackOutput mTrackOutput;
+    // The samples are built in the same buffer that starts with the
+    // prefix. It only grows when a subtitle does not fit into it.
+    private byte[] mSample = Arrays.copyOf(SUBRIP_PREFIX, 256);
+    private final ParsableByteArray mSampleData = new ParsableByteArray();
 
     TextsubStreamReader(Context context) {
         mContext = context;
@@ -82,24 +81,43 @@ class TextsubStreamReader implements StreamReader {
     }
 
     @Override
-    public void consume(@NonNull final HtspMessage message) {
-
-        final long pts = message.getLong("pts");
-        final long duration = message.getInteger("duration");
-        final byte[] payload = Util.getUtf8Bytes(
-                new String(message.getByteArray("payload"), UTF_8).trim());
+    public void consume(@NonNull final HtspStreamPacket packet) {
+
+        final long pts = packet.getPts();
+        final long duration = packet.getDuration();
+        final byte[] payload = packet.getPayload();
+
+        // Remove the leading and trailing white space and control characters
+        // like String.trim() does. The bytes of the multi byte characters in
+        // UTF-8 are all above 0x7F, so the payload does not need to be decoded.
+        int start = 0;
+        int end = packet.getPayloadLength();
+        while (start < end && (payload[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (payload[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
 
-        final int lengthWithPrefix = SUBRIP_PREFIX.length + payload.length;
-        final byte[] subsipSample = Arrays.copyOf(SUBRIP_PREFIX, lengthWithPrefix);
+        final int lengthWithPrefix = SUBRIP_PREFIX.length + end - start;
+        if (mSample.length < lengthWithPrefix) {
+            mSample = Arrays.copyOf(mSample, Integer.highestOneBit(lengthWithPrefix) * 2);
+        }
 
-        System.arraycopy(payload, 0, subsipSample, SUBRIP_PREFIX.length, payload.length);
+        System.arraycopy(payload, start, mSample, SUBRIP_PREFIX.length, end - start);
 
-        setSubripSampleEndTimecode(subsipSample, duration);
+        setSubripSampleEndTimecode(mSample, duration);
 
-        mTrackOutput.sampleData(new ParsableByteArray(subsipSample), lengthWithPrefix);
+        mSampleData.reset(mSample, lengthWithPrefix);
+        mTrackOutput.sampleData(mSampleData, lengthWithPrefix);
         mTrackOutput.sampleMetadata(pts, C.BUFFER_FLAG_KEY_FRAME, lengthWithPrefix, 0, null);
     }
 
+    @Override
+    public void seek() {
+        // NOP, every frame is a key frame
+    }
+
     @Override
     public void release() {
         // Watch for memory leaks
@@ -118,22 +136,35 @@ class TextsubStreamReader implements StreamReader {
     }
 
     private static void setSubripSampleEndTimecode(byte[] subripSample, long timeUs) {
-        byte[] timeCodeData;
         if (timeUs == C.TIME_UNSET || timeUs == 0) {
-            timeCodeData = SUBRIP_TIMECODE_EMPTY;
-        } else {
-            int hours = (int) (timeUs / 3600000000L);
-            timeUs -= (hours * 3600000000L);
-            int minutes = (int) (timeUs / 60000000);
-            timeUs -= (minutes * 60000000);
-            int seconds = (int) (timeUs / 1000000);
-            timeUs -= (seconds * 1000000);
-            int milliseconds = (int) (timeUs / 1000);
-            timeCodeData = Util.getUtf8Bytes(String.format(Locale.US, "%02d:%02d:%02d,%03d", hours,
-                    minutes, seconds, milliseconds));
+            System.arraycopy(SUBRIP_TIMECODE_EMPTY, 0, subripSample, SUBRIP_PREFIX_END_TIMECODE_OFFSET,
+                    SUBRIP_TIMECODE_LENGTH);
+            return;
         }
+        int hours = (int) (timeUs / 3600000000L);
+        timeUs -= (hours * 3600000000L);
+        int minutes = (int) (timeUs / 60000000);
+        timeUs -= (minutes * 60000000);
+        int seconds = (int) (timeUs / 1000000);
+        timeUs -= (seconds * 1000000);
+        int milliseconds = (int) (timeUs / 1000);
+
+        // Written as "00:00:00,000" directly into the sample
+        int offset = SUBRIP_PREFIX_END_TIMECODE_OFFSET;
+        offset = writeDigits(subripSample, offset, hours, 2);
+        subripSample[offset++] = ':';
+        offset = writeDigits(subripSample, offset, minutes, 2);
+        subripSample[offset++] = ':';
+        offset = writeDigits(subripSample, offset, seconds, 2);
+        subripSample[offset++] = ',';
+        writeDigits(subripSample, offset, milliseconds, 3);
+    }
 
-        System.arraycopy(timeCodeData, 0, subripSample, SUBRIP_PREFIX_END_TIMECODE_OFFSET,
-                SUBRIP_TIMECODE_LENGTH);
+    private static int writeDigits(byte[] data, int offset, int value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            data[offset + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + count;
     }
 }
@@ -1,23 +1,39 @@
 package org.tvheadend.tvhclient.ui.features.programs
 
+import android.text.TextUtils
 import androidx.recyclerview.widget.DiffUtil
-import org.tvheadend.tvhclient.domain.entity.Program
 
-internal class ProgramListDiffCallback(private val oldList: List<Program>, private val newList: List<Program>) : DiffUtil.Callback() {
+internal class ProgramListDiffCallback : DiffUtil.ItemCallback<ProgramListItem>() {
 
-    override fun getOldListSize(): Int {
-        return oldList.size
+    override fun areItemsTheSame(oldItem: ProgramListItem, newItem: ProgramListItem): Boolean {
+        return newItem.program.eventId == oldItem.program.eventId
     }
 
-    override fun getNewListSize(): Int {
-        return newList.size
-    }
-
-    override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition].eventId == oldList[oldItemPosition].eventId
-    }
+    /**
+     * Compares only the values that are loaded for the program list. The recording
+     * is not compared because it is added to the program when it is shown.
+     * The date is compared because its text depends on the current day.
+     */
+    override fun areContentsTheSame(oldItem: ProgramListItem, newItem: ProgramListItem): Boolean {
+        val oldProgram = oldItem.program
+        val newProgram = newItem.program
+        return (TextUtils.equals(newItem.date, oldItem.date)
+                && newProgram.eventId == oldProgram.eventId
+                && newProgram.channelId == oldProgram.channelId
+                && newProgram.start == oldProgram.start
+                && newProgram.stop == oldProgram.stop
+                && newProgram.contentType == oldProgram.contentType
+                && newProgram.seasonNumber == oldProgram.seasonNumber
+                && newProgram.episodeNumber == oldProgram.episodeNumber
+                && newProgram.partNumber == oldProgram.partNumber
+                && newProgram.nextEventId == oldProgram.nextEventId
 
-    override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-        return newList[newItemPosition] == oldList[oldItemPosition]
+                && TextUtils.equals(newProgram.title, oldProgram.title)
+                && TextUtils.equals(newProgram.subtitle, oldProgram.subtitle)
+                && TextUtils.equals(newProgram.summary, oldProgram.summary)
+                && TextUtils.equals(newProgram.description, oldProgram.description)
+                && TextUtils.equals(newProgram.episodeOnscreen, oldProgram.episodeOnscreen)
+                && TextUtils.equals(newProgram.channelName, oldProgram.channelName)
+                && TextUtils.equals(newProgram.channelIcon, oldProgram.channelIcon))
     }
 }
@@ -5,12 +5,13 @@ import android.content.Intent
 import android.os.Bundle
 import android.os.Handler
 import android.view.*
-import android.widget.Filter
 import androidx.appcompat.widget.PopupMenu
 import androidx.fragment.app.FragmentTransaction
 import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LiveData
 import androidx.lifecycle.Observer
 import androidx.lifecycle.ViewModelProviders
+import androidx.paging.PagedList
 import androidx.recyclerview.widget.DefaultItemAnimator
 import androidx.recyclerview.widget.DividerItemDecoration
 import androidx.recyclerview.widget.LinearLayoutManager
@@ -30,10 +31,9 @@ import org.tvheadend.tvhclient.ui.features.dialogs.showGenreColorDialog
 import org.tvheadend.tvhclient.ui.features.dvr.RecordingAddEditActivity
 import org.tvheadend.tvhclient.ui.features.notification.addNotification
 import org.tvheadend.tvhclient.ui.features.search.SearchRequestInterface
-import org.tvheadend.tvhclient.ui.features.search.StartSearchInterface
 import timber.log.Timber
 
-class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgramVisibleListener, SearchRequestInterface, Filter.FilterListener {
+class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, SearchRequestInterface {
 
     lateinit var recyclerViewAdapter: ProgramRecyclerViewAdapter
     lateinit var viewModel: ProgramViewModel
@@ -50,6 +50,19 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
     private val loadingProgramAllowedHandler = Handler()
     private var programIdToBeEditedWhenBeingRecorded = 0
     private var isSearchActive: Boolean = false
+    private var programs: LiveData<PagedList<ProgramListItem>>? = null
+    private var programCount: LiveData<Int>? = null
+
+    /**
+     * Requests more programs from the server when the last program of the
+     * channel was loaded. The new programs are added to the database
+     * which will then reload the program list.
+     */
+    private val programBoundaryCallback = object : PagedList.BoundaryCallback<ProgramListItem>() {
+        override fun onItemAtEndLoaded(itemAtEnd: ProgramListItem) {
+            loadMorePrograms(itemAtEnd.program)
+        }
+    }
 
     override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
         return inflater.inflate(R.layout.recyclerview_fragment, container, false)
@@ -82,7 +95,7 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
         // Show the channel icons when a search is active and all channels shall be searched
         val showProgramChannelIcon = isSearchActive && shownChannelId == 0
 
-        recyclerViewAdapter = ProgramRecyclerViewAdapter(showProgramChannelIcon, this, this)
+        recyclerViewAdapter = ProgramRecyclerViewAdapter(showProgramChannelIcon, this)
         recycler_view.layoutManager = LinearLayoutManager(activity.applicationContext)
         recycler_view.addItemDecoration(DividerItemDecoration(activity.applicationContext, LinearLayoutManager.VERTICAL))
         recycler_view.itemAnimator = DefaultItemAnimator()
@@ -97,8 +110,7 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
             // A channel id and a channel name was given, load only the programs for the
             // specific channel and from the current time. Also load only those recordings
             // that belong to the given channel
-            viewModel.getProgramsByChannelFromTime(shownChannelId, selectedTime).observe(viewLifecycleOwner, Observer<List<Program>> { this.handleObservedPrograms(it) })
-            viewModel.getRecordingsByChannelId(shownChannelId).observe(viewLifecycleOwner, Observer<List<Recording>> { this.handleObservedRecordings(it) })
+            viewModel.getRecordingStatesByChannelId(shownChannelId).observe(viewLifecycleOwner, Observer<List<Recording>> { this.handleObservedRecordings(it) })
 
             loadingMoreProgramAllowed = true
             loadingProgramsAllowedTask = Runnable { loadingMoreProgramAllowed = true }
@@ -107,35 +119,49 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
             Timber.d("Search is active, loading programs from current time $selectedTime")
             // No channel and channel name was given, load all programs
             // from the current time and all recordings from all channels
-            viewModel.getProgramsFromTime(selectedTime).observe(viewLifecycleOwner, Observer<List<Program>> { this.handleObservedPrograms(it) })
             viewModel.recordings?.observe(viewLifecycleOwner, Observer<List<Recording>> { this.handleObservedRecordings(it) })
 
             loadingMoreProgramAllowed = false
         }
+        observePrograms()
     }
 
-    private fun handleObservedPrograms(programs: List<Program>?) {
-        if (programs != null) {
-            recyclerViewAdapter.addItems(programs.toMutableList())
-        }
-        if (isSearchActive) {
-            if (activity is StartSearchInterface) {
-                (activity as StartSearchInterface).startSearch()
-            }
-        }
+    /**
+     * Observes the programs and their number that match the currently selected
+     * channel, time and search query. The observers of the previous selection
+     * are removed so that only the latest program list is shown.
+     */
+    private fun observePrograms() {
+        programs?.removeObservers(viewLifecycleOwner)
+        programCount?.removeObservers(viewLifecycleOwner)
+
+        val query = viewModel.getProgramListQuery(shownChannelId, selectedTime, searchQuery)
+        programs = viewModel.getPrograms(query, if (!isSearchActive) programBoundaryCallback else null)
+        programs?.observe(viewLifecycleOwner, Observer<PagedList<ProgramListItem>> { this.handleObservedPrograms(it) })
+        programCount = viewModel.getNumberOfPrograms(query)
+        programCount?.observe(viewLifecycleOwner, Observer<Int> { this.handleObservedProgramCount(it) })
+    }
+
+    private fun handleObservedPrograms(programs: PagedList<ProgramListItem>?) {
+        recyclerViewAdapter.submitList(programs)
+
         recycler_view?.visibility = View.VISIBLE
         progress_bar?.visibility = View.GONE
 
+        // Invalidate the menu so that the search menu item is shown in
+        // case the adapter contains items now.
+        activity.invalidateOptionsMenu()
+    }
+
+    private fun handleObservedProgramCount(count: Int?) {
         if (!isDualPane) {
+            val programCount = count ?: 0
             if (!isSearchActive) {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.items, programCount, programCount))
             } else {
-                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.programs, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
+                toolbarInterface.setSubtitle(resources.getQuantityString(R.plurals.programs, programCount, programCount))
             }
         }
-        // Invalidate the menu so that the search menu item is shown in
-        // case the adapter contains items now.
-        activity.invalidateOptionsMenu()
     }
 
     /**
@@ -209,7 +235,7 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
 
     private fun showProgramDetails(position: Int) {
         selectedListPosition = position
-        val program = recyclerViewAdapter.getItem(position)
+        val program = recyclerViewAdapter.getItem(position)?.program
         if (program == null
                 || !isVisible
                 || !lifecycle.currentState.isAtLeast(Lifecycle.State.STARTED)) {
@@ -225,7 +251,7 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
     }
 
     private fun showPopupMenu(view: View, position: Int) {
-        val program = recyclerViewAdapter.getItem(position)
+        val program = recyclerViewAdapter.getItem(position)?.program
         if (activity == null || program == null) {
             return
         }
@@ -276,13 +302,14 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
     }
 
     override fun onSearchRequested(query: String) {
-        recyclerViewAdapter.filter.filter(query, this)
+        searchQuery = query
+        observePrograms()
     }
 
     override fun onSearchResultsCleared(): Boolean {
         return if (!searchQuery.isEmpty()) {
             searchQuery = ""
-            recyclerViewAdapter.filter.filter("", this)
+            observePrograms()
             true
         } else {
             false
@@ -293,42 +320,27 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
         return getString(R.string.search_programs)
     }
 
-    override fun onLastProgramVisible(position: Int) {
+    private fun loadMorePrograms(lastProgram: Program) {
         // Do not load more programs when a search query was given or all programs were loaded.
-        if (isSearchActive || !loadingMoreProgramAllowed || !isNetworkAvailable) {
+        if (isSearchActive || searchQuery.isNotEmpty() || !loadingMoreProgramAllowed || !isNetworkAvailable) {
             return
         }
 
         loadingMoreProgramAllowed = false
         loadingProgramAllowedHandler.postDelayed(loadingProgramsAllowedTask, 2000)
 
-        val lastProgram = recyclerViewAdapter.getItem(position)
-        lastProgram?.let {
-            Timber.d("Loading more programs after ${lastProgram.title}")
+        Timber.d("Loading more programs after ${lastProgram.title}")
 
-            val intent = Intent(activity, HtspService::class.java)
-            intent.action = "getEvents"
-            intent.putExtra("eventId", lastProgram.nextEventId)
-            intent.putExtra("channelId", lastProgram.channelId)
-            intent.putExtra("channelName", channelName)
-            intent.putExtra("numFollowing", 25)
-            intent.putExtra("showMessage", true)
+        val intent = Intent(activity, HtspService::class.java)
+        intent.action = "getEvents"
+        intent.putExtra("eventId", lastProgram.nextEventId)
+        intent.putExtra("channelId", lastProgram.channelId)
+        intent.putExtra("channelName", channelName)
+        intent.putExtra("numFollowing", 25)
+        intent.putExtra("showMessage", true)
 
-            if (MainApplication.isActivityVisible()) {
-                activity.startService(intent)
-            }
-        }
-    }
-
-    override fun onFilterComplete(count: Int) {
-        if (!isDualPane) {
-            context?.let {
-                if (!isSearchActive) {
-                    toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.items, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-                } else {
-                    toolbarInterface.setSubtitle(it.resources.getQuantityString(R.plurals.programs, recyclerViewAdapter.itemCount, recyclerViewAdapter.itemCount))
-                }
-            }
+        if (MainApplication.isActivityVisible()) {
+            activity.startService(intent)
         }
     }
 
@@ -343,7 +355,7 @@ class ProgramListFragment : BaseFragment(), RecyclerViewClickCallback, LastProgr
 
     fun updatePrograms(selectedTime: Long) {
         this.selectedTime = selectedTime
-        viewModel.getProgramsByChannelFromTime(shownChannelId, selectedTime).observe(viewLifecycleOwner, Observer<List<Program>> { this.handleObservedPrograms(it) })
+        observePrograms()
     }
 
     companion object {
@@ -0,0 +1,29 @@
+package org.tvheadend.tvhclient.ui.features.programs
+
+import org.tvheadend.tvhclient.domain.entity.Program
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
+
+/**
+ * Contains the program and all values of the program list item that are
+ * expensive to create. The item is created on the background thread that
+ * loads the programs so that binding the item only assigns the values.
+ * This includes the description which is stored compressed.
+ */
+data class ProgramListItem(val program: Program,
+                           val date: String,
+                           val startTime: String,
+                           val stopTime: String,
+                           val contentType: String,
+                           val seriesInfo: String,
+                           val genreColor: Int,
+                           val description: String?) {
+
+    constructor(program: Program, formatter: ListItemFormatter) : this(program,
+            formatter.date(program.start),
+            formatter.time(program.start),
+            formatter.time(program.stop),
+            formatter.contentType(program.contentType),
+            formatter.seriesInfo(program),
+            formatter.genreColor(program.contentType),
+            program.description)
+}
@@ -2,25 +2,19 @@ package org.tvheadend.tvhclient.ui.features.programs
 
 import android.preference.PreferenceManager
 import android.text.TextUtils
+import android.util.SparseArray
 import android.view.LayoutInflater
 import android.view.ViewGroup
-import android.widget.Filter
-import android.widget.Filterable
-import androidx.recyclerview.widget.DiffUtil
+import androidx.paging.PagedListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.databinding.ProgramListAdapterBinding
-import org.tvheadend.tvhclient.domain.entity.Program
 import org.tvheadend.tvhclient.domain.entity.Recording
 import org.tvheadend.tvhclient.ui.common.callbacks.RecyclerViewClickCallback
-import java.util.*
-import java.util.concurrent.CopyOnWriteArrayList
 
-class ProgramRecyclerViewAdapter internal constructor(private val showProgramChannelIcon: Boolean, private val clickCallback: RecyclerViewClickCallback, private val onLastProgramVisibleListener: LastProgramVisibleListener) : RecyclerView.Adapter<ProgramRecyclerViewAdapter.ProgramViewHolder>(), Filterable {
+class ProgramRecyclerViewAdapter internal constructor(private val showProgramChannelIcon: Boolean, private val clickCallback: RecyclerViewClickCallback) : PagedListAdapter<ProgramListItem, ProgramRecyclerViewAdapter.ProgramViewHolder>(ProgramListDiffCallback()) {
 
-    private val programList = ArrayList<Program>()
-    private var programListFiltered: MutableList<Program> = ArrayList()
-    private val recordingList = ArrayList<Recording>()
+    private val recordings = SparseArray<Recording>()
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ProgramViewHolder {
         val layoutInflater = LayoutInflater.from(parent.context)
@@ -34,12 +28,10 @@ class ProgramRecyclerViewAdapter internal constructor(private val showProgramCha
     }
 
     override fun onBindViewHolder(holder: ProgramViewHolder, position: Int) {
-        if (programListFiltered.size > position) {
-            val program = programListFiltered[position]
-            holder.bind(program, position, clickCallback)
-            if (position == programList.size - 1) {
-                onLastProgramVisibleListener.onLastProgramVisible(position)
-            }
+        val item = getItem(position)
+        if (item != null) {
+            item.program.recording = recordings.get(item.program.eventId)
+            holder.bind(item, position, clickCallback)
         }
     }
 
@@ -47,113 +39,59 @@ class ProgramRecyclerViewAdapter internal constructor(private val showProgramCha
         onBindViewHolder(holder, position)
     }
 
-    internal fun addItems(newItems: MutableList<Program>) {
-        updateRecordingState(newItems, recordingList)
-
-        val oldItems = ArrayList(programListFiltered)
-        val diffResult = DiffUtil.calculateDiff(ProgramListDiffCallback(oldItems, newItems))
-
-        programList.clear()
-        programListFiltered.clear()
-        programList.addAll(newItems)
-        programListFiltered.addAll(newItems)
-        diffResult.dispatchUpdatesTo(this)
-    }
-
-    override fun getItemCount(): Int {
-        return programListFiltered.size
-    }
-
     override fun getItemViewType(position: Int): Int {
         return R.layout.program_list_adapter
     }
 
-    fun getItem(position: Int): Program? {
-        return if (programListFiltered.size > position && position >= 0) {
-            programListFiltered[position]
+    public override fun getItem(position: Int): ProgramListItem? {
+        return if (position in 0 until itemCount) {
+            super.getItem(position)
         } else {
             null
         }
     }
 
-    override fun getFilter(): Filter {
-        return object : Filter() {
-            override fun performFiltering(charSequence: CharSequence): Filter.FilterResults {
-                val charString = charSequence.toString()
-                var filteredList: MutableList<Program> = ArrayList()
-                if (charString.isEmpty()) {
-                    filteredList = programList
-                } else {
-                    // Iterate over the available program. Use a copy on write
-                    // array in case the program list changes during filtering.
-                    for (program in CopyOnWriteArrayList(programList)) {
-                        // name match condition. this might differ depending on your requirement
-                        // here we are looking for a channel name match
-                        val title = program.title ?: ""
-                        if (title.toLowerCase().contains(charString.toLowerCase())) {
-                            filteredList.add(program)
-                        }
-                    }
-                }
-
-                val filterResults = Filter.FilterResults()
-                filterResults.values = filteredList
-                return filterResults
-            }
-
-            override fun publishResults(charSequence: CharSequence, filterResults: Filter.FilterResults) {
-                programListFiltered = filterResults.values as ArrayList<Program>
-                notifyDataSetChanged()
-            }
-        }
-    }
-
     /**
      * Whenever a recording changes in the database the list of available recordings are
      * saved in this recycler view. The previous list is cleared to avoid showing outdated
-     * recording states. Each recording is checked if it belongs to the
-     * currently shown program. If yes then its state is updated.
+     * recording states. The recording of a program is added when the program is shown,
+     * so only the loaded programs whose recording state has changed need to be updated.
      *
      * @param list List of recordings
      */
     internal fun addRecordings(list: List<Recording>) {
-        recordingList.clear()
-        recordingList.addAll(list)
-        updateRecordingState(programListFiltered, recordingList)
-    }
+        recordings.clear()
+        for (recording in list) {
+            if (recording.eventId > 0) {
+                recordings.put(recording.eventId, recording)
+            }
+        }
 
-    private fun updateRecordingState(programs: MutableList<Program>, recordings: List<Recording>) {
+        val programs = currentList ?: return
         for (i in programs.indices) {
-            val program = programs[i]
-            var recordingExists = false
-
-            for (recording in recordings) {
-                if (program.eventId > 0 && program.eventId == recording.eventId) {
-                    val oldRecording = program.recording
-                    program.recording = recording
-
-                    // Do a full update only when a new recording was added or the recording
-                    // state has changed which results in a different recording state icon
-                    // Otherwise do not update the UI
-                    if (oldRecording == null || !TextUtils.equals(oldRecording.error, recording.error) || !TextUtils.equals(oldRecording.state, recording.state)) {
-                        notifyItemChanged(i)
-                    }
-                    recordingExists = true
-                    break
-                }
+            val program = programs[i]?.program ?: continue
+            val oldRecording = program.recording
+            val recording = recordings.get(program.eventId)
+
+            // Do a full update only when a recording was added or removed or the recording
+            // state has changed which results in a different recording state icon
+            // Otherwise do not update the UI
+            if (oldRecording == null && recording == null) {
+                continue
             }
-            if (!recordingExists && program.recording != null) {
-                program.recording = null
+            if (oldRecording == null || recording == null
+                    || !TextUtils.equals(oldRecording.error, recording.error)
+                    || !TextUtils.equals(oldRecording.state, recording.state)) {
                 notifyItemChanged(i)
             }
-            programs[i] = program
         }
     }
 
     class ProgramViewHolder(private val binding: ProgramListAdapterBinding, private val showProgramChannelIcon: Boolean, private val showGenreColors: Boolean, private val showProgramSubtitles: Boolean) : RecyclerView.ViewHolder(binding.getRoot()) {
 
-        fun bind(program: Program, position: Int, clickCallback: RecyclerViewClickCallback) {
-            binding.setProgram(program)
+        fun bind(item: ProgramListItem, position: Int, clickCallback: RecyclerViewClickCallback) {
+            binding.setProgram(item.program)
+            binding.setItem(item)
             binding.setPosition(position)
             binding.setShowProgramSubtitles(showProgramSubtitles)
             binding.setShowProgramChannelIcon(showProgramChannelIcon)
@@ -3,10 +3,13 @@ package org.tvheadend.tvhclient.ui.features.programs
 import android.app.Application
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.LiveData
+import androidx.paging.PagedList
 import org.tvheadend.tvhclient.MainApplication
+import org.tvheadend.tvhclient.data.paging.KeysetQuery
 import org.tvheadend.tvhclient.data.repository.AppRepository
 import org.tvheadend.tvhclient.domain.entity.Program
 import org.tvheadend.tvhclient.domain.entity.Recording
+import org.tvheadend.tvhclient.ui.common.ListItemFormatter
 import javax.inject.Inject
 
 class ProgramViewModel(application: Application) : AndroidViewModel(application) {
@@ -14,21 +17,27 @@ class ProgramViewModel(application: Application) : AndroidViewModel(application)
     @Inject
     lateinit var appRepository: AppRepository
 
+    private val formatter = ListItemFormatter(application)
+
     val numberOfPrograms: LiveData<Int>
     val recordings: LiveData<List<Recording>>?
 
     init {
         MainApplication.getComponent().inject(this)
-        recordings = appRepository.recordingData.getLiveDataItems()
+        recordings = appRepository.recordingData.getLiveDataItemStates()
         numberOfPrograms = appRepository.programData.getLiveDataItemCount()
     }
 
-    fun getProgramsByChannelFromTime(channelId: Int, time: Long): LiveData<List<Program>> {
-        return appRepository.programData.getLiveDataItemByChannelIdAndTime(channelId, time)
+    fun getProgramListQuery(channelId: Int, time: Long, searchQuery: String): KeysetQuery {
+        return appRepository.programData.getListQuery(channelId, time, searchQuery)
+    }
+
+    fun getPrograms(query: KeysetQuery, boundaryCallback: PagedList.BoundaryCallback<ProgramListItem>?): LiveData<PagedList<ProgramListItem>> {
+        return appRepository.programData.getLiveDataPagedItems(query, { ProgramListItem(it, formatter) }, boundaryCallback)
     }
 
-    fun getProgramsFromTime(time: Long): LiveData<List<Program>> {
-        return appRepository.programData.getLiveDataItemsFromTime(time)
+    fun getNumberOfPrograms(query: KeysetQuery): LiveData<Int> {
+        return appRepository.programData.getLiveDataItemCount(query)
     }
 
     fun getProgramByIdSync(eventId: Int): Program? {
@@ -38,4 +47,8 @@ class ProgramViewModel(application: Application) : AndroidViewModel(application)
     fun getRecordingsByChannelId(channelId: Int): LiveData<List<Recording>> {
         return appRepository.recordingData.getLiveDataItemsByChannelId(channelId)
     }
+
+    fun getRecordingStatesByChannelId(channelId: Int): LiveData<List<Recording>> {
+        return appRepository.recordingData.getLiveDataItemStatesByChannelId(channelId)
+    }
 }
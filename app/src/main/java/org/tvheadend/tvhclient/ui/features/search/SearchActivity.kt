@@ -15,7 +15,7 @@ import org.tvheadend.tvhclient.ui.features.programs.ProgramListFragment
 import org.tvheadend.tvhclient.util.getThemeId
 import timber.log.Timber
 
-class SearchActivity : BaseActivity(), StartSearchInterface, NetworkStatusListener {
+class SearchActivity : BaseActivity(), NetworkStatusListener {
 
     private lateinit var networkStatusReceiver: NetworkStatusReceiver
     private var isNetworkAvailable: Boolean = false
@@ -53,17 +53,15 @@ class SearchActivity : BaseActivity(), StartSearchInterface, NetworkStatusListen
         }
     }
 
-    override fun startSearch() {
-        val fragment = supportFragmentManager.findFragmentById(R.id.main)
-        if (fragment is SearchRequestInterface && fragment.isVisible) {
-            val query = intent.getStringExtra(SearchManager.QUERY)
-            fragment.onSearchRequested(query)
-        }
-    }
-
     override fun onNewIntent(intent: Intent) {
         setIntent(intent)
         handleIntent(intent)
+
+        // Show the results of the new search in the current fragment
+        val fragment = supportFragmentManager.findFragmentById(R.id.main)
+        if (Intent.ACTION_SEARCH == intent.action && fragment is SearchRequestInterface) {
+            fragment.onSearchRequested(intent.getStringExtra(SearchManager.QUERY) ?: "")
+        }
     }
 
     private fun handleIntent(intent: Intent) {
@@ -1,5 +0,0 @@
-package org.tvheadend.tvhclient.ui.features.search
-
-interface StartSearchInterface {
-    fun startSearch()
-}
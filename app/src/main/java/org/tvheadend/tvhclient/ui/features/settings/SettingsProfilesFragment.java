@@ -35,9 +35,11 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
 
     private ListPreference recordingProfilesPreference;
     private ListPreference htspPlaybackProfilesPreference;
+    private ListPreference htspFallbackProfilesPreference;
     private ListPreference httpPlaybackProfilesPreference;
     private ListPreference castingProfilesPreference;
     private int htspPlaybackServerProfileId;
+    private int htspFallbackServerProfileId;
     private int httpPlaybackServerProfileId;
     private int recordingServerProfileId;
     private int castingServerProfileId;
@@ -51,17 +53,20 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
         getToolbarInterface().setSubtitle(connection.getName());
 
         htspPlaybackProfilesPreference = findPreference("htsp_playback_profiles");
+        htspFallbackProfilesPreference = findPreference("htsp_fallback_profiles");
         httpPlaybackProfilesPreference = findPreference("http_playback_profiles");
         recordingProfilesPreference = findPreference("recording_profiles");
         castingProfilesPreference = findPreference("casting_profiles");
 
         if (savedInstanceState != null) {
             htspPlaybackServerProfileId = savedInstanceState.getInt("htsp_playback_profile_id");
+            htspFallbackServerProfileId = savedInstanceState.getInt("htsp_fallback_profile_id");
             httpPlaybackServerProfileId = savedInstanceState.getInt("http_playback_profile_id");
             recordingServerProfileId = savedInstanceState.getInt("recording_profile_id");
             castingServerProfileId = savedInstanceState.getInt("casting_profile_id");
         } else {
             htspPlaybackServerProfileId = getServerStatus().getHtspPlaybackServerProfileId();
+            htspFallbackServerProfileId = getServerStatus().getPlaybackTranscodingProfileId();
             httpPlaybackServerProfileId = getServerStatus().getHttpPlaybackServerProfileId();
             recordingServerProfileId = getServerStatus().getRecordingServerProfileId();
             castingServerProfileId = getServerStatus().getCastingServerProfileId();
@@ -70,6 +75,9 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
         addProfiles(htspPlaybackProfilesPreference,
                 getAppRepository().getServerProfileData().getHtspPlaybackProfiles(),
                 htspPlaybackServerProfileId);
+        addProfiles(htspFallbackProfilesPreference,
+                getAppRepository().getServerProfileData().getHtspPlaybackProfiles(),
+                htspFallbackServerProfileId);
         addProfiles(httpPlaybackProfilesPreference,
                 getAppRepository().getServerProfileData().getHttpPlaybackProfiles(),
                 httpPlaybackServerProfileId);
@@ -82,6 +90,7 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
 
         setHttpPlaybackProfileListSummary();
         setHtspPlaybackProfileListSummary();
+        setHtspFallbackProfileListSummary();
         setRecordingProfileListSummary();
         setCastingProfileListSummary();
 
@@ -90,6 +99,11 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
             setHtspPlaybackProfileListSummary();
             return true;
         });
+        htspFallbackProfilesPreference.setOnPreferenceChangeListener((preference, o) -> {
+            htspFallbackServerProfileId = Integer.valueOf((String) o);
+            setHtspFallbackProfileListSummary();
+            return true;
+        });
         httpPlaybackProfilesPreference.setOnPreferenceChangeListener((preference, o) -> {
             httpPlaybackServerProfileId = Integer.valueOf((String) o);
             setHttpPlaybackProfileListSummary();
@@ -129,6 +143,15 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
         }
     }
 
+    private void setHtspFallbackProfileListSummary() {
+        if (htspFallbackServerProfileId == 0) {
+            htspFallbackProfilesPreference.setSummary("None");
+        } else {
+            ServerProfile fallbackProfile = getAppRepository().getServerProfileData().getItemById(htspFallbackServerProfileId);
+            htspFallbackProfilesPreference.setSummary(fallbackProfile != null ? fallbackProfile.getName() : null);
+        }
+    }
+
     private void setHttpPlaybackProfileListSummary() {
         if (httpPlaybackServerProfileId == 0) {
             httpPlaybackProfilesPreference.setSummary("None");
@@ -159,6 +182,7 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
     @Override
     public void onSaveInstanceState(@NonNull Bundle outState) {
         outState.putInt("htsp_playback_profile_id", htspPlaybackServerProfileId);
+        outState.putInt("htsp_fallback_profile_id", htspFallbackServerProfileId);
         outState.putInt("http_playback_profile_id", httpPlaybackServerProfileId);
         outState.putInt("recording_profile_id", recordingServerProfileId);
         outState.putInt("casting_profile_id", castingServerProfileId);
@@ -168,6 +192,7 @@ public class SettingsProfilesFragment extends BasePreferenceFragment implements
     @Override
     public void onBackPressed() {
         getServerStatus().setHtspPlaybackServerProfileId(htspPlaybackServerProfileId);
+        getServerStatus().setPlaybackTranscodingProfileId(htspFallbackServerProfileId);
         getServerStatus().setHttpPlaybackServerProfileId(httpPlaybackServerProfileId);
         getServerStatus().setRecordingServerProfileId(recordingServerProfileId);
         if (isUnlocked()) {
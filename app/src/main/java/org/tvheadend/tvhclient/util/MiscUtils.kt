@@ -4,6 +4,7 @@ package org.tvheadend.tvhclient.util
 
 import android.content.Context
 import android.preference.PreferenceManager
+import org.tvheadend.tvhclient.BuildConfig
 import org.tvheadend.tvhclient.R
 import org.tvheadend.tvhclient.domain.entity.ServerProfile
 import org.tvheadend.tvhclient.domain.entity.ServerStatus
@@ -53,3 +54,9 @@ fun getThemeId(context: Context): Int {
 fun isServerProfileEnabled(serverProfile: ServerProfile?, serverStatus: ServerStatus): Boolean {
     return serverProfile != null && serverStatus.htspVersion >= 16
 }
+
+/**
+ * Returns the client version that is sent to the server in the initial hello message
+ */
+val htspClientVersion: String
+    get() = BuildConfig.VERSION_NAME + "-" + BuildConfig.VERSION_CODE
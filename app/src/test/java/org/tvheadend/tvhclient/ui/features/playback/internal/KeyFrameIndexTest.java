@@ -0,0 +1,46 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyFrameIndexTest {
+
+    @Test
+    public void findLastKeyFrameBeforeTime() {
+        KeyFrameIndex index = new KeyFrameIndex();
+        for (int i = 0; i < 10; i++) {
+            index.add(i * 100, i * 1000);
+        }
+        assertEquals(0, index.find(-1));
+        assertEquals(0, index.find(999));
+        assertEquals(5, index.find(5000));
+        assertEquals(9, index.find(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void growWhileTheRingWrapsAround() {
+        KeyFrameIndex index = new KeyFrameIndex();
+        int added = 0;
+        // Let the first key frame move into the middle of the arrays
+        for (; added < 1000; added++) {
+            index.add(added, added * 10);
+        }
+        index.removeBefore(600);
+        for (; added < 5000; added++) {
+            index.add(added, added * 10);
+        }
+
+        assertEquals(600, index.getPosition(0));
+        assertEquals(4999, index.getPosition(index.find(Long.MAX_VALUE)));
+        for (int i = 600; i < 5000; i += 7) {
+            int keyFrame = index.find(i * 10 + 5);
+            assertEquals(i, index.getPosition(keyFrame));
+            assertEquals(i * 10, index.getPts(keyFrame));
+        }
+
+        index.removeBefore(5000);
+        assertTrue(index.isEmpty());
+    }
+}
@@ -0,0 +1,154 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes packet frames into the buffer like the subscription data source and
+ * reads them in chunks of any size like the extractor of the player does.
+ */
+public class TimeshiftRingBufferTest {
+
+    private static final int CAPACITY = 8 * 1024;
+    private static final int PAYLOAD_SIZE = 1000;
+    private static final int KEY_FRAME_INTERVAL = 5;
+
+    private File file;
+    private TimeshiftRingBuffer buffer;
+    private final ByteBuffer frames = ByteBuffer.allocate(4 * CAPACITY);
+    private final HtspStreamPacket packet = new HtspStreamPacket();
+    private final List<Long> readDts = new ArrayList<>();
+    private final List<Integer> readFrameTypes = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("timeshift", null);
+        buffer = new TimeshiftRingBuffer(file, CAPACITY);
+        frames.limit(0);
+    }
+
+    @After
+    public void tearDown() {
+        buffer.close();
+    }
+
+    @Test
+    public void readDataIsOverwritten() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(write(i));
+            read(1100);
+        }
+        read(Integer.MAX_VALUE);
+
+        assertEquals(100, readDts.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 1000L, (long) readDts.get(i));
+        }
+    }
+
+    @Test
+    public void unreadDataIsNotOverwritten() throws IOException {
+        write(0);
+        write(1);
+        // The extractor keeps the first part of a frame while the reading is paused
+        read(500);
+
+        int written = 2;
+        for (int i = 2; i < 40; i++) {
+            if (write(i)) {
+                written++;
+            }
+        }
+        assertTrue(written < 40);
+        assertTrue(buffer.available() <= CAPACITY);
+
+        // Reading continues with the next complete frame after each gap
+        for (int i = 40; i < 100; i++) {
+            write(i);
+            read(1500);
+        }
+        read(Integer.MAX_VALUE);
+
+        assertEquals(0L, (long) readDts.get(0));
+        boolean gap = false;
+        for (int i = 1; i < readDts.size(); i++) {
+            long previous = readDts.get(i - 1);
+            long dts = readDts.get(i);
+            assertTrue(dts > previous);
+            if (dts != previous + 1000) {
+                gap = true;
+                assertEquals("Reading continued after a gap without a key frame", 'I', (int) readFrameTypes.get(i));
+            }
+        }
+        assertTrue(gap);
+        assertEquals(99000L, (long) readDts.get(readDts.size() - 1));
+    }
+
+    @Test
+    public void seekToKeyFrame() throws IOException {
+        for (int i = 0; i < 7; i++) {
+            write(i);
+        }
+        assertTrue(buffer.seek(5500));
+        read(Integer.MAX_VALUE);
+        assertEquals(5000L, (long) readDts.get(0));
+        assertEquals(2, readDts.size());
+    }
+
+    @Test
+    public void noKeyFrameToSeekTo() {
+        assertFalse(buffer.seek(0));
+    }
+
+    private boolean write(int index) {
+        boolean isKeyFrame = index % KEY_FRAME_INTERVAL == 0;
+        HtspMessage muxpkt = new HtspMessage();
+        muxpkt.setMethod("muxpkt");
+        muxpkt.put("stream", 1);
+        muxpkt.put("frametype", (int) (isKeyFrame ? 'I' : 'P'));
+        muxpkt.put("dts", index * 1000L);
+        muxpkt.put("pts", index * 1000L);
+        muxpkt.put("payload", new byte[PAYLOAD_SIZE]);
+
+        ByteBuffer frame = ByteBuffer.allocate(HtspStreamPacket.getPacketFrameSize(muxpkt));
+        HtspStreamPacket.writePacket(frame, muxpkt);
+        return buffer.write(frame.array(), 0, frame.position(), index * 1000L, isKeyFrame);
+    }
+
+    /**
+     * Reads up to the given number of bytes and parses all complete frames
+     */
+    private void read(int length) throws IOException {
+        byte[] bytes = new byte[Math.min(length, buffer.available())];
+        int count = buffer.read(bytes, 0, bytes.length);
+
+        frames.position(frames.limit());
+        frames.limit(frames.capacity());
+        frames.put(bytes, 0, count);
+        frames.flip();
+        int frameSize;
+        while ((frameSize = HtspStreamPacket.peekFrameSize(frames)) != -1 && frames.remaining() >= frameSize) {
+            assertEquals(HtspStreamPacket.TYPE_PACKET, HtspStreamPacket.peekFrameType(frames));
+            packet.readPacket(frames);
+            assertEquals(1, packet.getStream());
+            assertEquals(PAYLOAD_SIZE, packet.getPayloadLength());
+            readDts.add(packet.getDts());
+            readFrameTypes.add(packet.getFrameType());
+        }
+        frames.compact();
+        frames.flip();
+    }
+}
@@ -0,0 +1,191 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal.reader;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+
+import org.junit.Test;
+import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Passes packets to the stream readers like the extractor does and checks
+ * that the readers do not allocate per packet once they have been set up.
+ */
+public class StreamReaderAllocationTest {
+
+    private static final int WARM_UP_PACKETS = 10000;
+    private static final int MEASURED_PACKETS = 100000;
+
+    @Test
+    public void h264StreamReader() {
+        HtspMessage stream = stream(1);
+        stream.put("width", 1920);
+        stream.put("height", 1080);
+        // A key frame and a predicted frame, the type is detected in the payload
+        byte[][] payloads = {
+                nalUnit(0x65, 20000),
+                nalUnit(0x41, 5000)};
+        assertNoAllocations(new H264StreamReader(null, null), stream, payloads, 'P');
+    }
+
+    @Test
+    public void plainAudioStreamReader() {
+        HtspMessage stream = stream(2);
+        stream.put("channels", 2);
+        stream.put("rate", 3);
+        assertNoAllocations(new Ac3StreamReader(null), stream, new byte[][]{randomPayload(1536)}, 'I');
+    }
+
+    @Test
+    public void aacStreamReader() {
+        HtspMessage stream = stream(3);
+        stream.put("channels", 2);
+        stream.put("rate", 3);
+        byte[] payload = randomPayload(400);
+        // ADTS header without a CRC
+        payload[0] = (byte) 0xFF;
+        payload[1] = (byte) 0xF1;
+        assertNoAllocations(new AacStreamReader(null), stream, new byte[][]{payload}, 'I');
+    }
+
+    @Test
+    public void textsubStreamReader() {
+        byte[] subtitle = "  Guten Abend, meine Damen und Herren\n".getBytes();
+        assertNoAllocations(new TextsubStreamReader(null), stream(4), new byte[][]{subtitle}, 'I');
+    }
+
+    private static void assertNoAllocations(StreamReader reader, HtspMessage stream, byte[][] payloads, char frameType) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        CountingTrackOutput output = new CountingTrackOutput();
+        reader.createTracks(stream, new SingleTrackExtractorOutput(output));
+        ByteBuffer[] frames = new ByteBuffer[payloads.length];
+        for (int i = 0; i < payloads.length; i++) {
+            HtspMessage muxpkt = new HtspMessage();
+            muxpkt.setMethod("muxpkt");
+            muxpkt.put("stream", stream.getInteger("index"));
+            muxpkt.put("frametype", i == 0 ? (int) 'I' : (int) frameType);
+            muxpkt.put("pts", 1000000L + i * 40000);
+            muxpkt.put("dts", 1000000L + i * 40000);
+            muxpkt.put("duration", 40000);
+            muxpkt.put("payload", payloads[i]);
+            frames[i] = ByteBuffer.allocate(HtspStreamPacket.getPacketFrameSize(muxpkt));
+            HtspStreamPacket.writePacket(frames[i], muxpkt);
+        }
+        HtspStreamPacket packet = new HtspStreamPacket();
+
+        // The first packets let the reused arrays grow to their final size
+        consume(reader, frames, packet, WARM_UP_PACKETS);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId);
+        consume(reader, frames, packet, MEASURED_PACKETS);
+        allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+
+        assertEquals(WARM_UP_PACKETS + MEASURED_PACKETS, output.samples);
+        assertTrue(output.bytes > 0);
+        // The JIT compiler may still allocate a few kilobytes while the packets
+        // are measured, a single object per packet would be far more than that
+        assertTrue("Allocated " + allocatedBytes + " bytes for " + MEASURED_PACKETS + " packets",
+                allocatedBytes < MEASURED_PACKETS);
+    }
+
+    private static void consume(StreamReader reader, ByteBuffer[] frames, HtspStreamPacket packet, int count) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer frame = frames[i % frames.length];
+            frame.rewind();
+            packet.readPacket(frame);
+            reader.consume(packet);
+        }
+    }
+
+    private static HtspMessage stream(int index) {
+        HtspMessage stream = new HtspMessage();
+        stream.put("index", index);
+        stream.put("language", "ger");
+        return stream;
+    }
+
+    private static byte[] nalUnit(int header, int size) {
+        byte[] payload = randomPayload(size);
+        payload[0] = 0;
+        payload[1] = 0;
+        payload[2] = 0;
+        payload[3] = 1;
+        payload[4] = (byte) header;
+        // first_mb_in_slice 0 and slice_type 5 for a P-slice
+        payload[5] = (byte) 0x98;
+        return payload;
+    }
+
+    private static byte[] randomPayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * Counts the samples and reads their data without keeping it
+     */
+    private static class CountingTrackOutput implements TrackOutput {
+        int samples;
+        long bytes;
+
+        @Override
+        public void format(Format format) {
+        }
+
+        @Override
+        public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void sampleData(ParsableByteArray data, int length) {
+            bytes += length;
+            data.skipBytes(length);
+        }
+
+        @Override
+        public void sampleMetadata(long timeUs, int flags, int size, int offset, CryptoData cryptoData) {
+            samples++;
+        }
+    }
+
+    private static class SingleTrackExtractorOutput implements ExtractorOutput {
+        private final TrackOutput output;
+
+        SingleTrackExtractorOutput(TrackOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public TrackOutput track(int id, int type) {
+            return output;
+        }
+
+        @Override
+        public void endTracks() {
+        }
+
+        @Override
+        public void seekMap(SeekMap seekMap) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal.reader;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the key frame detection that the data source uses
+ * to index the packets of the video streams in its buffers.
+ */
+public class StreamReaderUtilsTest {
+
+    @Test
+    public void h264KeyFrames() {
+        // IDR slice and an I-slice of a broadcast without IDR frames
+        assertKeyFrame("H264", payload(0x65, 0x88), 'P');
+        assertKeyFrame("H264", payload(0x41, 0x88), 'P');
+        // P-slice and non-reference B-slice
+        assertNoKeyFrame("H264", payload(0x41, 0x98), 'I');
+        assertNoKeyFrame("H264", payload(0x01, 0x9C), 'I');
+    }
+
+    @Test
+    public void h264KeyFrameAfterParameterSets() {
+        // The slice follows the access unit delimiter and the sequence parameter set
+        byte[] payload = {0, 0, 0, 1, 0x09, (byte) 0xF0, 0, 0, 1, 0x67, 0x64, 0, 0, 1, 0x41, (byte) 0x88};
+        assertKeyFrame("H264", payload, 'P');
+    }
+
+    @Test
+    public void h265KeyFrames() {
+        // IDR_W_RADL and TRAIL_R
+        assertKeyFrame("HEVC", payload(0x26, 0x01), 'P');
+        assertNoKeyFrame("HEVC", payload(0x02, 0x01), 'I');
+    }
+
+    @Test
+    public void mpeg2VideoKeyFrames() {
+        // Picture headers with the picture coding types I and B
+        assertKeyFrame("MPEG2VIDEO", payload(0x00, 0x00, 0x08), 'P');
+        assertNoKeyFrame("MPEG2VIDEO", payload(0x00, 0x00, 0x18), 'I');
+    }
+
+    @Test
+    public void serverFrameTypeWithoutDetectedFrame() {
+        // No slice in the payload or a stream type that is not detected
+        assertKeyFrame("H264", payload(0x67, 0x64), 'I');
+        assertNoKeyFrame("H264", payload(0x67, 0x64), 'P');
+        assertKeyFrame("VP8", payload(0x10, 0x02), 'I');
+        assertNoKeyFrame("VP8", payload(0x10, 0x02), 'P');
+        assertKeyFrame("VP8", payload(0x10, 0x02), -1);
+    }
+
+    private static void assertKeyFrame(String streamType, byte[] payload, int serverFrameType) {
+        assertTrue(StreamReaderUtils.isKeyFrame(streamType, payload, payload.length, serverFrameType));
+    }
+
+    private static void assertNoKeyFrame(String streamType, byte[] payload, int serverFrameType) {
+        assertFalse(StreamReaderUtils.isKeyFrame(streamType, payload, payload.length, serverFrameType));
+    }
+
+    private static byte[] payload(int... header) {
+        byte[] payload = new byte[3 + header.length + 16];
+        payload[2] = 1;
+        for (int i = 0; i < header.length; i++) {
+            payload[3 + i] = (byte) header[i];
+        }
+        return payload;
+    }
+}
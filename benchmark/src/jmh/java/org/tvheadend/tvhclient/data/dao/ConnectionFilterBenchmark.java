@@ -0,0 +1,168 @@
+package org.tvheadend.tvhclient.data.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the filter of the active connection in a database that only
+ * contains the content of a single connection, like the databases of the
+ * storage mode with one database per connection. The queries are the ones of
+ * ProgramDao, once with the subquery of CONNECTION_IS_ACTIVE and once with
+ * the condition that replaces it in such a database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConnectionFilterBenchmark {
+
+    private static final String CONNECTION_IS_ACTIVE = "p.connection_id IN (SELECT id FROM connections WHERE active = 1)";
+
+    private static final String EPG_QUERY = "SELECT DISTINCT p.id, p.title, p.subtitle, p.channel_id, "
+            + "p.connection_id, p.start, p.stop, p.content_type, "
+            + "c.name AS channel_name, c.icon AS channel_icon "
+            + "FROM programs AS p "
+            + "LEFT JOIN channels AS c ON c.id = channel_id "
+            + "WHERE %s AND channel_id = ? "
+            + " AND ((start >= ? AND stop <= ?) "
+            + "  OR (start <= ? AND stop > ?) "
+            + "  OR (start < ? AND stop >= ?)) "
+            + "GROUP BY p.id "
+            + "ORDER BY start ASC";
+
+    private static final String PROGRAM_BY_ID_QUERY = "SELECT DISTINCT p.*, c.name AS channel_name, c.icon AS channel_icon "
+            + "FROM programs AS p "
+            + "LEFT JOIN channels AS c ON c.id = p.channel_id "
+            + "WHERE %s AND p.id = ?";
+
+    private static final String PROGRAM_COUNT_QUERY = "SELECT COUNT (*) FROM programs AS p WHERE %s";
+
+    private static final int CHANNEL_COUNT = 100;
+    private static final long START_TIME = 1550000000000L;
+    private static final long DURATION = 1800000L;
+
+    @Param({"false", "true"})
+    public boolean filtered;
+
+    @Param({"20000"})
+    public int count;
+
+    private Connection db;
+    private PreparedStatement epgStatement;
+    private PreparedStatement programByIdStatement;
+    private PreparedStatement programCountStatement;
+    private int channelId;
+    private int programId;
+
+    @Setup
+    public void setup() throws SQLException {
+        db = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = db.createStatement()) {
+            statement.execute("CREATE TABLE `connections` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `active` INTEGER NOT NULL)");
+            statement.execute("CREATE TABLE `channels` (`id` INTEGER NOT NULL, `name` TEXT, `icon` TEXT, "
+                    + "`connection_id` INTEGER NOT NULL, PRIMARY KEY(`id`, `connection_id`))");
+            statement.execute(ProgramInsertBenchmark.CREATE_TABLE);
+            statement.execute("CREATE INDEX IF NOT EXISTS `index_programs_start` ON `programs` (`start`)");
+            statement.execute("CREATE INDEX IF NOT EXISTS `index_programs_channel_id` ON `programs` (`channel_id`)");
+            // The database of a connection contains only this connection
+            statement.execute("INSERT INTO connections (id, active) VALUES (1, 1)");
+        }
+
+        db.setAutoCommit(false);
+        try (PreparedStatement statement = db.prepareStatement("INSERT INTO channels (id, name, icon, connection_id) VALUES (?, ?, ?, 1)")) {
+            for (int i = 1; i <= CHANNEL_COUNT; i++) {
+                statement.setInt(1, i);
+                statement.setString(2, "Channel " + i);
+                statement.setString(3, "imagecache/" + i);
+                statement.executeUpdate();
+            }
+        }
+        try (PreparedStatement statement = db.prepareStatement("INSERT INTO programs (id, channel_id, start, stop, title, "
+                + "series_link_id, episode_id, season_id, brand_id, content_type, age_rating, star_rating, "
+                + "copyright_year, first_aired, season_number, season_count, episode_number, episode_count, "
+                + "part_number, part_count, dvr_id, next_event_id, connection_id) "
+                + "VALUES (?, ?, ?, ?, ?, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1)")) {
+            for (int i = 0; i < count; i++) {
+                long start = START_TIME + (i / CHANNEL_COUNT) * DURATION;
+                statement.setInt(1, 1000 + i);
+                statement.setInt(2, 1 + i % CHANNEL_COUNT);
+                statement.setLong(3, start);
+                statement.setLong(4, start + DURATION);
+                statement.setString(5, "Title " + i);
+                statement.executeUpdate();
+            }
+        }
+        db.commit();
+        db.setAutoCommit(true);
+
+        try (Statement statement = db.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+
+        String filter = filtered ? CONNECTION_IS_ACTIVE : "1";
+        epgStatement = db.prepareStatement(String.format(EPG_QUERY, filter));
+        programByIdStatement = db.prepareStatement(String.format(PROGRAM_BY_ID_QUERY, filter));
+        programCountStatement = db.prepareStatement(String.format(PROGRAM_COUNT_QUERY, filter));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        epgStatement.close();
+        programByIdStatement.close();
+        programCountStatement.close();
+        db.close();
+    }
+
+    @Benchmark
+    public int epgQuery() throws SQLException {
+        channelId = channelId % CHANNEL_COUNT + 1;
+        long startTime = START_TIME + 12 * 3600 * 1000;
+        long endTime = startTime + 3 * 3600 * 1000;
+        epgStatement.setInt(1, channelId);
+        epgStatement.setLong(2, startTime);
+        epgStatement.setLong(3, endTime);
+        epgStatement.setLong(4, startTime);
+        epgStatement.setLong(5, startTime);
+        epgStatement.setLong(6, endTime);
+        epgStatement.setLong(7, endTime);
+        return countRows(epgStatement);
+    }
+
+    @Benchmark
+    public int programByIdQuery() throws SQLException {
+        programId = (programId + 1) % count;
+        programByIdStatement.setInt(1, 1000 + programId);
+        return countRows(programByIdStatement);
+    }
+
+    @Benchmark
+    public int programCountQuery() throws SQLException {
+        try (ResultSet resultSet = programCountStatement.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static int countRows(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
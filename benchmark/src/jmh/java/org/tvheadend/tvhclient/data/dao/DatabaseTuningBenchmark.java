@@ -0,0 +1,151 @@
+package org.tvheadend.tvhclient.data.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.tvheadend.tvhclient.data.service.HtspMessageConverter;
+import org.tvheadend.tvhclient.data.service.htsp.HtspPayloads;
+import org.tvheadend.tvhclient.domain.entity.Program;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the default SQLite settings with the ones of DatabaseTuning. The
+ * database is stored in a file because the journal mode has no effect on an
+ * in-memory database. The sync writes all programs again like a full sync and
+ * the query loads the programs of one channel in a time slot like the EPG.
+ * Like in the app the query runs on a separate read connection, which is
+ * configured with the page cache size of the tuned variant. Both variants
+ * are analyzed, so that only the settings differ.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatabaseTuningBenchmark {
+
+    private static final String EPG_QUERY = "SELECT * FROM programs "
+            + "WHERE connection_id = 1 AND channel_id = ? "
+            + " AND ((start >= ? AND stop <= ?) "
+            + "  OR (start <= ? AND stop > ?) "
+            + "  OR (start < ? AND stop >= ?)) "
+            + "ORDER BY start ASC";
+
+    private static final String CREATE_START_INDEX = "CREATE INDEX IF NOT EXISTS `index_programs_start` ON `programs` (`start`)";
+    private static final String CREATE_CHANNEL_INDEX = "CREATE INDEX IF NOT EXISTS `index_programs_channel_id` ON `programs` (`channel_id`)";
+
+    private static final int CHANNEL_COUNT = 100;
+    private static final long START_TIME = 1550000000L;
+
+    @Param({"false", "true"})
+    public boolean tuned;
+
+    @Param({"20000"})
+    public int count;
+
+    private File file;
+    private Connection db;
+    private Connection reader;
+    private PreparedStatement epgStatement;
+    private final List<Program> programs = new ArrayList<>();
+    private int channelId;
+
+    @Setup
+    public void setup() throws SQLException, IOException {
+        file = File.createTempFile("tuning", ".db");
+        db = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = db.createStatement()) {
+            if (tuned) {
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA cache_size = -8192");
+            }
+            statement.execute(ProgramInsertBenchmark.CREATE_TABLE);
+            statement.execute(CREATE_START_INDEX);
+            statement.execute(CREATE_CHANNEL_INDEX);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Program program = HtspMessageConverter.convertMessageToProgramModel(new Program(),
+                    HtspPayloads.received(HtspPayloads.eventAdd(1000 + i, 1 + i % CHANNEL_COUNT, START_TIME + (i / CHANNEL_COUNT) * 1800)));
+            program.setConnectionId(1);
+            programs.add(program);
+        }
+        sync();
+
+        try (Statement statement = db.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+
+        reader = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        if (tuned) {
+            try (Statement statement = reader.createStatement()) {
+                statement.execute("PRAGMA cache_size = -8192");
+            }
+        }
+        epgStatement = reader.prepareStatement(EPG_QUERY);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        epgStatement.close();
+        reader.close();
+        db.close();
+        for (String suffix : new String[]{"", "-wal", "-shm"}) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(file.getAbsolutePath() + suffix).delete();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int sync() throws SQLException {
+        db.setAutoCommit(false);
+        try (PreparedStatement statement = db.prepareStatement(ProgramInsertBenchmark.INSERT)) {
+            for (Program program : programs) {
+                ProgramInsertBenchmark.bind(statement, program);
+                statement.executeUpdate();
+            }
+            db.commit();
+        } finally {
+            db.setAutoCommit(true);
+        }
+        return programs.size();
+    }
+
+    @Benchmark
+    public int epgQuery() throws SQLException {
+        channelId = channelId % CHANNEL_COUNT + 1;
+        // The converter stores the times in milliseconds
+        long startTime = (START_TIME + 12 * 3600) * 1000;
+        long endTime = startTime + 3 * 3600 * 1000;
+        epgStatement.setInt(1, channelId);
+        epgStatement.setLong(2, startTime);
+        epgStatement.setLong(3, endTime);
+        epgStatement.setLong(4, startTime);
+        epgStatement.setLong(5, startTime);
+        epgStatement.setLong(6, endTime);
+        epgStatement.setLong(7, endTime);
+        int rows = 0;
+        try (ResultSet resultSet = epgStatement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,161 @@
+package org.tvheadend.tvhclient.data.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.tvheadend.tvhclient.data.service.HtspMessageConverter;
+import org.tvheadend.tvhclient.data.service.htsp.HtspPayloads;
+import org.tvheadend.tvhclient.domain.entity.Program;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bulk insert of programs after the initial sync into an
+ * in-memory SQLite database. The table and the insert statement are the
+ * ones that Room generates for the Program entity and ProgramDao.insert.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProgramInsertBenchmark {
+
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS `programs` ("
+            + "`id` INTEGER NOT NULL, `channel_id` INTEGER NOT NULL, `start` INTEGER NOT NULL, "
+            + "`stop` INTEGER NOT NULL, `title` TEXT, `subtitle` TEXT, `summary` TEXT, "
+            + "`description_data` BLOB, `credits` TEXT, `category` TEXT, `keyword` TEXT, "
+            + "`series_link_id` INTEGER NOT NULL, `episode_id` INTEGER NOT NULL, "
+            + "`season_id` INTEGER NOT NULL, `brand_id` INTEGER NOT NULL, "
+            + "`content_type` INTEGER NOT NULL, `age_rating` INTEGER NOT NULL, "
+            + "`star_rating` INTEGER NOT NULL, `copyright_year` INTEGER NOT NULL, "
+            + "`first_aired` INTEGER NOT NULL, `season_number` INTEGER NOT NULL, "
+            + "`season_count` INTEGER NOT NULL, `episode_number` INTEGER NOT NULL, "
+            + "`episode_count` INTEGER NOT NULL, `part_number` INTEGER NOT NULL, "
+            + "`part_count` INTEGER NOT NULL, `episode_on_screen` TEXT, `image` TEXT, "
+            + "`dvr_id` INTEGER NOT NULL, `next_event_id` INTEGER NOT NULL, "
+            + "`series_link_uri` TEXT, `episode_uri` TEXT, `connection_id` INTEGER NOT NULL, "
+            + "`channel_name` TEXT, `channel_icon` TEXT, PRIMARY KEY(`id`, `connection_id`))";
+
+    static final String INSERT = "INSERT OR REPLACE INTO `programs`(`id`,`channel_id`,"
+            + "`start`,`stop`,`title`,`subtitle`,`summary`,`description_data`,`credits`,`category`,"
+            + "`keyword`,`series_link_id`,`episode_id`,`season_id`,`brand_id`,`content_type`,"
+            + "`age_rating`,`star_rating`,`copyright_year`,`first_aired`,`season_number`,"
+            + "`season_count`,`episode_number`,`episode_count`,`part_number`,`part_count`,"
+            + "`episode_on_screen`,`image`,`dvr_id`,`next_event_id`,`series_link_uri`,"
+            + "`episode_uri`,`connection_id`,`channel_name`,`channel_icon`) "
+            + "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    private Connection db;
+    private final List<Program> programs = new ArrayList<>();
+
+    @Setup
+    public void setup() throws SQLException, IOException {
+        db = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = db.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            statement.execute("CREATE INDEX IF NOT EXISTS `index_programs_start` ON `programs` (`start`)");
+            statement.execute("CREATE INDEX IF NOT EXISTS `index_programs_channel_id` ON `programs` (`channel_id`)");
+        }
+
+        long start = 1550000000L;
+        for (int i = 0; i < count; i++) {
+            Program program = HtspMessageConverter.convertMessageToProgramModel(new Program(),
+                    HtspPayloads.received(HtspPayloads.eventAdd(1000 + i, 1 + i % 100, start + i * 60)));
+            program.setConnectionId(1);
+            programs.add(program);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() throws SQLException {
+        try (Statement statement = db.createStatement()) {
+            statement.execute("DELETE FROM programs");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public int insert() throws SQLException {
+        // Room runs the list insert in a single transaction
+        db.setAutoCommit(false);
+        try (PreparedStatement statement = db.prepareStatement(INSERT)) {
+            for (Program program : programs) {
+                bind(statement, program);
+                statement.executeUpdate();
+            }
+            db.commit();
+        } finally {
+            db.setAutoCommit(true);
+        }
+        return programs.size();
+    }
+
+    static void bind(PreparedStatement statement, Program p) throws SQLException {
+        int i = 1;
+        statement.setInt(i++, p.getEventId());
+        statement.setInt(i++, p.getChannelId());
+        statement.setLong(i++, p.getStart());
+        statement.setLong(i++, p.getStop());
+        setString(statement, i++, p.getTitle());
+        setString(statement, i++, p.getSubtitle());
+        setString(statement, i++, p.getSummary());
+        statement.setBytes(i++, p.getDescriptionData());
+        setString(statement, i++, p.getCredits());
+        setString(statement, i++, p.getCategory());
+        setString(statement, i++, p.getKeyword());
+        statement.setInt(i++, p.getSerieslinkId());
+        statement.setInt(i++, p.getEpisodeId());
+        statement.setInt(i++, p.getSeasonId());
+        statement.setInt(i++, p.getBrandId());
+        statement.setInt(i++, p.getContentType());
+        statement.setInt(i++, p.getAgeRating());
+        statement.setInt(i++, p.getStarRating());
+        statement.setInt(i++, p.getCopyrightYear());
+        statement.setLong(i++, p.getFirstAired());
+        statement.setInt(i++, p.getSeasonNumber());
+        statement.setInt(i++, p.getSeasonCount());
+        statement.setInt(i++, p.getEpisodeNumber());
+        statement.setInt(i++, p.getEpisodeCount());
+        statement.setInt(i++, p.getPartNumber());
+        statement.setInt(i++, p.getPartCount());
+        setString(statement, i++, p.getEpisodeOnscreen());
+        setString(statement, i++, p.getImage());
+        statement.setInt(i++, p.getDvrId());
+        statement.setInt(i++, p.getNextEventId());
+        setString(statement, i++, p.getSerieslinkUri());
+        setString(statement, i++, p.getEpisodeUri());
+        statement.setInt(i++, p.getConnectionId());
+        setString(statement, i++, p.getChannelName());
+        setString(statement, i, p.getChannelIcon());
+    }
+
+    private static void setString(PreparedStatement statement, int index, String value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.VARCHAR);
+        } else {
+            statement.setString(index, value);
+        }
+    }
+}
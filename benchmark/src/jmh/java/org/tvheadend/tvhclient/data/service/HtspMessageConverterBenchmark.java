@@ -0,0 +1,54 @@
+package org.tvheadend.tvhclient.data.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspPayloads;
+import org.tvheadend.tvhclient.domain.entity.Channel;
+import org.tvheadend.tvhclient.domain.entity.Program;
+import org.tvheadend.tvhclient.domain.entity.Recording;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mapping of received server messages to the entities.
+ * The messages are parsed once so that all values are of the types
+ * that the parser creates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HtspMessageConverterBenchmark {
+
+    private HtspMessage eventAdd;
+    private HtspMessage dvrEntryAdd;
+    private HtspMessage channelAdd;
+
+    @Setup
+    public void setup() throws IOException {
+        eventAdd = HtspPayloads.received(HtspPayloads.eventAdd(1000, 1, 1550000000L));
+        dvrEntryAdd = HtspPayloads.received(HtspPayloads.dvrEntryAdd(100));
+        channelAdd = HtspPayloads.received(HtspPayloads.channelAdd(10));
+    }
+
+    @Benchmark
+    public Program convertMessageToProgramModel() {
+        return HtspMessageConverter.convertMessageToProgramModel(new Program(), eventAdd);
+    }
+
+    @Benchmark
+    public Recording convertMessageToRecordingModel() {
+        return HtspMessageConverter.convertMessageToRecordingModel(new Recording(), dvrEntryAdd);
+    }
+
+    @Benchmark
+    public Channel convertMessageToChannelModel() {
+        return HtspMessageConverter.convertMessageToChannelModel(new Channel(), channelAdd);
+    }
+}
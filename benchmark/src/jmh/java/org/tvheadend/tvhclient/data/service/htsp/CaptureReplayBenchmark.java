@@ -0,0 +1,102 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.tvheadend.tvhclient.data.service.HtspMessageConverter;
+import org.tvheadend.tvhclient.domain.entity.Channel;
+import org.tvheadend.tvhclient.domain.entity.ChannelTag;
+import org.tvheadend.tvhclient.domain.entity.Program;
+import org.tvheadend.tvhclient.domain.entity.Recording;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the initial sync of a captured session through parsing and the
+ * conversion into entities. By default a session with the fake server is
+ * captured, a capture from a real server can be given with -PhtspCapture.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CaptureReplayBenchmark implements HtspMessageListener {
+
+    @Param({"100"})
+    public int channels;
+
+    @Param({"200"})
+    public int eventsPerChannel;
+
+    private File captureFile;
+    private boolean isTemporaryCapture;
+    private int entities;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        String path = System.getProperty("htsp.capture");
+        if (path != null) {
+            captureFile = new File(path);
+            return;
+        }
+
+        captureFile = File.createTempFile("htsp", ".cap");
+        isTemporaryCapture = true;
+        try (FakeHtspServer server = new FakeHtspServer.Builder()
+                .channels(channels)
+                .eventsPerChannel(eventsPerChannel)
+                .start()) {
+            FakeServerClient client = new FakeServerClient(server);
+            client.capture(new HtspCaptureWriter(new FileOutputStream(captureFile)));
+            client.connect();
+            client.awaitInitialSync();
+            client.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (isTemporaryCapture) {
+            //noinspection ResultOfMethodCallIgnored
+            captureFile.delete();
+        }
+    }
+
+    @Benchmark
+    public int replay() throws IOException, InterruptedException {
+        entities = 0;
+        new HtspCaptureReplay(captureFile, false).replay(this);
+        return entities;
+    }
+
+    @Override
+    public void onMessage(@NonNull HtspMessage response) {
+        switch (response.getMethod()) {
+            case "tagAdd":
+                HtspMessageConverter.convertMessageToChannelTagModel(new ChannelTag(), response, new int[0]);
+                break;
+            case "channelAdd":
+                HtspMessageConverter.convertMessageToChannelModel(new Channel(), response);
+                break;
+            case "dvrEntryAdd":
+                HtspMessageConverter.convertMessageToRecordingModel(new Recording(), response);
+                break;
+            case "eventAdd":
+                HtspMessageConverter.convertMessageToProgramModel(new Program(), response);
+                break;
+            default:
+                return;
+        }
+        entities++;
+    }
+}
@@ -0,0 +1,97 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects a real {@link HtspConnection} to a {@link FakeHtspServer}
+ * and counts the received messages of the benchmarks.
+ */
+class FakeServerClient implements HtspConnectionStateListener, HtspMessageListener {
+
+    private final HtspConnection connection;
+    private volatile CountDownLatch syncCompleted = new CountDownLatch(1);
+    private volatile CountDownLatch packetsReceived = new CountDownLatch(0);
+    volatile long payloadBytes;
+    volatile int messages;
+
+    FakeServerClient(FakeHtspServer server) {
+        connection = new HtspConnection("admin", "admin", server.getHostname(), server.getPort(),
+                5000, "benchmark", this, this);
+    }
+
+    void capture(HtspCaptureWriter writer) {
+        connection.setCaptureWriter(writer);
+    }
+
+    HtspConnection connect() {
+        connection.openConnection();
+        connection.authenticate();
+        if (!connection.isAuthenticated()) {
+            throw new IllegalStateException("Could not connect to the fake server");
+        }
+        return connection;
+    }
+
+    void close() {
+        connection.closeConnection();
+    }
+
+    void awaitInitialSync() throws InterruptedException {
+        HtspMessage request = new HtspMessage();
+        request.setMethod("enableAsyncMetadata");
+        request.put("epg", 1);
+        connection.sendMessage(request);
+
+        if (!syncCompleted.await(2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Initial sync did not complete");
+        }
+    }
+
+    /**
+     * Subscribes to the given channel. The packets of the
+     * subscription are routed to this client by its id.
+     */
+    void subscribe(int subscriptionId, int channelId) {
+        connection.addSubscriptionListener(subscriptionId, this);
+
+        HtspMessage request = new HtspMessage();
+        request.setMethod("subscribe");
+        request.put("subscriptionId", subscriptionId);
+        request.put("channelId", channelId);
+        connection.sendMessage(request);
+    }
+
+    void awaitPackets(int count) throws InterruptedException {
+        packetsReceived = new CountDownLatch(count);
+        if (!packetsReceived.await(1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Did not receive " + count + " packets");
+        }
+    }
+
+    @Override
+    public void onMessage(@NonNull HtspMessage response) {
+        messages++;
+        switch (response.getMethod()) {
+            case "initialSyncCompleted":
+                syncCompleted.countDown();
+                break;
+            case "muxpkt":
+                payloadBytes += response.getByteArray("payload").length;
+                packetsReceived.countDown();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onAuthenticationStateChange(@NonNull HtspConnection.AuthenticationState state) {
+    }
+
+    @Override
+    public void onConnectionStateChange(@NonNull HtspConnection.ConnectionState state) {
+    }
+}
@@ -0,0 +1,63 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a received frame and serializing a message
+ * for the most frequent messages during sync and streaming.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HtspMessageBenchmark {
+
+    @Param({"eventAdd", "muxpkt", "getEvents"})
+    public String payload;
+
+    private HtspMessage message;
+    private byte[] frame;
+    private ByteBuffer inputBuffer;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (payload) {
+            case "eventAdd":
+                message = HtspPayloads.eventAdd(1000, 1, 1550000000L);
+                break;
+            case "muxpkt":
+                message = HtspPayloads.muxpkt(16 * 1024);
+                break;
+            case "getEvents":
+                message = HtspPayloads.getEventsResponse(500);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown payload " + payload);
+        }
+        frame = HtspPayloads.frame(message);
+        inputBuffer = ByteBuffer.allocateDirect(frame.length);
+    }
+
+    @Benchmark
+    public HtspMessage parse() throws IOException {
+        // Same state as after the socket channel has read the whole frame
+        inputBuffer.clear();
+        inputBuffer.put(frame);
+        return HtspMessage.parse(inputBuffer);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return HtspMessage.serializeBinary(message);
+    }
+}
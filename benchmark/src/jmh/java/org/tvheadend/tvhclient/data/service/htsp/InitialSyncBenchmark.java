@@ -0,0 +1,73 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from opening the connection until the server
+ * has sent initialSyncCompleted, including the hello and the
+ * authentication round trips.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class InitialSyncBenchmark {
+
+    @Param({"100"})
+    public int channels;
+
+    @Param({"50", "200"})
+    public int eventsPerChannel;
+
+    @Param({"0", "20"})
+    public int latencyMs;
+
+    private FakeHtspServer server;
+    private FakeServerClient client;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = new FakeHtspServer.Builder()
+                .channels(channels)
+                .eventsPerChannel(eventsPerChannel)
+                .latency(latencyMs)
+                .start();
+    }
+
+    @Setup(Level.Iteration)
+    public void createClient() {
+        client = new FakeServerClient(server);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeClient() {
+        client.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public int initialSync() throws InterruptedException {
+        client.connect();
+        client.awaitInitialSync();
+        return client.messages;
+    }
+}
@@ -0,0 +1,70 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many muxpkt messages per second the connection can
+ * receive and parse while the server sends them as fast as possible.
+ * With several subscriptions the packets of all of them are counted.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StreamingThroughputBenchmark {
+
+    private static final int PACKETS = 100;
+
+    // Bitrate in bits per second of the subscribed stream
+    @Param({"4000000", "12000000"})
+    public int bitrate;
+
+    @Param({"0", "0.01"})
+    public double packetLoss;
+
+    // Number of simultaneous subscriptions on the connection
+    @Param({"1", "4"})
+    public int subscriptions;
+
+    private FakeHtspServer server;
+    private FakeServerClient client;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new FakeHtspServer.Builder()
+                .channels(subscriptions)
+                .bitrate(bitrate, 50)
+                .realtime(false)
+                .packetLoss(packetLoss)
+                .start();
+        client = new FakeServerClient(server);
+        client.connect();
+        for (int i = 1; i <= subscriptions; i++) {
+            client.subscribe(i, i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public long receivePackets() throws InterruptedException {
+        client.awaitPackets(PACKETS);
+        return client.payloadBytes;
+    }
+}
@@ -0,0 +1,75 @@
+package org.tvheadend.tvhclient.ui.features.playback.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.tvheadend.tvhclient.data.service.htsp.HtspMessage;
+import org.tvheadend.tvhclient.data.service.htsp.HtspPayloads;
+import org.tvheadend.tvhclient.data.service.htsp.HtspStreamPacket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how a received muxpkt message is handed from the subscription
+ * data source to the extractor. The steps are the same as in
+ * HtspSubscriptionDataSource.serializeMessageToBuffer, read and
+ * HtspSubscriptionExtractor.read, which can not be used directly
+ * because they depend on Android and ExoPlayer.
+ *
+ * Run it with the GC profiler to see the allocations per packet, which
+ * shall be zero once the buffers have grown to the size of the packets:
+ *
+ *     ./gradlew :benchmark:jmh -PjmhInclude=SubscriptionTransportBenchmark -PjmhProfilers=gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubscriptionTransportBenchmark {
+
+    // Typical sizes of an audio frame, a video frame and a HD key frame
+    @Param({"1024", "16384", "131072"})
+    public int payloadSize;
+
+    private HtspMessage message;
+    private final ByteBuffer frameBuffer = ByteBuffer.allocate(256 * 1024);
+    private final ByteBuffer byteBuffer = ByteBuffer.allocate(10 * 1024 * 1024);
+    private final ByteBuffer frames = ByteBuffer.allocate(1024 * 1024);
+    private final HtspStreamPacket packet = new HtspStreamPacket();
+
+    @Setup
+    public void setup() throws IOException {
+        message = HtspPayloads.received(HtspPayloads.muxpkt(payloadSize));
+    }
+
+    @Benchmark
+    public int transport() throws IOException {
+        byteBuffer.clear();
+
+        // Data source side, encode the packet and append it to the buffer
+        frameBuffer.clear();
+        HtspStreamPacket.writePacket(frameBuffer, message);
+        byteBuffer.put(frameBuffer.array(), 0, frameBuffer.position());
+        byteBuffer.flip();
+
+        // Extractor side, read the bytes and decode the packet
+        int length = byteBuffer.remaining();
+        byteBuffer.get(frames.array(), 0, length);
+        byteBuffer.compact();
+        byteBuffer.flip();
+
+        frames.clear();
+        frames.limit(length);
+        if (HtspStreamPacket.peekFrameSize(frames) != length) {
+            throw new IOException("Incomplete frame");
+        }
+        packet.readPacket(frames);
+        return packet.getPayloadLength();
+    }
+}
@@ -0,0 +1,444 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for a Tvheadend server. It speaks the subset of HTSP
+ * that the HtspService and the playback data sources use (hello,
+ * authenticate, enableAsyncMetadata, getEvents, subscribe, unsubscribe and
+ * the file methods) and answers every other request with an empty response.
+ * <p>
+ * The initial sync contains the configured number of channels, events per
+ * channel and recordings plus eleven tags, followed by initialSyncCompleted.
+ * A subscription produces muxpkt messages of a H264 and an AAC stream at the
+ * configured bitrate. Latency is added to every message that the server sends
+ * and muxpkt messages can be dropped to simulate packet loss.
+ */
+public class FakeHtspServer implements Closeable {
+
+    private static final int TAG_COUNT = 11;
+    private static final long EPG_START = 1550000000L;
+
+    private final int channelCount;
+    private final int eventsPerChannel;
+    private final int recordingCount;
+    private final int bitrate;
+    private final int packetsPerSecond;
+    private final boolean realtime;
+    private final int latencyMs;
+    private final double packetLoss;
+    private final long seed;
+
+    private final ServerSocket serverSocket;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private volatile boolean isRunning = true;
+
+    private FakeHtspServer(Builder builder) throws IOException {
+        this.channelCount = builder.channelCount;
+        this.eventsPerChannel = builder.eventsPerChannel;
+        this.recordingCount = builder.recordingCount;
+        this.bitrate = builder.bitrate;
+        this.packetsPerSecond = builder.packetsPerSecond;
+        this.realtime = builder.realtime;
+        this.latencyMs = builder.latencyMs;
+        this.packetLoss = builder.packetLoss;
+        this.seed = builder.seed;
+
+        serverSocket = new ServerSocket(builder.port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::acceptClients, "FakeHtspServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public String getHostname() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        isRunning = false;
+        serverSocket.close();
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    private void acceptClients() {
+        while (isRunning) {
+            try {
+                Client client = new Client(serverSocket.accept());
+                clients.add(client);
+                client.start();
+            } catch (IOException e) {
+                if (isRunning) {
+                    HtspLog.e("Fake server could not accept client", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles the requests of one connected client. The requests are read on
+     * the client thread, all messages to the client are sent by a single
+     * scheduler thread so that the injected latency keeps their order.
+     */
+    private class Client extends Thread {
+
+        private final Socket socket;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+        private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+        private final Map<Integer, Thread> subscriptions = new ConcurrentHashMap<>();
+        private final Random random = new Random(seed);
+
+        Client(Socket socket) throws IOException {
+            super("FakeHtspClient");
+            setDaemon(true);
+            this.socket = socket;
+            this.socket.setTcpNoDelay(true);
+            this.input = new DataInputStream(socket.getInputStream());
+            this.output = new DataOutputStream(socket.getOutputStream());
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isRunning) {
+                    int length = input.readInt();
+                    ByteBuffer buf = ByteBuffer.allocate(length + 4);
+                    buf.putInt(length);
+                    input.readFully(buf.array(), 4, length);
+                    buf.position(length + 4);
+                    HtspMessage request = HtspMessage.parse(buf);
+                    if (request != null) {
+                        handleRequest(request);
+                    }
+                }
+            } catch (IOException e) {
+                HtspLog.d("Fake server client disconnected");
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            for (Thread thread : subscriptions.values()) {
+                thread.interrupt();
+            }
+            subscriptions.clear();
+            sender.shutdownNow();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            clients.remove(this);
+        }
+
+        private void handleRequest(HtspMessage request) {
+            HtspMessage response = new HtspMessage();
+            switch (request.getMethod()) {
+                case "hello":
+                    byte[] challenge = new byte[32];
+                    random.nextBytes(challenge);
+                    List<String> capabilities = new ArrayList<>();
+                    capabilities.add("timeshift");
+                    response.put("htspversion", HtspMessage.HTSP_VERSION);
+                    response.put("servername", "Fake Tvheadend");
+                    response.put("serverversion", "4.2.8");
+                    response.put("webroot", "");
+                    response.put("challenge", challenge);
+                    response.put("servercapability", capabilities);
+                    break;
+                case "enableAsyncMetadata":
+                    reply(request, response);
+                    sendInitialSync(request.getInteger("epg", 0) == 1);
+                    return;
+                case "getEvents":
+                    response.put("events", getEvents(request));
+                    break;
+                case "subscribe":
+                    response.put("timeshiftPeriod", 0);
+                    reply(request, response);
+                    startSubscription(request.getInteger("subscriptionId"));
+                    return;
+                case "unsubscribe":
+                    stopSubscription(request.getInteger("subscriptionId"));
+                    break;
+                case "fileOpen":
+                    response.put("id", 1);
+                    response.put("size", 64L * 1024 * 1024);
+                    break;
+                case "fileRead":
+                    byte[] data = new byte[request.getInteger("size")];
+                    random.nextBytes(data);
+                    response.put("data", data);
+                    break;
+                case "getSysTime":
+                    response.put("time", System.currentTimeMillis() / 1000);
+                    response.put("gmtoffset", 0);
+                    break;
+                case "getDiskSpace":
+                    response.put("freediskspace", 500L * 1024 * 1024 * 1024);
+                    response.put("totaldiskspace", 1000L * 1024 * 1024 * 1024);
+                    break;
+                default:
+                    // authenticate, fileClose and all other methods
+                    break;
+            }
+            reply(request, response);
+        }
+
+        private void reply(HtspMessage request, HtspMessage response) {
+            if (request.containsKey("seq")) {
+                response.put("seq", request.getInteger("seq"));
+            }
+            send(response);
+        }
+
+        private void send(HtspMessage message) {
+            try {
+                sender.schedule(() -> write(message), latencyMs, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // The client has been closed
+            }
+        }
+
+        private void write(HtspMessage message) {
+            try {
+                byte[] data = HtspMessage.serializeBinary(message);
+                output.writeInt(data.length);
+                output.write(data);
+                output.flush();
+            } catch (SocketException e) {
+                close();
+            } catch (IOException e) {
+                HtspLog.e("Fake server could not send " + message.getMethod(), e);
+            }
+        }
+
+        private void sendInitialSync(boolean epg) {
+            for (int tagId = 1; tagId <= TAG_COUNT; tagId++) {
+                List<Integer> members = new ArrayList<>();
+                for (int channelId = 1; channelId <= channelCount; channelId++) {
+                    if (tagId == 1 || tagId == 2 + channelId % 10) {
+                        members.add(channelId);
+                    }
+                }
+                send(HtspPayloads.tagAdd(tagId, members));
+            }
+            for (int channelId = 1; channelId <= channelCount; channelId++) {
+                send(HtspPayloads.channelAdd(channelId));
+            }
+            for (int id = 1; id <= recordingCount; id++) {
+                HtspMessage recording = HtspPayloads.dvrEntryAdd(id);
+                // The channel is optional, recordings of a removed channel have none
+                if (channelCount > 0) {
+                    recording.put("channel", 1 + id % channelCount);
+                } else {
+                    recording.remove("channel");
+                }
+                send(recording);
+            }
+            if (epg) {
+                for (int channelId = 1; channelId <= channelCount; channelId++) {
+                    for (int i = 0; i < eventsPerChannel; i++) {
+                        send(event(channelId, i));
+                    }
+                }
+            }
+            HtspMessage completed = new HtspMessage();
+            completed.setMethod("initialSyncCompleted");
+            send(completed);
+        }
+
+        private List<HtspMessage> getEvents(HtspMessage request) {
+            List<HtspMessage> events = new ArrayList<>();
+            int channelId = request.getInteger("channelId", 1);
+            int count = request.getInteger("numFollowing", eventsPerChannel);
+            for (int i = 0; i < Math.min(count, eventsPerChannel); i++) {
+                HtspMessage event = event(channelId, i);
+                event.remove("method");
+                events.add(event);
+            }
+            return events;
+        }
+
+        private HtspMessage event(int channelId, int index) {
+            int eventId = channelId * eventsPerChannel + index;
+            return HtspPayloads.eventAdd(eventId, channelId, EPG_START + index * 45 * 60);
+        }
+
+        private void startSubscription(int subscriptionId) {
+            send(HtspPayloads.subscriptionStart(subscriptionId));
+
+            Thread thread = new Thread(() -> streamPackets(subscriptionId), "FakeHtspStream");
+            thread.setDaemon(true);
+            subscriptions.put(subscriptionId, thread);
+            thread.start();
+        }
+
+        private void stopSubscription(int subscriptionId) {
+            Thread thread = subscriptions.remove(subscriptionId);
+            if (thread != null) {
+                thread.interrupt();
+            }
+            HtspMessage stop = new HtspMessage();
+            stop.setMethod("subscriptionStop");
+            stop.put("subscriptionId", subscriptionId);
+            send(stop);
+        }
+
+        private void streamPackets(int subscriptionId) {
+            Random payloadRandom = new Random(seed + subscriptionId);
+            int duration = 1000000 / packetsPerSecond;
+            byte[] payload = new byte[Math.max(1, bitrate / 8 / packetsPerSecond)];
+            long dts = 0;
+            long nextPacketTime = System.nanoTime();
+            int packet = 0;
+
+            while (isRunning && !Thread.currentThread().isInterrupted()) {
+                // Every second packet is an audio frame, every 25th video frame a key frame
+                boolean video = packet % 2 == 0;
+                char frameType = video && packet % 50 == 0 ? 'I' : 'P';
+                payloadRandom.nextBytes(payload);
+
+                if (packetLoss <= 0 || payloadRandom.nextDouble() >= packetLoss) {
+                    send(HtspPayloads.muxpkt(subscriptionId, video ? 1 : 2, frameType, dts, duration, payload.clone()));
+                }
+                dts += duration;
+                packet++;
+
+                if (realtime) {
+                    nextPacketTime += TimeUnit.MICROSECONDS.toNanos(duration);
+                    long sleep = nextPacketTime - System.nanoTime();
+                    if (sleep > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(sleep);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                } else if (packet % 64 == 0) {
+                    // Do not run ahead of the sender thread without limit
+                    awaitSender();
+                }
+            }
+        }
+
+        private void awaitSender() {
+            try {
+                sender.schedule(() -> null, latencyMs, TimeUnit.MILLISECONDS).get();
+            } catch (Exception e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static class Builder {
+        private int port = 0;
+        private int channelCount = 100;
+        private int eventsPerChannel = 50;
+        private int recordingCount = 100;
+        private int bitrate = 4000000;
+        private int packetsPerSecond = 50;
+        private boolean realtime = true;
+        private int latencyMs = 0;
+        private double packetLoss = 0;
+        private long seed = 1;
+
+        /**
+         * The port to listen on, by default a free port is chosen
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder channels(int channelCount) {
+            if (channelCount < 0) {
+                throw new IllegalArgumentException("Channel count must not be negative: " + channelCount);
+            }
+            this.channelCount = channelCount;
+            return this;
+        }
+
+        public Builder eventsPerChannel(int eventsPerChannel) {
+            this.eventsPerChannel = eventsPerChannel;
+            return this;
+        }
+
+        public Builder recordings(int recordingCount) {
+            this.recordingCount = recordingCount;
+            return this;
+        }
+
+        /**
+         * Bitrate of a subscription in bits per second, shared by
+         * the given number of audio and video packets per second
+         */
+        public Builder bitrate(int bitrate, int packetsPerSecond) {
+            if (packetsPerSecond <= 0) {
+                throw new IllegalArgumentException("Packets per second must be positive: " + packetsPerSecond);
+            }
+            this.bitrate = bitrate;
+            this.packetsPerSecond = packetsPerSecond;
+            return this;
+        }
+
+        /**
+         * When disabled the muxpkt messages are sent as fast as
+         * possible instead of in the pace of the stream
+         */
+        public Builder realtime(boolean realtime) {
+            this.realtime = realtime;
+            return this;
+        }
+
+        /**
+         * Delay in milliseconds before each message is sent to the client
+         */
+        public Builder latency(int latencyMs) {
+            this.latencyMs = latencyMs;
+            return this;
+        }
+
+        /**
+         * Probability between 0 and 1 that a muxpkt message is dropped
+         */
+        public Builder packetLoss(double packetLoss) {
+            this.packetLoss = packetLoss;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public FakeHtspServer start() throws IOException {
+            return new FakeHtspServer(this);
+        }
+    }
+}
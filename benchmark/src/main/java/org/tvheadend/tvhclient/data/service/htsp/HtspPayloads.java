@@ -0,0 +1,189 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds messages with the fields and sizes that a Tvheadend server
+ * sends for the common sync and streaming methods. The random generator
+ * is seeded so that every benchmark run works on the same data.
+ */
+public final class HtspPayloads {
+
+    private static final String DESCRIPTION = "A detective with a troubled past returns to her home town "
+            + "to investigate a series of disappearances that seem to be connected to an old case. "
+            + "While the town prepares for the yearly festival, she discovers that some of her oldest "
+            + "friends know more than they are willing to tell.";
+
+    private HtspPayloads() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static HtspMessage eventAdd(int eventId, int channelId, long start) {
+        HtspMessage msg = new HtspMessage();
+        msg.setMethod("eventAdd");
+        msg.put("eventId", eventId);
+        msg.put("channelId", channelId);
+        msg.put("start", start);
+        msg.put("stop", start + 45 * 60);
+        msg.put("title", "The Program Title " + eventId);
+        msg.put("subtitle", "Episode subtitle " + eventId);
+        msg.put("summary", "Short summary of the episode " + eventId);
+        msg.put("description", DESCRIPTION);
+        msg.put("contentType", 16);
+        msg.put("ageRating", 12);
+        msg.put("seasonNumber", 3);
+        msg.put("episodeNumber", eventId % 20);
+        msg.put("episodeOnscreen", "S03E" + (eventId % 20));
+        msg.put("image", "https://images.example.org/epg/" + eventId + ".jpg");
+        msg.put("serieslinkUri", "crid://example.org/series/" + channelId);
+        msg.put("episodeUri", "crid://example.org/episode/" + eventId);
+        msg.put("nextEventId", eventId + 1);
+        return msg;
+    }
+
+    public static HtspMessage getEventsResponse(int count) {
+        List<HtspMessage> events = new ArrayList<>(count);
+        long start = 1550000000L;
+        for (int i = 0; i < count; i++) {
+            HtspMessage event = eventAdd(1000 + i, 1 + i % 50, start + i * 45 * 60);
+            event.remove("method");
+            events.add(event);
+        }
+        HtspMessage msg = new HtspMessage();
+        msg.put("events", events);
+        msg.put("seq", 42);
+        return msg;
+    }
+
+    public static HtspMessage muxpkt(int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(payload);
+        return muxpkt(1, 1, 'I', 123456789L, 40000, payload);
+    }
+
+    public static HtspMessage muxpkt(int subscriptionId, int stream, char frameType,
+                                     long dts, int duration, byte[] payload) {
+        HtspMessage msg = new HtspMessage();
+        msg.setMethod("muxpkt");
+        msg.put("subscriptionId", subscriptionId);
+        msg.put("frametype", (int) frameType);
+        msg.put("stream", stream);
+        msg.put("dts", dts);
+        msg.put("pts", dts + 40000);
+        msg.put("duration", duration);
+        msg.put("payload", payload);
+        return msg;
+    }
+
+    /**
+     * Announces one H264 video and one AAC audio stream with the
+     * indexes 1 and 2 that the muxpkt messages refer to.
+     */
+    public static HtspMessage subscriptionStart(int subscriptionId) {
+        HtspMessage video = new HtspMessage();
+        video.put("index", 1);
+        video.put("type", "H264");
+        video.put("width", 1280);
+        video.put("height", 720);
+
+        HtspMessage audio = new HtspMessage();
+        audio.put("index", 2);
+        audio.put("type", "AAC");
+        audio.put("language", "eng");
+        audio.put("channels", 2);
+        audio.put("rate", 3);
+
+        List<HtspMessage> streams = new ArrayList<>();
+        streams.add(video);
+        streams.add(audio);
+
+        HtspMessage msg = new HtspMessage();
+        msg.setMethod("subscriptionStart");
+        msg.put("subscriptionId", subscriptionId);
+        msg.put("streams", streams);
+        return msg;
+    }
+
+    public static HtspMessage dvrEntryAdd(int id) {
+        HtspMessage msg = new HtspMessage();
+        msg.setMethod("dvrEntryAdd");
+        msg.put("id", id);
+        msg.put("channel", 1 + id % 50);
+        msg.put("start", 1550000000L + id * 3600);
+        msg.put("stop", 1550000000L + id * 3600 + 2700);
+        msg.put("startExtra", 2L);
+        msg.put("stopExtra", 10L);
+        msg.put("retention", 31L);
+        msg.put("priority", 2);
+        msg.put("eventId", 1000 + id);
+        msg.put("autorecId", "3f9b2c1d6e7a4b5c8d9e0f1a2b3c4d5e");
+        msg.put("contentType", 16);
+        msg.put("title", "The Recording Title " + id);
+        msg.put("subtitle", "Episode subtitle " + id);
+        msg.put("summary", "Short summary of the recording " + id);
+        msg.put("description", DESCRIPTION);
+        msg.put("state", "completed");
+        msg.put("owner", "admin");
+        msg.put("creator", "admin");
+        msg.put("path", "/recordings/The Recording Title " + id + ".ts");
+        msg.put("dataSize", 1536L * 1024 * 1024);
+        msg.put("enabled", 1);
+        msg.put("image", "https://images.example.org/dvr/" + id + ".jpg");
+        return msg;
+    }
+
+    public static HtspMessage channelAdd(int id) {
+        List<Integer> tags = new ArrayList<>();
+        tags.add(1);
+        tags.add(2 + id % 10);
+
+        HtspMessage msg = new HtspMessage();
+        msg.setMethod("channelAdd");
+        msg.put("channelId", id);
+        msg.put("channelNumber", id);
+        msg.put("channelNumberMinor", 0);
+        msg.put("channelName", "Channel " + id + " HD");
+        msg.put("channelIcon", "imagecache/" + id);
+        msg.put("eventId", 1000 + id);
+        msg.put("nextEventId", 2000 + id);
+        msg.put("tags", tags);
+        return msg;
+    }
+
+    public static HtspMessage tagAdd(int id, List<Integer> members) {
+        HtspMessage msg = new HtspMessage();
+        msg.setMethod("tagAdd");
+        msg.put("tagId", id);
+        msg.put("tagName", "Tag " + id);
+        msg.put("tagIndex", id);
+        msg.put("members", members);
+        return msg;
+    }
+
+    /**
+     * Serializes the message including the four byte length prefix,
+     * exactly as it is sent over the socket.
+     */
+    public static byte[] frame(HtspMessage message) throws IOException {
+        byte[] data = HtspMessage.serializeBinary(message);
+        ByteBuffer buf = ByteBuffer.allocate(data.length + 4);
+        buf.putInt(data.length);
+        buf.put(data);
+        return buf.array();
+    }
+
+    /**
+     * Runs the message through serialization and parsing so that the
+     * values have the same types as the messages received from a server.
+     */
+    public static HtspMessage received(HtspMessage message) throws IOException {
+        byte[] frame = frame(message);
+        ByteBuffer buf = ByteBuffer.allocate(frame.length);
+        buf.put(frame);
+        return HtspMessage.parse(buf);
+    }
+}
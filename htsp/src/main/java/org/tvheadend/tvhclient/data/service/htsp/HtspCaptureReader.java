@@ -0,0 +1,94 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Reads the records of a capture file that was written by the {@link HtspCaptureWriter}
+ */
+public class HtspCaptureReader implements Closeable {
+
+    private final DataInputStream input;
+    private long time;
+
+    public HtspCaptureReader(@NonNull InputStream inputStream) throws IOException {
+        input = new DataInputStream(new BufferedInputStream(inputStream, 64 * 1024));
+
+        byte[] magic = new byte[HtspCaptureWriter.MAGIC.length];
+        input.readFully(magic);
+        if (!Arrays.equals(magic, HtspCaptureWriter.MAGIC)) {
+            throw new IOException("Not a HTSP capture file");
+        }
+    }
+
+    /**
+     * Returns the next captured frame or null when the end of the file has been reached
+     */
+    @Nullable
+    public Frame next() throws IOException {
+        int direction = input.read();
+        if (direction < 0) {
+            return null;
+        }
+        try {
+            long delta = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = input.readUnsignedByte();
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            time += delta;
+
+            int length = input.readInt();
+            ByteBuffer buffer = ByteBuffer.allocate(length + 4);
+            buffer.putInt(length);
+            input.readFully(buffer.array(), 4, length);
+            buffer.position(length + 4);
+            return new Frame(direction == HtspCaptureWriter.INBOUND, time, buffer);
+
+        } catch (EOFException e) {
+            // The capture was not closed properly, ignore the incomplete record
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    public static class Frame {
+        public final boolean inbound;
+        /**
+         * Time in microseconds since the capture was started
+         */
+        public final long timeUs;
+        private final ByteBuffer buffer;
+
+        Frame(boolean inbound, long timeUs, ByteBuffer buffer) {
+            this.inbound = inbound;
+            this.timeUs = timeUs;
+            this.buffer = buffer;
+        }
+
+        @NonNull
+        public HtspMessage parse() throws IOException {
+            HtspMessage message = HtspMessage.parse(buffer);
+            if (message == null) {
+                throw new IOException("Incomplete frame in capture");
+            }
+            return message;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Feeds the received messages of a capture file to a message listener, the
+ * same way the {@link HtspConnection} passes them on after parsing. The
+ * messages are replayed either as fast as possible or with the pacing of
+ * the original session.
+ */
+public class HtspCaptureReplay {
+
+    private final File file;
+    private final boolean realtime;
+
+    public HtspCaptureReplay(@NonNull File file, boolean realtime) {
+        this.file = file;
+        this.realtime = realtime;
+    }
+
+    /**
+     * Replays the capture and returns the number of messages passed to the listener
+     */
+    public int replay(@NonNull HtspMessageListener listener) throws IOException, InterruptedException {
+        HtspLog.d("Replaying capture " + file.getName() + ", realtime " + realtime);
+        int count = 0;
+        long startTime = System.nanoTime();
+
+        try (HtspCaptureReader reader = new HtspCaptureReader(new FileInputStream(file))) {
+            HtspCaptureReader.Frame frame;
+            while ((frame = reader.next()) != null) {
+                if (!frame.inbound) {
+                    continue;
+                }
+                if (realtime) {
+                    long delay = TimeUnit.MICROSECONDS.toNanos(frame.timeUs) - (System.nanoTime() - startTime);
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                }
+                HtspMessage message = frame.parse();
+                // The response to the hello message is forwarded as the server status
+                if (message.containsKey("challenge")) {
+                    message.setMethod("serverStatus");
+                }
+                listener.onMessage(message);
+                count++;
+            }
+        }
+        HtspLog.d("Replayed " + count + " messages in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+        return count;
+    }
+}
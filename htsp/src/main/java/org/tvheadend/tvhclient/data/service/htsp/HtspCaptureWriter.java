@@ -0,0 +1,93 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Writes the frames that are sent and received by a {@link HtspConnection}
+ * into a capture file that can be replayed with {@link HtspCaptureReplay}.
+ * <p>
+ * The file starts with the {@link #MAGIC} bytes followed by one record per
+ * frame. A record consists of the direction byte, the time in microseconds
+ * since the previous record as a variable length integer and the frame
+ * itself including its four byte length prefix.
+ * <p>
+ * The user name and the digest of the password are left out of the sent
+ * messages, so that a capture can be shared to report a problem.
+ */
+public class HtspCaptureWriter implements Closeable {
+
+    static final byte[] MAGIC = {'H', 'T', 'S', 'P', 'C', 'A', 'P', '1'};
+    static final int INBOUND = 0;
+    static final int OUTBOUND = 1;
+    // The fields of the hello and authenticate messages that identify the user
+    private static final String[] CREDENTIAL_FIELDS = {"username", "digest"};
+
+    private final DataOutputStream output;
+    private long lastTime;
+
+    public HtspCaptureWriter(@NonNull OutputStream outputStream) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        output.write(MAGIC);
+        lastTime = System.nanoTime();
+    }
+
+    /**
+     * Writes a received frame. The buffer contains the complete frame from
+     * index zero up to its position, the position and limit are not changed.
+     */
+    void writeInbound(@NonNull ByteBuffer buffer) throws IOException {
+        int length = buffer.position();
+        writeHeader(INBOUND);
+        for (int i = 0; i < length; i++) {
+            output.write(buffer.get(i));
+        }
+    }
+
+    void writeOutbound(@NonNull HtspMessage message) throws IOException {
+        byte[] data = HtspMessage.serializeBinary(withoutCredentials(message));
+        writeHeader(OUTBOUND);
+        output.writeInt(data.length);
+        output.write(data);
+    }
+
+    @NonNull
+    private static Map<String, Object> withoutCredentials(@NonNull HtspMessage message) {
+        Map<String, Object> map = message;
+        for (String field : CREDENTIAL_FIELDS) {
+            if (map.containsKey(field)) {
+                if (map == message) {
+                    map = new HashMap<>(message);
+                }
+                map.remove(field);
+            }
+        }
+        return map;
+    }
+
+    private void writeHeader(int direction) throws IOException {
+        long now = System.nanoTime();
+        long delta = (now - lastTime) / 1000;
+        lastTime = now;
+
+        output.write(direction);
+        while ((delta & ~0x7FL) != 0) {
+            output.write((int) ((delta & 0x7F) | 0x80));
+            delta >>>= 7;
+        }
+        output.write((int) delta);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -1,9 +1,5 @@
 package org.tvheadend.tvhclient.data.service.htsp;
 
-import android.util.SparseArray;
-
-import org.tvheadend.tvhclient.BuildConfig;
-
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -19,17 +15,17 @@ import java.nio.channels.SocketChannel;
 import java.nio.channels.UnresolvedAddressException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-import javax.annotation.Nullable;
-
 import androidx.annotation.NonNull;
-import timber.log.Timber;
+import androidx.annotation.Nullable;
 
 // TODO provide an interface to access the connection from outside this package
 
@@ -39,20 +35,24 @@ public class HtspConnection extends Thread {
     private final String password;
     private final String hostname;
     private final int port;
+    private final String clientVersion;
 
     private volatile boolean isRunning;
     private final Lock lock;
     private SocketChannel socketChannel;
     private final ByteBuffer inputByteBuffer;
+    private ByteBuffer outputByteBuffer;
     private int seq;
 
     private HtspConnectionStateListener connectionListener;
     private Set<HtspMessageListener> messageListeners = new HashSet<>();
-    private final SparseArray<HtspResponseListener> responseHandlers;
+    private final HtspSubscriptionRouter subscriptionRouter = new HtspSubscriptionRouter();
+    private final Map<Integer, HtspResponseListener> responseHandlers;
     private final LinkedList<HtspMessage> messageQueue;
     private boolean isAuthenticated = false;
     private Selector selector;
     private int connectionTimeout;
+    private HtspCaptureWriter captureWriter;
 
     public void addMessageListener(@NonNull HtspMessageListener listener) {
         messageListeners.add(listener);
@@ -62,6 +62,43 @@ public class HtspConnection extends Thread {
         messageListeners.remove(listener);
     }
 
+    /**
+     * Passes the messages of the given subscription only to the given
+     * listener. The message listeners do not receive these messages.
+     */
+    public void addSubscriptionListener(int subscriptionId, @NonNull HtspMessageListener listener) {
+        subscriptionRouter.add(subscriptionId, listener);
+    }
+
+    public void removeSubscriptionListener(int subscriptionId) {
+        subscriptionRouter.remove(subscriptionId);
+    }
+
+    /**
+     * Writes all frames that are sent and received from now on into the
+     * given capture. The capture is closed together with the connection.
+     */
+    public void setCaptureWriter(@Nullable HtspCaptureWriter writer) {
+        lock.lock();
+        try {
+            closeCaptureWriter();
+            captureWriter = writer;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeCaptureWriter() {
+        if (captureWriter != null) {
+            try {
+                captureWriter.close();
+            } catch (IOException e) {
+                HtspLog.d("Failed to close capture", e);
+            }
+            captureWriter = null;
+        }
+    }
+
     public enum AuthenticationState {
         IDLE,
         AUTHENTICATING,
@@ -86,21 +123,25 @@ public class HtspConnection extends Thread {
     public HtspConnection(@Nullable String username, @Nullable String password,
                           @Nullable String hostname, int port,
                           int connectionTimeout,
+                          @NonNull String clientVersion,
                           @NonNull HtspConnectionStateListener connectionListener,
                           @Nullable HtspMessageListener messageListener) {
-        Timber.d("Initializing HTSP connection thread");
+        HtspLog.d("Initializing HTSP connection thread");
 
         this.username = username != null ? username : "";
         this.password = password != null ? password : "";
         this.hostname = hostname != null ? hostname : "";
         this.port = port;
         this.connectionTimeout = connectionTimeout;
+        this.clientVersion = clientVersion;
 
         this.isRunning = false;
         this.lock = new ReentrantLock();
         this.inputByteBuffer = ByteBuffer.allocateDirect(2048 * 2048);
         this.inputByteBuffer.limit(4);
-        this.responseHandlers = new SparseArray<>();
+        this.outputByteBuffer = ByteBuffer.allocateDirect(64 * 1024);
+        this.outputByteBuffer.limit(0);
+        this.responseHandlers = new HashMap<>();
         this.messageQueue = new LinkedList<>();
         this.connectionListener = connectionListener;
 
@@ -111,7 +152,7 @@ public class HtspConnection extends Thread {
 
     // synchronized, non blocking connect
     public void openConnection() {
-        Timber.i("Opening HTSP Connection");
+        HtspLog.i("Opening HTSP Connection");
         connectionListener.onConnectionStateChange(ConnectionState.CONNECTING);
 
         if (isRunning) {
@@ -122,7 +163,7 @@ public class HtspConnection extends Thread {
 
         lock.lock();
         try {
-            Timber.d("Opening socket to server");
+            HtspLog.d("Opening socket to server");
             selector = Selector.open();
             socketChannel = SocketChannel.open();
             socketChannel.configureBlocking(false);
@@ -130,26 +171,26 @@ public class HtspConnection extends Thread {
             socketChannel.socket().setSoTimeout(connectionTimeout);
             socketChannel.register(selector, SelectionKey.OP_CONNECT, signal);
 
-            Timber.d("Connecting via socket to " + hostname + ":" + port);
+            HtspLog.d("Connecting via socket to " + hostname + ":" + port);
             if (!socketChannel.connect(new InetSocketAddress(hostname, port))) {
-                Timber.d("Socket did not yet finish connecting, calling finishConnect()");
+                HtspLog.d("Socket did not yet finish connecting, calling finishConnect()");
                 socketChannel.finishConnect();
             }
 
-            Timber.d("HTSP Connection thread can be started");
+            HtspLog.d("HTSP Connection thread can be started");
             isRunning = true;
             start();
 
         } catch (ClosedByInterruptException e) {
-            Timber.e("Failed to open HTSP connection, interrupted");
+            HtspLog.e("Failed to open HTSP connection, interrupted");
             connectionListener.onConnectionStateChange(ConnectionState.FAILED_INTERRUPTED);
 
         } catch (UnresolvedAddressException e) {
-            Timber.e("Failed to resolve HTSP server address:", e);
+            HtspLog.e("Failed to resolve HTSP server address:", e);
             connectionListener.onConnectionStateChange(ConnectionState.FAILED_UNRESOLVED_ADDRESS);
 
         } catch (IOException e) {
-            Timber.e("Caught IOException while opening SocketChannel:", e);
+            HtspLog.e("Caught IOException while opening SocketChannel:", e);
             connectionListener.onConnectionStateChange(ConnectionState.FAILED_EXCEPTION_OPENING_SOCKET);
 
         } finally {
@@ -159,18 +200,22 @@ public class HtspConnection extends Thread {
         if (isRunning) {
             synchronized (signal) {
                 try {
-                    signal.wait(connectionTimeout);
+                    // A connection to a local server can be established immediately. In this
+                    // case no connect event will be selected that would notify the signal.
                     if (socketChannel.isConnectionPending()) {
-                        Timber.d("Timeout while waiting to connect to server");
+                        signal.wait(connectionTimeout);
+                    }
+                    if (socketChannel.isConnectionPending()) {
+                        HtspLog.d("Timeout while waiting to connect to server");
                         connectionListener.onConnectionStateChange(ConnectionState.FAILED);
                         closeConnection();
                     }
                 } catch (InterruptedException e) {
-                    Timber.d("Waiting for pending connection was interrupted. ", e);
+                    HtspLog.d("Waiting for pending connection was interrupted. ", e);
                 }
             }
         }
-        Timber.d("Opened HTSP Connection");
+        HtspLog.d("Opened HTSP Connection");
     }
 
     public boolean isNotConnected() {
@@ -186,7 +231,7 @@ public class HtspConnection extends Thread {
 
     // synchronized, blocking auth
     public void authenticate() {
-        Timber.d("Starting authentication");
+        HtspLog.d("Starting authentication");
 
         if (isAuthenticated || !isRunning) {
             return;
@@ -200,7 +245,7 @@ public class HtspConnection extends Thread {
 
         final HtspResponseListener authHandler = response -> {
             isAuthenticated = response.getInteger("noaccess", 0) != 1;
-            Timber.d("Authentication was successful: " + isAuthenticated);
+            HtspLog.d("Authentication was successful: " + isAuthenticated);
             if (!isAuthenticated) {
                 connectionListener.onAuthenticationStateChange(AuthenticationState.FAILED_BAD_CREDENTIALS);
             } else {
@@ -211,11 +256,11 @@ public class HtspConnection extends Thread {
             }
         };
 
-        Timber.d("Sending initial message to server");
+        HtspLog.d("Sending initial message to server");
         HtspMessage helloMessage = new HtspMessage();
         helloMessage.setMethod("hello");
         helloMessage.put("clientname", "TVHClient");
-        helloMessage.put("clientversion", (BuildConfig.VERSION_NAME + "-" + BuildConfig.VERSION_CODE));
+        helloMessage.put("clientversion", clientVersion);
         helloMessage.put("htspversion", HtspMessage.HTSP_VERSION);
         helloMessage.put("username", username);
 
@@ -232,11 +277,11 @@ public class HtspConnection extends Thread {
                 md.update(password.getBytes());
                 md.update(response.getByteArray("challenge"));
 
-                Timber.d("Sending authentication message");
+                HtspLog.d("Sending authentication message");
                 authMessage.put("digest", md.digest());
                 sendMessage(authMessage, authHandler);
             } catch (NoSuchAlgorithmException e) {
-                Timber.d("Could not sent authentication message. ", e);
+                HtspLog.d("Could not sent authentication message. ", e);
             }
         });
 
@@ -244,11 +289,11 @@ public class HtspConnection extends Thread {
             try {
                 authMessage.wait(5000);
                 if (!isAuthenticated) {
-                    Timber.d("Timeout while waiting for authentication response");
+                    HtspLog.d("Timeout while waiting for authentication response");
                     connectionListener.onAuthenticationStateChange(AuthenticationState.FAILED);
                 }
             } catch (InterruptedException e) {
-                Timber.d("Waiting for authentication message was interrupted. ", e);
+                HtspLog.d("Waiting for authentication message was interrupted. ", e);
             }
         }
     }
@@ -259,7 +304,7 @@ public class HtspConnection extends Thread {
 
     public void sendMessage(@NonNull HtspMessage message, @Nullable HtspResponseListener listener) {
         if (isNotConnected()) {
-            Timber.d("Not sending message, not connected to server");
+            HtspLog.d("Not sending message, not connected to server");
             return;
         }
         lock.lock();
@@ -271,53 +316,55 @@ public class HtspConnection extends Thread {
             messageQueue.add(message);
             selector.wakeup();
         } catch (Exception e) {
-            Timber.d("Could not send message. ", e);
+            HtspLog.d("Could not send message. ", e);
         } finally {
             lock.unlock();
         }
     }
 
     public void closeConnection() {
-        Timber.d("Closing HTSP connection");
+        HtspLog.d("Closing HTSP connection");
         lock.lock();
         try {
             responseHandlers.clear();
             messageQueue.clear();
+            outputByteBuffer.limit(0);
             isAuthenticated = false;
             isRunning = false;
+            closeCaptureWriter();
             socketChannel.register(selector, 0);
             socketChannel.close();
 
         } catch (ClosedChannelException e) {
-            Timber.d("Failed to register selector with socket channel, closed channel exception", e);
+            HtspLog.d("Failed to register selector with socket channel, closed channel exception", e);
         } catch (NullPointerException e) {
-            Timber.d("Failed to register selector with socket channel or closing socket channel, socket channel is null", e);
+            HtspLog.d("Failed to register selector with socket channel or closing socket channel, socket channel is null", e);
         } catch (IllegalSelectorException e) {
-            Timber.d("Failed to register selector with socket channel, illegal selector", e);
+            HtspLog.d("Failed to register selector with socket channel, illegal selector", e);
         } catch (CancelledKeyException e) {
-            Timber.d("Failed to register selector with socket channel, cancelled key", e);
+            HtspLog.d("Failed to register selector with socket channel, cancelled key", e);
         } catch (IOException e) {
-            Timber.d("Failed to close socket channel", e);
+            HtspLog.d("Failed to close socket channel", e);
         } finally {
             lock.unlock();
         }
-        Timber.d("HTSP connection closed");
+        HtspLog.d("HTSP connection closed");
     }
 
     @Override
     public void run() {
-        Timber.d("Starting HTSP connection thread");
+        HtspLog.d("Starting HTSP connection thread");
         connectionListener.onConnectionStateChange(ConnectionState.CONNECTED);
 
         while (isRunning) {
             try {
                 selector.select(5000);
             } catch (IOException e) {
-                Timber.e("Failed to select from socket channel, I/O error occurred", e);
+                HtspLog.e("Failed to select from socket channel, I/O error occurred", e);
                 connectionListener.onConnectionStateChange(ConnectionState.FAILED);
                 isRunning = false;
             } catch (ClosedSelectorException cse) {
-                Timber.e("Failed to select from socket channel, selector is already closed", cse);
+                HtspLog.e("Failed to select from socket channel, selector is already closed", cse);
                 connectionListener.onConnectionStateChange(ConnectionState.FAILED);
                 isRunning = false;
             }
@@ -331,31 +378,31 @@ public class HtspConnection extends Thread {
                     processTcpSelectionKey(selKey);
                 }
                 int ops = SelectionKey.OP_READ;
-                if (!messageQueue.isEmpty()) {
+                if (!messageQueue.isEmpty() || outputByteBuffer.hasRemaining()) {
                     ops |= SelectionKey.OP_WRITE;
                 }
                 socketChannel.register(selector, ops);
 
             } catch (NullPointerException npe) {
-                Timber.d("Failed to register selector with socket channel, socket channel is null", npe);
+                HtspLog.d("Failed to register selector with socket channel, socket channel is null", npe);
                 isRunning = false;
             } catch (IllegalSelectorException ise) {
-                Timber.d("Failed to register selector with socket channel, illegal selector", ise);
+                HtspLog.d("Failed to register selector with socket channel, illegal selector", ise);
                 isRunning = false;
             } catch (ClosedChannelException e) {
-                Timber.e("Failed to register selector with socket channel, channel is already closed", e);
+                HtspLog.e("Failed to register selector with socket channel, channel is already closed", e);
                 isRunning = false;
             } catch (ClosedSelectorException e) {
-                Timber.e("Failed to register selector with socket channel, selector is already closed", e);
+                HtspLog.e("Failed to register selector with socket channel, selector is already closed", e);
                 isRunning = false;
             } catch (CancelledKeyException e) {
-                Timber.e("Invalid selection key was used while processing tcp selection key");
+                HtspLog.e("Invalid selection key was used while processing tcp selection key");
                 isRunning = false;
             } catch (NotYetConnectedException e) {
-                Timber.e("Not yet connected while while processing tcp selection key");
+                HtspLog.e("Not yet connected while while processing tcp selection key");
                 isRunning = false;
             } catch (IOException e) {
-                Timber.e("Exception while processing tcp selection key");
+                HtspLog.e("Exception while processing tcp selection key");
                 isRunning = false;
             } finally {
                 lock.unlock();
@@ -363,7 +410,7 @@ public class HtspConnection extends Thread {
         }
 
         closeConnection();
-        Timber.d("HTSP connection thread stopped");
+        HtspLog.d("HTSP connection thread stopped");
     }
 
     private void processTcpSelectionKey(SelectionKey selKey)
@@ -383,29 +430,64 @@ public class HtspConnection extends Thread {
             int len = sChannel.read(inputByteBuffer);
             if (len < 0) {
                 connectionListener.onConnectionStateChange(ConnectionState.FAILED);
-                Timber.e("Could not read data from server");
+                HtspLog.e("Could not read data from server");
                 throw new IOException();
             }
 
             HtspMessage msg = HtspMessage.parse(inputByteBuffer);
             if (msg != null) {
+                if (captureWriter != null) {
+                    captureInbound();
+                }
                 handleMessage(msg);
             }
         }
         if (selKey.isWritable() && selKey.isValid()) {
             SocketChannel sChannel = (SocketChannel) selKey.channel();
-            HtspMessage msg = messageQueue.poll();
-            if (msg != null) {
-                msg.transmit(sChannel);
+            // Send the next message only after the previous one was written completely
+            if (outputByteBuffer.hasRemaining()) {
+                if (sChannel.write(outputByteBuffer) < 0) {
+                    throw new IOException("Server went down");
+                }
+            } else {
+                HtspMessage msg = messageQueue.poll();
+                if (msg != null) {
+                    if (captureWriter != null) {
+                        captureOutbound(msg);
+                    }
+                    outputByteBuffer = msg.transmit(sChannel, outputByteBuffer);
+                }
             }
         }
     }
 
+    private void captureInbound() {
+        try {
+            // Parsing resets the input buffer without clearing it,
+            // so the frame is still available from its start
+            ByteBuffer frame = inputByteBuffer.duplicate();
+            frame.limit(frame.capacity());
+            frame.position(4 + frame.getInt(0));
+            captureWriter.writeInbound(frame);
+        } catch (IOException e) {
+            HtspLog.e("Failed to write received message to capture, stopping capture", e);
+            closeCaptureWriter();
+        }
+    }
+
+    private void captureOutbound(HtspMessage msg) {
+        try {
+            captureWriter.writeOutbound(msg);
+        } catch (IOException e) {
+            HtspLog.e("Failed to write sent message to capture, stopping capture", e);
+            closeCaptureWriter();
+        }
+    }
+
     private void handleMessage(HtspMessage msg) {
         if (msg.containsKey("seq")) {
             int respSeq = msg.getInteger("seq");
-            HtspResponseListener handler = responseHandlers.get(respSeq);
-            responseHandlers.remove(respSeq);
+            HtspResponseListener handler = responseHandlers.remove(respSeq);
 
             if (handler != null) {
                 synchronized (handler) {
@@ -415,6 +497,10 @@ public class HtspConnection extends Thread {
             }
         }
 
+        if (subscriptionRouter.route(msg)) {
+            return;
+        }
+
         for (HtspMessageListener listener : messageListeners) {
             listener.onMessage(msg);
         }
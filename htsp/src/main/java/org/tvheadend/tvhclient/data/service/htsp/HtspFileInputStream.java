@@ -1,7 +1,5 @@
 package org.tvheadend.tvhclient.data.service.htsp;
 
-import android.util.Log;
-
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -90,7 +88,7 @@ public class HtspFileInputStream extends InputStream {
                 fileId = response.id;
                 fileSize = response.size;
             } catch (Throwable e) {
-                Log.e("TVHGuide", "Timeout waiting for fileOpen", e);
+                HtspLog.e("Timeout waiting for fileOpen", e);
             }
         }
 
@@ -115,7 +113,7 @@ public class HtspFileInputStream extends InputStream {
                 fileId = -1;
                 fileSize = -1;
             } catch (Throwable e) {
-                Log.e("TVHGuide", "Timeout waiting for fileClose", e);
+                HtspLog.e("Timeout waiting for fileClose", e);
             }
         }
     }
@@ -166,7 +164,7 @@ public class HtspFileInputStream extends InputStream {
                 buf = response.data;
                 bufPos = 0;
             } catch (Throwable e) {
-                Log.e("TVHGuide", "Timeout waiting for fileRead", e);
+                HtspLog.e("Timeout waiting for fileRead", e);
             }
         }
     }
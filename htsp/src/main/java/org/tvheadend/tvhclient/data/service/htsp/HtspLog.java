@@ -0,0 +1,72 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Small logging facade for the htsp module. The module must not depend on
+ * Android or Timber, so the application installs a {@link Logger} that
+ * forwards the messages. Nothing is logged when no logger is set.
+ */
+public final class HtspLog {
+
+    // Same values as the priorities in android.util.Log
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public interface Logger {
+        void log(int priority, @NonNull String message, @Nullable Throwable throwable);
+    }
+
+    private static volatile Logger logger;
+
+    private HtspLog() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    public static void setLogger(@Nullable Logger logger) {
+        HtspLog.logger = logger;
+    }
+
+    public static void v(@NonNull String message) {
+        log(VERBOSE, message, null);
+    }
+
+    public static void d(@NonNull String message) {
+        log(DEBUG, message, null);
+    }
+
+    public static void d(@NonNull String message, @Nullable Throwable throwable) {
+        log(DEBUG, message, throwable);
+    }
+
+    public static void i(@NonNull String message) {
+        log(INFO, message, null);
+    }
+
+    public static void w(@NonNull String message) {
+        log(WARN, message, null);
+    }
+
+    public static void w(@NonNull String message, @Nullable Throwable throwable) {
+        log(WARN, message, throwable);
+    }
+
+    public static void e(@NonNull String message) {
+        log(ERROR, message, null);
+    }
+
+    public static void e(@NonNull String message, @Nullable Throwable throwable) {
+        log(ERROR, message, throwable);
+    }
+
+    private static void log(int priority, @NonNull String message, @Nullable Throwable throwable) {
+        Logger current = logger;
+        if (current != null) {
+            current.log(priority, message, throwable);
+        }
+    }
+}
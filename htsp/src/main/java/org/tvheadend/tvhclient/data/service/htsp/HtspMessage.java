@@ -0,0 +1,464 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HtspMessage extends HashMap<String, Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final long HTSP_VERSION = 32;
+    private static final byte HMF_MAP = 1;
+    private static final byte HMF_S64 = 2;
+    private static final byte HMF_STR = 3;
+    private static final byte HMF_BIN = 4;
+    private static final byte HMF_LIST = 5;
+
+    public void setMethod(String name) {
+        put("method", name);
+    }
+
+    public String getMethod() {
+        return getString("method", "");
+    }
+
+    public String getString(String key, String fallback) {
+        if (!containsKey(key)) {
+            return fallback;
+        }
+
+        return getString(key);
+    }
+
+    public String getString(String key) {
+        Object obj = get(key);
+        if (obj == null) {
+            return null;
+        }
+        return obj.toString();
+    }
+
+    public int getInteger(String key, int fallback) {
+        if (!containsKey(key)) {
+            return fallback;
+        }
+
+        return getInteger(key);
+    }
+
+    public int getInteger(String key) {
+        Object obj = get(key);
+        if (obj == null) {
+            throw new RuntimeException("Attempted to getInteger(" + key + ") on non-existent key");
+        }
+        if (obj instanceof BigInteger) {
+            return ((BigInteger) obj).intValue();
+        }
+
+        return (int) obj;
+    }
+
+    public long getLong(String key, long fallback) {
+        if (!containsKey(key)) {
+            return fallback;
+        }
+
+        return getLong(key);
+    }
+
+    public long getLong(String key) {
+        Object obj = get(key);
+        if (obj == null) {
+            throw new RuntimeException("Attempted to getLong(" + key + ") on non-existent key");
+        }
+
+        if (obj instanceof BigInteger) {
+            return ((BigInteger) obj).longValue();
+        }
+
+        return (long) obj;
+    }
+
+    public boolean getBoolean(String key, boolean fallback) {
+        if (!containsKey(key)) {
+            return fallback;
+        }
+
+        return getBoolean(key);
+    }
+
+    private boolean getBoolean(String key) {
+        return getInteger(key) == 1;
+    }
+
+    public List<?> getList(String name) {
+        return (List<?>) get(name);
+    }
+
+    public List<Integer> getIntegerList(String name) {
+        ArrayList<Integer> list = new ArrayList<>();
+        if (!containsKey(name)) {
+            return list;
+        }
+        for (Object obj : getList(name)) {
+            if (obj instanceof BigInteger) {
+                list.add(((BigInteger) obj).intValue());
+            }
+        }
+        return list;
+    }
+
+    public ArrayList getArrayList(String key) {
+        Object obj = get(key);
+        //noinspection unchecked
+        return (ArrayList<String>) obj;
+    }
+
+    public byte[] getByteArray(String key) {
+        Object value = get(key);
+
+        return (byte[]) value;
+    }
+
+    /**
+     * Serializes the message including the length prefix into the given
+     * buffer and writes as much of it as possible to the channel. The buffer
+     * is reused for all messages of a connection, a larger one is allocated
+     * only when the message does not fit. The returned buffer contains the
+     * bytes that could not yet be written.
+     */
+    ByteBuffer transmit(SocketChannel ch, ByteBuffer buffer) throws IOException {
+        int size = 4 + serializedSize(this);
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        buffer.putInt(size - 4);
+        serializeMap(buffer, this);
+        buffer.flip();
+
+        if (ch.write(buffer) < 0) {
+            throw new IOException("Server went down");
+        }
+        return buffer;
+    }
+
+    private static BigInteger toBigInteger(byte b[]) {
+        byte b1[] = new byte[b.length + 1];
+
+        for (int i = 0; i < b.length; i++) {
+            b1[i + 1] = b[b.length - 1 - i];
+        }
+
+        return new BigInteger(b1);
+    }
+
+    private static long uIntToLong(byte b1, byte b2, byte b3, byte b4) {
+        long i = 0;
+        i <<= 8;
+        i ^= b1 & 0xFF;
+        i <<= 8;
+        i ^= b2 & 0xFF;
+        i <<= 8;
+        i ^= b3 & 0xFF;
+        i <<= 8;
+        i ^= b4 & 0xFF;
+        return i;
+    }
+
+    public static HtspMessage parse(ByteBuffer buf) throws IOException {
+        long len;
+
+        if (buf.position() < 4) {
+            return null;
+        }
+
+        len = uIntToLong(buf.get(0), buf.get(1), buf.get(2), buf.get(3));
+
+        if (len + 4 > buf.capacity()) {
+            throw new IOException("Message is to long, length " + len + ", capacity " + buf.capacity());
+        }
+
+        if (buf.limit() == 4) {
+            buf.limit((int) (4 + len));
+        }
+
+        // Message not yet fully read
+        if (buf.position() < len + 4) {
+            return null;
+        }
+
+        buf.flip();
+        buf.getInt(); // drops 4 bytes
+        HtspMessage msg = deserializeBinary(buf);
+
+        buf.limit(4);
+        buf.position(0);
+        return msg;
+    }
+
+    /**
+     * Serializes the fields of the map without the length prefix
+     */
+    static byte[] serializeBinary(Map<String, Object> map) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(serializedSize(map));
+        serializeMap(buf, map);
+        return buf.array();
+    }
+
+    // The size of all fields is computed first, so that the message
+    // can be written into the buffer in a single pass afterwards.
+
+    private static int serializedSize(Map<String, Object> map) throws IOException {
+        int size = 0;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            size += fieldSize(entry.getKey(), entry.getValue());
+        }
+        return size;
+    }
+
+    private static int serializedSize(Collection<?> list) throws IOException {
+        int size = 0;
+        for (Object value : list) {
+            size += fieldSize("", value);
+        }
+        return size;
+    }
+
+    private static int fieldSize(String name, Object value) throws IOException {
+        int nameLength = utf8Length(name);
+        if (nameLength > 0xFF) {
+            throw new IOException("Field name " + name + " is too long");
+        }
+        return 1 + 1 + 4 + nameLength + dataSize(name, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int dataSize(String name, Object value) throws IOException {
+        if (value instanceof String) {
+            return utf8Length((String) value);
+        } else if (value instanceof BigInteger) {
+            return s64Size(((BigInteger) value).longValue());
+        } else if (value instanceof Integer) {
+            return s64Size((Integer) value);
+        } else if (value instanceof Long) {
+            return s64Size((Long) value);
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof Map) {
+            return serializedSize((Map<String, Object>) value);
+        } else if (value instanceof Collection) {
+            return serializedSize((Collection<?>) value);
+        } else if (value == null) {
+            throw new IOException("HTSP doesn't support null values");
+        } else {
+            throw new IOException("Unhandled class for " + name + ": " + value
+                    + " (" + value.getClass().getSimpleName() + ")");
+        }
+    }
+
+    private static void serializeMap(ByteBuffer buf, Map<String, Object> map) {
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            serializeField(buf, entry.getKey(), entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void serializeField(ByteBuffer buf, String name, Object value) {
+        byte type;
+        if (value instanceof String) {
+            type = HMF_STR;
+        } else if (value instanceof BigInteger || value instanceof Integer || value instanceof Long) {
+            type = HMF_S64;
+        } else if (value instanceof byte[]) {
+            type = HMF_BIN;
+        } else if (value instanceof Map) {
+            type = HMF_MAP;
+        } else {
+            type = HMF_LIST;
+        }
+
+        buf.put(type);
+        int nameLengthPosition = buf.position();
+        buf.put((byte) 0);
+        int dataLengthPosition = buf.position();
+        buf.putInt(0);
+
+        // The lengths are known after the content has been written
+        int nameLength = putUtf8(buf, name);
+        int dataStart = buf.position();
+
+        switch (type) {
+            case HMF_STR:
+                putUtf8(buf, (String) value);
+                break;
+            case HMF_S64:
+                putS64(buf, ((Number) value).longValue());
+                break;
+            case HMF_BIN:
+                buf.put((byte[]) value);
+                break;
+            case HMF_MAP:
+                serializeMap(buf, (Map<String, Object>) value);
+                break;
+            default:
+                for (Object item : (Collection<?>) value) {
+                    serializeField(buf, "", item);
+                }
+                break;
+        }
+
+        buf.put(nameLengthPosition, (byte) nameLength);
+        buf.putInt(dataLengthPosition, buf.position() - dataStart);
+    }
+
+    /**
+     * Number of bytes of the value in the little endian encoding of the
+     * server, leading zero bytes are omitted and zero has no bytes at all
+     */
+    private static int s64Size(long value) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / 8;
+    }
+
+    private static void putS64(ByteBuffer buf, long value) {
+        while (value != 0) {
+            buf.put((byte) value);
+            value >>>= 8;
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (Character.isSurrogate(c)) {
+                // A valid pair needs four bytes, a single surrogate is replaced by one byte
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                }
+            } else if (c >= 0x800) {
+                bytes += 2;
+            } else if (c >= 0x80) {
+                bytes += 1;
+            }
+        }
+        return bytes;
+    }
+
+    private static int putUtf8(ByteBuffer buf, String value) {
+        int start = buf.position();
+        int length = value.length();
+        int i = 0;
+        // Fast path for the common case of plain ascii text
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            buf.put((byte) c);
+        }
+        if (i < length) {
+            buf.put(value.substring(i).getBytes(StandardCharsets.UTF_8));
+        }
+        return buf.position() - start;
+    }
+
+    static HtspMessage deserializeBinary(ByteBuffer buf) throws IOException {
+        HtspMessage msg = new HtspMessage();
+        deserializeFields(buf, msg, null);
+        return msg;
+    }
+
+    /**
+     * Reads the fields until the end of the buffer. The named fields of a map
+     * are put into the message, the unnamed fields of a list are added to the
+     * list in the order of the data.
+     */
+    private static void deserializeFields(ByteBuffer buf, HtspMessage msg, List<Object> list) throws IOException {
+        while (buf.hasRemaining()) {
+            if (buf.remaining() < 6) {
+                throw new IOException("Field header is truncated, remaining " + buf.remaining());
+            }
+            byte type = buf.get();
+            int namelen = buf.get() & 0xFF;
+            long datalen = uIntToLong(buf.get(), buf.get(), buf.get(), buf.get());
+
+            if (datalen > Integer.MAX_VALUE) {
+                throw new IOException("Would get precision losses, datalen " + datalen + ", max int " + Integer.MAX_VALUE);
+            }
+            if (buf.remaining() < namelen + datalen) {
+                throw new IOException("Field is truncated, remaining " + buf.remaining() + ", namelen " + namelen + ", datalen " + datalen);
+            }
+
+            // Get the key for the map (the name)
+            String name = null;
+            if (namelen > 0) {
+                byte[] bName = new byte[namelen];
+                buf.get(bName);
+                name = new String(bName, StandardCharsets.UTF_8);
+            }
+
+            // Get the actual content
+            Object obj;
+            switch (type) {
+                case HtspMessage.HMF_STR: {
+                    byte[] bData = new byte[(int) datalen];
+                    buf.get(bData);
+                    obj = new String(bData, StandardCharsets.UTF_8);
+                    break;
+                }
+                case HMF_BIN: {
+                    byte[] bData = new byte[(int) datalen];
+                    buf.get(bData);
+                    obj = bData;
+                    break;
+                }
+                case HMF_S64: {
+                    byte[] bData = new byte[(int) datalen];
+                    buf.get(bData);
+                    obj = toBigInteger(bData);
+                    break;
+                }
+                case HMF_MAP: {
+                    HtspMessage map = new HtspMessage();
+                    deserializeFields(slice(buf, (int) datalen), map, null);
+                    obj = map;
+                    break;
+                }
+                case HMF_LIST: {
+                    List<Object> items = new ArrayList<>();
+                    deserializeFields(slice(buf, (int) datalen), null, items);
+                    obj = items;
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown data type " + type);
+            }
+            if (list != null) {
+                list.add(obj);
+            } else {
+                msg.put(name != null ? name : Integer.toString(msg.size()), obj);
+            }
+        }
+    }
+
+    /**
+     * Returns the next bytes of the buffer as a buffer of its own and skips them
+     */
+    private static ByteBuffer slice(ByteBuffer buf, int length) {
+        ByteBuffer sub = buf.slice();
+        sub.limit(length);
+        buf.position(buf.position() + length);
+        return sub;
+    }
+}
@@ -0,0 +1,179 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The compact format in which the subscription data source hands the
+ * received messages to the extractor of the player. Each message is written
+ * as a frame with a header of one byte for the type and four bytes for the
+ * length of the following body.
+ *
+ * The body of a muxpkt frame contains the stream index, the PTS and DTS, the
+ * duration, the frame type and the payload. It is written and read without
+ * any allocation. The reader keeps one packet whose payload array only grows
+ * when a larger payload arrives. All other messages, e.g. subscriptionStart,
+ * are rare and use the binary encoding of the server as the body.
+ */
+public class HtspStreamPacket {
+
+    public static final byte TYPE_PACKET = 1;
+    public static final byte TYPE_MESSAGE = 2;
+    public static final int FRAME_HEADER_SIZE = 5;
+    // The value of the PTS and DTS when the server has not sent it
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    // stream, pts, dts, duration and frametype
+    private static final int PACKET_HEADER_SIZE = 4 + 8 + 8 + 4 + 4;
+
+    private int stream;
+    private long pts = NO_TIMESTAMP;
+    private long dts = NO_TIMESTAMP;
+    private int duration;
+    private int frameType = -1;
+    private byte[] payload = new byte[64 * 1024];
+    private int payloadLength;
+
+    public int getStream() {
+        return stream;
+    }
+
+    public long getPts() {
+        return pts;
+    }
+
+    public long getDts() {
+        return dts;
+    }
+
+    /**
+     * The duration of the frame in microseconds
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * The type of the frame as an ASCII value 'I', 'P' or 'B', or -1 if the server has not sent it
+     */
+    public int getFrameType() {
+        return frameType;
+    }
+
+    /**
+     * The array that contains the payload. It is reused for the next packet
+     * and can be larger than the payload.
+     */
+    @NonNull
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * Returns the size of the frame of the given muxpkt message
+     */
+    public static int getPacketFrameSize(@NonNull HtspMessage muxpkt) {
+        return FRAME_HEADER_SIZE + PACKET_HEADER_SIZE + muxpkt.getByteArray("payload").length;
+    }
+
+    /**
+     * Writes the given muxpkt message as a packet frame
+     *
+     * @throws BufferOverflowException if the buffer has not enough space, nothing is written then
+     */
+    public static void writePacket(@NonNull ByteBuffer buffer, @NonNull HtspMessage muxpkt) {
+        byte[] payload = muxpkt.getByteArray("payload");
+        if (buffer.remaining() < FRAME_HEADER_SIZE + PACKET_HEADER_SIZE + payload.length) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(TYPE_PACKET);
+        buffer.putInt(PACKET_HEADER_SIZE + payload.length);
+        buffer.putInt(muxpkt.getInteger("stream"));
+        buffer.putLong(muxpkt.getLong("pts", NO_TIMESTAMP));
+        buffer.putLong(muxpkt.getLong("dts", NO_TIMESTAMP));
+        buffer.putInt(muxpkt.getInteger("duration", 0));
+        buffer.putInt(muxpkt.getInteger("frametype", -1));
+        buffer.put(payload);
+    }
+
+    /**
+     * Returns the given message as a frame
+     */
+    @NonNull
+    public static byte[] encodeMessage(@NonNull HtspMessage message) throws IOException {
+        byte[] body = HtspMessage.serializeBinary(message);
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE + body.length)
+                .put(TYPE_MESSAGE)
+                .putInt(body.length)
+                .put(body)
+                .array();
+    }
+
+    /**
+     * Returns the size of the frame that starts at the position of the
+     * buffer, or -1 if the buffer does not contain the frame header yet.
+     * The position is not changed.
+     *
+     * @throws IOException if the frame header is invalid
+     */
+    public static int peekFrameSize(@NonNull ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < FRAME_HEADER_SIZE) {
+            return -1;
+        }
+        byte type = buffer.get(buffer.position());
+        int length = buffer.getInt(buffer.position() + 1);
+        if ((type != TYPE_PACKET && type != TYPE_MESSAGE)
+                || length < 0
+                || (type == TYPE_PACKET && length < PACKET_HEADER_SIZE)) {
+            throw new IOException("Invalid frame of type " + type + " with length " + length);
+        }
+        return FRAME_HEADER_SIZE + length;
+    }
+
+    /**
+     * Returns the type of the frame that starts at the position of the buffer.
+     * The frame header must be available.
+     */
+    public static byte peekFrameType(@NonNull ByteBuffer buffer) {
+        return buffer.get(buffer.position());
+    }
+
+    /**
+     * Reads the packet frame at the position of the buffer into this packet.
+     * The whole frame must be available.
+     */
+    public void readPacket(@NonNull ByteBuffer buffer) {
+        buffer.get();
+        payloadLength = buffer.getInt() - PACKET_HEADER_SIZE;
+        stream = buffer.getInt();
+        pts = buffer.getLong();
+        dts = buffer.getLong();
+        duration = buffer.getInt();
+        frameType = buffer.getInt();
+        if (payload.length < payloadLength) {
+            payload = new byte[Math.max(payloadLength, payload.length * 2)];
+        }
+        buffer.get(payload, 0, payloadLength);
+    }
+
+    /**
+     * Reads the message frame at the position of the buffer.
+     * The whole frame must be available.
+     */
+    @NonNull
+    public static HtspMessage readMessage(@NonNull ByteBuffer buffer) throws IOException {
+        buffer.get();
+        int length = buffer.getInt();
+        ByteBuffer body = buffer.slice();
+        body.limit(length);
+        buffer.position(buffer.position() + length);
+        return HtspMessage.deserializeBinary(body);
+    }
+}
@@ -0,0 +1,56 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Passes the asynchronous messages of a subscription like muxpkt,
+ * subscriptionStart or queueStatus only to the listener that owns the
+ * subscription. These messages contain the subscription id, the other
+ * asynchronous messages of the server do not.
+ *
+ * Each message is handled with one lookup of its subscription id, so the
+ * work per packet does not grow with the number of active subscriptions
+ * or registered message listeners. Messages of unknown subscriptions,
+ * e.g. packets that are still received after unsubscribing, are dropped.
+ *
+ * Listeners are added and removed by the player threads while the
+ * connection thread routes the messages.
+ */
+class HtspSubscriptionRouter {
+
+    private final Map<Integer, HtspMessageListener> listeners = new ConcurrentHashMap<>();
+
+    void add(int subscriptionId, @NonNull HtspMessageListener listener) {
+        HtspMessageListener previous = listeners.put(subscriptionId, listener);
+        if (previous != null && previous != listener) {
+            HtspLog.w("Replaced listener of subscription " + subscriptionId);
+        }
+    }
+
+    void remove(int subscriptionId) {
+        listeners.remove(subscriptionId);
+    }
+
+    /**
+     * Passes the given message to the owner of its subscription
+     *
+     * @return True if the message belongs to a subscription and must not be
+     * passed to the other message listeners, otherwise false
+     */
+    boolean route(@NonNull HtspMessage message) {
+        if (!message.containsKey("subscriptionId")) {
+            return false;
+        }
+        int subscriptionId = message.getInteger("subscriptionId");
+        HtspMessageListener listener = listeners.get(subscriptionId);
+        if (listener != null) {
+            listener.onMessage(message);
+        } else {
+            HtspLog.v("Dropping " + message.getMethod() + " of unknown subscription " + subscriptionId);
+        }
+        return true;
+    }
+}
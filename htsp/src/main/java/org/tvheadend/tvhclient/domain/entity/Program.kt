@@ -18,7 +18,8 @@ data class Program(
         override var title: String? = null,               // str   optional   Title of event.
         var subtitle: String? = null,            // str   optional   Subtitle of event.
         var summary: String? = null,             // str   optional   Short description of the event (Added in version 6).
-        var description: String? = null,         // str   optional   Long description of the event.
+        @ColumnInfo(name = "description_data", typeAffinity = ColumnInfo.BLOB)
+        var descriptionData: ByteArray? = null,  // Compressed description, see description
         var credits: String? = null,             // str   optional
         var category: String? = null,            // str   optional
         var keyword: String? = null,             // str   optional
@@ -74,6 +75,118 @@ data class Program(
         @Ignore
         var recording: Recording? = null
 ) : ProgramInterface {
+
+    /**
+     * Long description of the event. It is stored compressed because it takes
+     * most of the space of a program. The text is only decompressed when it is
+     * read for the first time.
+     */
+    @Ignore
+    var description: String? = null
+        get() {
+            if (field == null && descriptionData != null) {
+                field = TextCompression.decompress(descriptionData)
+            }
+            return field
+        }
+        set(value) {
+            field = value
+            descriptionData = TextCompression.compress(value)
+        }
+
+    /**
+     * The title in lower case, which the search compares with the query
+     */
+    @ColumnInfo(name = "search_title")
+    var searchTitle: String? = null
+        get() = title?.let { toSearchText(it) }
+
+    /**
+     * Compares the compressed description by its content, the generated
+     * equals of a data class would only compare the array references.
+     */
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is Program) return false
+        return eventId == other.eventId
+                && channelId == other.channelId
+                && start == other.start
+                && stop == other.stop
+                && title == other.title
+                && subtitle == other.subtitle
+                && summary == other.summary
+                && Arrays.equals(descriptionData, other.descriptionData)
+                && credits == other.credits
+                && category == other.category
+                && keyword == other.keyword
+                && serieslinkId == other.serieslinkId
+                && episodeId == other.episodeId
+                && seasonId == other.seasonId
+                && brandId == other.brandId
+                && contentType == other.contentType
+                && ageRating == other.ageRating
+                && starRating == other.starRating
+                && copyrightYear == other.copyrightYear
+                && firstAired == other.firstAired
+                && seasonNumber == other.seasonNumber
+                && seasonCount == other.seasonCount
+                && episodeNumber == other.episodeNumber
+                && episodeCount == other.episodeCount
+                && partNumber == other.partNumber
+                && partCount == other.partCount
+                && episodeOnscreen == other.episodeOnscreen
+                && image == other.image
+                && dvrId == other.dvrId
+                && nextEventId == other.nextEventId
+                && serieslinkUri == other.serieslinkUri
+                && episodeUri == other.episodeUri
+                && connectionId == other.connectionId
+                && channelName == other.channelName
+                && channelIcon == other.channelIcon
+                && recording == other.recording
+    }
+
+    override fun hashCode(): Int {
+        var result = 0
+        result = 31 * result + eventId.hashCode()
+        result = 31 * result + channelId.hashCode()
+        result = 31 * result + start.hashCode()
+        result = 31 * result + stop.hashCode()
+        result = 31 * result + (title?.hashCode() ?: 0)
+        result = 31 * result + (subtitle?.hashCode() ?: 0)
+        result = 31 * result + (summary?.hashCode() ?: 0)
+        result = 31 * result + Arrays.hashCode(descriptionData)
+        result = 31 * result + (credits?.hashCode() ?: 0)
+        result = 31 * result + (category?.hashCode() ?: 0)
+        result = 31 * result + (keyword?.hashCode() ?: 0)
+        result = 31 * result + serieslinkId.hashCode()
+        result = 31 * result + episodeId.hashCode()
+        result = 31 * result + seasonId.hashCode()
+        result = 31 * result + brandId.hashCode()
+        result = 31 * result + contentType.hashCode()
+        result = 31 * result + ageRating.hashCode()
+        result = 31 * result + starRating.hashCode()
+        result = 31 * result + copyrightYear.hashCode()
+        result = 31 * result + firstAired.hashCode()
+        result = 31 * result + seasonNumber.hashCode()
+        result = 31 * result + seasonCount.hashCode()
+        result = 31 * result + episodeNumber.hashCode()
+        result = 31 * result + episodeCount.hashCode()
+        result = 31 * result + partNumber.hashCode()
+        result = 31 * result + partCount.hashCode()
+        result = 31 * result + (episodeOnscreen?.hashCode() ?: 0)
+        result = 31 * result + (image?.hashCode() ?: 0)
+        result = 31 * result + dvrId.hashCode()
+        result = 31 * result + nextEventId.hashCode()
+        result = 31 * result + (serieslinkUri?.hashCode() ?: 0)
+        result = 31 * result + (episodeUri?.hashCode() ?: 0)
+        result = 31 * result + connectionId.hashCode()
+        result = 31 * result + (channelName?.hashCode() ?: 0)
+        result = 31 * result + (channelIcon?.hashCode() ?: 0)
+        result = 31 * result + (recording?.hashCode() ?: 0)
+        return result
+    }
+
     val duration: Int
         get() = ((stop - start) / 1000 / 60).toInt()
 
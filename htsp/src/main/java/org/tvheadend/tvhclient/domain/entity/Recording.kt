@@ -1,6 +1,5 @@
 package org.tvheadend.tvhclient.domain.entity
 
-import android.text.TextUtils
 import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.Ignore
@@ -73,26 +72,37 @@ data class Recording(
         var channelIcon: String? = null
 ) {
 
+    /**
+     * The title and subtitle in lower case, which the search compares with the query
+     */
+    @ColumnInfo(name = "search_title")
+    var searchTitle: String? = null
+        get() = title?.let { toSearchText(it) }
+
+    @ColumnInfo(name = "search_subtitle")
+    var searchSubtitle: String? = null
+        get() = subtitle?.let { toSearchText(it) }
+
     val isCompleted: Boolean
-        get() = error == null && TextUtils.equals(state, "completed")
+        get() = error == null && state == "completed"
 
     val isRecording: Boolean
-        get() = error == null && TextUtils.equals(state, "recording")
+        get() = error == null && state == "recording"
 
     val isScheduled: Boolean
-        get() = error == null && TextUtils.equals(state, "scheduled")
+        get() = error == null && state == "scheduled"
 
     val isFailed: Boolean
-        get() = TextUtils.equals(state, "invalid")
+        get() = state == "invalid"
 
     val isMissed: Boolean
-        get() = TextUtils.equals(state, "missed")
+        get() = state == "missed"
 
     val isAborted: Boolean
-        get() = TextUtils.equals(error, "Aborted by user") && TextUtils.equals(state, "completed")
+        get() = error == "Aborted by user" && state == "completed"
 
     val isFileMissing: Boolean
-        get() = TextUtils.equals(error, "File missing") && TextUtils.equals(state, "completed")
+        get() = error == "File missing" && state == "completed"
 
     val duration: Int
         get() = ((stop - start) / 1000 / 60).toInt()
@@ -0,0 +1,12 @@
+package org.tvheadend.tvhclient.domain.entity
+
+import java.util.*
+
+/**
+ * Returns the text in the form that is stored in the search columns. The
+ * LIKE operator of SQLite only ignores the case of ASCII letters, so the
+ * texts and the search query are both converted to lower case beforehand.
+ */
+fun toSearchText(text: String): String {
+    return text.toLowerCase(Locale.ROOT)
+}
@@ -0,0 +1,72 @@
+package org.tvheadend.tvhclient.domain.entity
+
+import java.io.ByteArrayOutputStream
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/**
+ * Converts long texts to a compact form that is stored in the database.
+ * The first byte tells if the remaining bytes are deflated or plain UTF-8.
+ * Short texts are not deflated because they would not become smaller.
+ */
+object TextCompression {
+
+    private const val PLAIN: Byte = 0
+    private const val DEFLATED: Byte = 1
+    private const val MIN_DEFLATE_LENGTH = 128
+
+    fun compress(text: String?): ByteArray? {
+        if (text == null) {
+            return null
+        }
+        val bytes = text.toByteArray(Charsets.UTF_8)
+        if (bytes.size >= MIN_DEFLATE_LENGTH) {
+            val deflater = Deflater(Deflater.DEFAULT_COMPRESSION, true)
+            try {
+                deflater.setInput(bytes)
+                deflater.finish()
+                // Only use the deflated bytes when they are actually smaller
+                val buffer = ByteArray(bytes.size)
+                buffer[0] = DEFLATED
+                val length = deflater.deflate(buffer, 1, buffer.size - 1)
+                if (deflater.finished()) {
+                    return buffer.copyOf(length + 1)
+                }
+            } finally {
+                deflater.end()
+            }
+        }
+        val buffer = ByteArray(bytes.size + 1)
+        buffer[0] = PLAIN
+        System.arraycopy(bytes, 0, buffer, 1, bytes.size)
+        return buffer
+    }
+
+    fun decompress(data: ByteArray?): String? {
+        if (data == null || data.isEmpty()) {
+            return null
+        }
+        if (data[0] == PLAIN) {
+            return String(data, 1, data.size - 1, Charsets.UTF_8)
+        }
+        val inflater = Inflater(true)
+        try {
+            inflater.setInput(data, 1, data.size - 1)
+            val output = ByteArrayOutputStream(data.size * 3)
+            val buffer = ByteArray(1024)
+            while (!inflater.finished()) {
+                val length = inflater.inflate(buffer)
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break
+                }
+                output.write(buffer, 0, length)
+            }
+            return String(output.toByteArray(), Charsets.UTF_8)
+        } catch (e: DataFormatException) {
+            return null
+        } finally {
+            inflater.end()
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Writes sent messages into a capture and reads them again like the replay does
+ */
+public class HtspCaptureWriterTest {
+
+    @Test
+    public void credentialsAreNotCaptured() throws IOException {
+        HtspMessage authenticate = new HtspMessage();
+        authenticate.setMethod("authenticate");
+        authenticate.put("seq", 2);
+        authenticate.put("username", "viewer");
+        authenticate.put("digest", new byte[]{1, 2, 3, 4});
+
+        HtspMessage captured = captureOutbound(authenticate);
+        assertEquals("authenticate", captured.getMethod());
+        assertEquals(2, captured.getInteger("seq"));
+        assertFalse(captured.containsKey("username"));
+        assertFalse(captured.containsKey("digest"));
+
+        // The message that is sent to the server is not changed
+        assertEquals("viewer", authenticate.getString("username"));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, authenticate.getByteArray("digest"));
+    }
+
+    @Test
+    public void otherMessagesAreCapturedUnchanged() throws IOException {
+        HtspMessage subscribe = new HtspMessage();
+        subscribe.setMethod("subscribe");
+        subscribe.put("seq", 7);
+        subscribe.put("channelId", 42);
+        subscribe.put("profile", "pass");
+
+        HtspMessage captured = captureOutbound(subscribe);
+        assertEquals(subscribe.size(), captured.size());
+        assertEquals("subscribe", captured.getMethod());
+        assertEquals(42, captured.getInteger("channelId"));
+        assertEquals("pass", captured.getString("profile"));
+    }
+
+    private static HtspMessage captureOutbound(HtspMessage message) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (HtspCaptureWriter writer = new HtspCaptureWriter(outputStream)) {
+            writer.writeOutbound(message);
+        }
+        try (HtspCaptureReader reader = new HtspCaptureReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            HtspCaptureReader.Frame frame = reader.next();
+            assertTrue(frame != null && !frame.inbound);
+            HtspMessage captured = frame.parse();
+            assertNull(reader.next());
+            return captured;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Serializes messages into the binary format of the server and parses them
+ * again like the connection does when it reads from the socket.
+ */
+public class HtspMessageTest {
+
+    @Test
+    public void emptyMessage() throws IOException {
+        HtspMessage message = roundTrip(new HtspMessage());
+        assertTrue(message.isEmpty());
+    }
+
+    @Test
+    public void emptyMapAndList() throws IOException {
+        HtspMessage message = new HtspMessage();
+        message.put("map", new HtspMessage());
+        message.put("list", new ArrayList<>());
+
+        HtspMessage result = roundTrip(message);
+        assertTrue(((HtspMessage) result.get("map")).isEmpty());
+        assertTrue(result.getList("list").isEmpty());
+    }
+
+    @Test
+    public void scalarValues() throws IOException {
+        HtspMessage message = new HtspMessage();
+        message.setMethod("muxpkt");
+        message.put("zero", 0);
+        message.put("int", 1234567);
+        message.put("negative", -42L);
+        message.put("max", Long.MAX_VALUE);
+        message.put("text", "Nachrichten \u00fcber \u20ac und \uD83D\uDCFA");
+        message.put("empty", "");
+
+        HtspMessage result = roundTrip(message);
+        assertEquals("muxpkt", result.getMethod());
+        assertEquals(0, result.getInteger("zero"));
+        assertEquals(1234567, result.getInteger("int"));
+        assertEquals(-42L, result.getLong("negative"));
+        assertEquals(Long.MAX_VALUE, result.getLong("max"));
+        assertEquals("Nachrichten \u00fcber \u20ac und \uD83D\uDCFA", result.getString("text"));
+        assertEquals("", result.getString("empty"));
+    }
+
+    @Test
+    public void nestedListsKeepTheirOrder() throws IOException {
+        List<Object> streams = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            HtspMessage stream = new HtspMessage();
+            stream.put("index", i);
+            stream.put("type", i % 2 == 0 ? "H264" : "AAC");
+            stream.put("languages", Arrays.asList("ger", "eng"));
+            streams.add(stream);
+        }
+        List<Object> numbers = new ArrayList<>();
+        for (long i = 0; i < 300; i++) {
+            numbers.add(i * 1000);
+        }
+        HtspMessage message = new HtspMessage();
+        message.put("streams", streams);
+        message.put("numbers", numbers);
+        message.put("nested", Arrays.asList(Arrays.asList(1, 2), new ArrayList<>(), Arrays.asList(3)));
+
+        HtspMessage result = roundTrip(message);
+
+        List<?> resultStreams = result.getList("streams");
+        assertEquals(40, resultStreams.size());
+        for (int i = 0; i < 40; i++) {
+            HtspMessage stream = (HtspMessage) resultStreams.get(i);
+            assertEquals(i, stream.getInteger("index"));
+            assertEquals(i % 2 == 0 ? "H264" : "AAC", stream.getString("type"));
+            assertEquals(Arrays.asList("ger", "eng"), stream.getList("languages"));
+        }
+
+        List<Integer> resultNumbers = result.getIntegerList("numbers");
+        assertEquals(300, resultNumbers.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i * 1000, (int) resultNumbers.get(i));
+        }
+
+        List<?> nested = result.getList("nested");
+        assertEquals(3, nested.size());
+        assertEquals(2, ((List<?>) nested.get(0)).size());
+        assertTrue(((List<?>) nested.get(1)).isEmpty());
+        assertEquals(1, ((List<?>) nested.get(2)).size());
+    }
+
+    @Test
+    public void largePayload() throws IOException {
+        byte[] payload = new byte[3 * 1024 * 1024];
+        new Random(1).nextBytes(payload);
+        HtspMessage message = new HtspMessage();
+        message.put("payload", payload);
+        message.put("empty", new byte[0]);
+
+        HtspMessage result = roundTrip(message);
+        assertArrayEquals(payload, result.getByteArray("payload"));
+        assertEquals(0, result.getByteArray("empty").length);
+    }
+
+    @Test(expected = IOException.class)
+    public void messageLargerThanTheBuffer() throws IOException {
+        HtspMessage message = new HtspMessage();
+        message.put("payload", new byte[2048]);
+        byte[] bytes = frame(message);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.limit(4);
+        buffer.put(bytes, 0, 4);
+        HtspMessage.parse(buffer);
+    }
+
+    @Test
+    public void messageIsParsedWhenAllBytesHaveArrived() throws IOException {
+        HtspMessage message = new HtspMessage();
+        message.setMethod("eventAdd");
+        message.put("eventId", 4711);
+        message.put("title", "Tagesschau");
+        byte[] bytes = frame(message);
+
+        // The connection reads only the length first and then up to the end of the message
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.limit(4);
+        buffer.put(bytes, 0, 2);
+        assertNull(HtspMessage.parse(buffer));
+        buffer.put(bytes, 2, 2);
+        assertNull(HtspMessage.parse(buffer));
+        assertEquals(bytes.length, buffer.limit());
+
+        buffer.put(bytes, 4, bytes.length - 5);
+        assertNull(HtspMessage.parse(buffer));
+        buffer.put(bytes, bytes.length - 1, 1);
+        HtspMessage result = HtspMessage.parse(buffer);
+
+        assertNotNull(result);
+        assertEquals("eventAdd", result.getMethod());
+        assertEquals(4711, result.getInteger("eventId"));
+        assertEquals("Tagesschau", result.getString("title"));
+        // The buffer is ready for the length of the next message
+        assertEquals(0, buffer.position());
+        assertEquals(4, buffer.limit());
+    }
+
+    @Test
+    public void truncatedFieldIsRejected() throws IOException {
+        // A single field, each shorter part of it is incomplete
+        HtspMessage message = new HtspMessage();
+        message.put("list", Arrays.asList(1, "Tagesschau", Arrays.asList(2, 3)));
+        byte[] body = HtspMessage.serializeBinary(message);
+
+        for (int length = 1; length < body.length; length++) {
+            try {
+                HtspMessage.deserializeBinary(ByteBuffer.wrap(body, 0, length));
+                fail("Message truncated to " + length + " of " + body.length + " bytes was parsed");
+            } catch (IOException e) {
+                // Expected
+            }
+        }
+    }
+
+    private static byte[] frame(HtspMessage message) throws IOException {
+        byte[] body = HtspMessage.serializeBinary(message);
+        return ByteBuffer.allocate(4 + body.length).putInt(body.length).put(body).array();
+    }
+
+    private static HtspMessage roundTrip(HtspMessage message) throws IOException {
+        byte[] bytes = frame(message);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        buffer.put(bytes);
+        HtspMessage result = HtspMessage.parse(buffer);
+        assertNotNull(result);
+        return result;
+    }
+}
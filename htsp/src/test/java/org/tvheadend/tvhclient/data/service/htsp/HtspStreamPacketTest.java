@@ -0,0 +1,198 @@
+package org.tvheadend.tvhclient.data.service.htsp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Writes packets and messages as frames like the subscription data source
+ * does and reads them again like the extractor of the player does.
+ */
+public class HtspStreamPacketTest {
+
+    @Test
+    public void packetRoundTrip() throws IOException {
+        HtspMessage muxpkt = received(muxpkt(2, 'B', 1000000L, randomPayload(5000)));
+        ByteBuffer buffer = ByteBuffer.allocate(HtspStreamPacket.getPacketFrameSize(muxpkt));
+        HtspStreamPacket.writePacket(buffer, muxpkt);
+        assertEquals(buffer.capacity(), buffer.position());
+        buffer.flip();
+
+        assertEquals(buffer.capacity(), HtspStreamPacket.peekFrameSize(buffer));
+        assertEquals(HtspStreamPacket.TYPE_PACKET, HtspStreamPacket.peekFrameType(buffer));
+        HtspStreamPacket packet = new HtspStreamPacket();
+        packet.readPacket(buffer);
+
+        assertEquals(2, packet.getStream());
+        assertEquals(1040000L, packet.getPts());
+        assertEquals(1000000L, packet.getDts());
+        assertEquals(40000, packet.getDuration());
+        assertEquals('B', packet.getFrameType());
+        assertEquals(5000, packet.getPayloadLength());
+        assertArrayEquals(muxpkt.getByteArray("payload"), Arrays.copyOf(packet.getPayload(), packet.getPayloadLength()));
+        assertTrue(!buffer.hasRemaining());
+    }
+
+    @Test
+    public void missingFieldsAreMarked() throws IOException {
+        HtspMessage muxpkt = new HtspMessage();
+        muxpkt.setMethod("muxpkt");
+        muxpkt.put("stream", 1);
+        muxpkt.put("payload", new byte[0]);
+        ByteBuffer buffer = ByteBuffer.allocate(HtspStreamPacket.getPacketFrameSize(muxpkt));
+        HtspStreamPacket.writePacket(buffer, muxpkt);
+        buffer.flip();
+
+        HtspStreamPacket packet = new HtspStreamPacket();
+        packet.readPacket(buffer);
+        assertEquals(HtspStreamPacket.NO_TIMESTAMP, packet.getPts());
+        assertEquals(HtspStreamPacket.NO_TIMESTAMP, packet.getDts());
+        assertEquals(-1, packet.getFrameType());
+        assertEquals(0, packet.getPayloadLength());
+    }
+
+    @Test
+    public void payloadLargerThanThePacketArray() throws IOException {
+        HtspStreamPacket packet = new HtspStreamPacket();
+        for (int size : new int[]{100, 1024 * 1024, 10}) {
+            HtspMessage muxpkt = muxpkt(1, 'I', 0, randomPayload(size));
+            ByteBuffer buffer = ByteBuffer.allocate(HtspStreamPacket.getPacketFrameSize(muxpkt));
+            HtspStreamPacket.writePacket(buffer, muxpkt);
+            buffer.flip();
+            packet.readPacket(buffer);
+            assertEquals(size, packet.getPayloadLength());
+            assertArrayEquals(muxpkt.getByteArray("payload"), Arrays.copyOf(packet.getPayload(), size));
+        }
+    }
+
+    @Test
+    public void packetIsNotWrittenWhenTheBufferIsFull() {
+        HtspMessage muxpkt = muxpkt(1, 'I', 0, new byte[100]);
+        ByteBuffer buffer = ByteBuffer.allocate(HtspStreamPacket.getPacketFrameSize(muxpkt) - 1);
+        try {
+            HtspStreamPacket.writePacket(buffer, muxpkt);
+            throw new AssertionError("Packet was written into a buffer that is too small");
+        } catch (BufferOverflowException e) {
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void messageRoundTrip() throws IOException {
+        HtspMessage stream = new HtspMessage();
+        stream.put("index", 1);
+        stream.put("type", "H264");
+        HtspMessage message = new HtspMessage();
+        message.setMethod("subscriptionStart");
+        message.put("streams", Arrays.asList(stream));
+
+        byte[] frame = HtspStreamPacket.encodeMessage(message);
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        assertEquals(frame.length, HtspStreamPacket.peekFrameSize(buffer));
+        assertEquals(HtspStreamPacket.TYPE_MESSAGE, HtspStreamPacket.peekFrameType(buffer));
+
+        HtspMessage result = HtspStreamPacket.readMessage(buffer);
+        assertEquals("subscriptionStart", result.getMethod());
+        assertEquals("H264", ((HtspMessage) result.getList("streams").get(0)).getString("type"));
+        assertTrue(!buffer.hasRemaining());
+    }
+
+    @Test
+    public void incompleteFrameHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{HtspStreamPacket.TYPE_PACKET, 0, 0, 1});
+        assertEquals(-1, HtspStreamPacket.peekFrameSize(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidFrameHeader() throws IOException {
+        HtspStreamPacket.peekFrameSize(ByteBuffer.wrap(new byte[]{7, 0, 0, 0, 10}));
+    }
+
+    @Test
+    public void noAllocationsPerPacket() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        HtspMessage[] messages = {
+                received(muxpkt(1, 'I', 0, randomPayload(150000))),
+                received(muxpkt(1, 'P', 40000, randomPayload(20000))),
+                received(muxpkt(2, 'I', 40000, randomPayload(700)))};
+        ByteBuffer frameBuffer = ByteBuffer.allocate(256 * 1024);
+        ByteBuffer frames = ByteBuffer.allocate(1024 * 1024);
+        HtspStreamPacket packet = new HtspStreamPacket();
+
+        // The first packets let the payload array grow to its final size
+        transport(messages, frameBuffer, frames, packet, 1000);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long checksum = transport(messages, frameBuffer, frames, packet, 10000);
+        allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+
+        assertTrue(checksum > 0);
+        // A few bytes may be counted for the measurement itself, a single
+        // allocated payload or wrapper would already be far more than that
+        assertTrue("Allocated " + allocatedBytes + " bytes for 30000 packets", allocatedBytes < 1024);
+    }
+
+    private static long transport(HtspMessage[] messages, ByteBuffer frameBuffer, ByteBuffer frames,
+                                  HtspStreamPacket packet, int iterations) throws IOException {
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (HtspMessage message : messages) {
+                frameBuffer.clear();
+                HtspStreamPacket.writePacket(frameBuffer, message);
+                frames.put(frameBuffer.array(), 0, frameBuffer.position());
+                frames.flip();
+                while (HtspStreamPacket.peekFrameSize(frames) != -1) {
+                    packet.readPacket(frames);
+                    checksum += packet.getPayloadLength() + packet.getPayload()[0];
+                }
+                frames.compact();
+            }
+        }
+        return checksum;
+    }
+
+    private static byte[] randomPayload(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        payload[0] = 1;
+        return payload;
+    }
+
+    private static HtspMessage muxpkt(int stream, char frameType, long dts, byte[] payload) {
+        HtspMessage message = new HtspMessage();
+        message.setMethod("muxpkt");
+        message.put("subscriptionId", 1);
+        message.put("frametype", (int) frameType);
+        message.put("stream", stream);
+        message.put("dts", dts);
+        message.put("pts", dts + 40000);
+        message.put("duration", 40000);
+        message.put("payload", payload);
+        return message;
+    }
+
+    /**
+     * Returns the message with the value types of a message that was received from the server
+     */
+    private static HtspMessage received(HtspMessage message) throws IOException {
+        byte[] body = HtspMessage.serializeBinary(message);
+        return HtspMessage.deserializeBinary(ByteBuffer.wrap(body));
+    }
+}
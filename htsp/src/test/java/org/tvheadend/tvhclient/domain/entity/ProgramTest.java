@@ -0,0 +1,35 @@
+package org.tvheadend.tvhclient.domain.entity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class ProgramTest {
+
+    @Test
+    public void programsWithTheSameDescriptionAreEqual() {
+        Program program = program("Die Nachrichten des Tages");
+        Program other = program(null);
+        other.setDescriptionData(program.getDescriptionData().clone());
+
+        assertNotSame(program.getDescriptionData(), other.getDescriptionData());
+        assertEquals(program, other);
+        assertEquals(program.hashCode(), other.hashCode());
+    }
+
+    @Test
+    public void programsWithDifferentDescriptionsAreNotEqual() {
+        assertNotEquals(program("Die Nachrichten des Tages"), program("Das Wetter"));
+        assertNotEquals(program("Die Nachrichten des Tages"), program(null));
+    }
+
+    private static Program program(String description) {
+        Program program = new Program();
+        program.setEventId(4711);
+        program.setTitle("Tagesschau");
+        program.setDescription(description);
+        return program;
+    }
+}
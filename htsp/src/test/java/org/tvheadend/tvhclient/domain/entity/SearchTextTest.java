@@ -0,0 +1,54 @@
+package org.tvheadend.tvhclient.domain.entity;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The search columns are compared with a LIKE condition, which only ignores
+ * the case of ASCII letters. Therefore both sides are stored in lower case.
+ */
+public class SearchTextTest {
+
+    @Test
+    public void programTitleWithNonAsciiLetters() {
+        Program program = new Program();
+        program.setTitle("\u00dcber den Wolken");
+
+        assertEquals("\u00fcber den wolken", program.getSearchTitle());
+        assertTrue(program.getSearchTitle().contains(SearchTextKt.toSearchText("\u00fcBER")));
+        assertTrue(program.getSearchTitle().contains(SearchTextKt.toSearchText("WOLKEN")));
+    }
+
+    @Test
+    public void recordingTitleAndSubtitleWithNonAsciiLetters() {
+        Recording recording = new Recording();
+        recording.setTitle("\u0421\u043f\u043e\u043a\u043e\u0439\u043d\u043e\u0439 \u043d\u043e\u0447\u0438");
+        recording.setSubtitle("\u00c9T\u00c9 \u00c0 PARIS");
+
+        assertTrue(recording.getSearchTitle().contains(SearchTextKt.toSearchText("\u0421\u041f\u041e\u041a\u041e\u0419\u041d\u041e\u0419")));
+        assertTrue(recording.getSearchSubtitle().contains(SearchTextKt.toSearchText("\u00e9t\u00e9")));
+    }
+
+    @Test
+    public void missingTitle() {
+        assertNull(new Program().getSearchTitle());
+        assertNull(new Recording().getSearchSubtitle());
+    }
+
+    @Test
+    public void searchTextDoesNotDependOnTheLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            // The lower case of I is a dotless i in Turkish
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals("title", SearchTextKt.toSearchText("TITLE"));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}